@@ -0,0 +1,69 @@
+package com.akwabasystems.ast;
+
+
+/**
+ * An array entry (as in "a[i]"), which is read as *(a + i)
+ */
+public final class ArrayAccess extends Expression {
+    private final VariableReference array;
+    private final Expression index;
+
+
+    /**
+     * Constructor. Initializes this array entry with the given array and index
+     *
+     * @param span              the span of the source from which the entry was parsed
+     * @param array             the reference to the array variable
+     * @param index             the expression of the index of the entry
+     */
+    public ArrayAccess(SourceSpan span, VariableReference array, Expression index) {
+        super(span);
+        this.array = array;
+        this.index = index;
+    }
+
+
+    /**
+     * Returns the reference to the array variable
+     *
+     * @return the reference to the array variable
+     */
+    public VariableReference getArray() {
+        return array;
+    }
+
+
+    /**
+     * Returns the expression of the index of the entry
+     *
+     * @return the expression of the index of the entry
+     */
+    public Expression getIndex() {
+        return index;
+    }
+
+
+    /**
+     * Returns true if the index has no side effects; otherwise, returns false
+     *
+     * @return true if the index has no side effects; otherwise, returns false
+     */
+    @Override
+    public boolean isPure() {
+        return index.isPure();
+    }
+
+
+    /**
+     * Calls the method of the given visitor for an array entry, and returns its result
+     *
+     * @param <R>               the type of the result of the visitor
+     * @param visitor           the visitor to accept
+     * @return the result of the visitor
+     */
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.akwabasystems.ast;
+
+
+import com.akwabasystems.model.Symbol;
+
+
+/**
+ * A binary expression. Jack has no operator precedence: "a + b * c" is parsed as "(a + b) * c", so a sequence of
+ * operations is a chain of binary expressions whose left operands are nested.
+ */
+public final class BinaryExpression extends Expression {
+    private final Symbol operator;
+    private final Expression left;
+    private final Expression right;
+
+
+    /**
+     * Constructor. Initializes this expression with the given operator and operands
+     *
+     * @param span              the span of the source from which the expression was parsed
+     * @param operator          the operator of the expression
+     * @param left              the left operand of the expression
+     * @param right             the right operand of the expression
+     */
+    public BinaryExpression(SourceSpan span, Symbol operator, Expression left, Expression right) {
+        super(span);
+        this.operator = operator;
+        this.left = left;
+        this.right = right;
+    }
+
+
+    /**
+     * Returns the operator of this expression
+     *
+     * @return the operator of this expression
+     */
+    public Symbol getOperator() {
+        return operator;
+    }
+
+
+    /**
+     * Returns the left operand of this expression
+     *
+     * @return the left operand of this expression
+     */
+    public Expression getLeft() {
+        return left;
+    }
+
+
+    /**
+     * Returns the right operand of this expression
+     *
+     * @return the right operand of this expression
+     */
+    public Expression getRight() {
+        return right;
+    }
+
+
+    /**
+     * Returns true if the operands have no side effects, and the operation cannot fail; otherwise, returns false. A
+     * division fails when its divisor is zero.
+     *
+     * @return true if evaluating this expression has no side effects; otherwise, returns false
+     */
+    @Override
+    public boolean isPure() {
+        return (operator != Symbol.DIVIDE && left.isPure() && right.isPure());
+    }
+
+
+    /**
+     * Calls the method of the given visitor for a binary expression, and returns its result
+     *
+     * @param <R>               the type of the result of the visitor
+     * @param visitor           the visitor to accept
+     * @return the result of the visitor
+     */
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.akwabasystems.ast;
+
+
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * A class declaration, which is the root of the syntax tree of a Jack file. The variables of the class are not
+ * nodes: the references to them are resolved by the parser, so the tree only records the number of fields, which is
+ * the size of the instances that the constructors allocate.
+ */
+public final class ClassDeclaration extends Node {
+    private final String name;
+    private final int fieldCount;
+    private final List<SubroutineDeclaration> subroutines;
+
+
+    /**
+     * Constructor. Initializes this declaration with the given name, number of fields and subroutines
+     *
+     * @param span              the span of the source from which the declaration was parsed
+     * @param name              the name of the class
+     * @param fieldCount        the number of fields of the class
+     * @param subroutines       the subroutines of the class, in the order of their declaration
+     */
+    public ClassDeclaration(SourceSpan span, String name, int fieldCount, List<SubroutineDeclaration> subroutines) {
+        super(span);
+        this.name = name;
+        this.fieldCount = fieldCount;
+        this.subroutines = Collections.unmodifiableList(subroutines);
+    }
+
+
+    /**
+     * Returns the name of the class
+     *
+     * @return the name of the class
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Returns the number of fields of the class
+     *
+     * @return the number of fields of the class
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+
+    /**
+     * Returns the subroutines of the class, in the order of their declaration
+     *
+     * @return the subroutines of the class
+     */
+    public List<SubroutineDeclaration> getSubroutines() {
+        return subroutines;
+    }
+
+
+    /**
+     * Returns a copy of this declaration with the given subroutines
+     *
+     * @param subroutines       the subroutines of the copy
+     * @return a copy of this declaration with the given subroutines
+     */
+    public ClassDeclaration withSubroutines(List<SubroutineDeclaration> subroutines) {
+        return new ClassDeclaration(getSpan(), name, fieldCount, subroutines);
+    }
+
+
+    /**
+     * Calls the method of the given visitor for a class declaration, and returns its result
+     *
+     * @param <R>               the type of the result of the visitor
+     * @param visitor           the visitor to accept
+     * @return the result of the visitor
+     */
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+}
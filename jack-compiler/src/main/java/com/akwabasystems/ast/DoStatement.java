@@ -0,0 +1,45 @@
+package com.akwabasystems.ast;
+
+
+/**
+ * A do statement, which calls a subroutine and discards its return value
+ */
+public final class DoStatement extends Statement {
+    private final SubroutineCall call;
+
+
+    /**
+     * Constructor. Initializes this statement with the given call
+     *
+     * @param span              the span of the source from which the statement was parsed
+     * @param call              the subroutine call of the statement
+     */
+    public DoStatement(SourceSpan span, SubroutineCall call) {
+        super(span);
+        this.call = call;
+    }
+
+
+    /**
+     * Returns the subroutine call of this statement
+     *
+     * @return the subroutine call of this statement
+     */
+    public SubroutineCall getCall() {
+        return call;
+    }
+
+
+    /**
+     * Calls the method of the given visitor for a do statement, and returns its result
+     *
+     * @param <R>               the type of the result of the visitor
+     * @param visitor           the visitor to accept
+     * @return the result of the visitor
+     */
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+}
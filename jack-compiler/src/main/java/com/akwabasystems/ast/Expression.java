@@ -0,0 +1,29 @@
+package com.akwabasystems.ast;
+
+
+/**
+ * An expression, which pushes exactly one value on the stack when it is evaluated
+ */
+public abstract class Expression extends Node {
+
+
+    /**
+     * Constructor. Initializes this expression with the given source span
+     *
+     * @param span              the span of the source from which the expression was parsed
+     */
+    protected Expression(SourceSpan span) {
+        super(span);
+    }
+
+
+    /**
+     * Returns true if evaluating this expression has no effect other than pushing its value, which is the case when it
+     * calls no subroutine (a string constant calls String.new); otherwise, returns false. An expression without side
+     * effects can be evaluated more than once, or not at all, without changing the behavior of the program.
+     *
+     * @return true if evaluating this expression has no side effects; otherwise, returns false
+     */
+    public abstract boolean isPure();
+
+}
@@ -0,0 +1,76 @@
+package com.akwabasystems.ast;
+
+
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * An if statement, whose "else" clause is empty if it has none
+ */
+public final class IfStatement extends Statement {
+    private final Expression condition;
+    private final List<Statement> thenStatements;
+    private final List<Statement> elseStatements;
+
+
+    /**
+     * Constructor. Initializes this statement with the given condition and clauses
+     *
+     * @param span              the span of the source from which the statement was parsed
+     * @param condition         the condition of the statement
+     * @param thenStatements    the statements to execute if the condition is true
+     * @param elseStatements    the statements to execute if the condition is false (empty if there is no "else")
+     */
+    public IfStatement(SourceSpan span, Expression condition, List<Statement> thenStatements,
+                       List<Statement> elseStatements) {
+        super(span);
+        this.condition = condition;
+        this.thenStatements = Collections.unmodifiableList(thenStatements);
+        this.elseStatements = Collections.unmodifiableList(elseStatements);
+    }
+
+
+    /**
+     * Returns the condition of this statement
+     *
+     * @return the condition of this statement
+     */
+    public Expression getCondition() {
+        return condition;
+    }
+
+
+    /**
+     * Returns the statements to execute if the condition is true
+     *
+     * @return the statements to execute if the condition is true
+     */
+    public List<Statement> getThenStatements() {
+        return thenStatements;
+    }
+
+
+    /**
+     * Returns the statements to execute if the condition is false, which are empty if there is no "else" clause
+     *
+     * @return the statements to execute if the condition is false
+     */
+    public List<Statement> getElseStatements() {
+        return elseStatements;
+    }
+
+
+    /**
+     * Calls the method of the given visitor for an if statement, and returns its result
+     *
+     * @param <R>               the type of the result of the visitor
+     * @param visitor           the visitor to accept
+     * @return the result of the visitor
+     */
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.akwabasystems.ast;
+
+
+/**
+ * An integer constant, whose value is between 0 and 32767 in the source. A pass can create constants outside of that
+ * range, which the code generator lowers to a constant and a negation.
+ */
+public final class IntegerConstant extends Expression {
+    private final int value;
+
+
+    /**
+     * Constructor. Initializes this constant with the given value
+     *
+     * @param span              the span of the source from which the constant was parsed
+     * @param value             the value of the constant
+     */
+    public IntegerConstant(SourceSpan span, int value) {
+        super(span);
+        this.value = value;
+    }
+
+
+    /**
+     * Returns the value of this constant
+     *
+     * @return the value of this constant
+     */
+    public int getValue() {
+        return value;
+    }
+
+
+    /**
+     * Returns true, since a constant has no side effects
+     *
+     * @return true
+     */
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
+
+    /**
+     * Calls the method of the given visitor for an integer constant, and returns its result
+     *
+     * @param <R>               the type of the result of the visitor
+     * @param visitor           the visitor to accept
+     * @return the result of the visitor
+     */
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+}
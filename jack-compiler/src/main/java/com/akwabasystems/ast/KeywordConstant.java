@@ -0,0 +1,59 @@
+package com.akwabasystems.ast;
+
+
+import com.akwabasystems.model.Keyword;
+
+
+/**
+ * A keyword constant: "true", "false", "null" or "this"
+ */
+public final class KeywordConstant extends Expression {
+    private final Keyword keyword;
+
+
+    /**
+     * Constructor. Initializes this constant with the given keyword
+     *
+     * @param span              the span of the source from which the constant was parsed
+     * @param keyword           the keyword of the constant (TRUE, FALSE, NULL or THIS)
+     */
+    public KeywordConstant(SourceSpan span, Keyword keyword) {
+        super(span);
+        this.keyword = keyword;
+    }
+
+
+    /**
+     * Returns the keyword of this constant
+     *
+     * @return the keyword of this constant
+     */
+    public Keyword getKeyword() {
+        return keyword;
+    }
+
+
+    /**
+     * Returns true, since a constant has no side effects
+     *
+     * @return true
+     */
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
+
+    /**
+     * Calls the method of the given visitor for a keyword constant, and returns its result
+     *
+     * @param <R>               the type of the result of the visitor
+     * @param visitor           the visitor to accept
+     * @return the result of the visitor
+     */
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+}
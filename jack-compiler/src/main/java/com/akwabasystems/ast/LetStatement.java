@@ -0,0 +1,81 @@
+package com.akwabasystems.ast;
+
+
+/**
+ * A let statement, which assigns a value to a variable ("let x = value") or to an array entry ("let a[i] = value")
+ */
+public final class LetStatement extends Statement {
+    private final VariableReference target;
+    private final Expression index;
+    private final Expression value;
+
+
+    /**
+     * Constructor. Initializes this statement with the given target, index and value
+     *
+     * @param span              the span of the source from which the statement was parsed
+     * @param target            the assigned variable, or the array variable of an assigned entry
+     * @param index             the expression of the index of the assigned entry, or null if a variable is assigned
+     * @param value             the expression of the assigned value
+     */
+    public LetStatement(SourceSpan span, VariableReference target, Expression index, Expression value) {
+        super(span);
+        this.target = target;
+        this.index = index;
+        this.value = value;
+    }
+
+
+    /**
+     * Returns the assigned variable, or the array variable of an assigned entry
+     *
+     * @return the assigned variable, or the array variable of an assigned entry
+     */
+    public VariableReference getTarget() {
+        return target;
+    }
+
+
+    /**
+     * Returns the expression of the index of the assigned entry, or null if a variable is assigned
+     *
+     * @return the expression of the index of the assigned entry, or null
+     */
+    public Expression getIndex() {
+        return index;
+    }
+
+
+    /**
+     * Returns true if an array entry is assigned; otherwise, returns false
+     *
+     * @return true if an array entry is assigned; otherwise, returns false
+     */
+    public boolean isArrayEntry() {
+        return (index != null);
+    }
+
+
+    /**
+     * Returns the expression of the assigned value
+     *
+     * @return the expression of the assigned value
+     */
+    public Expression getValue() {
+        return value;
+    }
+
+
+    /**
+     * Calls the method of the given visitor for a let statement, and returns its result
+     *
+     * @param <R>               the type of the result of the visitor
+     * @param visitor           the visitor to accept
+     * @return the result of the visitor
+     */
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+}
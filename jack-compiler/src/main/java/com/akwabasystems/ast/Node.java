@@ -0,0 +1,44 @@
+package com.akwabasystems.ast;
+
+
+/**
+ * A node of the syntax tree of a Jack class.
+ *
+ * The nodes are immutable: a pass that transforms a tree builds new nodes for the parts it changes, and shares the
+ * others. Each node records the span of the source from which it was parsed; a node built by a pass keeps the span of
+ * the node it replaces.
+ */
+public abstract class Node {
+    private final SourceSpan span;
+
+
+    /**
+     * Constructor. Initializes this node with the given source span
+     *
+     * @param span              the span of the source from which the node was parsed
+     */
+    protected Node(SourceSpan span) {
+        this.span = span;
+    }
+
+
+    /**
+     * Returns the span of the source from which this node was parsed
+     *
+     * @return the span of the source from which this node was parsed
+     */
+    public SourceSpan getSpan() {
+        return span;
+    }
+
+
+    /**
+     * Calls the method of the given visitor for the type of this node, and returns its result
+     *
+     * @param <R>               the type of the result of the visitor
+     * @param visitor           the visitor to accept
+     * @return the result of the visitor
+     */
+    public abstract <R> R accept(Visitor<R> visitor);
+
+}
@@ -0,0 +1,45 @@
+package com.akwabasystems.ast;
+
+
+/**
+ * A return statement. A subroutine that returns no value ("return;") returns 0.
+ */
+public final class ReturnStatement extends Statement {
+    private final Expression value;
+
+
+    /**
+     * Constructor. Initializes this statement with the given value
+     *
+     * @param span              the span of the source from which the statement was parsed
+     * @param value             the expression of the returned value, or null if no value is returned
+     */
+    public ReturnStatement(SourceSpan span, Expression value) {
+        super(span);
+        this.value = value;
+    }
+
+
+    /**
+     * Returns the expression of the returned value, or null if no value is returned
+     *
+     * @return the expression of the returned value, or null
+     */
+    public Expression getValue() {
+        return value;
+    }
+
+
+    /**
+     * Calls the method of the given visitor for a return statement, and returns its result
+     *
+     * @param <R>               the type of the result of the visitor
+     * @param visitor           the visitor to accept
+     * @return the result of the visitor
+     */
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.akwabasystems.ast;
+
+
+/**
+ * The range of characters of the source of a class from which a node of its syntax tree was parsed, from the first
+ * character of its first token to the last character of its last token.
+ */
+public final class SourceSpan {
+    private final int start;
+    private final int end;
+
+
+    /**
+     * Constructor. Initializes this span with the given range of characters
+     *
+     * @param start             the index of the first character of the span
+     * @param end               the index after the last character of the span
+     */
+    public SourceSpan(int start, int end) {
+        this.start = start;
+        this.end = end;
+    }
+
+
+    /**
+     * Returns the index of the first character of this span
+     *
+     * @return the index of the first character of this span
+     */
+    public int getStart() {
+        return start;
+    }
+
+
+    /**
+     * Returns the index after the last character of this span
+     *
+     * @return the index after the last character of this span
+     */
+    public int getEnd() {
+        return end;
+    }
+
+
+    /**
+     * Returns the number of characters of this span
+     *
+     * @return the number of characters of this span
+     */
+    public int getLength() {
+        return end - start;
+    }
+
+
+    /**
+     * Returns the characters of this span in the given source
+     *
+     * @param source            the source from which the span was parsed
+     * @return the characters of this span in the given source
+     */
+    public String textIn(String source) {
+        return source.substring(start, end);
+    }
+
+
+    /**
+     * Returns the string representation of this span
+     *
+     * @return the string representation of this span
+     */
+    @Override
+    public String toString() {
+        return String.format("[%s, %s)", start, end);
+    }
+
+}
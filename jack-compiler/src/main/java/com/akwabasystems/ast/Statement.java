@@ -0,0 +1,19 @@
+package com.akwabasystems.ast;
+
+
+/**
+ * A statement of the body of a subroutine (let, if, while, do or return)
+ */
+public abstract class Statement extends Node {
+
+
+    /**
+     * Constructor. Initializes this statement with the given source span
+     *
+     * @param span              the span of the source from which the statement was parsed
+     */
+    protected Statement(SourceSpan span) {
+        super(span);
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.akwabasystems.ast;
+
+
+/**
+ * A string constant, which is evaluated by creating a new string and appending its characters to it
+ */
+public final class StringConstant extends Expression {
+    private final String value;
+
+
+    /**
+     * Constructor. Initializes this constant with the given value
+     *
+     * @param span              the span of the source from which the constant was parsed
+     * @param value             the value of the constant, without its double quotes
+     */
+    public StringConstant(SourceSpan span, String value) {
+        super(span);
+        this.value = value;
+    }
+
+
+    /**
+     * Returns the value of this constant, without its double quotes
+     *
+     * @return the value of this constant
+     */
+    public String getValue() {
+        return value;
+    }
+
+
+    /**
+     * Returns false, since a string constant allocates a new string each time it is evaluated
+     *
+     * @return false
+     */
+    @Override
+    public boolean isPure() {
+        return false;
+    }
+
+
+    /**
+     * Calls the method of the given visitor for a string constant, and returns its result
+     *
+     * @param <R>               the type of the result of the visitor
+     * @param visitor           the visitor to accept
+     * @return the result of the visitor
+     */
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+}
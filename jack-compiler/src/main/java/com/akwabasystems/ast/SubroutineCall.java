@@ -0,0 +1,106 @@
+package com.akwabasystems.ast;
+
+
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * A subroutine call, resolved to the VM function it calls.
+ *
+ * A call to a method has a receiver: the object on which the method is called ("this", or a variable), which is
+ * pushed before the arguments and counted as the first of them. The number of arguments of the VM call is resolved
+ * by the parser: it is that of the call, plus one for the receiver, except for the calls to the Jack OS, whose number
+ * of arguments is that of the standard library.
+ */
+public final class SubroutineCall extends Expression {
+    private final Expression receiver;
+    private final String functionName;
+    private final List<Expression> arguments;
+    private final int argumentCount;
+
+
+    /**
+     * Constructor. Initializes this call with the given receiver, function name and arguments
+     *
+     * @param span              the span of the source from which the call was parsed
+     * @param receiver          the object on which a method is called, or null for a call to a function or a
+     *                          constructor
+     * @param functionName      the name of the VM function to call ("Class.name")
+     * @param arguments         the expressions of the arguments of the call, not including the receiver
+     * @param argumentCount     the number of arguments of the VM call, including the receiver
+     */
+    public SubroutineCall(SourceSpan span, Expression receiver, String functionName, List<Expression> arguments,
+                          int argumentCount) {
+        super(span);
+        this.receiver = receiver;
+        this.functionName = functionName;
+        this.arguments = Collections.unmodifiableList(arguments);
+        this.argumentCount = argumentCount;
+    }
+
+
+    /**
+     * Returns the object on which a method is called, or null for a call to a function or a constructor
+     *
+     * @return the object on which a method is called, or null
+     */
+    public Expression getReceiver() {
+        return receiver;
+    }
+
+
+    /**
+     * Returns the name of the VM function to call ("Class.name")
+     *
+     * @return the name of the VM function to call
+     */
+    public String getFunctionName() {
+        return functionName;
+    }
+
+
+    /**
+     * Returns the expressions of the arguments of the call, not including the receiver
+     *
+     * @return the expressions of the arguments of the call
+     */
+    public List<Expression> getArguments() {
+        return arguments;
+    }
+
+
+    /**
+     * Returns the number of arguments of the VM call, including the receiver
+     *
+     * @return the number of arguments of the VM call
+     */
+    public int getArgumentCount() {
+        return argumentCount;
+    }
+
+
+    /**
+     * Returns false, since the called subroutine can have any side effect
+     *
+     * @return false
+     */
+    @Override
+    public boolean isPure() {
+        return false;
+    }
+
+
+    /**
+     * Calls the method of the given visitor for a subroutine call, and returns its result
+     *
+     * @param <R>               the type of the result of the visitor
+     * @param visitor           the visitor to accept
+     * @return the result of the visitor
+     */
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.akwabasystems.ast;
+
+
+import com.akwabasystems.model.Keyword;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * A subroutine declaration: a constructor, a function or a method, with the number of its local variables and the
+ * statements of its body
+ */
+public final class SubroutineDeclaration extends Node {
+    private final Keyword kind;
+    private final String className;
+    private final String name;
+    private final int localCount;
+    private final List<Statement> statements;
+
+
+    /**
+     * Constructor. Initializes this declaration with the given kind, name, number of local variables and statements
+     *
+     * @param span              the span of the source from which the declaration was parsed
+     * @param kind              the kind of the subroutine (CONSTRUCTOR, FUNCTION or METHOD)
+     * @param className         the name of the class that declares the subroutine
+     * @param name              the name of the subroutine
+     * @param localCount        the number of local variables of the subroutine
+     * @param statements        the statements of the body of the subroutine
+     */
+    public SubroutineDeclaration(SourceSpan span, Keyword kind, String className, String name, int localCount,
+                                 List<Statement> statements) {
+        super(span);
+        this.kind = kind;
+        this.className = className;
+        this.name = name;
+        this.localCount = localCount;
+        this.statements = Collections.unmodifiableList(statements);
+    }
+
+
+    /**
+     * Returns the kind of the subroutine (CONSTRUCTOR, FUNCTION or METHOD)
+     *
+     * @return the kind of the subroutine
+     */
+    public Keyword getKind() {
+        return kind;
+    }
+
+
+    /**
+     * Returns the name of the class that declares the subroutine
+     *
+     * @return the name of the class that declares the subroutine
+     */
+    public String getClassName() {
+        return className;
+    }
+
+
+    /**
+     * Returns the name of the subroutine
+     *
+     * @return the name of the subroutine
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Returns the name of the VM function of the subroutine ("Class.name")
+     *
+     * @return the name of the VM function of the subroutine
+     */
+    public String getFunctionName() {
+        return String.format("%s.%s", className, name);
+    }
+
+
+    /**
+     * Returns the number of local variables of the subroutine
+     *
+     * @return the number of local variables of the subroutine
+     */
+    public int getLocalCount() {
+        return localCount;
+    }
+
+
+    /**
+     * Returns the statements of the body of the subroutine
+     *
+     * @return the statements of the body of the subroutine
+     */
+    public List<Statement> getStatements() {
+        return statements;
+    }
+
+
+    /**
+     * Returns a copy of this declaration with the given statements
+     *
+     * @param statements        the statements of the body of the copy
+     * @return a copy of this declaration with the given statements
+     */
+    public SubroutineDeclaration withStatements(List<Statement> statements) {
+        return new SubroutineDeclaration(getSpan(), kind, className, name, localCount, statements);
+    }
+
+
+    /**
+     * Calls the method of the given visitor for a subroutine declaration, and returns its result
+     *
+     * @param <R>               the type of the result of the visitor
+     * @param visitor           the visitor to accept
+     * @return the result of the visitor
+     */
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.akwabasystems.ast;
+
+
+import com.akwabasystems.model.Symbol;
+
+
+/**
+ * A unary expression: an arithmetic negation ("-x") or a bitwise negation ("~x")
+ */
+public final class UnaryExpression extends Expression {
+    private final Symbol operator;
+    private final Expression operand;
+
+
+    /**
+     * Constructor. Initializes this expression with the given operator and operand
+     *
+     * @param span              the span of the source from which the expression was parsed
+     * @param operator          the operator of the expression (MINUS or TILDE)
+     * @param operand           the operand of the expression
+     */
+    public UnaryExpression(SourceSpan span, Symbol operator, Expression operand) {
+        super(span);
+        this.operator = operator;
+        this.operand = operand;
+    }
+
+
+    /**
+     * Returns the operator of this expression
+     *
+     * @return the operator of this expression
+     */
+    public Symbol getOperator() {
+        return operator;
+    }
+
+
+    /**
+     * Returns the operand of this expression
+     *
+     * @return the operand of this expression
+     */
+    public Expression getOperand() {
+        return operand;
+    }
+
+
+    /**
+     * Returns true if the operand has no side effects; otherwise, returns false
+     *
+     * @return true if the operand has no side effects; otherwise, returns false
+     */
+    @Override
+    public boolean isPure() {
+        return operand.isPure();
+    }
+
+
+    /**
+     * Calls the method of the given visitor for a unary expression, and returns its result
+     *
+     * @param <R>               the type of the result of the visitor
+     * @param visitor           the visitor to accept
+     * @return the result of the visitor
+     */
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.akwabasystems.ast;
+
+
+import com.akwabasystems.model.Segment;
+
+
+/**
+ * A reference to a variable (a local variable, an argument, a field or a static variable), resolved to its declared
+ * type and to its location in the memory segments of the VM
+ */
+public final class VariableReference extends Expression {
+    private final String name;
+    private final String type;
+    private final Segment segment;
+    private final int index;
+
+
+    /**
+     * Constructor. Initializes this reference with the given variable
+     *
+     * @param span              the span of the source from which the reference was parsed
+     * @param name              the name of the variable
+     * @param type              the declared type of the variable
+     * @param segment           the segment of the variable (LOCAL, ARGUMENT, THIS or STATIC)
+     * @param index             the index of the variable in its segment
+     */
+    public VariableReference(SourceSpan span, String name, String type, Segment segment, int index) {
+        super(span);
+        this.name = name;
+        this.type = type;
+        this.segment = segment;
+        this.index = index;
+    }
+
+
+    /**
+     * Returns the name of the variable
+     *
+     * @return the name of the variable
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Returns the declared type of the variable ("int", "char", "boolean" or a class name)
+     *
+     * @return the declared type of the variable
+     */
+    public String getType() {
+        return type;
+    }
+
+
+    /**
+     * Returns the segment of the variable
+     *
+     * @return the segment of the variable
+     */
+    public Segment getSegment() {
+        return segment;
+    }
+
+
+    /**
+     * Returns the index of the variable in its segment
+     *
+     * @return the index of the variable in its segment
+     */
+    public int getIndex() {
+        return index;
+    }
+
+
+    /**
+     * Returns true if this reference is to the same variable as the given one; otherwise, returns false
+     *
+     * @param reference         the reference to compare to this one
+     * @return true if this reference is to the same variable as the given one; otherwise, returns false
+     */
+    public boolean isSameVariableAs(VariableReference reference) {
+        return (segment == reference.segment && index == reference.index);
+    }
+
+
+    /**
+     * Returns true, since reading a variable has no side effects
+     *
+     * @return true
+     */
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
+
+    /**
+     * Calls the method of the given visitor for a reference to a variable, and returns its result
+     *
+     * @param <R>               the type of the result of the visitor
+     * @param visitor           the visitor to accept
+     * @return the result of the visitor
+     */
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+}
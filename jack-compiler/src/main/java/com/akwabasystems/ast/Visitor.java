@@ -0,0 +1,147 @@
+package com.akwabasystems.ast;
+
+
+/**
+ * A visitor of the nodes of a syntax tree, with one method for each type of node. A visitor decides whether, and in
+ * which order, to visit the children of a node.
+ *
+ * @param <R>       the type of the result of the visitor
+ */
+public interface Visitor<R> {
+
+
+    /**
+     * Visits a class declaration
+     *
+     * @param node          the node to visit
+     * @return the result of the visit
+     */
+    R visit(ClassDeclaration node);
+
+
+    /**
+     * Visits a subroutine declaration
+     *
+     * @param node          the node to visit
+     * @return the result of the visit
+     */
+    R visit(SubroutineDeclaration node);
+
+
+    /**
+     * Visits a let statement
+     *
+     * @param node          the node to visit
+     * @return the result of the visit
+     */
+    R visit(LetStatement node);
+
+
+    /**
+     * Visits an if statement
+     *
+     * @param node          the node to visit
+     * @return the result of the visit
+     */
+    R visit(IfStatement node);
+
+
+    /**
+     * Visits a while statement
+     *
+     * @param node          the node to visit
+     * @return the result of the visit
+     */
+    R visit(WhileStatement node);
+
+
+    /**
+     * Visits a do statement
+     *
+     * @param node          the node to visit
+     * @return the result of the visit
+     */
+    R visit(DoStatement node);
+
+
+    /**
+     * Visits a return statement
+     *
+     * @param node          the node to visit
+     * @return the result of the visit
+     */
+    R visit(ReturnStatement node);
+
+
+    /**
+     * Visits an integer constant
+     *
+     * @param node          the node to visit
+     * @return the result of the visit
+     */
+    R visit(IntegerConstant node);
+
+
+    /**
+     * Visits a string constant
+     *
+     * @param node          the node to visit
+     * @return the result of the visit
+     */
+    R visit(StringConstant node);
+
+
+    /**
+     * Visits a keyword constant
+     *
+     * @param node          the node to visit
+     * @return the result of the visit
+     */
+    R visit(KeywordConstant node);
+
+
+    /**
+     * Visits a reference to a variable
+     *
+     * @param node          the node to visit
+     * @return the result of the visit
+     */
+    R visit(VariableReference node);
+
+
+    /**
+     * Visits an array entry
+     *
+     * @param node          the node to visit
+     * @return the result of the visit
+     */
+    R visit(ArrayAccess node);
+
+
+    /**
+     * Visits a unary expression
+     *
+     * @param node          the node to visit
+     * @return the result of the visit
+     */
+    R visit(UnaryExpression node);
+
+
+    /**
+     * Visits a binary expression
+     *
+     * @param node          the node to visit
+     * @return the result of the visit
+     */
+    R visit(BinaryExpression node);
+
+
+    /**
+     * Visits a subroutine call
+     *
+     * @param node          the node to visit
+     * @return the result of the visit
+     */
+    R visit(SubroutineCall node);
+
+}
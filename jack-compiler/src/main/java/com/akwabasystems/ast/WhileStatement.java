@@ -0,0 +1,62 @@
+package com.akwabasystems.ast;
+
+
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * A while statement
+ */
+public final class WhileStatement extends Statement {
+    private final Expression condition;
+    private final List<Statement> statements;
+
+
+    /**
+     * Constructor. Initializes this statement with the given condition and body
+     *
+     * @param span              the span of the source from which the statement was parsed
+     * @param condition         the condition of the loop
+     * @param statements        the statements of the body of the loop
+     */
+    public WhileStatement(SourceSpan span, Expression condition, List<Statement> statements) {
+        super(span);
+        this.condition = condition;
+        this.statements = Collections.unmodifiableList(statements);
+    }
+
+
+    /**
+     * Returns the condition of the loop
+     *
+     * @return the condition of the loop
+     */
+    public Expression getCondition() {
+        return condition;
+    }
+
+
+    /**
+     * Returns the statements of the body of the loop
+     *
+     * @return the statements of the body of the loop
+     */
+    public List<Statement> getStatements() {
+        return statements;
+    }
+
+
+    /**
+     * Calls the method of the given visitor for a while statement, and returns its result
+     *
+     * @param <R>               the type of the result of the visitor
+     * @param visitor           the visitor to accept
+     * @return the result of the visitor
+     */
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+}
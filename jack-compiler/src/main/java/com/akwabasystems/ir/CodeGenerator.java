@@ -0,0 +1,472 @@
+package com.akwabasystems.ir;
+
+
+import com.akwabasystems.ast.ArrayAccess;
+import com.akwabasystems.ast.BinaryExpression;
+import com.akwabasystems.ast.ClassDeclaration;
+import com.akwabasystems.ast.DoStatement;
+import com.akwabasystems.ast.Expression;
+import com.akwabasystems.ast.IfStatement;
+import com.akwabasystems.ast.IntegerConstant;
+import com.akwabasystems.ast.KeywordConstant;
+import com.akwabasystems.ast.LetStatement;
+import com.akwabasystems.ast.ReturnStatement;
+import com.akwabasystems.ast.Statement;
+import com.akwabasystems.ast.StringConstant;
+import com.akwabasystems.ast.SubroutineCall;
+import com.akwabasystems.ast.SubroutineDeclaration;
+import com.akwabasystems.ast.UnaryExpression;
+import com.akwabasystems.ast.VariableReference;
+import com.akwabasystems.ast.Visitor;
+import com.akwabasystems.ast.WhileStatement;
+import com.akwabasystems.model.ArithmeticCommand;
+import com.akwabasystems.model.Keyword;
+import com.akwabasystems.model.Segment;
+import com.akwabasystems.model.Symbol;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Lowers the syntax tree of a class to the stack IR: each subroutine becomes a VM function, whose instructions are
+ * emitted by a post-order walk of its statements and expressions.
+ *
+ * The labels of the "if" and "while" statements are numbered in the order of the statements in each subroutine
+ * (IF_TRUE0, IF_FALSE0, IF_END0, WHILE_EXP0, WHILE_END0, and so on). A generator keeps the state of the subroutine
+ * being lowered, so it must not be shared by several threads.
+ */
+public final class CodeGenerator implements Visitor<Void> {
+    private int fieldCount;
+    private List<Instruction> instructions;
+    private int ifCount;
+    private int whileCount;
+
+
+    /**
+     * Returns the VM functions of the subroutines of the given class, in the order of their declaration
+     *
+     * @param node              the syntax tree of the class
+     * @return the VM functions of the subroutines of the class
+     */
+    public List<VMFunction> lower(ClassDeclaration node) {
+        List<VMFunction> functions = new ArrayList<>();
+        fieldCount = node.getFieldCount();
+
+        for(SubroutineDeclaration subroutine : node.getSubroutines()) {
+            functions.add(lower(subroutine));
+        }
+
+        return functions;
+    }
+
+
+    /**
+     * Returns the VM function of the given subroutine
+     *
+     * @param node              the syntax tree of the subroutine
+     * @return the VM function of the subroutine
+     */
+    private VMFunction lower(SubroutineDeclaration node) {
+        instructions = new ArrayList<>();
+        ifCount = 0;
+        whileCount = 0;
+
+        node.accept(this);
+        return new VMFunction(node.getFunctionName(), node.getLocalCount(), instructions);
+    }
+
+
+    /**
+     * Lowers the subroutines of a class
+     *
+     * @param node              the class declaration to lower
+     * @return null
+     */
+    @Override
+    public Void visit(ClassDeclaration node) {
+        lower(node);
+        return null;
+    }
+
+
+    /**
+     * Lowers the body of a subroutine. A constructor first allocates the memory of the new object, and a method first
+     * sets "this" to its first argument.
+     *
+     * @param node              the subroutine declaration to lower
+     * @return null
+     */
+    @Override
+    public Void visit(SubroutineDeclaration node) {
+
+        if(node.getKind() == Keyword.CONSTRUCTOR) {
+            emit(Instruction.pushConstant(fieldCount));
+            emit(Instruction.call("Memory.alloc", 1));
+            emit(Instruction.pop(Segment.POINTER, 0));
+        } else if(node.getKind() == Keyword.METHOD) {
+            emit(Instruction.push(Segment.ARGUMENT, 0));
+            emit(Instruction.pop(Segment.POINTER, 0));
+        }
+
+        lower(node.getStatements());
+        return null;
+    }
+
+
+    /**
+     * Lowers a let statement. An array entry a[i] is assigned as *(a + i): the address of the entry is computed
+     * before the value, which is stored in "temp 0" while the address is popped into the "that" pointer.
+     *
+     * @param node              the let statement to lower
+     * @return null
+     */
+    @Override
+    public Void visit(LetStatement node) {
+        VariableReference target = node.getTarget();
+
+        if(node.isArrayEntry()) {
+            node.getIndex().accept(this);
+            emit(Instruction.push(target.getSegment(), target.getIndex()));
+            emit(Instruction.arithmetic(ArithmeticCommand.ADD));
+            node.getValue().accept(this);
+            emit(Instruction.pop(Segment.TEMP, 0));
+            emit(Instruction.pop(Segment.POINTER, 1));
+            emit(Instruction.push(Segment.TEMP, 0));
+            emit(Instruction.pop(Segment.THAT, 0));
+        } else {
+            node.getValue().accept(this);
+            emit(Instruction.pop(target.getSegment(), target.getIndex()));
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Lowers an if statement, with a jump to its "else" clause even if there is none:
+     *
+     *     compute condition
+     *     if-goto IF_TRUE0
+     *     goto IF_FALSE0
+     *     label IF_TRUE0
+     *     ... statements of the "if" clause
+     *     goto IF_END0
+     *     label IF_FALSE0
+     *     ... statements of the "else" clause, if any
+     *     label IF_END0
+     *
+     * @param node              the if statement to lower
+     * @return null
+     */
+    @Override
+    public Void visit(IfStatement node) {
+        int sequence = ifCount++;
+        String ifTrue = String.format("IF_TRUE%s", sequence);
+        String ifFalse = String.format("IF_FALSE%s", sequence);
+        String ifEnd = String.format("IF_END%s", sequence);
+
+        node.getCondition().accept(this);
+        emit(Instruction.branch(ifTrue));
+        emit(Instruction.jump(ifFalse));
+        emit(Instruction.label(ifTrue));
+        lower(node.getThenStatements());
+        emit(Instruction.jump(ifEnd));
+        emit(Instruction.label(ifFalse));
+        lower(node.getElseStatements());
+        emit(Instruction.label(ifEnd));
+        return null;
+    }
+
+
+    /**
+     * Lowers a while statement:
+     *
+     *     label WHILE_EXP0
+     *     compute condition
+     *     not
+     *     if-goto WHILE_END0
+     *     ... statements of the body
+     *     goto WHILE_EXP0
+     *     label WHILE_END0
+     *
+     * @param node              the while statement to lower
+     * @return null
+     */
+    @Override
+    public Void visit(WhileStatement node) {
+        int sequence = whileCount++;
+        String startLabel = String.format("WHILE_EXP%s", sequence);
+        String endLabel = String.format("WHILE_END%s", sequence);
+
+        emit(Instruction.label(startLabel));
+        node.getCondition().accept(this);
+        emit(Instruction.arithmetic(ArithmeticCommand.NOT));
+        emit(Instruction.branch(endLabel));
+        lower(node.getStatements());
+        emit(Instruction.jump(startLabel));
+        emit(Instruction.label(endLabel));
+        return null;
+    }
+
+
+    /**
+     * Lowers a do statement, whose call pushes a return value that is discarded
+     *
+     * @param node              the do statement to lower
+     * @return null
+     */
+    @Override
+    public Void visit(DoStatement node) {
+        node.getCall().accept(this);
+        emit(Instruction.pop(Segment.TEMP, 0));
+        return null;
+    }
+
+
+    /**
+     * Lowers a return statement. A subroutine that returns no value returns 0.
+     *
+     * @param node              the return statement to lower
+     * @return null
+     */
+    @Override
+    public Void visit(ReturnStatement node) {
+
+        if(node.getValue() != null) {
+            node.getValue().accept(this);
+        } else {
+            emit(Instruction.pushConstant(0));
+        }
+
+        emit(Instruction.ret());
+        return null;
+    }
+
+
+    /**
+     * Lowers an integer constant. The VM can only push constants between 0 and 32767, so a negative constant is
+     * pushed as the negation of its absolute value, and -32768 as -32767 - 1.
+     *
+     * @param node              the integer constant to lower
+     * @return null
+     */
+    @Override
+    public Void visit(IntegerConstant node) {
+        int value = node.getValue();
+
+        if(value >= 0) {
+            emit(Instruction.pushConstant(value));
+        } else if(value > Short.MIN_VALUE) {
+            emit(Instruction.pushConstant(-value));
+            emit(Instruction.arithmetic(ArithmeticCommand.NEG));
+        } else {
+            emit(Instruction.pushConstant(Short.MAX_VALUE));
+            emit(Instruction.arithmetic(ArithmeticCommand.NEG));
+            emit(Instruction.pushConstant(1));
+            emit(Instruction.arithmetic(ArithmeticCommand.SUB));
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Lowers a string constant, which creates a new string and appends each of its characters to it
+     *
+     * @param node              the string constant to lower
+     * @return null
+     */
+    @Override
+    public Void visit(StringConstant node) {
+        String value = node.getValue();
+
+        emit(Instruction.pushConstant(value.length()));
+        emit(Instruction.call("String.new", 1));
+
+        for(int i = 0; i < value.length(); i++) {
+            emit(Instruction.pushConstant(value.charAt(i)));
+            emit(Instruction.call("String.appendChar", 2));
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Lowers a keyword constant: "true" is -1 (the negation of 0), "false" and "null" are 0, and "this" is the
+     * "this" pointer
+     *
+     * @param node              the keyword constant to lower
+     * @return null
+     */
+    @Override
+    public Void visit(KeywordConstant node) {
+
+        switch(node.getKeyword()) {
+
+            case TRUE:
+                emit(Instruction.pushConstant(0));
+                emit(Instruction.arithmetic(ArithmeticCommand.NOT));
+                break;
+
+            case THIS:
+                emit(Instruction.push(Segment.POINTER, 0));
+                break;
+
+            default:
+                emit(Instruction.pushConstant(0));
+                break;
+
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Lowers a reference to a variable, which pushes its value
+     *
+     * @param node              the reference to lower
+     * @return null
+     */
+    @Override
+    public Void visit(VariableReference node) {
+        emit(Instruction.push(node.getSegment(), node.getIndex()));
+        return null;
+    }
+
+
+    /**
+     * Lowers the read of an array entry a[i], which is *(a + i)
+     *
+     * @param node              the array entry to lower
+     * @return null
+     */
+    @Override
+    public Void visit(ArrayAccess node) {
+        VariableReference array = node.getArray();
+
+        node.getIndex().accept(this);
+        emit(Instruction.push(array.getSegment(), array.getIndex()));
+        emit(Instruction.arithmetic(ArithmeticCommand.ADD));
+        emit(Instruction.pop(Segment.POINTER, 1));
+        emit(Instruction.push(Segment.THAT, 0));
+        return null;
+    }
+
+
+    /**
+     * Lowers a unary expression
+     *
+     * @param node              the unary expression to lower
+     * @return null
+     */
+    @Override
+    public Void visit(UnaryExpression node) {
+        node.getOperand().accept(this);
+        boolean isNegation = (node.getOperator() == Symbol.MINUS);
+        emit(Instruction.arithmetic(isNegation? ArithmeticCommand.NEG : ArithmeticCommand.NOT));
+        return null;
+    }
+
+
+    /**
+     * Lowers a binary expression. The VM has no multiplication or division, which are calls to the Math class of the
+     * Jack OS.
+     *
+     * @param node              the binary expression to lower
+     * @return null
+     */
+    @Override
+    public Void visit(BinaryExpression node) {
+        node.getLeft().accept(this);
+        node.getRight().accept(this);
+
+        switch(node.getOperator()) {
+
+            case PLUS:
+                emit(Instruction.arithmetic(ArithmeticCommand.ADD));
+                break;
+
+            case MINUS:
+                emit(Instruction.arithmetic(ArithmeticCommand.SUB));
+                break;
+
+            case MULTIPLY:
+                emit(Instruction.call("Math.multiply", 2));
+                break;
+
+            case DIVIDE:
+                emit(Instruction.call("Math.divide", 2));
+                break;
+
+            case AMPERSAND:
+                emit(Instruction.arithmetic(ArithmeticCommand.AND));
+                break;
+
+            case PIPE:
+                emit(Instruction.arithmetic(ArithmeticCommand.OR));
+                break;
+
+            case LESS_THAN:
+                emit(Instruction.arithmetic(ArithmeticCommand.LT));
+                break;
+
+            case GREATER_THAN:
+                emit(Instruction.arithmetic(ArithmeticCommand.GT));
+                break;
+
+            default:
+                emit(Instruction.arithmetic(ArithmeticCommand.EQ));
+                break;
+
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Lowers a subroutine call: the receiver of a method call is pushed first, then the arguments
+     *
+     * @param node              the subroutine call to lower
+     * @return null
+     */
+    @Override
+    public Void visit(SubroutineCall node) {
+
+        if(node.getReceiver() != null) {
+            node.getReceiver().accept(this);
+        }
+
+        for(Expression argument : node.getArguments()) {
+            argument.accept(this);
+        }
+
+        emit(Instruction.call(node.getFunctionName(), node.getArgumentCount()));
+        return null;
+    }
+
+
+    /**
+     * Lowers the given statements, in order
+     *
+     * @param statements        the statements to lower
+     */
+    private void lower(List<Statement> statements) {
+        for(Statement statement : statements) {
+            statement.accept(this);
+        }
+    }
+
+
+    /**
+     * Appends the given instruction to the function being lowered
+     *
+     * @param instruction       the instruction to append
+     */
+    private void emit(Instruction instruction) {
+        instructions.add(instruction);
+    }
+
+}
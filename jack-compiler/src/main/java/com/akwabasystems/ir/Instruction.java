@@ -0,0 +1,273 @@
+package com.akwabasystems.ir;
+
+
+import com.akwabasystems.model.ArithmeticCommand;
+import com.akwabasystems.model.Segment;
+import java.util.Objects;
+
+
+/**
+ * An instruction of the stack IR, which stands for a single VM command.
+ *
+ * Depending on its operation, an instruction has a segment and an index (push and pop), an arithmetic command, a
+ * label (label, goto and if-goto), or a function name and a number of arguments (call). Instructions are immutable,
+ * and are created by the static factory methods of this class.
+ */
+public final class Instruction {
+    private static final Instruction RETURN = new Instruction(Opcode.RETURN, null, null, null, 0);
+    private final Opcode opcode;
+    private final Segment segment;
+    private final ArithmeticCommand command;
+    private final String name;
+    private final int index;
+
+
+    /**
+     * Constructor. Initializes this instruction with the given operation and arguments
+     *
+     * @param opcode            the operation of the instruction
+     * @param segment           the segment of a push or a pop, or null
+     * @param command           the command of an arithmetic instruction, or null
+     * @param name              the label of a label, goto or if-goto, or the function name of a call, or null
+     * @param index             the index of a push or a pop, or the number of arguments of a call
+     */
+    private Instruction(Opcode opcode, Segment segment, ArithmeticCommand command, String name, int index) {
+        this.opcode = opcode;
+        this.segment = segment;
+        this.command = command;
+        this.name = name;
+        this.index = index;
+    }
+
+
+    /**
+     * Returns an instruction that pushes the given entry of a segment
+     *
+     * @param segment           the segment of the entry
+     * @param index             the index of the entry
+     * @return an instruction that pushes the given entry of a segment
+     */
+    public static Instruction push(Segment segment, int index) {
+        return new Instruction(Opcode.PUSH, segment, null, null, index);
+    }
+
+
+    /**
+     * Returns an instruction that pushes the given constant, which must be between 0 and 32767
+     *
+     * @param constant          the constant to push
+     * @return an instruction that pushes the given constant
+     */
+    public static Instruction pushConstant(int constant) {
+        return push(Segment.CONSTANT, constant);
+    }
+
+
+    /**
+     * Returns an instruction that pops the top of the stack into the given entry of a segment
+     *
+     * @param segment           the segment of the entry
+     * @param index             the index of the entry
+     * @return an instruction that pops the top of the stack into the given entry of a segment
+     */
+    public static Instruction pop(Segment segment, int index) {
+        return new Instruction(Opcode.POP, segment, null, null, index);
+    }
+
+
+    /**
+     * Returns an instruction that executes the given arithmetic or logical command
+     *
+     * @param command           the command to execute
+     * @return an instruction that executes the given arithmetic or logical command
+     */
+    public static Instruction arithmetic(ArithmeticCommand command) {
+        return new Instruction(Opcode.ARITHMETIC, null, command, null, 0);
+    }
+
+
+    /**
+     * Returns an instruction that declares the given label
+     *
+     * @param label             the label to declare
+     * @return an instruction that declares the given label
+     */
+    public static Instruction label(String label) {
+        return new Instruction(Opcode.LABEL, null, null, label, 0);
+    }
+
+
+    /**
+     * Returns an instruction that jumps to the given label
+     *
+     * @param label             the label to jump to
+     * @return an instruction that jumps to the given label
+     */
+    public static Instruction jump(String label) {
+        return new Instruction(Opcode.GOTO, null, null, label, 0);
+    }
+
+
+    /**
+     * Returns an instruction that pops the top of the stack, and jumps to the given label if it is not zero
+     *
+     * @param label             the label to jump to
+     * @return an instruction that jumps to the given label if the top of the stack is not zero
+     */
+    public static Instruction branch(String label) {
+        return new Instruction(Opcode.IF_GOTO, null, null, label, 0);
+    }
+
+
+    /**
+     * Returns an instruction that calls the given function
+     *
+     * @param functionName      the name of the function to call
+     * @param argumentCount     the number of arguments pushed for the call
+     * @return an instruction that calls the given function
+     */
+    public static Instruction call(String functionName, int argumentCount) {
+        return new Instruction(Opcode.CALL, null, null, functionName, argumentCount);
+    }
+
+
+    /**
+     * Returns an instruction that returns from the current function
+     *
+     * @return an instruction that returns from the current function
+     */
+    public static Instruction ret() {
+        return RETURN;
+    }
+
+
+    /**
+     * Returns the operation of this instruction
+     *
+     * @return the operation of this instruction
+     */
+    public Opcode getOpcode() {
+        return opcode;
+    }
+
+
+    /**
+     * Returns the segment of a push or a pop, or null for the other instructions
+     *
+     * @return the segment of a push or a pop, or null
+     */
+    public Segment getSegment() {
+        return segment;
+    }
+
+
+    /**
+     * Returns the command of an arithmetic instruction, or null for the other instructions
+     *
+     * @return the command of an arithmetic instruction, or null
+     */
+    public ArithmeticCommand getCommand() {
+        return command;
+    }
+
+
+    /**
+     * Returns the label of a label, goto or if-goto instruction, or the function name of a call, or null for the
+     * other instructions
+     *
+     * @return the label or function name of this instruction, or null
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Returns the index of a push or a pop, or the number of arguments of a call, or 0 for the other instructions
+     *
+     * @return the index or number of arguments of this instruction
+     */
+    public int getIndex() {
+        return index;
+    }
+
+
+    /**
+     * Returns true if this instruction pushes a constant; otherwise, returns false
+     *
+     * @return true if this instruction pushes a constant; otherwise, returns false
+     */
+    public boolean isPushConstant() {
+        return (opcode == Opcode.PUSH && segment == Segment.CONSTANT);
+    }
+
+
+    /**
+     * Returns true if the given object is an instruction with the same operation and arguments; otherwise, returns
+     * false
+     *
+     * @param object            the object to compare to this instruction
+     * @return true if the given object is an equal instruction; otherwise, returns false
+     */
+    @Override
+    public boolean equals(Object object) {
+
+        if(!(object instanceof Instruction)) {
+            return false;
+        }
+
+        Instruction instruction = (Instruction) object;
+        return (opcode == instruction.opcode && segment == instruction.segment && command == instruction.command &&
+                Objects.equals(name, instruction.name) && index == instruction.index);
+    }
+
+
+    /**
+     * Returns the hash code of this instruction
+     *
+     * @return the hash code of this instruction
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(opcode, segment, command, name, index);
+    }
+
+
+    /**
+     * Returns the VM command of this instruction (for instance, "push local 0" or "call Math.multiply 2")
+     *
+     * @return the VM command of this instruction
+     */
+    @Override
+    public String toString() {
+
+        switch(opcode) {
+
+            case PUSH:
+                return String.format("push %s %s", segment.argument(), index);
+
+            case POP:
+                return String.format("pop %s %s", segment.argument(), index);
+
+            case ARITHMETIC:
+                return command.name().toLowerCase();
+
+            case LABEL:
+                return String.format("label %s", name);
+
+            case GOTO:
+                return String.format("goto %s", name);
+
+            case IF_GOTO:
+                return String.format("if-goto %s", name);
+
+            case CALL:
+                return String.format("call %s %s", name, index);
+
+            default:
+                return "return";
+
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.akwabasystems.ir;
+
+
+/**
+ * The operations of the stack IR, which are those of the VM commands of a function body
+ */
+public enum Opcode {
+    PUSH,
+    POP,
+    ARITHMETIC,
+    LABEL,
+    GOTO,
+    IF_GOTO,
+    CALL,
+    RETURN
+}
@@ -0,0 +1,91 @@
+package com.akwabasystems.ir;
+
+
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * A VM function in the stack IR: its name, its number of local variables and the instructions of its body. A
+ * function is the result of lowering a subroutine of the syntax tree, and is immutable: a pass that rewrites its
+ * instructions returns a new function.
+ */
+public final class VMFunction {
+    private final String name;
+    private final int localCount;
+    private final List<Instruction> instructions;
+
+
+    /**
+     * Constructor. Initializes this function with the given name, number of local variables and instructions
+     *
+     * @param name              the name of the function ("Class.name")
+     * @param localCount        the number of local variables of the function
+     * @param instructions      the instructions of the body of the function
+     */
+    public VMFunction(String name, int localCount, List<Instruction> instructions) {
+        this.name = name;
+        this.localCount = localCount;
+        this.instructions = Collections.unmodifiableList(instructions);
+    }
+
+
+    /**
+     * Returns the name of the function
+     *
+     * @return the name of the function
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Returns the number of local variables of the function
+     *
+     * @return the number of local variables of the function
+     */
+    public int getLocalCount() {
+        return localCount;
+    }
+
+
+    /**
+     * Returns the instructions of the body of the function
+     *
+     * @return the instructions of the body of the function
+     */
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+
+    /**
+     * Returns a copy of this function with the given instructions
+     *
+     * @param instructions      the instructions of the body of the copy
+     * @return a copy of this function with the given instructions
+     */
+    public VMFunction withInstructions(List<Instruction> instructions) {
+        return new VMFunction(name, localCount, instructions);
+    }
+
+
+    /**
+     * Returns the VM code of this function, one command per line
+     *
+     * @return the VM code of this function
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("function %s %s\n", name, localCount));
+
+        for(Instruction instruction : instructions) {
+            builder.append(instruction).append("\n");
+        }
+
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.akwabasystems.model;
+
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * The signature of a class: its name, its number of fields and the signatures of its subroutines, keyed by name.
+ *
+ * The signatures of the classes of a program are collected before any class is compiled, so that a call to another
+ * class can be checked against the subroutine it invokes.
+ */
+public final class ClassSignature {
+    private final String name;
+    private final int fieldCount;
+    private final Map<String,SubroutineSignature> subroutines;
+
+
+    /**
+     * Constructor. Initializes this instance with the given name, field count and subroutine signatures
+     *
+     * @param name              the name of the class
+     * @param fieldCount        the number of fields of the class
+     * @param subroutines       the signatures of the subroutines of the class, in the order of their declaration
+     */
+    public ClassSignature(String name, int fieldCount, List<SubroutineSignature> subroutines) {
+        Map<String,SubroutineSignature> signatures = new LinkedHashMap<>();
+        subroutines.forEach((signature) -> signatures.putIfAbsent(signature.getName(), signature));
+
+        this.name = name;
+        this.fieldCount = fieldCount;
+        this.subroutines = Collections.unmodifiableMap(signatures);
+    }
+
+
+    /**
+     * Returns the name of the class
+     *
+     * @return the name of the class
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Returns the number of fields of the class, which is the size of its instances
+     *
+     * @return the number of fields of the class
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+
+    /**
+     * Returns the signature of the given subroutine of the class, or null if the class does not declare it
+     *
+     * @param subroutineName    the name of the subroutine
+     * @return the signature of the given subroutine, or null if the class does not declare it
+     */
+    public SubroutineSignature getSubroutine(String subroutineName) {
+        return subroutines.get(subroutineName);
+    }
+
+
+    /**
+     * Returns the signatures of the subroutines of the class, in the order of their declaration
+     *
+     * @return the signatures of the subroutines of the class
+     */
+    public Collection<SubroutineSignature> getSubroutines() {
+        return subroutines.values();
+    }
+
+}
@@ -3,13 +3,26 @@ package com.akwabasystems.model;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Pattern;
 
 
 /**
- * A collection of static methods related to the Jack grammar
+ * A collection of static methods related to the Jack grammar.
+ * 
+ * The predictions are made from the kind of the lookahead token (see TokenKind): each FIRST set of the grammar is a
+ * bitset whose bit N is set if the tokens of kind N start the rule, so each prediction is a single bit test. All the
+ * kinds fit in a long.
  */
 public class Grammar {
+    private static final long CLASS_VAR_DECLARATIONS = setOf(Keyword.STATIC, Keyword.FIELD);
+    private static final long SUBROUTINE_DECLARATIONS = setOf(Keyword.CONSTRUCTOR, Keyword.FUNCTION, Keyword.METHOD);
+    private static final long STATEMENT_KEYWORDS = setOf(Keyword.LET, Keyword.IF, Keyword.WHILE, Keyword.DO, 
+                                                         Keyword.RETURN);
+    private static final long KEYWORD_CONSTANT_KINDS = setOf(Keyword.TRUE, Keyword.FALSE, Keyword.NULL, Keyword.THIS);
+    private static final long OPERATOR_KINDS = setOf(Symbol.PLUS, Symbol.MINUS, Symbol.MULTIPLY, Symbol.DIVIDE, 
+                                                     Symbol.AMPERSAND, Symbol.PIPE, Symbol.LESS_THAN, 
+                                                     Symbol.GREATER_THAN, Symbol.EQUAL);
+    private static final long UNARY_OPERATOR_KINDS = setOf(Symbol.MINUS, Symbol.TILDE);
+
     private static final List<String> NON_TERMINAL_ELEMENTS = Arrays.asList(new String[]{
         "class", 
         "classVarDec", 
@@ -60,13 +73,58 @@ public class Grammar {
         "this"
     });
     
-    private static final List<String> STATEMENTS = Arrays.asList(new String[] {
-        "let", 
-        "if", 
-        "while", 
-        "do", 
-        "return"
-    });
+    
+    static {
+        if(TokenKind.COUNT > Long.SIZE) {
+            throw new IllegalStateException(String.format("%s token kinds do not fit in a long", TokenKind.COUNT));
+        }
+    }
+
+
+    /**
+     * Returns the set of the kinds of the given keywords
+     * 
+     * @param keywords          the keywords of the set
+     * @return the set of the kinds of the given keywords
+     */
+    private static long setOf(Keyword... keywords) {
+        long set = 0;
+        
+        for(Keyword keyword : keywords) {
+            set |= 1L << TokenKind.of(keyword);
+        }
+        
+        return set;
+    }
+    
+    
+    /**
+     * Returns the set of the kinds of the given symbols
+     * 
+     * @param symbols           the symbols of the set
+     * @return the set of the kinds of the given symbols
+     */
+    private static long setOf(Symbol... symbols) {
+        long set = 0;
+        
+        for(Symbol symbol : symbols) {
+            set |= 1L << TokenKind.of(symbol);
+        }
+        
+        return set;
+    }
+    
+    
+    /**
+     * Returns true if the kind of the given token is in the given set; otherwise, returns false
+     * 
+     * @param set               the set of token kinds
+     * @param token             the token to check
+     * @return true if the kind of the given token is in the given set; otherwise, returns false
+     */
+    private static boolean contains(long set, Token token) {
+        return (set & (1L << token.getKind())) != 0;
+    }
 
 
     /**
@@ -102,6 +160,17 @@ public class Grammar {
     }
 
     
+    /**
+     * Returns true if the given token is an operator; otherwise, returns false
+     * 
+     * @param token             the token to check
+     * @return true if the given token is an operator; otherwise, returns false
+     */
+    public static boolean isOperator(Token token) {
+        return contains(OPERATOR_KINDS, token);
+    }
+
+    
     /**
      * Returns true if the given element is a unary operator; otherwise, returns false
      * 
@@ -113,6 +182,17 @@ public class Grammar {
     }
     
 
+    /**
+     * Returns true if the given token is a unary operator; otherwise, returns false
+     * 
+     * @param token             the token to check
+     * @return true if the given token is a unary operator; otherwise, returns false
+     */
+    public static boolean isUnaryOperator(Token token) {
+        return contains(UNARY_OPERATOR_KINDS, token);
+    }
+    
+
     /**
      * Returns true if the given token represents a minus sign; otherwise, returns false
      * 
@@ -120,7 +200,7 @@ public class Grammar {
      * @return true if the given token represents a minus sign; otherwise, returns false
      */
     public static boolean isMinusSign(Token token) {
-        return token.getText().equals("-");
+        return token.is(Symbol.MINUS);
     }
 
     
@@ -135,6 +215,17 @@ public class Grammar {
     }
     
     
+    /**
+     * Returns true if the given token is a keyword constant; otherwise, returns false
+     * 
+     * @param token             the token to check
+     * @return true if the given token is a keyword constant; otherwise, returns false
+     */
+    public static boolean isKeywordConstant(Token token) {
+        return contains(KEYWORD_CONSTANT_KINDS, token);
+    }
+    
+    
     /**
      * Returns true if a class var declaration can be predicted from the specified token; otherwise, returns false
      * 
@@ -142,7 +233,7 @@ public class Grammar {
      * @return true if a class var declaration can be predicted from the specified token; otherwise, returns false
      */
     public static boolean predictsClassVarDeclarationFrom(Token token) {
-        return Pattern.matches("static|field", token.getText());
+        return contains(CLASS_VAR_DECLARATIONS, token);
     }
     
     
@@ -153,7 +244,7 @@ public class Grammar {
      * @return true if a subroutine declaration can be predicted from the specified token; otherwise, returns false
      */
     public static boolean predictsSubroutineFrom(Token token)  {
-        return Pattern.matches("constructor|function|method", token.getText());
+        return contains(SUBROUTINE_DECLARATIONS, token);
     }
 
     
@@ -164,7 +255,7 @@ public class Grammar {
      * @return true if a semicolon can be predicted from the specified token; otherwise, returns false
      */
     public static boolean predictsSemicolonFrom(Token token)  {
-        return (token != null && token.getText().equals(";"));
+        return (token != null && token.is(Symbol.SEMICOLON));
     }
     
     
@@ -197,7 +288,7 @@ public class Grammar {
      * @return true if a comma can be predicted from the specified token; otherwise, returns false
      */
     public static boolean predictsCommaFrom(Token token)  {
-        return token.getText().equals(",");
+        return token.is(Symbol.COMMA);
     }
     
     
@@ -208,7 +299,7 @@ public class Grammar {
      * @return true if a variable declaration can be predicted from the specified token; otherwise, returns false
      */
     public static boolean predictsVarDeclarationFrom(Token token) {
-        return token.getText().equals("var");
+        return token.is(Keyword.VAR);
     }
     
     
@@ -219,7 +310,7 @@ public class Grammar {
      * @return true if statement declarations can be predicted from the specified token; otherwise, returns false
      */
     public static boolean predictsStatementsFrom(Token token) {
-        return STATEMENTS.contains(token.getText());
+        return contains(STATEMENT_KEYWORDS, token);
     }
     
     
@@ -230,7 +321,7 @@ public class Grammar {
      * @return true if a dot can be predicted from the specified token; otherwise, returns false
      */
     public static boolean predictsDotFrom(Token token) {
-        return token.getText().equals(".");
+        return token.is(Symbol.DOT);
     }
     
     
@@ -241,7 +332,7 @@ public class Grammar {
      * @return true if an array entry can be predicted from the specified token; otherwise, returns false
      */
     public static boolean predictsArrayEntryFrom(Token token) {
-        return token.getText().equals("[");
+        return token.is(Symbol.LEFT_BRACKET);
     }
     
     
@@ -252,7 +343,7 @@ public class Grammar {
      * @return true if an "else" clause can be predicted from the specified token; otherwise, returns false
      */
     public static boolean predictsElseClauseFrom(Token token) {
-        return token.getText().equals("else");
+        return token.is(Keyword.ELSE);
     }
     
     
@@ -263,7 +354,7 @@ public class Grammar {
      * @return true if an opening parenthesis can be predicted from the specified token; otherwise, returns false
      */
     public static boolean predictsOpeningParenthesisFrom(Token token) {
-        return token.getText().equals("(");
+        return token.is(Symbol.LEFT_PARENTHESIS);
     }
     
     
@@ -274,7 +365,7 @@ public class Grammar {
      * @return true if a closing parenthesis can be predicted from the specified token; otherwise, returns false
      */
     public static boolean predictsClosingParenthesisFrom(Token token) {
-        return token.getText().equals(")");
+        return token.is(Symbol.RIGHT_PARENTHESIS);
     }
     
     
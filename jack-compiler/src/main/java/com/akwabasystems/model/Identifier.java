@@ -1,19 +1,17 @@
 
 package com.akwabasystems.model;
 
-import org.json.JSONObject;
-
 
 /**
  * A class that encapsultes the details of a symbol found it a program: name, type, index, kind,
- * attributes, etc.
+ * signature (for a subroutine), etc.
  */
 public class Identifier {
     private final String name;
     private final String type;
     private int index;
     private IdentifierKind kind = IdentifierKind.VAR;
-    private JSONObject attributes = new JSONObject();
+    private SubroutineSignature signature = null;
    
    
     /**
@@ -81,22 +79,22 @@ public class Identifier {
 
 
     /**
-     * Returns the extra attributes for this identifier
+     * Returns the signature of this identifier if it is a subroutine; otherwise, returns null
      * 
-     * @return the extra attributes for this identifier 
+     * @return the signature of this identifier if it is a subroutine; otherwise, null
      */
-    public JSONObject getAttributes() {
-        return attributes;
+    public SubroutineSignature getSignature() {
+        return signature;
     }
 
 
     /**
-     * Sets the extra attributes for this identifier
+     * Sets the signature of this identifier, which is a subroutine
      * 
-     * @param attributes      the extra attributes to set for this identifier
+     * @param signature       the signature to set for this identifier
      */
-    public void setAttributes(JSONObject attributes) {
-        this.attributes = attributes;
+    public void setSignature(SubroutineSignature signature) {
+        this.signature = signature;
     }
 
 
@@ -107,8 +105,8 @@ public class Identifier {
      */
     @Override
     public String toString() {
-        return String.format("Identifier { name: %s, type: %s, kind: %s, index: %s, attributes: %s }",
-          name, type, kind, index, attributes.toString());
+        return String.format("Identifier { name: %s, type: %s, kind: %s, index: %s, signature: %s }",
+          name, type, kind, index, signature);
     } 
    
 }
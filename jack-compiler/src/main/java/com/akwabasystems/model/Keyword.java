@@ -1,6 +1,9 @@
 
 package com.akwabasystems.model;
 
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 
@@ -216,6 +219,10 @@ public enum Keyword {
         
     };
     
+    /** The keywords, keyed by their text, since every identifier of the input is looked up */
+    private static final Map<String,Keyword> KEYWORDS = Stream.of(values())
+            .collect(Collectors.toMap(Keyword::toString, Function.identity()));
+    
 
     /**
      * Returns the enum constant whose string value matches the given text.
@@ -224,10 +231,7 @@ public enum Keyword {
      * @return the enum constant whose string value matches the given text
      */
     public static Keyword fromText(String text) {
-        return Stream.of(values())
-                    .filter((keyword) -> keyword.toString().equals(text))
-                    .findFirst()
-                    .orElse(null);
+        return KEYWORDS.get(text);
     }
 
 }
@@ -10,7 +10,9 @@ public enum OutputType {
     
     XML_TREE,
     
-    CODE_GENERATION;
+    CODE_GENERATION,
+    
+    BINARY_CODE_GENERATION;
 
 }
 
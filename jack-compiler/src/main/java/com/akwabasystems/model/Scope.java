@@ -5,8 +5,6 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
-import org.json.JSONObject;
-
 
 /**
  * A class that defines a scope (either a class or a subroutine scope) in which to store the different symbols in a
@@ -58,14 +56,14 @@ public abstract class Scope {
     
 
     /**
-     * Defines a symbol of the specified type, kind, and attributes
+     * Defines a symbol of the specified type, kind, and signature
      * 
      * @param varName         the name of the symbol to define
      * @param type            the type of symbol to define
      * @param kind            the kind of symbol of define
-     * @param attributes      the extra attributes for this symbol
+     * @param signature       the signature of the symbol if it is a subroutine, or null
      */
-    protected void define(String varName, String type, IdentifierKind kind, JSONObject attributes) {
+    protected void define(String varName, String type, IdentifierKind kind, SubroutineSignature signature) {
         AtomicLong index = varCount.get(kind.text());
 
           if(index == null) {
@@ -76,8 +74,8 @@ public abstract class Scope {
           Identifier identifier = new Identifier(varName, type, kind);
           identifier.setIndex(((Long)index.getAndIncrement()).intValue());
 
-          if (attributes != null) {
-              identifier.setAttributes(attributes);
+          if (signature != null) {
+              identifier.setSignature(signature);
           }
           
           symbolTable.putIfAbsent(varName, identifier);
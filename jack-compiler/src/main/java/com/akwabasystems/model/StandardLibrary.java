@@ -1,6 +1,7 @@
 
 package com.akwabasystems.model;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -9,30 +10,45 @@ import java.util.Map;
  * A class that stores the number of arguments for each method in the Jack standard library API. It allows a 
  * lookup for a given method during a subroutine call, making it easier to output the number of arguments
  * expected by the method in case it is a standard API.
+ *
+ * The table is built once, when the class is loaded, and cannot be modified afterwards, so a single instance is
+ * shared by all the compilations, including concurrent ones.
  */
-public class StandardLibrary {
-    private static StandardLibrary instance;
-    private final Map<String,Map<String,Integer>> library = new HashMap<>();
+public final class StandardLibrary {
+    private static final StandardLibrary INSTANCE = new StandardLibrary(signatures());
+    private final Map<String,Map<String,Integer>> library;
+
+
+    /**
+     * Creates a standard library with the given argument counts
+     * 
+     * @param library       the expected argument count of each method, keyed by module and method name
+     */
+    private StandardLibrary(Map<String,Map<String,Integer>> library) {
+        Map<String,Map<String,Integer>> modules = new HashMap<>();
+        library.forEach((module, api) -> modules.put(module, Collections.unmodifiableMap(new HashMap<>(api))));
+        this.library = Collections.unmodifiableMap(modules);
+    }
     
     
     /**
-     * Returns a unique instance of this StandardLibrary class
+     * Returns the unique instance of this StandardLibrary class
      * 
-     * @return a unique instance of this StandardLibrary class
+     * @return the unique instance of this StandardLibrary class
      */
     public static StandardLibrary getInstance() {
-        if (instance == null) {
-            instance = new StandardLibrary();
-        }
-        
-        return instance;
+        return INSTANCE;
     }
     
     
     /**
-     * Initializes this standard library by storing the expected argument count for each method in its modules
+     * Returns the expected argument count for each method in the modules of the standard library
+     * 
+     * @return the expected argument count of each method, keyed by module and method name
      */
-    public void initialize() {
+    private static Map<String,Map<String,Integer>> signatures() {
+        Map<String,Map<String,Integer>> library = new HashMap<>();
+
         Map<String, Integer> mathAPI = new HashMap<>();
         mathAPI.put("init", 0);
         mathAPI.put("abs", 1);
@@ -115,6 +131,7 @@ public class StandardLibrary {
         sysAPI.put("wait", 1);
         library.put("Sys", sysAPI);
         
+        return library;
     }
     
     
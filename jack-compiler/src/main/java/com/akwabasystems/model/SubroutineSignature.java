@@ -0,0 +1,150 @@
+package com.akwabasystems.model;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * The signature of a subroutine declared in a class: its kind (constructor, function or method), its return type,
+ * its name and the types of its parameters.
+ *
+ * The signatures of a class are collected before its subroutines are compiled, so that a subroutine can be called
+ * before it is declared. The signature of a subroutine is stored with its identifier in the class scope.
+ */
+public final class SubroutineSignature {
+    private final Keyword kind;
+    private final String returnType;
+    private final String className;
+    private final String name;
+    private final List<String> parameterTypes;
+
+
+    /**
+     * Constructor. Initializes this instance with the given kind, return type, class name, name and parameter types
+     *
+     * @param kind              the kind of the subroutine (CONSTRUCTOR, FUNCTION or METHOD)
+     * @param returnType        the return type of the subroutine ("void" or a type)
+     * @param className         the name of the class that declares the subroutine
+     * @param name              the name of the subroutine
+     * @param parameterTypes    the types of the parameters of the subroutine, in order
+     * @throws IllegalArgumentException if the kind is not that of a subroutine
+     */
+    public SubroutineSignature(Keyword kind, String returnType, String className, String name,
+                               List<String> parameterTypes) {
+
+        if(kind != Keyword.CONSTRUCTOR && kind != Keyword.FUNCTION && kind != Keyword.METHOD) {
+            throw new IllegalArgumentException(String.format("Invalid subroutine kind: %s", kind));
+        }
+
+        this.kind = kind;
+        this.returnType = returnType;
+        this.className = className;
+        this.name = name;
+        this.parameterTypes = Collections.unmodifiableList(new ArrayList<>(parameterTypes));
+    }
+
+
+    /**
+     * Returns the kind of the subroutine (CONSTRUCTOR, FUNCTION or METHOD)
+     *
+     * @return the kind of the subroutine
+     */
+    public Keyword getKind() {
+        return kind;
+    }
+
+
+    /**
+     * Returns true if the subroutine is a constructor; otherwise, returns false
+     *
+     * @return true if the subroutine is a constructor; otherwise, returns false
+     */
+    public boolean isConstructor() {
+        return (kind == Keyword.CONSTRUCTOR);
+    }
+
+
+    /**
+     * Returns true if the subroutine is a method; otherwise, returns false
+     *
+     * @return true if the subroutine is a method; otherwise, returns false
+     */
+    public boolean isMethod() {
+        return (kind == Keyword.METHOD);
+    }
+
+
+    /**
+     * Returns the return type of the subroutine ("void" or a type)
+     *
+     * @return the return type of the subroutine
+     */
+    public String getReturnType() {
+        return returnType;
+    }
+
+
+    /**
+     * Returns the name of the class that declares the subroutine
+     *
+     * @return the name of the class that declares the subroutine
+     */
+    public String getClassName() {
+        return className;
+    }
+
+
+    /**
+     * Returns the name of the subroutine
+     *
+     * @return the name of the subroutine
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Returns the qualified name of the subroutine ("Class.name"), which is the name of its VM function
+     *
+     * @return the qualified name of the subroutine
+     */
+    public String getQualifiedName() {
+        return String.format("%s.%s", className, name);
+    }
+
+
+    /**
+     * Returns the types of the parameters of the subroutine, in order
+     *
+     * @return the types of the parameters of the subroutine
+     */
+    public List<String> getParameterTypes() {
+        return parameterTypes;
+    }
+
+
+    /**
+     * Returns the number of declared parameters of the subroutine, which does not include the "this" argument of a
+     * method
+     *
+     * @return the number of declared parameters of the subroutine
+     */
+    public int getArgumentCount() {
+        return parameterTypes.size();
+    }
+
+
+    /**
+     * Returns the string representation of this signature
+     *
+     * @return the string representation of this signature
+     */
+    @Override
+    public String toString() {
+        return String.format("%s %s %s(%s)", kind, returnType, getQualifiedName(), String.join(", ", parameterTypes));
+    }
+
+}
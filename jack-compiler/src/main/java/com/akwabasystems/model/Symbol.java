@@ -210,6 +210,13 @@ public enum Symbol {
         
     };
     
+    /** The symbols, indexed by their character, since every symbol of the input is looked up */
+    private static final Symbol[] SYMBOLS = new Symbol[128];
+    
+    static {
+        Stream.of(values()).forEach((symbol) -> SYMBOLS[symbol.toChar()] = symbol);
+    }
+    
 
     /**
      * Returns the character that corresponds to this symbol
@@ -236,10 +243,18 @@ public enum Symbol {
      * @return the enum constant whose string value matches the given text
      */
     public static Symbol fromText(String text) {
-        return Stream.of(values())
-                    .filter((keyword) -> String.valueOf(keyword.toChar()).equals(text))
-                    .findFirst()
-                    .orElse(null);
+        return (text != null && text.length() == 1)? fromChar(text.charAt(0)) : null;
+    }
+    
+
+    /**
+     * Returns the enum constant that corresponds to the given character.
+     * 
+     * @param c             the character for which to find the enum constant
+     * @return the enum constant that corresponds to the given character, or null if it is not a symbol
+     */
+    public static Symbol fromChar(char c) {
+        return (c < SYMBOLS.length)? SYMBOLS[c] : null;
     }
 
 }
@@ -1,8 +1,6 @@
 
 package com.akwabasystems.model;
 
-import org.json.JSONObject;
-
 /**
  * A class that maintains a mapping between symbols found in a program and the identifier properties needed for
  * their compilation: type, kind, and running index.
@@ -57,17 +55,18 @@ public class SymbolTable {
      * @param name          the name of the symbol to define
      * @param type          the type of symbol to define
      * @param kind          the kind of symbol of define
+     * @param signature     the signature of the symbol if it is a subroutine, or null
      */
-    public void define(String name, String type, IdentifierKind kind, JSONObject attributes) {
+    public void define(String name, String type, IdentifierKind kind, SubroutineSignature signature) {
         boolean hasClassScope = (kind == IdentifierKind.STATIC || kind == IdentifierKind.FIELD ||
             kind == IdentifierKind.SUBROUTINE);
         
         /**
-         * Check whether we're defining a class method symbol, which stores attributes such as the
-         * argument length and the return type
+         * Check whether we're defining a class method symbol, which stores its signature (such as the
+         * argument count and the return type)
          */
-        if (hasClassScope && attributes != null) {
-            classScope.define(name, type, kind, attributes);
+        if (hasClassScope && signature != null) {
+            classScope.define(name, type, kind, signature);
         } else if(hasClassScope) {
             classScope.define(name, type, kind);
         } else {
@@ -10,10 +10,36 @@ package com.akwabasystems.model;
  * Tokens fall into different categories, or types: some are keywords, others are symbols, and so on. In general, 
  * each programming language specifies the types of tokens it allows, as well as the exact syntax rules for combining
  * them into valid programmatic structures. The Jack language follows that same logic.
+ * 
+ * Besides its type and text, a token has a kind (see TokenKind), which tells every keyword and symbol apart, so the
+ * parser can compare tokens with "==" instead of comparing their text. Tokens are immutable: the keyword and symbol
+ * tokens are shared singletons, and a tokenizer returns the same instance for each occurrence of an identifier, with
+ * an id that numbers the distinct identifiers of its input.
  */
 public final class Token {
+    public static final int NO_ID = -1;
+    private static final Token[] PREDEFINED_TOKENS = new Token[TokenKind.COUNT];
+    private static final Keyword[] KEYWORDS = Keyword.values();
+    private static final Symbol[] SYMBOLS = Symbol.values();
     private final TokenType type;
     private final String text;
+    private final int kind;
+    private final int id;
+
+    static {
+        for(Keyword keyword : KEYWORDS) {
+            PREDEFINED_TOKENS[TokenKind.of(keyword)] = new Token(TokenType.KEYWORD, keyword.toString(),
+                                                                  TokenKind.of(keyword), NO_ID);
+        }
+
+        for(Symbol symbol : SYMBOLS) {
+            PREDEFINED_TOKENS[TokenKind.of(symbol)] = new Token(TokenType.SYMBOL, String.valueOf(symbol.toChar()),
+                                                                 TokenKind.of(symbol), NO_ID);
+        }
+
+        PREDEFINED_TOKENS[TokenKind.END_OF_FILE] = new Token(TokenType.END_OF_FILE, "<EOF>", TokenKind.END_OF_FILE,
+                                                             NO_ID);
+    }
     
     
     /**
@@ -21,10 +47,71 @@ public final class Token {
      * 
      * @param type      the type for this token
      * @param text      the text for this token
+     * @throws IllegalArgumentException if the type is KEYWORD or SYMBOL, and the text is not a keyword or a symbol
      */
     public Token(TokenType type, String text) {
+        this(type, text, TokenKind.of(type, text), NO_ID);
+    }
+    
+    
+    /**
+     * Constructor. Initializes this instance with the given type, text and identifier id
+     * 
+     * @param type      the type for this token
+     * @param text      the text for this token
+     * @param id        the id of the identifier, or NO_ID if the token is not an identifier
+     * @throws IllegalArgumentException if the type is KEYWORD or SYMBOL, and the text is not a keyword or a symbol
+     */
+    public Token(TokenType type, String text, int id) {
+        this(type, text, TokenKind.of(type, text), id);
+    }
+    
+    
+    /**
+     * Constructor. Initializes this instance with the given type, text, kind and identifier id
+     * 
+     * @param type      the type for this token
+     * @param text      the text for this token
+     * @param kind      the kind for this token
+     * @param id        the id of the identifier, or NO_ID if the token is not an identifier
+     */
+    private Token(TokenType type, String text, int kind, int id) {
         this.type = type;
         this.text = text;
+        this.kind = kind;
+        this.id = id;
+    }
+    
+    
+    /**
+     * Returns the token of the given keyword
+     * 
+     * @param keyword   the keyword whose token to return
+     * @return the token of the given keyword
+     */
+    public static Token of(Keyword keyword) {
+        return PREDEFINED_TOKENS[TokenKind.of(keyword)];
+    }
+    
+    
+    /**
+     * Returns the token of the given symbol
+     * 
+     * @param symbol    the symbol whose token to return
+     * @return the token of the given symbol
+     */
+    public static Token of(Symbol symbol) {
+        return PREDEFINED_TOKENS[TokenKind.of(symbol)];
+    }
+    
+    
+    /**
+     * Returns the token that signals the end of a file
+     * 
+     * @return the token that signals the end of a file
+     */
+    public static Token endOfFile() {
+        return PREDEFINED_TOKENS[TokenKind.END_OF_FILE];
     }
     
     
@@ -48,6 +135,69 @@ public final class Token {
     }
     
     
+    /**
+     * Returns the kind for this token (see TokenKind)
+     * 
+     * @return the kind for this token
+     */
+    public int getKind() {
+        return kind;
+    }
+    
+    
+    /**
+     * Returns the id of the identifier, which is the same for all the occurrences of the identifier in an input, or
+     * NO_ID if this token is not an identifier
+     * 
+     * @return the id of the identifier, or NO_ID if this token is not an identifier
+     */
+    public int getId() {
+        return id;
+    }
+    
+    
+    /**
+     * Returns true if this token is the given keyword; otherwise, returns false
+     * 
+     * @param keyword   the keyword to check
+     * @return true if this token is the given keyword; otherwise, returns false
+     */
+    public boolean is(Keyword keyword) {
+        return (kind == TokenKind.of(keyword));
+    }
+    
+    
+    /**
+     * Returns true if this token is the given symbol; otherwise, returns false
+     * 
+     * @param symbol    the symbol to check
+     * @return true if this token is the given symbol; otherwise, returns false
+     */
+    public boolean is(Symbol symbol) {
+        return (kind == TokenKind.of(symbol));
+    }
+    
+    
+    /**
+     * Returns the keyword of this token, or null if this token is not a keyword
+     * 
+     * @return the keyword of this token, or null if this token is not a keyword
+     */
+    public Keyword getKeyword() {
+        return (type == TokenType.KEYWORD)? KEYWORDS[kind - TokenKind.FIRST_KEYWORD] : null;
+    }
+    
+    
+    /**
+     * Returns the symbol of this token, or null if this token is not a symbol
+     * 
+     * @return the symbol of this token, or null if this token is not a symbol
+     */
+    public Symbol getSymbol() {
+        return (type == TokenType.SYMBOL)? SYMBOLS[kind - TokenKind.FIRST_SYMBOL] : null;
+    }
+    
+    
     /**
      * Returns the string representation for this token
      * 
@@ -66,8 +216,8 @@ public final class Token {
      */
     public String toXML() {
         boolean isSymbol = (type == TokenType.SYMBOL);
-        String xmlText = (!isSymbol)? getText() : Symbol.fromText(getText()).toXML();
-        return String.format("<%s> %s </%s>", type.text(), xmlText, type.text());
+        String xmlText = (!isSymbol)? getText() : getSymbol().toXML();
+        return "<" + type.text() + "> " + xmlText + " </" + type.text() + ">";
     }
 
 }
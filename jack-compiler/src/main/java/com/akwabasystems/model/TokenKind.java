@@ -0,0 +1,95 @@
+package com.akwabasystems.model;
+
+
+/**
+ * The kinds of tokens of the Jack language, numbered from 0 so that they can index tables and bitsets.
+ *
+ * Each keyword and each symbol is a kind of its own, so that the parser can tell the tokens apart by comparing their
+ * kinds instead of their text. The keywords come first (in the order of the Keyword enum), then the symbols (in the
+ * order of the Symbol enum), then the identifiers, the integer and string constants, and the end of the file.
+ */
+public final class TokenKind {
+    public static final int FIRST_KEYWORD = 0;
+    public static final int FIRST_SYMBOL = FIRST_KEYWORD + Keyword.values().length;
+    public static final int IDENTIFIER = FIRST_SYMBOL + Symbol.values().length;
+    public static final int INT_CONSTANT = IDENTIFIER + 1;
+    public static final int STRING_CONSTANT = IDENTIFIER + 2;
+    public static final int END_OF_FILE = IDENTIFIER + 3;
+    public static final int COUNT = END_OF_FILE + 1;
+
+
+    /**
+     * Private constructor, since this class only defines constants
+     */
+    private TokenKind() {
+    }
+
+
+    /**
+     * Returns the kind of the given keyword
+     *
+     * @param keyword       the keyword whose kind to return
+     * @return the kind of the given keyword
+     */
+    public static int of(Keyword keyword) {
+        return FIRST_KEYWORD + keyword.ordinal();
+    }
+
+
+    /**
+     * Returns the kind of the given symbol
+     *
+     * @param symbol        the symbol whose kind to return
+     * @return the kind of the given symbol
+     */
+    public static int of(Symbol symbol) {
+        return FIRST_SYMBOL + symbol.ordinal();
+    }
+
+
+    /**
+     * Returns the kind of a token with the given type and text
+     *
+     * @param type          the type of the token
+     * @param text          the text of the token
+     * @return the kind of a token with the given type and text
+     * @throws IllegalArgumentException if the type is KEYWORD or SYMBOL, and the text is not a keyword or a symbol
+     */
+    public static int of(TokenType type, String text) {
+
+        switch(type) {
+
+            case KEYWORD:
+                Keyword keyword = Keyword.fromText(text);
+
+                if(keyword == null) {
+                    throw new IllegalArgumentException(String.format("Invalid keyword: '%s'", text));
+                }
+
+                return of(keyword);
+
+            case SYMBOL:
+                Symbol symbol = Symbol.fromText(text);
+
+                if(symbol == null) {
+                    throw new IllegalArgumentException(String.format("Invalid symbol: '%s'", text));
+                }
+
+                return of(symbol);
+
+            case IDENTIFIER:
+                return IDENTIFIER;
+
+            case INT_CONSTANT:
+                return INT_CONSTANT;
+
+            case STRING_CONSTANT:
+                return STRING_CONSTANT;
+
+            default:
+                return END_OF_FILE;
+
+        }
+    }
+
+}
@@ -1,36 +1,54 @@
 
 package com.akwabasystems.parsing;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.MatchResult;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
+import java.util.ArrayList;
+import java.util.List;
+
+import com.akwabasystems.ast.ArrayAccess;
+import com.akwabasystems.ast.BinaryExpression;
+import com.akwabasystems.ast.ClassDeclaration;
+import com.akwabasystems.ast.DoStatement;
+import com.akwabasystems.ast.Expression;
+import com.akwabasystems.ast.IfStatement;
+import com.akwabasystems.ast.IntegerConstant;
+import com.akwabasystems.ast.KeywordConstant;
+import com.akwabasystems.ast.LetStatement;
+import com.akwabasystems.ast.ReturnStatement;
+import com.akwabasystems.ast.SourceSpan;
+import com.akwabasystems.ast.Statement;
+import com.akwabasystems.ast.StringConstant;
+import com.akwabasystems.ast.SubroutineCall;
+import com.akwabasystems.ast.SubroutineDeclaration;
+import com.akwabasystems.ast.UnaryExpression;
+import com.akwabasystems.ast.VariableReference;
+import com.akwabasystems.ast.WhileStatement;
+import com.akwabasystems.ir.CodeGenerator;
+import com.akwabasystems.ir.VMFunction;
+import com.akwabasystems.model.ClassSignature;
 import com.akwabasystems.model.Grammar;
 import com.akwabasystems.model.Identifier;
 import com.akwabasystems.model.IdentifierKind;
 import com.akwabasystems.model.Keyword;
-import com.akwabasystems.model.Scope;
 import com.akwabasystems.model.Segment;
 import com.akwabasystems.model.StandardLibrary;
+import com.akwabasystems.model.SubroutineSignature;
+import com.akwabasystems.model.Symbol;
 import com.akwabasystems.model.SymbolTable;
 import com.akwabasystems.model.Token;
 import com.akwabasystems.model.TokenType;
 
-import org.apache.commons.lang.StringUtils;
-import org.json.JSONObject;
-
 
 /**
  *
- * A class that outputs the compiled code. It gets an input from a tokenizer, and emits the parsed structure in XML
- * format, which will later be written to a destination file.
- * 
- * The output is generated by a series of "compilexxx" routines, one for every syntactic element "xxx" of the 
- * Jack grammar.
- * 
+ * A class that compiles a Jack class to VM code. It gets an input from a tokenizer, and writes the generated code to
+ * a code writer.
+ *
+ * The compilation runs in stages. The "compilexxx" routines, one for every syntactic element "xxx" of the Jack
+ * grammar, parse the tokens into a syntax tree, whose variables and subroutine calls are resolved against the symbol
+ * table. The optimization passes of the compilation context then transform the tree. The code generator lowers the
+ * tree to the stack IR, one VM function per subroutine, on which the IR passes run. The VM functions are finally
+ * emitted by the code writer.
+ *
  * This implementation follows the LL(1) pattern. It uses a look-ahead token that holds the value of the next token. It
  * then takes the appropriate based on the value of that look-ahead token.
  */
@@ -41,38 +59,39 @@ public final class CodeCompilationEngine {
     private String className;
     private final SymbolTable symbolTable = new SymbolTable();
     private final VMCodeWriter codeWriter;
-    private final StringBuilder output = new StringBuilder();
+    private final CompilationContext context;
 
-    /** Maps that keep track of WHILE and IF iteration counts for subroutines */
-    private final Map<String,Integer> ifCounts = new ConcurrentHashMap<>();
-    private final Map<String,Integer> whileCounts = new ConcurrentHashMap<>();
+    /** The spans of the look-ahead token and of the current token in the input */
+    private int lookaheadStart;
+    private int lookaheadEnd;
+    private int currentStart;
+    private int currentEnd;
 
     /**
-     * Matches the following:
-     * - function void main()
-     * - constructor void Main()
-     * - method Main main(int a, int b, int c)
+     * Constructor. Initializes this instance with the specified tokenizer
+     *
+     * @param tokenizer         the tokenizer to set for this engine
+     * @param codeWriter        the code writer for this engine
      */
-    private static final String FUNCTION_REGEXP = "(function|constructor|method)\\s+(void|\\w+)\\s+([a-z]\\w+)\\s*\\(([^\\)]*)\\)";
-    private static Pattern pattern = Pattern.compile(FUNCTION_REGEXP, Pattern.MULTILINE);
+    public CodeCompilationEngine(Tokenizer tokenizer, VMCodeWriter codeWriter) {
+        this(tokenizer, codeWriter, new CompilationContext());
+    }
 
-    /** Keeps track of argument counts for each method invocation expression */
-    private static int expressionArgCount = 0;
 
     /**
-     * Constructor. Initializes this instance with the specified tokenizer
-     * 
+     * Constructor. Initializes this instance with the specified tokenizer and compilation context
+     *
      * @param tokenizer         the tokenizer to set for this engine
      * @param codeWriter        the code writer for this engine
+     * @param context           the compilation context of this engine, which must not be shared with other engines
      */
-    public CodeCompilationEngine(Tokenizer tokenizer, VMCodeWriter codeWriter) {
+    public CodeCompilationEngine(Tokenizer tokenizer, VMCodeWriter codeWriter, CompilationContext context) {
         this.tokenizer = tokenizer;
         this.codeWriter = codeWriter;
+        this.context = context;
 
-        lookahead = tokenizer.nextToken();
+        advance();
         currentToken = lookahead;
-        
-        StandardLibrary.getInstance().initialize();
     }
 
 
@@ -81,12 +100,14 @@ public final class CodeCompilationEngine {
      */
     private void advance() {
         lookahead = tokenizer.nextToken();
+        lookaheadStart = tokenizer.getTokenOffset();
+        lookaheadEnd = lookaheadStart + tokenizer.getTokenLength();
     }
 
 
     /**
      * Matches the type of the given token
-     * 
+     *
      * @param token             the token whose type to match
      */
     private void matchType(Token token) {
@@ -96,57 +117,78 @@ public final class CodeCompilationEngine {
             match(TokenType.IDENTIFIER);
         }
     }
-    
+
 
     /**
      * Matches the given token type
-     * 
+     *
      * @param type              the token type to match
      */
     private void match(TokenType type) {
         if(lookahead.getType() == type) {
             currentToken = lookahead;
+            currentStart = lookaheadStart;
+            currentEnd = lookaheadEnd;
             advance();
         } else {
             throw new Error(String.format("Expecting %s; found '%s'\n", type.text(), lookahead.getText()));
         }
     }
 
-    
+
+    /**
+     * Returns the span from the given start to the end of the current token
+     *
+     * @param start             the index of the first character of the span
+     * @return the span from the given start to the end of the current token
+     */
+    private SourceSpan spanFrom(int start) {
+        return new SourceSpan(start, currentEnd);
+    }
+
+
     /**
      * Returns the symbol table for this compilation engine
-     * 
+     *
      * @return the symbol table for this compilation engine
      */
     public SymbolTable getSymbolTable() {
         return symbolTable;
     }
-    
-    
+
+
     /**
-     * Returns the generated code for this compilation engine
-     * 
-     * @return the generated code for this compilation engine
+     * Compiles a complete class: parses its syntax tree, runs the optimization passes on it, lowers it to VM functions
+     * and writes them to the code writer, which is then closed
      */
-    public String generateCode() {
-        return output.toString();
+    public void compileClass() {
+        ClassDeclaration tree = context.getTreePasses().run(parseClass(), context.getPassReport());
+
+        for(VMFunction function : new CodeGenerator().lower(tree)) {
+            codeWriter.write(context.getCodePasses().run(function, context.getPassReport()));
+        }
+
+        codeWriter.close();
     }
 
 
     /**
-     * Compiles a complete class
-     * 
+     * Parses a complete class, and returns its syntax tree
+     *
      * class: 'class' className '{' classVarDec* subroutineDec* '}'
+     *
+     * @return the syntax tree of the class
      */
-    public void compileClass() {
-        
+    public ClassDeclaration parseClass() {
+
         if(lookahead.getType() != TokenType.KEYWORD) {
            throw new Error("This code does not seem to contain a valid class declaration.");
         }
 
         match(TokenType.KEYWORD);
+        int start = currentStart;
         match(TokenType.IDENTIFIER);
-        
+
         /** Define the top-level scope for the current class */
         className = currentToken.getText();
         symbolTable.startClass(className);
@@ -156,24 +198,25 @@ public final class CodeCompilationEngine {
 
         /** Compile class var declarations and subroutines */
         compileClassVarDec();
-        compileSubroutine();
+        int fieldCount = symbolTable.currentClassScope().varCount(IdentifierKind.FIELD);
+        List<SubroutineDeclaration> subroutines = compileSubroutine();
 
         /** Match the closing curly brace */
         match(TokenType.SYMBOL);
 
-        codeWriter.close();
+        return new ClassDeclaration(spanFrom(start), className, fieldCount, subroutines);
     }
 
 
     /**
      * Compiles a static declaration or a field declaration
-     * 
+     *
      * classVarDec: ('static' | 'field') type varName(',' varName)* ';'
-     * 
+     *
      * type: 'int' | 'char' | 'boolean' | className
-     * 
+     *
      * className: identifier
-     * 
+     *
      * varName: identifier
      */
     public void compileClassVarDec() {
@@ -182,7 +225,7 @@ public final class CodeCompilationEngine {
             String type;
             IdentifierKind kind;
             String identifier;
-            
+
             match(TokenType.KEYWORD);
             kind = IdentifierKind.fromText(currentToken.getText());
             matchType(lookahead);
@@ -205,72 +248,46 @@ public final class CodeCompilationEngine {
 
     }
 
-    
+
     /**
-     * Compiles a complete method, function, or constructor
-     * 
-     * subroutineDec:   ('constructor' | 'function' | 'method') 
-     *                  ('void' | type) subroutineName '(' parameterList ')' 
+     * Compiles the methods, functions, and constructors of the class
+     *
+     * subroutineDec:   ('constructor' | 'function' | 'method')
+     *                  ('void' | type) subroutineName '(' parameterList ')'
      *                  subroutineBody
-     * 
+     *
      * subroutineBody: '{' varDec* statements '}'
-     * 
+     *
      * subroutineName: identifier
+     *
+     * @return the syntax trees of the subroutines, in the order of their declaration
      */
-    public void compileSubroutine() {
+    public List<SubroutineDeclaration> compileSubroutine() {
         /**
-         * The current logic uses a two-pass approach: first, it iterates over all the methods in the current class
-         * and registers their respective symbols (name, type, argument count, etc). This step allows for forward reference of
-         * those methods. Second, it proceeds with the normal compilation of those methods.
+         * The current logic uses a two-pass approach: first, it scans the tokens of all the subroutines in the current
+         * class and registers their respective signatures (kind, return type, parameter types). This step allows for
+         * forward reference of those subroutines. Second, it proceeds with the normal compilation of those subroutines.
          */
-        Matcher functionMatcher = pattern.matcher(this.tokenizer.getInput());
-
-        while (functionMatcher.find()) {
-            MatchResult currentMatch = functionMatcher.toMatchResult();
-            String subroutineType = currentMatch.group(1);
-            String returnType = currentMatch.group(2);
-            String methodName = currentMatch.group(3);
-            String qualifiedName = String.format("%s.%s", className, methodName);
-            String arguments = currentMatch.group(4);
-            int argumentCount = (arguments.length() == 0) ? 0 : arguments.split(",").length;
-
-            /** 
-             * Define the current method in the class scope, and store its attributes such as argument count and return type
-             */
-            Map<String,Object> attributes = new HashMap<>();
-            attributes.put("type", subroutineType);
-            attributes.put("returnType", returnType);
-            attributes.put("qualifiedName", qualifiedName);
-            attributes.put("argumentCount", argumentCount);
-            symbolTable.define(methodName, qualifiedName, IdentifierKind.SUBROUTINE, new JSONObject(attributes));
+        SignatureScanner scanner = new SignatureScanner(new JackTokenizer(tokenizer.getInput()));
+
+        for (SubroutineSignature signature : scanner.scan()) {
+            /** Define the current subroutine in the class scope, along with its signature */
+            symbolTable.define(signature.getName(), signature.getQualifiedName(), IdentifierKind.SUBROUTINE, signature);
         }
 
+        List<SubroutineDeclaration> subroutines = new ArrayList<>();
+
         while(Grammar.predictsSubroutineFrom(lookahead)) {
             /** Process the subroutine header declaration */
             match(TokenType.KEYWORD);
+            int start = currentStart;
+            Keyword kind = currentToken.getKeyword();
             matchType(lookahead);
             match(TokenType.IDENTIFIER);
-
-            /** Start a subroutine scope for the current method, setting the "this" keyword to the current class */
             String subroutineName = currentToken.getText();
 
-            Identifier identifier = symbolTable.currentClassScope().resolve(subroutineName);
-            boolean isConstructor = false;
-            boolean isMethod = false;
-            
-            if (identifier != null) {
-                JSONObject attributes = identifier.getAttributes();
-
-                if (attributes.has("type")) {
-                    isConstructor = attributes.getString("type").equals("constructor");
-                    isMethod = attributes.getString("type").equals("method");
-                }
-            }
-
             /** Start a new function scope for the current subroutine */
             symbolTable.startSubroutine(subroutineName);
-            ifCounts.put(subroutineName, 0);
-            whileCounts.put(subroutineName, 0);
 
             /** Process parameter list */
             match(TokenType.SYMBOL);
@@ -278,7 +295,7 @@ public final class CodeCompilationEngine {
             /**
              * If this is a method, define "this" as the first argument so that other arguments can be offset by 1
              */
-            if (isMethod) {
+            if (kind == Keyword.METHOD) {
                 symbolTable.define("this", className, IdentifierKind.ARGUMENT);
             }
 
@@ -287,55 +304,34 @@ public final class CodeCompilationEngine {
 
             /** Process the subroutine body */
             match(TokenType.SYMBOL);
-            
+
             /** Process variable declarations */
             compileVarDec();
-
-            /** Output the VM code for the current subroutine along with its number of local variables */
-            Scope scope = symbolTable.currentSubroutineScope();
-            int localVariables = scope.varCount(IdentifierKind.VAR);
-            codeWriter.writeFunction(String.format("%s.%s", className, subroutineName), localVariables);
-
-            if (isConstructor) {
-                Scope classScope = symbolTable.currentClassScope();
-                int fields = classScope.varCount(IdentifierKind.FIELD);
-                codeWriter.initializeConstructor(fields);
-            } else if (isMethod) {
-                codeWriter.initializeThis();
-            }
+            int localVariables = symbolTable.currentSubroutineScope().varCount(IdentifierKind.VAR);
 
             /** Process statements, if any */
-            if(Grammar.predictsStatementsFrom(lookahead)) {
-                outputStatements();
-            }
+            List<Statement> statements = compileStatements();
 
             match(TokenType.SYMBOL);
+            subroutines.add(new SubroutineDeclaration(spanFrom(start), kind, className, subroutineName,
+                                                      localVariables, statements));
         }
- 
-    }
-    
-    
-    /**
-     * Outputs code for the current set of statements
-     */
-    private void outputStatements() {
-        while(Grammar.predictsStatementsFrom(lookahead)) {
-            compileStatements();
-        }
+
+        return subroutines;
     }
 
 
     /**
      * Compiles a (possibly empty) parameter list, not including the enclosing "()"
-     * 
+     *
      * parameterList: ( (type varName) (',' type varName)* )?
      */
     public void compileParameterList() {
-        
+
         while(!Grammar.predictsClosingParenthesisFrom(lookahead)) {
             String paramType;
             String paramID;
-            
+
             matchType(lookahead);
             paramType = currentToken.getText();
             match(TokenType.IDENTIFIER);
@@ -358,7 +354,7 @@ public final class CodeCompilationEngine {
 
     /**
      * Compiles a "var" declaration
-     * 
+     *
      * varDec: 'var' type varName (',' varName)* ';'
      */
     public void compileVarDec() {
@@ -372,7 +368,7 @@ public final class CodeCompilationEngine {
             type = currentToken.getText();
             match(TokenType.IDENTIFIER);
             identifier = currentToken.getText();
-            
+
             symbolTable.define(identifier, type, IdentifierKind.VAR);
 
             while (Grammar.predictsCommaFrom(lookahead)) {
@@ -390,40 +386,53 @@ public final class CodeCompilationEngine {
 
     /**
      * Compiles a sequence of statements, not including the enclosing "{}"
-     * 
+     *
      * statements: statement*
-     * 
+     *
+     * @return the syntax trees of the statements, in order
+     */
+    public List<Statement> compileStatements() {
+        List<Statement> statements = new ArrayList<>();
+
+        while(Grammar.predictsStatementsFrom(lookahead)) {
+            statements.add(compileStatement());
+        }
+
+        return statements;
+    }
+
+
+    /**
+     * Compiles a statement
+     *
      * statement: letStatement
      *            | ifStatement
      *            | whileStatement
      *            | doStatement
      *            | returnStatement
      *            ;
+     *
+     * @return the syntax tree of the statement
      */
-    public void compileStatements() {
-        Keyword keyword = Keyword.fromText(lookahead.getText());
+    public Statement compileStatement() {
+        Keyword keyword = lookahead.getKeyword();
 
         switch(keyword) {
 
             case LET:
-                compileLet();
-                break;
+                return compileLet();
 
             case IF:
-                compileIf();
-                break;
+                return compileIf();
 
             case WHILE:
-                compileWhile();
-                break;
+                return compileWhile();
 
             case DO:
-                compileDo();
-                break;
+                return compileDo();
 
             default:
-                compileReturn();
-                break;
+                return compileReturn();
 
         }
 
@@ -432,394 +441,270 @@ public final class CodeCompilationEngine {
 
     /**
      * Compiles a let statement
-     * 
+     *
      * letStatement: 'let' varName ('[' expression ']')? '=' expression ';'
+     *
+     * @return the syntax tree of the statement
      */
-    public void compileLet() {
+    public LetStatement compileLet() {
         match(TokenType.KEYWORD);
+        int start = currentStart;
         match(TokenType.IDENTIFIER);
-        String identifierName = currentToken.getText();
-        Identifier identifier = symbolTable.currentSubroutineScope().resolve(identifierName);
-        boolean isArrayExpression = false;
-        
-        /** Check whether it is an array property access statement (i.e let a[i] = j) */
-        if(Grammar.predictsArrayEntryFrom(lookahead)) {
-            isArrayExpression = true;
-            Identifier arrayVariable = symbolTable.currentSubroutineScope().resolve(currentToken.getText());
-            
-            if (arrayVariable == null) {
-                throw new Error(String.format("Unable to find symbol '%s'\n", currentToken.getText()));
-            }
-
-            match(TokenType.SYMBOL);
-            compileExpression();
+        VariableReference target = resolveVariable(currentToken.getText(), spanFrom(currentStart));
+        Expression index = null;
 
-            /** Output code for a[i], which can be rewritten as *(a + i) */
-            String segment = segmentFromIdentifier(arrayVariable);
-            codeWriter.writeToFile(String.format("push %s %s\nadd\n", segment, arrayVariable.getIndex()));
+        if (target == null) {
+            throw new Error(String.format("Unable to find symbol '%s'\n", currentToken.getText()));
+        }
 
+        /** Check whether it is an array property access statement (i.e let a[i] = j), which is *(a + i) = j */
+        if(Grammar.predictsArrayEntryFrom(lookahead)) {
+            match(TokenType.SYMBOL);
+            index = compileExpression();
             match(TokenType.SYMBOL);
         }
 
         /** Match the "=" sign */
         match(TokenType.SYMBOL);
-        compileExpression();
-        String output = "\n";
-
-        if (identifier == null) {
-            output = String.format("<Exception: Could not find the following symbol: '%s'>\n", identifierName);
-        } else {
-            if (isArrayExpression) {
-                /**
-                 * For an array expression such as "a[i] = j", which is equivalent to *(a + i) = j, the result of
-                 * evaluating (a + i) has already been pushed onto the stack. And since we're also pushing the result
-                 * of evaluating j, we need to pop that result to a temp segment in order to access the memory
-                 * pointer for "that", which is used to store a[i].
-                 */
-                StringBuilder builder = new StringBuilder();
-                builder.append("pop temp 0\n")
-                       .append("pop pointer 1\n")
-                       .append("push temp 0\n")
-                       .append("pop that 0\n");
-                output = builder.toString();
-            } else {
-                String segment = segmentFromIdentifier(identifier);
-                output = String.format("pop %s %s\n", segment, identifier.getIndex());
-            }
-        }
-
-        codeWriter.writeToFile(output);
-
+        Expression value = compileExpression();
         match(TokenType.SYMBOL);
+
+        return new LetStatement(spanFrom(start), target, index, value);
     }
 
 
     /**
      * Compiles an if statement, possibly with a trailing "else" clause
-     * 
-     * ifStatement: 'if' '(' expression ')' '{' statements '}' 
+     *
+     * ifStatement: 'if' '(' expression ')' '{' statements '}'
      *              ('else' '{' statements '}')?
-     * 
-     * Flow:
-     * 
-     *     compute expression
-     *     if-goto IF_TRUE0
-     *     goto IF_FALSE0
-     *     label IF_TRUE0
-     *     ... output statements for IF condition
-     *     goto IF_END0
-     *     label IF_FALSE0
-     *     ... output statements for ELSE condition, if any
-     *     label IF_END0
+     *
+     * @return the syntax tree of the statement
      */
-    public void compileIf() {
-        String currentSubroutine = symbolTable.currentSubroutineScope().getName();
-        int ifIndex = (int) ifCounts.get(currentSubroutine);
-        int sequence = ifIndex;
-        ifCounts.put(currentSubroutine, ++ifIndex);
-
-        String ifTrue = String.format("IF_TRUE%s", sequence);
-        String ifFalse = String.format("IF_FALSE%s", sequence);
-        String ifEnd = String.format("IF_END%s", sequence);
-
+    public IfStatement compileIf() {
         match(TokenType.KEYWORD);
+        int start = currentStart;
         match(TokenType.SYMBOL);
 
-        /**
-         * Evaluate the expression and output code for the 'if' condition
-         */
-        compileExpression();
-        codeWriter.writeIfGoto(ifTrue);
-
-        /** 
-         * Output the code for jumping to the 'else' clause, even if there is none. It will simply
-         * contain an empty statement list in that case.
-         */
-        codeWriter.writeGoto(ifFalse);
-
-        codeWriter.writeLabel(ifTrue);
+        Expression condition = compileExpression();
         match(TokenType.SYMBOL);
         match(TokenType.SYMBOL);
-  
-        if(Grammar.predictsStatementsFrom(lookahead)) {
-            outputStatements();
-        }
-
+        List<Statement> thenStatements = compileStatements();
         match(TokenType.SYMBOL);
 
-        /**
-         * Output the "goto IF_END" label prior to outputting the "IF_FALSE" statement. This is
-         * needed to handle nested "if/else" statements.
-         */
-        codeWriter.writeGoto(ifEnd);
-
-        /** Output the statements for the 'else' clause, if any */
-        codeWriter.writeLabel(ifFalse);
+        /** The 'else' clause, if any; the code generator outputs an empty one if there is none */
+        List<Statement> elseStatements = new ArrayList<>();
 
         if(Grammar.predictsElseClauseFrom(lookahead)) {
             match(TokenType.KEYWORD);
             match(TokenType.SYMBOL);
-
-            if(Grammar.predictsStatementsFrom(lookahead)) {
-                outputStatements();
-            }
-
+            elseStatements = compileStatements();
             match(TokenType.SYMBOL);
         }
 
-        /** Output the end for this "if/else" statement */
-        codeWriter.writeLabel(ifEnd);
+        return new IfStatement(spanFrom(start), condition, thenStatements, elseStatements);
     }
 
 
     /**
      * Compiles a while statement
-     * 
+     *
      * whileStatement: 'while' '(' expression ')' '{' statements '}'
-     * 
-     * Flow:
-     * 
-     * label WHILE_EXP
-     *     compute expression
-     *     not
-     *     if-goto WHILE_END
-     *     compute statements
-     *     goto WHILE_EXP
-     * label WHILE_END
-     * 
+     *
+     * @return the syntax tree of the statement
      */
-    public void compileWhile() {
-        String currentSubroutine = symbolTable.currentSubroutineScope().getName();
-        int whileIndex = (int) whileCounts.get(currentSubroutine);
-        int sequence = whileIndex;
-        whileCounts.put(currentSubroutine, ++whileIndex);
-
-        String startLabel = String.format("WHILE_EXP%s", sequence);
-        String endLabel = String.format("WHILE_END%s", sequence);
-
+    public WhileStatement compileWhile() {
         match(TokenType.KEYWORD);
+        int start = currentStart;
         match(TokenType.SYMBOL);
 
-        codeWriter.writeLabel(startLabel);
-        compileExpression();
-        codeWriter.writeUnaryOperator("~");
-        codeWriter.writeIfGoto(endLabel);
+        Expression condition = compileExpression();
         match(TokenType.SYMBOL);
         match(TokenType.SYMBOL);
-
-        if(Grammar.predictsStatementsFrom(lookahead)) {
-            outputStatements();
-        }
-
-        codeWriter.writeGoto(startLabel);
-        codeWriter.writeLabel(endLabel);
-
+        List<Statement> statements = compileStatements();
         match(TokenType.SYMBOL);
+
+        return new WhileStatement(spanFrom(start), condition, statements);
     }
 
 
     /**
      * Compiles a do statement
-     * 
+     *
      * doStatement: 'do' subroutineCall ';'
+     *
+     * @return the syntax tree of the statement
      */
-    public void compileDo() {
+    public DoStatement compileDo() {
         match(TokenType.KEYWORD);
-        subroutineCall();
-
-        /**
-         * Since a "do" statement doesn't expect a return value, pop the default return value ("0")
-         * from the stack
-         */
-        codeWriter.writePop(Segment.TEMP, 0);
+        int start = currentStart;
+        match(TokenType.IDENTIFIER);
+        SubroutineCall call = subroutineCall(currentStart, currentToken.getText());
         match(TokenType.SYMBOL);
+
+        return new DoStatement(spanFrom(start), call);
     }
 
 
     /**
-     * Compiles a subroutine call
-     * 
+     * Compiles a subroutine call, whose first identifier (the name of the subroutine, or that of the class or variable
+     * on which it is called) has just been matched
+     *
      * subroutineCall: subroutineName '(' expressionList ')'
      *                 | (className | varName) '.' subroutineName '(' expressionList ')'
      *                 ;
+     *
+     * A call to a subroutine of the current class is resolved in the class scope, and passes "this" if the subroutine
+     * is a method. A call on a variable (for instance, game.run()) passes the variable, and calls the method of its
+     * type. Any other call is a call to a function or constructor of another class: a class of the Jack OS, whose
+     * number of arguments is that of the standard library, or a class of the program.
+     *
+     * @param start             the index of the first character of the call
+     * @param name              the first identifier of the call
+     * @return the syntax tree of the call
      */
-    private void subroutineCall() {
-        match(TokenType.IDENTIFIER);
-        String className = symbolTable.currentClassScope().getName();
+    private SubroutineCall subroutineCall(int start, String name) {
+        SourceSpan objectSpan = spanFrom(start);
         String objectName = className;
-        String functionName = currentToken.getText();
+        String functionName = name;
 
         /** Check whether it is a method invocation on an object (Object.fn()) */
         if (Grammar.predictsDotFrom(lookahead)) {
-            objectName = currentToken.getText();
+            objectName = name;
             match(TokenType.SYMBOL);
             match(TokenType.IDENTIFIER);
             functionName = currentToken.getText();
         }
 
-        boolean isFromCurrentClass = objectName.equals(className);
-        String subroutineName = !StringUtils.isEmpty(objectName) ? String.format("%s.%s", objectName, functionName) :
-                functionName;
-        boolean isMethod = false;
-        boolean isInstanceVariable = false;
-        JSONObject attributes = new JSONObject();
-        Identifier identifier = null;
+        match(TokenType.SYMBOL);
+        List<Expression> arguments = compileExpressionList();
+        match(TokenType.SYMBOL);
 
-        if (isFromCurrentClass) {
-            identifier = symbolTable.currentClassScope().resolve(functionName);
-        }
+        SourceSpan span = spanFrom(start);
+        int expressionArgCount = arguments.size();
 
-        /**
-         * Check whether it is a method of the current class and, if so, push "this" as the first argument
-         * to the invocation
-         */
-        if (isFromCurrentClass) {
-            if (identifier == null) {
-                throw new Error(String.format("Method '%s' not found in this class\n", subroutineName));
+        if (objectName.equals(className)) {
+            /** A subroutine of the current class; a method is called on "this" */
+            Identifier identifier = symbolTable.currentClassScope().resolve(functionName);
+            SubroutineSignature signature = (identifier != null)? identifier.getSignature() : null;
+
+            if (signature == null) {
+                throw new Error(String.format("Method '%s.%s' not found in this class\n", className, functionName));
             }
 
-            attributes = identifier.getAttributes();
-            isMethod = (attributes != null && attributes.getString("type").equals("method"));
+            checkCall(signature, signature.isMethod(), expressionArgCount);
+
+            if (signature.isMethod()) {
+                Expression receiver = new KeywordConstant(objectSpan, Keyword.THIS);
+                return new SubroutineCall(span, receiver, signature.getQualifiedName(), arguments,
+                                          expressionArgCount + 1);
+            }
+
+            return new SubroutineCall(span, null, signature.getQualifiedName(), arguments, expressionArgCount);
         }
 
-        if (isMethod) {
-            codeWriter.writeThisReference();
-        } else {
-            /** 
-             * Check whether we're calling a method on an instance variable (for instance, game.run()) and, if so,
-             * resolve the identifier to the appropriate variable
-             */
-            identifier = symbolTable.currentSubroutineScope().resolve(objectName);
-            isInstanceVariable = (
-                (identifier != null) &&
-                (identifier.getKind() == IdentifierKind.VAR ||
-                 identifier.getKind() == IdentifierKind.FIELD ||
-                 identifier.getKind() == IdentifierKind.STATIC)
-            );
-        }
-        
-        /** 
-         * If we're calling a method on an instance variable, we first need to push its reference, which
-         * will point to the 'this' keyword.
+        /**
+         * Check whether we're calling a method on a variable (for instance, game.run()) and, if so, pass the variable
+         * as the first argument of the method of its type
          */
-        if (isInstanceVariable) {
-            String segment = segmentFromIdentifier(identifier);
-            String output = String.format("push %s %s\n", segment, identifier.getIndex());
-            codeWriter.writeToFile(output);
+        VariableReference variable = resolveVariable(objectName, objectSpan);
+
+        if (variable != null) {
+            String type = variable.getType();
+            checkCall(type, functionName, true, expressionArgCount);
+            return new SubroutineCall(span, variable, String.format("%s.%s", type, functionName), arguments,
+                                      expressionArgCount + 1);
         }
 
-        match(TokenType.SYMBOL);
-        compileExpressionList();
-        match(TokenType.SYMBOL);
+        String subroutineName = String.format("%s.%s", objectName, functionName);
+        StandardLibrary standardLibrary = context.getStandardLibrary();
 
-        /** 
-         * Check whether we're using OS methods and, if so, retrieve the expected argument count; otherwise, resolve
-         * the subroutine in the scope chain. Then output the VM code.
-         */
-        if (StandardLibrary.getInstance().isStandardLibraryObject(objectName)) {
-            Integer argumentCount = StandardLibrary.getInstance().getExpectedArguments(objectName, functionName);
-            codeWriter.writeCall(subroutineName, argumentCount.intValue());
-        } else {
-            if (identifier != null) {
-                if (isMethod) {
-                    int argumentCount = attributes.getInt("argumentCount");
-                    argumentCount = isMethod? argumentCount + 1 : argumentCount;
-                    codeWriter.writeCall(identifier.getType(), argumentCount);
-                } else if (isInstanceVariable) {
-                    /**
-                     * This is an instance variable, and we've already pushed the reference to 'this' onto the stack.
-                     * So we need to increment the argument count by 1.
-                     */
-                    codeWriter.writeCall(String.format("%s.%s", identifier.getType(), functionName), expressionArgCount + 1);
-                }
-            } else {
-              /** Default case: simply output the method call as "call object.methodName args" */
-              codeWriter.writeCall(String.format("%s.%s", objectName, functionName), expressionArgCount);
-            }
+        /** Check whether we're using OS methods and, if so, retrieve the expected argument count */
+        if (standardLibrary.isStandardLibraryObject(objectName)) {
+            Integer argumentCount = standardLibrary.getExpectedArguments(objectName, functionName);
+            int count = (argumentCount != null)? argumentCount.intValue() : expressionArgCount;
+            return new SubroutineCall(span, null, subroutineName, arguments, count);
         }
+
+        /** Default case: simply call the function as "call object.methodName args" */
+        checkCall(objectName, functionName, false, expressionArgCount);
+        return new SubroutineCall(span, null, subroutineName, arguments, expressionArgCount);
     }
 
 
     /**
      * Compiles a return statement
-     * 
+     *
      * returnStatement: 'return' expression? ';'
+     *
+     * @return the syntax tree of the statement
      */
-    public void compileReturn() {
+    public ReturnStatement compileReturn() {
         match(TokenType.KEYWORD);
+        int start = currentStart;
+        Expression value = null;
 
-        /**
-         * If there is no expression after the "return" keyword, then push "0" to the stack. Otherwise, compile the 
-         * expression. 
-         */
-        if (Grammar.predictsSemicolonFrom(lookahead)) {
-            match(TokenType.SYMBOL);
-            codeWriter.writePushConstant(0);
-            codeWriter.writeReturn();
-        } else {
-            if (lookahead.getText().equals(Keyword.THIS.toString())) {
-                /** Handle the case for 'return this' */
-                match(TokenType.KEYWORD);
-                codeWriter.writeThisReference();
-            } else {
-              compileExpression();
-            }
-
-            match(TokenType.SYMBOL);
-            codeWriter.writeReturn();
+        /** If there is no expression after the "return" keyword, then the subroutine returns 0 */
+        if (!Grammar.predictsSemicolonFrom(lookahead)) {
+            value = compileExpression();
         }
+
+        match(TokenType.SYMBOL);
+        return new ReturnStatement(spanFrom(start), value);
     }
 
 
     /**
      * Compiles an empty or comma-separated list of expressions
-     * 
+     *
      * expressionList: ( expression ( ',' expression)* )? ;
+     *
+     * @return the syntax trees of the expressions, whose number is the argument count of the call that follows them
      */
-    public void compileExpressionList() {
-        /** 
-         * Reset the argument count for each expression list. This is needed to output the argument
-         * count in each "call methodName args" instruction.
-         */
-        expressionArgCount = 0;
+    public List<Expression> compileExpressionList() {
+        List<Expression> expressions = new ArrayList<>();
 
         while(!Grammar.predictsClosingParenthesisFrom(lookahead)) {
-            compileExpression();
-            expressionArgCount++;
+            expressions.add(compileExpression());
 
             while (Grammar.predictsCommaFrom(lookahead)) {
                 match(TokenType.SYMBOL);
-                compileExpression();
-                expressionArgCount++;
+                expressions.add(compileExpression());
             }
         }
+
+        return expressions;
     }
 
 
     /**
-     * Compiles an expression
-     * 
+     * Compiles an expression. Jack has no operator precedence, so the operations are nested from left to right.
+     *
      * expression: term (op term)*
-     * 
+     *
+     * @return the syntax tree of the expression
      */
-    public void compileExpression() {
-        compileTerm();
-        
+    public Expression compileExpression() {
+        int start = lookaheadStart;
+        Expression expression = compileTerm();
+
         /** Check whether the next token is an operator and, if so, compile the additional expression(s) */
-        while(Grammar.isOperator(lookahead.getText())) {
-            String operator = lookahead.getText();
+        while(Grammar.isOperator(lookahead)) {
             match(TokenType.SYMBOL);
-            compileTerm();
-            codeWriter.writeOperator(operator);
+            Symbol operator = currentToken.getSymbol();
+            Expression right = compileTerm();
+            expression = new BinaryExpression(spanFrom(start), operator, expression, right);
         }
+
+        return expression;
     }
-    
-    
+
+
     /**
-     * Compiles a term. If the current token is an identifier, this method uses the lookahead token in order to 
-     * decide between the three alternative parsing rules ("[" implies an array entry, "(" implies a method call, 
+     * Compiles a term. If the current token is an identifier, this method uses the lookahead token in order to
+     * decide between the three alternative parsing rules ("[" implies an array entry, "(" implies a method call,
      * and "." implies a property (variable). Any token that is not part of this term should not be advanced over.
-     * 
+     *
      * term: integerConstant
      *       | stringConstant
      *       | keywordConstant
@@ -829,11 +714,11 @@ public final class CodeCompilationEngine {
      *       | '(' expression ')'
      *       | unaryOpterm
      *       ;
-     * 
+     *
      * subroutineCall: subroutineName '(' expressionList ')'
      *                 | (className | varName) '.' subroutineName '(' expressionList ')'
      *                 ;
-     * 
+     *
      * expressionList: ( expression ( ',' expression)* )?
      *
      * op: '+' | '-' | '*' | '/' | '&' | '|' | '<' | '>' | '='
@@ -841,180 +726,160 @@ public final class CodeCompilationEngine {
      * unaryOp: '-' | '~'
      *
      * keywordConstant: 'true' | 'false' | 'null' | 'this'
+     *
+     * @return the syntax tree of the term
      */
-    public void compileTerm() {
-        /** Handle the case for terminal elements or keyword constants */
-        if(Grammar.isTerminal(lookahead.getText()) || Grammar.isKeywordConstant(lookahead.getText())) {
+    public Expression compileTerm() {
+        /** Handle the case for keyword constants */
+        if(Grammar.isKeywordConstant(lookahead)) {
             match(lookahead.getType());
-
-            if (Grammar.isKeywordConstant(currentToken.getText())) {
-                codeWriter.writeKeywordConstant(currentToken.getText());
-            }
-
-            return;
+            return new KeywordConstant(spanFrom(currentStart), currentToken.getKeyword());
         }
 
         /** Handle the case for unary operators */
-        if (Grammar.isUnaryOperator(lookahead.getText())) {
+        if (Grammar.isUnaryOperator(lookahead)) {
             match(TokenType.SYMBOL);
-            boolean isNegationSymbol = Grammar.isMinusSign(currentToken);
-
-            compileTerm();
+            int start = currentStart;
+            Symbol operator = currentToken.getSymbol();
+            Expression operand = compileTerm();
 
-            codeWriter.writeUnaryOperator(!isNegationSymbol ? "~" : "-");
-            return;
+            return new UnaryExpression(spanFrom(start), operator, operand);
         }
-        
+
         /** Handle the case for parentheses */
         if (Grammar.predictsOpeningParenthesisFrom(lookahead)) {
             match(TokenType.SYMBOL);
-            compileExpression();
+            Expression expression = compileExpression();
             match(TokenType.SYMBOL);
-            return;
+            return expression;
         }
-        
-        /** 
+
+        /**
          * At this stage, we're dealing with an identifier, which offers three alternatives: a variable name, an
          * array entry, or a method invocation. Take the appropriate action based on the value of the lookahead token.
          */
         match(lookahead.getType());
+        int start = currentStart;
         String variable = currentToken.getText();
-        
-        boolean isMethodInvocation = (Grammar.predictsDotFrom(lookahead) || 
+
+        boolean isMethodInvocation = (Grammar.predictsDotFrom(lookahead) ||
                 Grammar.predictsOpeningParenthesisFrom(lookahead));
-        
+
         if(Grammar.predictsArrayEntryFrom(lookahead)) {
-            Identifier arrayVariable = symbolTable.currentSubroutineScope().resolve(currentToken.getText());
+            VariableReference arrayVariable = resolveVariable(variable, spanFrom(start));
 
             if (arrayVariable == null) {
-                throw new Error(String.format("Unable to find symbol '%s'\n", currentToken.getText()));
+                throw new Error(String.format("Unable to find symbol '%s'\n", variable));
             }
-  
+
             match(TokenType.SYMBOL);
-            compileExpression();
+            Expression index = compileExpression();
             match(TokenType.SYMBOL);
 
-            /** Output code for the array access expression (right hand side) of an expression such as let b = a[i] */
-            String segment = segmentFromIdentifier(arrayVariable);
-            StringBuilder builder = new StringBuilder();
-            builder.append(String.format("push %s %s\n", segment, arrayVariable.getIndex()))
-                   .append("add\n")
-                   .append("pop pointer 1\n")
-                   .append("push that 0\n");
-            codeWriter.writeToFile(builder.toString());
+            return new ArrayAccess(spanFrom(start), arrayVariable, index);
+        }
 
-        } else if(isMethodInvocation) {
-            /**
-             * A method invocation can be a fully qualified string such as "Object.method(args)", or an
-             * implicit string such as "method(args)". In the former case, we need to resolve the target object,
-             * which can be the current class or an instance variable. To handle those use cases, the current
-             * logic first initializes the target object to the current class; it then adjusts it to the 
-             * appropriate object if the next token is a dot.
-             */
-            String className = symbolTable.currentClassScope().getName();
-            String object = className;
-            String methodName = currentToken.getText();
-
-            if(Grammar.predictsDotFrom(lookahead)) {
-                if (!currentToken.getText().equals("this") || !currentToken.getText().equals(className)) {
-                    object = currentToken.getText();
-                }
-                
-                match(TokenType.SYMBOL);
-                match(TokenType.IDENTIFIER);
-                methodName = currentToken.getText();
-            }
+        if(isMethodInvocation) {
+            return subroutineCall(start, variable);
+        }
 
-            /**
-             * Resolve the method name in the current class scope only if it is a class method
-             */
-            Identifier identifier = null;
-            Identifier instanceIdentifier = null;
-            
-            if (object.equals(className)) {
-                identifier = symbolTable.currentClassScope().resolve(methodName);
-            } else {
-                instanceIdentifier = symbolTable.currentSubroutineScope().resolve(object);
-            }
+        if (currentToken.getType() == TokenType.STRING_CONSTANT) {
+            return new StringConstant(spanFrom(start), variable);
+        }
 
-            /** 
-             * If we're calling a method on an instance variable, we first need to push its reference, which
-             * will point to the 'this' keyword.
-             */
-            if (instanceIdentifier != null) {
-                String segment = segmentFromIdentifier(instanceIdentifier);
-                String output = String.format("push %s %s\n", segment, instanceIdentifier.getIndex());
-                codeWriter.writeToFile(output);
-            }
+        if (currentToken.getType() == TokenType.INT_CONSTANT) {
+            return new IntegerConstant(spanFrom(start), Integer.parseInt(variable));
+        }
 
-            match(TokenType.SYMBOL);
-            compileExpressionList();
-            match(TokenType.SYMBOL);
+        VariableReference reference = resolveVariable(variable, spanFrom(start));
 
-            if (identifier != null) {
-                int argumentCount = identifier.getAttributes().getInt("argumentCount");
-                codeWriter.writeCall(identifier.getType(), argumentCount);
-            } else {
-                /**
-                 * Check whether it is an OS method invocation and, if so, output it accordingly
-                 */
-                boolean isOSMethod = StandardLibrary.getInstance().isStandardLibraryObject(object);
-
-                if (isOSMethod) {
-                    Integer argumentCount = StandardLibrary.getInstance().getExpectedArguments(object, methodName);
-                    methodName = String.format("%s.%s", object, methodName);
-                    codeWriter.writeCall(methodName, argumentCount.intValue());
-                } else {
-                  /**
-                     * At this point, it is safe to assume that we're dealing with a method invocation such such 
-                     * as "SquareGame.new()" or "ball.move()". 
-                   */
-                  if (instanceIdentifier != null) {
-                        codeWriter.writeCall(String.format("%s.%s", instanceIdentifier.getType(), methodName),
-                                expressionArgCount + 1);
-                  } else {
-                      methodName = String.format("%s.%s", object, methodName);
-                      codeWriter.writeCall(methodName, expressionArgCount);
-                  }
-                }
-            }
+        /** Last resort: just output a string */
+        return (reference != null)? reference : new StringConstant(spanFrom(start), variable);
+    }
 
-        } else {
-            boolean isString = currentToken.getType() == TokenType.STRING_CONSTANT;
-            boolean isInteger = currentToken.getType() == TokenType.INT_CONSTANT;
-
-            if (isString) {
-                codeWriter.writeStringConstant(variable);
-            } else if (isInteger) {
-                codeWriter.writePushConstant(Integer.parseInt(variable));
-                
-            } else {
-                Identifier identifier = symbolTable.currentSubroutineScope().resolve(variable);
-
-                if (identifier != null) {
-                    String segment = segmentFromIdentifier(identifier);
-                    String output = String.format("push %s %s\n", segment, identifier.getIndex());
-                    codeWriter.writeToFile(output);
-                } else {
-                    /** Last resort: just output a string */
-                    codeWriter.writeStringConstant(variable);
-                }
-            }
+
+    /**
+     * Returns a reference to the given variable, resolved in the scope of the current subroutine, or null if there is
+     * no such variable
+     *
+     * @param name              the name of the variable
+     * @param span              the span of the reference
+     * @return a reference to the given variable, or null if there is no such variable
+     */
+    private VariableReference resolveVariable(String name, SourceSpan span) {
+        Identifier identifier = symbolTable.currentSubroutineScope().resolve(name);
+        Segment segment = (identifier != null)? segmentFromIdentifier(identifier) : null;
+
+        return (segment != null)? new VariableReference(span, name, identifier.getType(), segment,
+                                                        identifier.getIndex()) : null;
+    }
+
+
+    /**
+     * Checks a call to a subroutine of the current class against its signature: a method must be called on an object
+     * and a function or constructor must not, and the call must pass as many arguments as the subroutine declares
+     *
+     * @param signature         the signature of the subroutine
+     * @param isMethodCall      true if the subroutine is called on an object; otherwise, false
+     * @param argumentCount     the number of arguments of the call, not including the object
+     */
+    private void checkCall(SubroutineSignature signature, boolean isMethodCall, int argumentCount) {
+        String subroutineName = signature.getQualifiedName();
+
+        if(signature.isMethod() && !isMethodCall) {
+            throw new Error(String.format("Method '%s' must be called on an object\n", subroutineName));
+        }
+
+        if(!signature.isMethod() && isMethodCall) {
+            throw new Error(String.format("'%s' is not a method\n", subroutineName));
+        }
+
+        if(signature.getArgumentCount() != argumentCount) {
+            throw new Error(String.format("'%s' expects %s arguments, but %s were given\n", subroutineName,
+                                          signature.getArgumentCount(), argumentCount));
         }
     }
 
 
     /**
-     * Returns the segment for the specified identifier, or an empty string if its kind is unknown
-     * 
+     * Checks a call to a subroutine of a class of the program against the signature index: the class must declare
+     * the subroutine, a method must be called on an object and a function or constructor must not, and the call must
+     * pass as many arguments as the subroutine declares. A call to a class that is not in the index (such as a class
+     * of the Jack OS, or of a file compiled on its own) is not checked.
+     *
+     * @param className         the name of the class of the subroutine
+     * @param functionName      the name of the subroutine
+     * @param isMethodCall      true if the subroutine is called on an object; otherwise, false
+     * @param argumentCount     the number of arguments of the call, not including the object
+     */
+    private void checkCall(String className, String functionName, boolean isMethodCall, int argumentCount) {
+        ClassSignature classSignature = context.getSignatureIndex().lookup(className);
+
+        if(classSignature == null) {
+            return;
+        }
+
+        SubroutineSignature signature = classSignature.getSubroutine(functionName);
+
+        if(signature == null) {
+            throw new Error(String.format("Subroutine '%s.%s' not found\n", className, functionName));
+        }
+
+        checkCall(signature, isMethodCall, argumentCount);
+    }
+
+
+    /**
+     * Returns the segment for the specified identifier, or null if it is not a variable
+     *
      * @param identifier      the identifier for which to return the segment
-     * @return the segment for the specified identifier, or an empty string if its kind is unknown
+     * @return the segment for the specified identifier, or null if it is not a variable
      */
-    private String segmentFromIdentifier(Identifier identifier) {
-      return (identifier.getKind() == IdentifierKind.FIELD)? "this" :
-                    (identifier.getKind() == IdentifierKind.VAR)? "local" :
-                    (identifier.getKind() == IdentifierKind.ARGUMENT)? "argument" :
-                    (identifier.getKind() == IdentifierKind.STATIC)? "static" : "";
+    private static Segment segmentFromIdentifier(Identifier identifier) {
+      return (identifier.getKind() == IdentifierKind.FIELD)? Segment.THIS :
+                    (identifier.getKind() == IdentifierKind.VAR)? Segment.LOCAL :
+                    (identifier.getKind() == IdentifierKind.ARGUMENT)? Segment.ARGUMENT :
+                    (identifier.getKind() == IdentifierKind.STATIC)? Segment.STATIC : null;
     }
 
 }
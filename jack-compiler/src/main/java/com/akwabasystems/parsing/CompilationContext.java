@@ -0,0 +1,124 @@
+package com.akwabasystems.parsing;
+
+
+import com.akwabasystems.ast.ClassDeclaration;
+import com.akwabasystems.ir.VMFunction;
+import com.akwabasystems.model.StandardLibrary;
+import com.akwabasystems.passes.PassManager;
+import com.akwabasystems.passes.PassReport;
+
+
+/**
+ * The state of the compilation of a class, which used to be kept in static fields of the compilation engine.
+ *
+ * Each compilation engine owns its context, so several classes can be compiled at the same time without sharing any
+ * mutable state. The context holds what the compilations of the classes of a program share, read-only: the standard
+ * library, the signature index of the program, and the optimization passes, which run on the syntax tree of the class
+ * (tree passes) and on its VM functions (code passes). It also holds the report of the rewrites that the passes make
+ * during the compilation of its class.
+ */
+public final class CompilationContext {
+
+    private final StandardLibrary standardLibrary;
+    private final SignatureIndex signatureIndex;
+    private final PassManager<ClassDeclaration> treePasses;
+    private final PassManager<VMFunction> codePasses;
+    private final PassReport passReport = new PassReport();
+
+
+    /**
+     * Constructor. Initializes this context with the Jack standard library
+     */
+    public CompilationContext() {
+        this(StandardLibrary.getInstance());
+    }
+
+
+    /**
+     * Constructor. Initializes this context with the given standard library
+     *
+     * @param standardLibrary       the standard library against which to resolve OS calls
+     */
+    public CompilationContext(StandardLibrary standardLibrary) {
+        this(standardLibrary, SignatureIndex.EMPTY);
+    }
+
+
+    /**
+     * Constructor. Initializes this context with the given standard library and signature index, and no passes
+     *
+     * @param standardLibrary       the standard library against which to resolve OS calls
+     * @param signatureIndex        the signature index against which to resolve calls to the classes of the program
+     */
+    public CompilationContext(StandardLibrary standardLibrary, SignatureIndex signatureIndex) {
+        this(standardLibrary, signatureIndex, new PassManager<>(), new PassManager<>());
+    }
+
+
+    /**
+     * Constructor. Initializes this context with the given standard library, signature index and passes
+     *
+     * @param standardLibrary       the standard library against which to resolve OS calls
+     * @param signatureIndex        the signature index against which to resolve calls to the classes of the program
+     * @param treePasses            the passes to run on the syntax tree of the class
+     * @param codePasses            the passes to run on each VM function of the class
+     */
+    public CompilationContext(StandardLibrary standardLibrary, SignatureIndex signatureIndex,
+                              PassManager<ClassDeclaration> treePasses, PassManager<VMFunction> codePasses) {
+        this.standardLibrary = standardLibrary;
+        this.signatureIndex = signatureIndex;
+        this.treePasses = treePasses;
+        this.codePasses = codePasses;
+    }
+
+
+    /**
+     * Returns the standard library against which to resolve OS calls
+     *
+     * @return the standard library against which to resolve OS calls
+     */
+    public StandardLibrary getStandardLibrary() {
+        return standardLibrary;
+    }
+
+
+    /**
+     * Returns the signature index against which to resolve calls to the classes of the program
+     *
+     * @return the signature index against which to resolve calls to the classes of the program
+     */
+    public SignatureIndex getSignatureIndex() {
+        return signatureIndex;
+    }
+
+
+    /**
+     * Returns the passes to run on the syntax tree of the class
+     *
+     * @return the passes to run on the syntax tree of the class
+     */
+    public PassManager<ClassDeclaration> getTreePasses() {
+        return treePasses;
+    }
+
+
+    /**
+     * Returns the passes to run on each VM function of the class
+     *
+     * @return the passes to run on each VM function of the class
+     */
+    public PassManager<VMFunction> getCodePasses() {
+        return codePasses;
+    }
+
+
+    /**
+     * Returns the report of the rewrites made by the passes during the compilation of the class
+     *
+     * @return the report of the rewrites made by the passes
+     */
+    public PassReport getPassReport() {
+        return passReport;
+    }
+
+}
@@ -2,14 +2,16 @@
 package com.akwabasystems.parsing;
 
 
+import com.akwabasystems.ast.ClassDeclaration;
+import com.akwabasystems.ir.VMFunction;
 import com.akwabasystems.model.OutputType;
+import com.akwabasystems.model.StandardLibrary;
+import com.akwabasystems.passes.PassManager;
+import com.akwabasystems.passes.PassReport;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang.StringUtils;
 
 
@@ -22,17 +24,18 @@ import org.apache.commons.lang.StringUtils;
  * the required contents (XML tokens, XML abstract tree, generated VM code) to a destination file derived from 
  * the input file.
  *
- * It also uses an instance of an executor service in order to process several files concurrently. As a result, it
- * shuts down that executor instance after a given delay (TIMEOUT_IN_SECONDS) when all files have been processed, 
- * or when an exception occurs during processing. That delay can be fine-tuned to match a given environment.
+ * Each file is analyzed on the calling thread. The files of a project are compiled concurrently by a ProjectCompiler,
+ * which runs one analyzer per file on a shared pool of threads.
  * 
  * This class removes all comments in the files prior to processing. It is also marked final, so it cannot
  * be subclassed.
  */
 public final class JackAnalyzer implements Analyzer {
     private OutputType outputType = OutputType.CODE_GENERATION;
-    private final ExecutorService executor = Executors.newCachedThreadPool();
-    private static final int TIMEOUT_IN_SECONDS = 2;
+    private SignatureIndex signatureIndex = SignatureIndex.EMPTY;
+    private PassManager<ClassDeclaration> treePasses = new PassManager<>();
+    private PassManager<VMFunction> codePasses = new PassManager<>();
+    private PassReport passReport = new PassReport();
 
 
     /**
@@ -50,9 +53,48 @@ public final class JackAnalyzer implements Analyzer {
     
 
     /**
-     * Analyzes the given file
+     * Sets the signature index of the program to which the analyzed files belong, against which the generated code
+     * resolves the calls to other classes. By default, the index is empty, and these calls are not checked.
+     *
+     * @param signatureIndex        the signature index of the program
+     * @return a reference to this class instance
+     */
+    public JackAnalyzer setSignatureIndex(SignatureIndex signatureIndex) {
+        this.signatureIndex = signatureIndex;
+        return this;
+    }
+
+
+    /**
+     * Sets the optimization passes of the generated code: the passes to run on the syntax tree of each class, and on
+     * each of its VM functions. By default, there are none.
+     *
+     * @param treePasses            the passes to run on the syntax tree of each class
+     * @param codePasses            the passes to run on each VM function
+     * @return a reference to this class instance
+     */
+    public JackAnalyzer setPasses(PassManager<ClassDeclaration> treePasses, PassManager<VMFunction> codePasses) {
+        this.treePasses = treePasses;
+        this.codePasses = codePasses;
+        return this;
+    }
+
+
+    /**
+     * Returns the report of the rewrites made by the optimization passes during the last compilation of a file
+     *
+     * @return the report of the rewrites made by the optimization passes
+     */
+    public PassReport getPassReport() {
+        return passReport;
+    }
+
+
+    /**
+     * Analyzes the given file, and returns once its output has been written. An error that prevents the file from
+     * being read is printed.
      * 
-     * @param inputFile     the file to analyze
+     * @param file          the file to analyze
      * @return a reference to this class instance
      */
     @Override
@@ -62,73 +104,71 @@ public final class JackAnalyzer implements Analyzer {
             return this;
         }
 
-        Runnable task = new Runnable() {
-            @Override
-            public void run() {
-                handleFile(file);
-            }
-        };
-        executor.execute(task);
- 
-        /** 
-         * Wait for tasks to execute, then shut down the executor. If the current thread is also interrupted, re-cancel 
-         * and preserve the interrupt status 
-         */
+        System.out.printf("Compiling '%s'\n", file.getAbsolutePath());
+
         try {
-            
-            if(!executor.awaitTermination(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)) {
-                executor.shutdownNow();
-            }
 
-        } catch(InterruptedException interrupted) {
-            executor.shutdownNow();
-            Thread.currentThread().interrupt();
+            compile(file);
+
+        } catch(IOException cannotRead) {
+            System.out.printf("Couldn't access input or output files - Cause: %s\n", cannotRead.getMessage());
         }
-        
+
         return this;
     }
     
     
     /**
-     * Handles the given input file. If the file is a directory, then it recursively processes each file in
-     * that directory.
+     * Analyzes the given file on the calling thread, and returns once its output has been written. Unlike parse(),
+     * the errors are propagated to the caller: an I/O error as an IOException, and a syntax error as an Error.
      * 
-     * @param file         the input file to handle
+     * @param file          the file to analyze
+     * @return a reference to this class instance
+     * @throws IOException if the file cannot be read
      */
-    private void handleFile(final File file) {
-        System.out.printf("Compiling '%s'\n", file.getAbsolutePath());
-        StringBuilder input = new StringBuilder();
+    public JackAnalyzer compile(final File file) throws IOException {
+        String input = read(file);
+        passReport = new PassReport();
 
-        try {
+        switch(outputType) {
+
+            case XML_TOKENS:
+                writeXMLTokens(input, file);
+                break;
+
+            case XML_TREE:
+                writeXMLTree(input, file);
+                break;
+
+            default:
+                writeGeneratedCode(input, file);
+                break;
+
+        }
 
-            BufferedReader reader = new BufferedReader(new FileReader(file));
+        return this;
+    }
+
+
+    /**
+     * Returns the contents of the given file, with a new line at the end of each line
+     *
+     * @param file          the file to read
+     * @return the contents of the given file
+     * @throws IOException if the file cannot be read
+     */
+    static String read(final File file) throws IOException {
+        StringBuilder input = new StringBuilder();
+
+        try(BufferedReader reader = new BufferedReader(new FileReader(file))) {
             String line;
 
             while((line = reader.readLine()) != null) {
                 input.append(line).append("\n");
             }
-
-            reader.close();
-
-            switch(outputType) {
-                
-                case XML_TOKENS:
-                    writeXMLTokens(input.toString(), file);
-                    break;
-                
-                case XML_TREE:
-                    writeXMLTree(input.toString(), file);
-                    break;
-                    
-                default:
-                    writeGeneratedCode(input.toString(), file);
-                    break;
-                
-            }
-
-        } catch(IOException cannotRead) {
         }
 
+        return input.toString();
     }
     
     
@@ -172,7 +212,8 @@ public final class JackAnalyzer implements Analyzer {
     
     
     /**
-     * Writes the generated code to the specified output file
+     * Writes the generated code to the specified output file, as a ".vm" file or, if the output type is
+     * BINARY_CODE_GENERATION, as a ".vmb" file
      * 
      * @param code          the code output to write
      * @param file          the file to which to write the XML content
@@ -181,11 +222,15 @@ public final class JackAnalyzer implements Analyzer {
         Tokenizer tokenizer = new JackTokenizer(code);
         
         String[] parts = StringUtils.split(file.getName(), ".");
-        String outputFileName = String.format("%s.vm", parts[0]);
+        boolean isBinary = (outputType == OutputType.BINARY_CODE_GENERATION);
+        String outputFileName = String.format("%s.%s", parts[0], isBinary? VMBinaryEncoder.EXTENSION : "vm");
         String outputFilePath = file.getAbsolutePath().replace(file.getName(), outputFileName);
         
-        VMCodeWriter codeWriter = new VMCodeWriter(outputFilePath);
-        CodeCompilationEngine compiler = new CodeCompilationEngine(tokenizer, codeWriter);
+        VMCodeWriter codeWriter = new VMCodeWriter(outputFilePath, isBinary);
+        CompilationContext context = new CompilationContext(StandardLibrary.getInstance(), signatureIndex,
+                                                            treePasses, codePasses);
+        CodeCompilationEngine compiler = new CodeCompilationEngine(tokenizer, codeWriter, context);
+        passReport = context.getPassReport();
         compiler.compileClass();
 
     }
@@ -1,7 +1,7 @@
 
 package com.akwabasystems.parsing;
 
-import com.akwabasystems.model.Keyword;
+import com.akwabasystems.model.Symbol;
 import com.akwabasystems.model.Token;
 import com.akwabasystems.model.TokenType;
 import com.akwabasystems.utils.VMUtils;
@@ -18,9 +18,14 @@ import com.akwabasystems.utils.VMUtils;
  * It implements the logic for returning the next token, if available, as well as the logic for outputting the
  * XML or VM representations of the code to a given file.
  * 
+ * The symbols and keywords are returned as their shared tokens (see Token), and each identifier or integer constant
+ * is returned as the same token instance wherever it occurs in the input, so only new words and string constants
+ * allocate a token.
+ * 
  * This class is marked as final and cannot be subclassed.
  */
 public final class JackTokenizer extends Tokenizer {
+    private final TokenTable words = new TokenTable();
 
     /**
      * Constructor. Initializes this instance with the given input.
@@ -42,106 +47,41 @@ public final class JackTokenizer extends Tokenizer {
     public Token nextToken() {
         while(currentToken != EOF) {
             
-            switch(currentToken) {
-                case ' ':
-                case '\t':
-                case '\n':
-                case '\r':
-                    WS();
-                    continue;
-                
-                case '{':
-                    advance();
-                    return new Token(TokenType.SYMBOL, "{");
-                    
-                case '}':
-                    advance();
-                    return new Token(TokenType.SYMBOL, "}");
-                
-                case '(':
-                    advance();
-                    return new Token(TokenType.SYMBOL, "(");
-                    
-                case ')':
-                    advance();
-                    return new Token(TokenType.SYMBOL, ")");
-                
-                case '[':
-                    advance();
-                    return new Token(TokenType.SYMBOL, "[");
-                    
-                case ']':
-                    advance();
-                    return new Token(TokenType.SYMBOL, "]");
-                    
-                case '.':
-                    advance();
-                    return new Token(TokenType.SYMBOL, ".");
-                
-                case ',':
-                    advance();
-                    return new Token(TokenType.SYMBOL, ",");
-                    
-                case ';':
-                    advance();
-                    return new Token(TokenType.SYMBOL, ";");
-                    
-                case '+':
-                    advance();
-                    return new Token(TokenType.SYMBOL, "+");
-                    
-                case '-':
-                    advance();
-                    return new Token(TokenType.SYMBOL, "-");
-                    
-                case '*':
-                    advance();
-                    return new Token(TokenType.SYMBOL, "*");
-                    
-                case '/':
-                    advance();
-                    return new Token(TokenType.SYMBOL, "/");
-                    
-                case '&':
-                    advance();
-                    return new Token(TokenType.SYMBOL, "&");
-                    
-                case '|':
-                    advance();
-                    return new Token(TokenType.SYMBOL, "|");
-                    
-                case '<':
-                    advance();
-                    return new Token(TokenType.SYMBOL, "<");
-                
-                case '>':
-                    advance();
-                    return new Token(TokenType.SYMBOL, ">");
-                
-                case '=':
-                    advance();
-                    return new Token(TokenType.SYMBOL, "=");
-                
-                case '~':
-                    advance();
-                    return new Token(TokenType.SYMBOL, "~");
-                    
-                case '"':
-                    return stringConstant();
-                
-                default:
-                    if(isDigit()) {
-                        return integerConstant();
-                    } else if(isAlphanumeric()) {
-                        return keywordOrIdentifier();
-                    }
-                    
-                    throw new Error(String.format("Invalid character: '%s'", currentToken));
-
+            if(isWhitespace()) {
+                WS();
+                continue;
             }
+            
+            tokenOffset = currentIndex;
+            Symbol symbol = Symbol.fromChar(currentToken);
+            
+            if(symbol != null) {
+                advance();
+                return Token.of(symbol);
+            } else if(currentToken == '"') {
+                return stringConstant();
+            } else if(isDigit()) {
+                return integerConstant();
+            } else if(isAlphanumeric()) {
+                return keywordOrIdentifier();
+            }
+            
+            throw new Error(String.format("Invalid character: '%s'", currentToken));
         }
 
-        return new Token(TokenType.END_OF_FILE, "<EOF>");
+        tokenOffset = currentIndex;
+        return Token.endOfFile();
+    }
+    
+    
+    /**
+     * Returns the number of distinct identifiers returned by this tokenizer so far, which is one more than the
+     * largest identifier id
+     * 
+     * @return the number of distinct identifiers returned by this tokenizer so far
+     */
+    public int getIdentifierCount() {
+        return words.getIdentifierCount();
     }
     
     
@@ -151,10 +91,7 @@ public final class JackTokenizer extends Tokenizer {
      * WS: (' '|'\t'|'\n'|'\r')* ;
      */
     private void WS() {
-        while (currentToken == ' ' ||
-               currentToken == '\t' || 
-               currentToken == '\n' ||
-               currentToken == '\r') {
+        while (isWhitespace()) {
             advance();
         }
     }
@@ -168,26 +105,14 @@ public final class JackTokenizer extends Tokenizer {
      * @return a keyword or identifier token
      */
     private Token keywordOrIdentifier() {
-        StringBuilder builder = new StringBuilder();
+        int start = currentIndex;
         
         do {
-            
-            builder.append(currentToken);
             advance();
-            
         } while (isAlphanumeric());
         
-        String text = builder.toString();
-        
-        /** First, check whether it is a keyword */
-        Keyword keyword = Keyword.fromText(text);
-        
-        if(keyword != null) {
-            return new Token(TokenType.KEYWORD, text);
-        }
-        
-        /** At this point, it is safe to assume that it is an identifier */
-        return new Token(TokenType.IDENTIFIER, text);
+        /** The table holds the keyword tokens, so an identifier is only created if the word is not a keyword */
+        return words.lookup(characters, start, currentIndex, TokenType.IDENTIFIER);
     }
     
     
@@ -199,14 +124,13 @@ public final class JackTokenizer extends Tokenizer {
      * @return an integer constant token.
      */
     private Token integerConstant() {
-        StringBuilder builder = new StringBuilder();
+        int start = currentIndex;
         
         while (isDigit()) {
-            builder.append(currentToken);
             advance();
         }
 
-        return new Token(TokenType.INT_CONSTANT, builder.toString());
+        return words.lookup(characters, start, currentIndex, TokenType.INT_CONSTANT);
     }
 
 
@@ -218,20 +142,24 @@ public final class JackTokenizer extends Tokenizer {
      * @return a string constant token
      */
     private Token stringConstant() {
-        StringBuilder builder = new StringBuilder();
-
         /** Advance past the opening double-quote */
         advance();
+        int start = currentIndex;
         
         while (currentToken != '"') {
-            builder.append(currentToken);
+            if (currentToken == EOF) {
+                throw new Error("Unterminated string constant");
+            }
+
             advance();
         }
 
+        String text = input.substring(start, currentIndex);
+
         /** Advance past the closing double-quote */
         advance();
 
-        return new Token(TokenType.STRING_CONSTANT, builder.toString());
+        return new Token(TokenType.STRING_CONSTANT, text);
     }
 
 
@@ -0,0 +1,337 @@
+package com.akwabasystems.parsing;
+
+
+import com.akwabasystems.ast.ClassDeclaration;
+import com.akwabasystems.ir.VMFunction;
+import com.akwabasystems.model.ClassSignature;
+import com.akwabasystems.model.OutputType;
+import com.akwabasystems.passes.PassManager;
+import com.akwabasystems.passes.PassReport;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Compiles the Jack files of a project on a bounded pool of threads.
+ *
+ * All the files are submitted to a single pool, and the compiler waits for the result of each file, so a compilation
+ * takes as long as its files do, no matter how long that is. The outcome of each file is reported separately: a file
+ * that cannot be read, or that has a syntax error, does not prevent the other files from being compiled. Each result
+ * also records the time spent on its file, and the results are returned in the order of the given files. Each file is
+ * compiled by its own engine, with its own compilation context, so the files share no mutable state, and the pool uses
+ * one thread per processor by default.
+ *
+ * Before generating code, the compiler scans the signatures of all the files on the same pool, and builds the
+ * signature index of the project, which every compilation then uses to check its calls to the other classes. The
+ * optimization passes are shared by all the files, since they keep no state, and the rewrites that they make are
+ * reported for each file.
+ */
+public final class ProjectCompiler {
+
+    public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+    private OutputType outputType = OutputType.CODE_GENERATION;
+    private int threads = DEFAULT_THREADS;
+    private PassManager<ClassDeclaration> treePasses = new PassManager<>();
+    private PassManager<VMFunction> codePasses = new PassManager<>();
+
+
+    /**
+     * The outcome of the compilation of a file
+     */
+    public static final class Result {
+
+        private final File file;
+        private final long elapsedTime;
+        private final Throwable error;
+        private final PassReport passReport;
+
+
+        /**
+         * Creates the result of the compilation of the given file
+         *
+         * @param file              the compiled file
+         * @param elapsedTime       the time spent on the file, in nanoseconds
+         * @param error             the error that stopped the compilation, or null if the file was compiled
+         * @param passReport        the report of the rewrites made by the optimization passes
+         */
+        private Result(File file, long elapsedTime, Throwable error, PassReport passReport) {
+            this.file = file;
+            this.elapsedTime = elapsedTime;
+            this.error = error;
+            this.passReport = passReport;
+        }
+
+
+        /**
+         * Returns the compiled file
+         *
+         * @return the compiled file
+         */
+        public File getFile() {
+            return file;
+        }
+
+
+        /**
+         * Returns the time spent on the file, in nanoseconds
+         *
+         * @return the time spent on the file, in nanoseconds
+         */
+        public long getElapsedTime() {
+            return elapsedTime;
+        }
+
+
+        /**
+         * Returns the error that stopped the compilation of the file (an IOException if it could not be read or
+         * written, or an Error for a syntax error), or null if the file was compiled
+         *
+         * @return the error that stopped the compilation of the file, or null if the file was compiled
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+
+        /**
+         * Returns true if the file was compiled; otherwise, returns false
+         *
+         * @return true if the file was compiled; otherwise, returns false
+         */
+        public boolean isSuccessful() {
+            return (error == null);
+        }
+
+
+        /**
+         * Returns the report of the rewrites made by the optimization passes on the file
+         *
+         * @return the report of the rewrites made by the optimization passes
+         */
+        public PassReport getPassReport() {
+            return passReport;
+        }
+
+    }
+
+
+    /**
+     * Sets the output type of the compiler, which specifies whether to output XML tokens, the XML tree of the code,
+     * or the generated code
+     *
+     * @param outputType            the output type to set for this compiler
+     * @return a reference to this class instance
+     */
+    public ProjectCompiler setOutputType(OutputType outputType) {
+        this.outputType = outputType;
+        return this;
+    }
+
+
+    /**
+     * Sets the maximum number of files to compile at the same time
+     *
+     * @param threads               the number of threads of the pool
+     * @return a reference to this class instance
+     * @throws IllegalArgumentException if the number of threads is not positive
+     */
+    public ProjectCompiler setThreads(int threads) {
+
+        if(threads < 1) {
+            throw new IllegalArgumentException(String.format("Invalid number of threads: %s", threads));
+        }
+
+        this.threads = threads;
+        return this;
+    }
+
+
+    /**
+     * Sets the optimization passes to run on the syntax tree of each class. By default, there are none.
+     *
+     * @param treePasses            the passes to run on the syntax tree of each class
+     * @return a reference to this class instance
+     */
+    public ProjectCompiler setTreePasses(PassManager<ClassDeclaration> treePasses) {
+        this.treePasses = treePasses;
+        return this;
+    }
+
+
+    /**
+     * Sets the optimization passes to run on each VM function. By default, there are none.
+     *
+     * @param codePasses            the passes to run on each VM function
+     * @return a reference to this class instance
+     */
+    public ProjectCompiler setCodePasses(PassManager<VMFunction> codePasses) {
+        this.codePasses = codePasses;
+        return this;
+    }
+
+
+    /**
+     * Compiles the given files, and returns once all of them have been compiled
+     *
+     * @param files                 the files to compile
+     * @return the result of each file, in the order of the given files
+     * @throws InterruptedException if the current thread is interrupted while waiting for the files
+     */
+    public List<Result> compile(List<File> files) throws InterruptedException {
+        List<Result> results = new ArrayList<>();
+
+        if(files.isEmpty()) {
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+
+        try {
+
+            SignatureIndex signatureIndex = isGeneratingCode()? index(files, executor) : SignatureIndex.EMPTY;
+            List<Future<Result>> futures = new ArrayList<>();
+
+            for(File file : files) {
+                futures.add(executor.submit(() -> compileFile(file, signatureIndex)));
+            }
+
+            for(int i = 0; i < files.size(); i++) {
+                try {
+
+                    results.add(futures.get(i).get());
+
+                } catch(ExecutionException unexpectedError) {
+                    results.add(new Result(files.get(i), 0, unexpectedError.getCause(), new PassReport()));
+                }
+            }
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return results;
+    }
+
+
+    /**
+     * Returns true if the compiler generates code (rather than XML output); otherwise, returns false
+     *
+     * @return true if the compiler generates code; otherwise, returns false
+     */
+    private boolean isGeneratingCode() {
+        return (outputType == OutputType.CODE_GENERATION || outputType == OutputType.BINARY_CODE_GENERATION);
+    }
+
+
+    /**
+     * Scans the signatures of the given files on the given pool, and returns the signature index of the project. A
+     * file that cannot be read or scanned is left out of the index; its error is reported by its compilation.
+     *
+     * @param files                 the files of the project
+     * @param executor              the pool on which to scan the files
+     * @return the signature index of the project
+     * @throws InterruptedException if the current thread is interrupted while waiting for the files
+     */
+    private static SignatureIndex index(List<File> files, ExecutorService executor) throws InterruptedException {
+        List<Future<ClassSignature>> futures = new ArrayList<>();
+
+        for(File file : files) {
+            futures.add(executor.submit(() -> new SignatureScanner(new JackTokenizer(JackAnalyzer.read(file)))
+                    .scanClass()));
+        }
+
+        List<ClassSignature> signatures = new ArrayList<>();
+
+        for(Future<ClassSignature> future : futures) {
+            try {
+
+                ClassSignature signature = future.get();
+
+                if(signature.getName() != null) {
+                    signatures.add(signature);
+                }
+
+            } catch(ExecutionException cannotScan) {
+                /** The file is compiled anyway, which reports the error */
+            }
+        }
+
+        return new SignatureIndex(signatures);
+    }
+
+
+    /**
+     * Compiles the given file on the current thread
+     *
+     * @param file                  the file to compile
+     * @param signatureIndex        the signature index of the project
+     * @return the result of the file
+     */
+    private Result compileFile(File file, SignatureIndex signatureIndex) {
+        long startTime = System.nanoTime();
+        Throwable error = null;
+        JackAnalyzer analyzer = new JackAnalyzer();
+
+        /** The compilation engine reports syntax errors as errors, which must only fail their own file */
+        try {
+
+            analyzer.setOutputType(outputType);
+            analyzer.setSignatureIndex(signatureIndex)
+                    .setPasses(treePasses, codePasses)
+                    .compile(file);
+
+        } catch(IOException | RuntimeException | Error compilationError) {
+            error = compilationError;
+        }
+
+        return new Result(file, System.nanoTime() - startTime, error, analyzer.getPassReport());
+    }
+
+
+    /**
+     * Returns a report of the given results: the number of compiled files and the total time, then the time spent
+     * on each file, followed by the rewrites of the optimization passes if they made any, or the error that stopped
+     * its compilation
+     *
+     * @param results               the results of the files
+     * @param elapsedTime           the total time of the compilation, in nanoseconds
+     * @return a report of the given results
+     */
+    public static String report(List<Result> results, long elapsedTime) {
+        long compiledFiles = results.stream().filter(Result::isSuccessful).count();
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("Compiled %s of %s files in %s ms\n", compiledFiles, results.size(),
+                                     milliseconds(elapsedTime)));
+
+        for(Result result : results) {
+            String outcome = result.isSuccessful()? String.format("%s ms", milliseconds(result.getElapsedTime())) :
+                    String.format("failed - %s", String.valueOf(result.getError().getMessage()).trim());
+
+            if(result.isSuccessful() && result.getPassReport().getRewriteCount() > 0) {
+                outcome = String.format("%s (%s)", outcome, result.getPassReport());
+            }
+
+            builder.append(String.format("  - %s: %s\n", result.getFile().getName(), outcome));
+        }
+
+        return builder.toString();
+    }
+
+
+    /**
+     * Returns the given time in milliseconds, with one decimal
+     *
+     * @param nanoseconds           the time in nanoseconds
+     * @return the given time in milliseconds
+     */
+    private static String milliseconds(long nanoseconds) {
+        return String.format("%.1f", nanoseconds / 1_000_000.0);
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.akwabasystems.parsing;
+
+
+import com.akwabasystems.model.ClassSignature;
+import com.akwabasystems.model.SubroutineSignature;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * The signatures of all the classes of a program, keyed by class name.
+ *
+ * The index is built before the classes are compiled (see ProjectCompiler), and is then shared, read-only, by their
+ * compilations. It lets the compilation of a class resolve a call to another class of the program with a single
+ * lookup. The classes that are not part of the program (such as those of the Jack OS) are not in the index.
+ */
+public final class SignatureIndex {
+    public static final SignatureIndex EMPTY = new SignatureIndex(Collections.emptyList());
+    private final Map<String,ClassSignature> classes;
+
+
+    /**
+     * Constructor. Initializes this index with the given class signatures. If several signatures have the same class
+     * name, the first one is kept.
+     *
+     * @param signatures        the signatures of the classes of the program
+     */
+    public SignatureIndex(Collection<ClassSignature> signatures) {
+        Map<String,ClassSignature> classes = new HashMap<>();
+        signatures.forEach((signature) -> classes.putIfAbsent(signature.getName(), signature));
+        this.classes = Collections.unmodifiableMap(classes);
+    }
+
+
+    /**
+     * Returns the signature of the given class, or null if the class is not part of the program
+     *
+     * @param className         the name of the class
+     * @return the signature of the given class, or null if the class is not part of the program
+     */
+    public ClassSignature lookup(String className) {
+        return classes.get(className);
+    }
+
+
+    /**
+     * Returns the signature of the given subroutine, or null if the class is not part of the program or does not
+     * declare the subroutine
+     *
+     * @param className         the name of the class
+     * @param subroutineName    the name of the subroutine
+     * @return the signature of the given subroutine, or null if it is not found
+     */
+    public SubroutineSignature lookup(String className, String subroutineName) {
+        ClassSignature signature = classes.get(className);
+        return (signature != null)? signature.getSubroutine(subroutineName) : null;
+    }
+
+
+    /**
+     * Returns the number of classes in this index
+     *
+     * @return the number of classes in this index
+     */
+    public int size() {
+        return classes.size();
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.akwabasystems.parsing;
+
+
+import com.akwabasystems.model.ClassSignature;
+import com.akwabasystems.model.Grammar;
+import com.akwabasystems.model.Keyword;
+import com.akwabasystems.model.SubroutineSignature;
+import com.akwabasystems.model.Symbol;
+import com.akwabasystems.model.Token;
+import com.akwabasystems.model.TokenKind;
+import com.akwabasystems.model.TokenType;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Collects the signature of a class (its subroutines and its number of fields) from its tokens, before the class is
+ * compiled.
+ *
+ * The scanner only follows the nesting of the curly braces: a subroutine declaration is a "constructor", "function"
+ * or "method" keyword at the top level of the class body, followed by the return type, the name and the parameter list
+ * of the subroutine, and a field declaration is a "field" keyword at the same level, followed by a type and a list of
+ * names. The bodies of the subroutines are skipped. The scanner does not report syntax errors; it stops at
+ * the end of the input, and the errors are reported by the compilation of the class.
+ */
+public final class SignatureScanner {
+    private final Tokenizer tokenizer;
+    private Token token;
+
+
+    /**
+     * Constructor. Initializes this scanner with the given tokenizer, which must be at the start of its input
+     *
+     * @param tokenizer         the tokenizer of the class to scan
+     */
+    public SignatureScanner(Tokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+
+    /**
+     * Returns the signatures of the subroutines of the class, in the order of their declaration
+     *
+     * @return the signatures of the subroutines of the class
+     */
+    public List<SubroutineSignature> scan() {
+        return new ArrayList<>(scanClass().getSubroutines());
+    }
+
+
+    /**
+     * Returns the signature of the class: its name, its number of fields and the signatures of its subroutines
+     *
+     * @return the signature of the class
+     */
+    public ClassSignature scanClass() {
+        List<SubroutineSignature> signatures = new ArrayList<>();
+        String className = null;
+        int fieldCount = 0;
+        int depth = 0;
+
+        advance();
+
+        while(!isAtEnd()) {
+
+            if(depth == 0 && token.is(Keyword.CLASS)) {
+                advance();
+                className = token.getText();
+            } else if(token.is(Symbol.LEFT_CURLY_BRACE)) {
+                depth++;
+            } else if(token.is(Symbol.RIGHT_CURLY_BRACE)) {
+                depth--;
+            } else if(depth == 1 && token.is(Keyword.FIELD)) {
+                fieldCount += scanVariableNames();
+                continue;
+            } else if(depth == 1 && Grammar.predictsSubroutineFrom(token)) {
+                Keyword kind = token.getKeyword();
+                advance();
+                String returnType = token.getText();
+                advance();
+                String name = token.getText();
+                advance();
+
+                List<String> parameterTypes = scanParameterTypes();
+
+                if(isAtEnd()) {
+                    break;
+                }
+
+                signatures.add(new SubroutineSignature(kind, returnType, className, name, parameterTypes));
+            }
+
+            advance();
+        }
+
+        return new ClassSignature(className, fieldCount, signatures);
+    }
+
+
+    /**
+     * Returns the number of names declared by the variable declaration that starts at the current token, and stops
+     * after its semicolon
+     *
+     * classVarDec: ('static' | 'field') type varName (',' varName)* ';'
+     *
+     * @return the number of names declared by the variable declaration
+     */
+    private int scanVariableNames() {
+        int count = 0;
+
+        /** Skip the kind and the type of the declaration */
+        advance();
+        advance();
+
+        while(!isAtEnd() && !token.is(Symbol.SEMICOLON)) {
+            if(token.getType() == TokenType.IDENTIFIER) {
+                count++;
+            }
+
+            advance();
+        }
+
+        advance();
+        return count;
+    }
+
+
+    /**
+     * Returns the types of the parameter list that starts at the current token, and stops at its closing parenthesis
+     *
+     * parameterList: '(' ( (type varName) (',' type varName)* )? ')'
+     *
+     * @return the types of the parameter list that starts at the current token
+     */
+    private List<String> scanParameterTypes() {
+        List<String> parameterTypes = new ArrayList<>();
+
+        if(!token.is(Symbol.LEFT_PARENTHESIS)) {
+            return parameterTypes;
+        }
+
+        advance();
+
+        while(!isAtEnd() && !token.is(Symbol.RIGHT_PARENTHESIS)) {
+            parameterTypes.add(token.getText());
+
+            /** Skip the type, the name and the comma that follows them, if any */
+            advance();
+            advance();
+
+            if(token.is(Symbol.COMMA)) {
+                advance();
+            }
+        }
+
+        return parameterTypes;
+    }
+
+
+    /**
+     * Advances to the next token, unless the end of the input has been reached
+     */
+    private void advance() {
+        if(token == null || !isAtEnd()) {
+            token = tokenizer.nextToken();
+        }
+    }
+
+
+    /**
+     * Returns true if the end of the input has been reached; otherwise, returns false
+     *
+     * @return true if the end of the input has been reached; otherwise, returns false
+     */
+    private boolean isAtEnd() {
+        return (token.getKind() == TokenKind.END_OF_FILE);
+    }
+
+}
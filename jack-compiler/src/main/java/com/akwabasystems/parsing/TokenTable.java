@@ -0,0 +1,141 @@
+package com.akwabasystems.parsing;
+
+
+import com.akwabasystems.model.Keyword;
+import com.akwabasystems.model.Token;
+import com.akwabasystems.model.TokenType;
+
+
+/**
+ * The table of the words (keywords, identifiers and integer constants) of the input of a tokenizer.
+ *
+ * A word is looked up as a range of the characters of the input, so a word that has already been seen does not
+ * allocate anything: its token is returned as is. The table starts with the tokens of the keywords, so the same lookup
+ * recognizes the keywords and interns the identifiers. Each new identifier gets the next id, which numbers the distinct
+ * identifiers of the input.
+ *
+ * The table is an open-addressing hash table, whose hash codes are those of the words as strings.
+ */
+final class TokenTable {
+    private static final int INITIAL_CAPACITY = 256;
+    private Token[] tokens = new Token[INITIAL_CAPACITY];
+    private int[] hashCodes = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    private int identifierCount = 0;
+
+
+    /**
+     * Constructor. Initializes this table with the tokens of the keywords
+     */
+    TokenTable() {
+        for(Keyword keyword : Keyword.values()) {
+            Token token = Token.of(keyword);
+            insert(token, token.getText().hashCode());
+        }
+    }
+
+
+    /**
+     * Returns the token of the word in the given range of characters, which is created the first time the word is
+     * looked up
+     *
+     * @param characters        the characters of the input
+     * @param start             the index of the first character of the word
+     * @param end               the index after the last character of the word
+     * @param type              the type of the token to create if the word is not a keyword (IDENTIFIER or
+     *                          INT_CONSTANT)
+     * @return the token of the word in the given range of characters
+     */
+    Token lookup(char[] characters, int start, int end, TokenType type) {
+        int hashCode = 0;
+
+        for(int i = start; i < end; i++) {
+            hashCode = 31 * hashCode + characters[i];
+        }
+
+        int mask = tokens.length - 1;
+
+        for(int slot = hashCode & mask; tokens[slot] != null; slot = (slot + 1) & mask) {
+            if(hashCodes[slot] == hashCode && matches(tokens[slot].getText(), characters, start, end)) {
+                return tokens[slot];
+            }
+        }
+
+        String text = new String(characters, start, end - start);
+        Token token = (type == TokenType.IDENTIFIER)? new Token(type, text, identifierCount++) : new Token(type, text);
+        insert(token, hashCode);
+
+        return token;
+    }
+
+
+    /**
+     * Returns the number of distinct identifiers in this table
+     *
+     * @return the number of distinct identifiers in this table
+     */
+    int getIdentifierCount() {
+        return identifierCount;
+    }
+
+
+    /**
+     * Returns true if the given text is made of the characters in the given range; otherwise, returns false
+     *
+     * @param text              the text to compare
+     * @param characters        the characters of the input
+     * @param start             the index of the first character of the range
+     * @param end               the index after the last character of the range
+     * @return true if the given text is made of the characters in the given range; otherwise, returns false
+     */
+    private static boolean matches(String text, char[] characters, int start, int end) {
+
+        if(text.length() != end - start) {
+            return false;
+        }
+
+        for(int i = start; i < end; i++) {
+            if(text.charAt(i - start) != characters[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Inserts the given token in this table, which is grown when it is half full
+     *
+     * @param token             the token to insert
+     * @param hashCode          the hash code of the text of the token
+     */
+    private void insert(Token token, int hashCode) {
+
+        if(2 * (size + 1) > tokens.length) {
+            Token[] oldTokens = tokens;
+            int[] oldHashCodes = hashCodes;
+            tokens = new Token[oldTokens.length * 2];
+            hashCodes = new int[oldTokens.length * 2];
+            size = 0;
+
+            for(int i = 0; i < oldTokens.length; i++) {
+                if(oldTokens[i] != null) {
+                    insert(oldTokens[i], oldHashCodes[i]);
+                }
+            }
+        }
+
+        int mask = tokens.length - 1;
+        int slot = hashCode & mask;
+
+        while(tokens[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+
+        tokens[slot] = token;
+        hashCodes[slot] = hashCode;
+        size++;
+    }
+
+}
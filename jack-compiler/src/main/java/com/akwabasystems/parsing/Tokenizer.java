@@ -3,7 +3,6 @@ package com.akwabasystems.parsing;
 
 
 import com.akwabasystems.model.Token;
-import java.util.regex.Pattern;
 
 
 /**
@@ -14,14 +13,43 @@ import java.util.regex.Pattern;
  * It defines an API for querying the current token and/or token index, for advancing to the next token, if possible, 
  * for matching a given token, for outputting the token stream to a file, and more.
  * 
+ * The characters are classified with a table indexed by character code, and the input is scanned as an array of
+ * characters, so that a token can be taken from the input as a range of indices instead of being built character by
+ * character.
+ * 
  * This class is abstract and defines specific methods to be implemented by any subclass.
  */
 public abstract class Tokenizer {
     public char currentToken;
     public int currentIndex = 0;
     public String input;
+    protected final char[] characters;
+    protected int tokenOffset = 0;
     protected static final char EOF = (char) -1;
 
+    /** The classes of the ASCII characters; the other characters belong to none of them */
+    private static final byte DIGIT = 1;
+    private static final byte LETTER = 2;
+    private static final byte WHITESPACE = 4;
+    private static final byte[] CHARACTER_CLASSES = new byte[128];
+
+    static {
+        for(char c = '0'; c <= '9'; c++) {
+            CHARACTER_CLASSES[c] = DIGIT;
+        }
+
+        for(char c = 'a'; c <= 'z'; c++) {
+            CHARACTER_CLASSES[c] = LETTER;
+            CHARACTER_CLASSES[Character.toUpperCase(c)] = LETTER;
+        }
+
+        CHARACTER_CLASSES['_'] = LETTER;
+        CHARACTER_CLASSES[' '] = WHITESPACE;
+        CHARACTER_CLASSES['\t'] = WHITESPACE;
+        CHARACTER_CLASSES['\n'] = WHITESPACE;
+        CHARACTER_CLASSES['\r'] = WHITESPACE;
+    }
+
 
     /**
      * Constructor. Sets the input for this tokenizer to the specified string, and initializes the state of the
@@ -31,8 +59,9 @@ public abstract class Tokenizer {
      */
     public Tokenizer(String input) {
         this.input = input;
+        characters = input.toCharArray();
         currentIndex = 0;
-        currentToken = input.charAt(currentIndex);
+        currentToken = (characters.length > 0)? characters[currentIndex] : EOF;
     }
 
     
@@ -46,6 +75,28 @@ public abstract class Tokenizer {
     }
 
 
+    /**
+     * Returns the offset in the input of the last token returned by nextToken(). The offsets are those of the input
+     * of this tokenizer, from which the comments have been removed.
+     * 
+     * @return the offset in the input of the last token returned by nextToken()
+     */
+    public int getTokenOffset() {
+        return tokenOffset;
+    }
+
+
+    /**
+     * Returns the number of characters of the last token returned by nextToken(), including the double-quotes of a
+     * string constant
+     * 
+     * @return the number of characters of the last token returned by nextToken()
+     */
+    public int getTokenLength() {
+        return currentIndex - tokenOffset;
+    }
+
+
     /**
      * Returns true if the current token is alphanumeric (consisting of letters, digits, and/or the "underscore"
      * character); otherwise, returns false.
@@ -53,7 +104,7 @@ public abstract class Tokenizer {
      * @return true if the current token is alphanumeric; otherwise, returns false
      */
     protected boolean isAlphanumeric() {
-        return Pattern.matches("[a-zA-Z_0-9]", String.valueOf(currentToken));
+        return isOfClass(currentToken, (byte) (LETTER | DIGIT));
     }
 
 
@@ -63,7 +114,30 @@ public abstract class Tokenizer {
      * @return true if the current token is a digit; otherwise, returns false
      */
     protected boolean isDigit() {
-        return Pattern.matches("[0-9]", String.valueOf(currentToken));
+        return isOfClass(currentToken, DIGIT);
+    }
+
+
+    /**
+     * Returns true if the current token is a whitespace (a space, tab, newline or carriage return character);
+     * otherwise, returns false.
+     * 
+     * @return true if the current token is a whitespace; otherwise, returns false
+     */
+    protected boolean isWhitespace() {
+        return isOfClass(currentToken, WHITESPACE);
+    }
+
+
+    /**
+     * Returns true if the given character belongs to one of the given character classes; otherwise, returns false
+     * 
+     * @param c                 the character to classify
+     * @param classes           the character classes to match
+     * @return true if the given character belongs to one of the given character classes; otherwise, returns false
+     */
+    private static boolean isOfClass(char c, byte classes) {
+        return (c < CHARACTER_CLASSES.length) && (CHARACTER_CLASSES[c] & classes) != 0;
     }
     
     
@@ -73,11 +147,11 @@ public abstract class Tokenizer {
      * string has not been reached.
      */
     public void advance() {
-        if(currentIndex <= input.length() - 1) {
+        if(currentIndex <= characters.length - 1) {
             currentIndex++;
         }
 
-        currentToken = (currentIndex >= input.length()) ? EOF : input.charAt(currentIndex);
+        currentToken = (currentIndex >= characters.length) ? EOF : characters[currentIndex];
     }
     
     
@@ -101,7 +175,7 @@ public abstract class Tokenizer {
      * @return true if this tokenizer has more tokens; otherwise, returns false
      */
     public boolean hasMoreTokens() {
-        return (currentIndex <= input.length() - 1);
+        return (currentIndex <= characters.length - 1);
     }
 
     
@@ -0,0 +1,163 @@
+package com.akwabasystems.parsing;
+
+
+import com.akwabasystems.model.ArithmeticCommand;
+import com.akwabasystems.model.Segment;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang.StringUtils;
+
+
+/**
+ * Encodes VM code into the binary container format (".vmb" files) that the VM translator loads without any text
+ * parsing.
+ *
+ * All values are big-endian. A file is laid out as follows:
+ *
+ *      magic           4 bytes     'V', 'M', 'B', followed by the format version (1)
+ *      fileName        u2          the constant pool index of the name of the source file (for instance, "Main.vm")
+ *      poolSize        u2          the number of entries in the constant pool
+ *      pool            poolSize x  (u2 length, followed by the ISO-8859-1 bytes of the name)
+ *      commandCount    u4          the number of commands
+ *      commands        commandCount x 8 bytes:
+ *                          type        u1  0=arithmetic, 1=push, 2=pop, 3=label, 4=goto, 5=if-goto, 6=function,
+ *                                          7=return, 8=call
+ *                          operation   u1  for arithmetic commands: the ordinal of the ArithmeticCommand; for push and
+ *                                          pop commands: the ordinal of the Segment; otherwise 0xFF
+ *                          name        u2  the constant pool index of the first argument (segment, label or
+ *                                          function name), or 0xFFFF if there is none
+ *                          index       i4  the second argument
+ *
+ * This is the same layout as the one read by the VM emulator (VMBinaryFormat), so any change to it must be made in
+ * both modules.
+ */
+public final class VMBinaryEncoder {
+
+    public static final String EXTENSION = "vmb";
+    private static final byte[] MAGIC = { 'V', 'M', 'B', 1 };
+    private static final int NO_OPERATION = 0xFF;
+    private static final int NO_NAME = 0xFFFF;
+    private static final List<String> COMMANDS = Arrays.asList("arithmetic", "push", "pop", "label", "goto",
+                                                               "if-goto", "function", "return", "call");
+    private static final Map<String,Integer> OPERATIONS = new HashMap<>();
+
+    static {
+        for(ArithmeticCommand command : ArithmeticCommand.values()) {
+            OPERATIONS.put(command.name().toLowerCase(), command.ordinal());
+        }
+
+        for(Segment segment : Segment.values()) {
+            OPERATIONS.put(segment.argument(), segment.ordinal());
+        }
+    }
+
+
+    /**
+     * Prevents the instantiation of this class
+     */
+    private VMBinaryEncoder() {}
+
+
+    /**
+     * Encodes the given VM code (one command per line, as written by VMCodeWriter) into the binary format
+     *
+     * @param code              the VM code to encode
+     * @param fileName          the name of the source file of the code (for instance, "Main.vm")
+     * @return the binary representation of the code
+     * @throws IllegalArgumentException if the code contains an invalid command
+     */
+    public static byte[] encode(String code, String fileName) {
+        List<String> pool = new ArrayList<>();
+        Map<String,Integer> poolIndices = new HashMap<>();
+        ByteArrayOutputStream commands = new ByteArrayOutputStream(code.length());
+        int commandCount = 0;
+
+        try(DataOutputStream output = new DataOutputStream(commands)) {
+
+            for(String line : StringUtils.split(code, "\n")) {
+                String[] parts = StringUtils.split(line.trim());
+
+                if(parts.length == 0) {
+                    continue;
+                }
+
+                boolean isArithmetic = (parts.length == 1 && !parts[0].equals("return"));
+                int type = isArithmetic? 0 : COMMANDS.indexOf(parts[0]);
+                Integer operation = OPERATIONS.get(isArithmetic? parts[0] : (parts.length > 1)? parts[1] : "");
+                boolean hasOperation = (isArithmetic || type == 1 || type == 2);
+
+                if(type < 0 || (isArithmetic && operation == null)) {
+                    throw new IllegalArgumentException(String.format("Invalid command: %s", line));
+                }
+
+                output.writeByte(type);
+                output.writeByte((hasOperation && operation != null)? operation : NO_OPERATION);
+                output.writeShort((parts.length > 1)? poolIndex(parts[1], pool, poolIndices) : NO_NAME);
+                output.writeInt((parts.length > 2)? Integer.parseInt(parts[2]) : 0);
+                commandCount++;
+            }
+
+        } catch(IOException cannotWrite) {
+            throw new IllegalStateException(cannotWrite);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(commands.size() + pool.size() * 16 + 16);
+
+        try(DataOutputStream output = new DataOutputStream(bytes)) {
+            output.write(MAGIC);
+            output.writeShort(pool.size());
+            output.writeShort(pool.size() + 1);
+
+            for(String name : pool) {
+                writeName(output, name);
+            }
+
+            writeName(output, fileName);
+            output.writeInt(commandCount);
+            commands.writeTo(output);
+
+        } catch(IOException cannotWrite) {
+            throw new IllegalStateException(cannotWrite);
+        }
+
+        return bytes.toByteArray();
+    }
+
+
+    /**
+     * Returns the constant pool index of the given name, adding it to the pool if it is not there yet
+     *
+     * @param name              the name to look up
+     * @param pool              the constant pool
+     * @param poolIndices       the index of each name in the constant pool
+     * @return the constant pool index of the given name
+     */
+    private static int poolIndex(String name, List<String> pool, Map<String,Integer> poolIndices) {
+        return poolIndices.computeIfAbsent(name, (key) -> {
+            pool.add(key);
+            return pool.size() - 1;
+        });
+    }
+
+
+    /**
+     * Writes the given name as a constant pool entry
+     *
+     * @param output            the output stream
+     * @param name              the name to write
+     * @throws IOException if the name cannot be written
+     */
+    private static void writeName(DataOutputStream output, String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.ISO_8859_1);
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+}
@@ -6,7 +6,11 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
 
+import com.akwabasystems.ir.Instruction;
+import com.akwabasystems.ir.VMFunction;
+import com.akwabasystems.model.ArithmeticCommand;
 import com.akwabasystems.model.Segment;
 
 import org.apache.commons.lang.StringUtils;
@@ -16,17 +20,36 @@ import org.apache.commons.lang.StringUtils;
  * An implementation of the CodeWriter interface that writes Jack code to a given destination file. It expects the
  * destination file to exist, and to have an extension that matches its content type. However, as a safety measure, it 
  * still checks for the existence of the file and creates it if it doesn't exist. 
+ * 
+ * In binary mode, the code is buffered and written in the binary format (".vmb" files) when the writer is closed.
  */
 public class VMCodeWriter {
 
     private final String fileName;
     private File outputFile;
     private BufferedWriter writer;
+    private StringBuilder binaryCode;
     
 
     public VMCodeWriter(String fileName) {
+        this(fileName, false);
+    }
+
+
+    /**
+     * Creates a writer for the given destination file, in text or binary mode
+     * 
+     * @param fileName          the path of the destination file
+     * @param isBinary          whether to write the code in the binary format
+     */
+    public VMCodeWriter(String fileName, boolean isBinary) {
         this.fileName = fileName;
-        prepareForWriting();
+
+        if(isBinary) {
+            binaryCode = new StringBuilder();
+        } else {
+            prepareForWriting();
+        }
     }
     
 
@@ -187,6 +210,74 @@ public class VMCodeWriter {
     }
     
     
+    /**
+     * Outputs VM code for the given arithmetic or logical command
+     *
+     * @param command     the command to output
+     */
+    public void writeArithmetic(ArithmeticCommand command) {
+        writeToFile(String.format("%s\n", command.name().toLowerCase()));
+    }
+
+
+    /**
+     * Outputs VM code for the given function of the stack IR: its declaration, followed by its instructions
+     *
+     * @param function    the function to output
+     */
+    public void write(VMFunction function) {
+        writeFunction(function.getName(), function.getLocalCount());
+
+        for (Instruction instruction : function.getInstructions()) {
+            write(instruction);
+        }
+    }
+
+
+    /**
+     * Outputs VM code for the given instruction of the stack IR
+     *
+     * @param instruction the instruction to output
+     */
+    public void write(Instruction instruction) {
+
+        switch (instruction.getOpcode()) {
+
+            case PUSH:
+                writePush(instruction.getSegment(), instruction.getIndex());
+                break;
+
+            case POP:
+                writePop(instruction.getSegment(), instruction.getIndex());
+                break;
+
+            case ARITHMETIC:
+                writeArithmetic(instruction.getCommand());
+                break;
+
+            case LABEL:
+                writeLabel(instruction.getName());
+                break;
+
+            case GOTO:
+                writeGoto(instruction.getName());
+                break;
+
+            case IF_GOTO:
+                writeIfGoto(instruction.getName());
+                break;
+
+            case CALL:
+                writeCall(instruction.getName(), instruction.getIndex());
+                break;
+
+            default:
+                writeReturn();
+                break;
+        }
+    }
+
+
     /**
      * Outputs VM code for the specified arithmetic or logical operator ("+", "-", "<", ">", etc)
      *
@@ -317,6 +408,11 @@ public class VMCodeWriter {
      * @param text              the text to write
      */
     public void writeToFile(String text) {
+
+        if(binaryCode != null) {
+            binaryCode.append(text);
+            return;
+        }
         
         try {
 
@@ -334,6 +430,10 @@ public class VMCodeWriter {
      */
     public void close() {
 
+        if(binaryCode != null) {
+            writeBinaryCode();
+        }
+
         if (writer != null) {
             try {
                 
@@ -344,4 +444,24 @@ public class VMCodeWriter {
         }
     }
 
+
+    /**
+     * Encodes the buffered code into the binary format, and writes it to the output file. The source file name that
+     * is recorded in the file (used for the symbols of static variables) is that of the equivalent ".vm" file.
+     */
+    private void writeBinaryCode() {
+        File binaryFile = new File(fileName);
+        String sourceFileName = binaryFile.getName().replaceFirst("\\.[^.]*$", ".vm");
+
+        try {
+
+            Files.write(binaryFile.toPath(), VMBinaryEncoder.encode(binaryCode.toString(), sourceFileName));
+
+        } catch(IOException cannotWrite) {
+            System.out.println("Could not write to file - Exception: " + cannotWrite);
+        }
+
+        binaryCode = null;
+    }
+
 }
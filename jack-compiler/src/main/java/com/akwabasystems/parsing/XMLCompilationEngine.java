@@ -328,7 +328,7 @@ public final class XMLCompilationEngine {
      *            ;
      */
     public void compileStatements() {
-        Keyword keyword = Keyword.fromText(lookahead.getText());
+        Keyword keyword = lookahead.getKeyword();
 
         switch(keyword) {
 
@@ -533,7 +533,7 @@ public final class XMLCompilationEngine {
         compileTerm();
         
         /** Check whether the next token is an operator and, if so, compile the additional expression(s) */
-        while(Grammar.isOperator(lookahead.getText())) {
+        while(Grammar.isOperator(lookahead)) {
             match(TokenType.SYMBOL);
             compileTerm();
         }
@@ -571,8 +571,8 @@ public final class XMLCompilationEngine {
      */
     public void compileTerm() {
 
-        /** Check whether this is a terminal element or keyword constant */
-        if(Grammar.isTerminal(lookahead.getText()) || Grammar.isKeywordConstant(lookahead.getText())) {
+        /** Check whether this is a keyword constant */
+        if(Grammar.isKeywordConstant(lookahead)) {
             output.append("<term>\n");
             match(lookahead.getType());
             output.append("</term>\n");
@@ -580,7 +580,7 @@ public final class XMLCompilationEngine {
         }
 
         /** Handle the case for unary operators */
-        if(Grammar.isUnaryOperator(lookahead.getText())) {
+        if(Grammar.isUnaryOperator(lookahead)) {
             output.append("<term>\n");
             match(TokenType.SYMBOL);
             compileTerm();
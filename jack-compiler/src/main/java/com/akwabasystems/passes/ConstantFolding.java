@@ -0,0 +1,377 @@
+package com.akwabasystems.passes;
+
+
+import com.akwabasystems.ast.ArrayAccess;
+import com.akwabasystems.ast.BinaryExpression;
+import com.akwabasystems.ast.ClassDeclaration;
+import com.akwabasystems.ast.Expression;
+import com.akwabasystems.ast.IntegerConstant;
+import com.akwabasystems.ast.KeywordConstant;
+import com.akwabasystems.ast.Node;
+import com.akwabasystems.ast.SourceSpan;
+import com.akwabasystems.ast.UnaryExpression;
+import com.akwabasystems.ast.VariableReference;
+import com.akwabasystems.model.Symbol;
+
+
+/**
+ * A tree pass that evaluates constant expressions at compile time, and simplifies the identities of the arithmetic
+ * and logical operators.
+ *
+ * Jack integers are 16-bit two's complement values, and the constants are folded with the semantics of the VM: sums,
+ * differences and products wrap around, and a division truncates toward zero. The keyword constants are the values
+ * that the VM pushes for them: -1 for "true", and 0 for "false" and "null". An operation is only folded when it has
+ * the same result on every implementation of the VM:
+ *
+ *     - a division by zero is left to the Math class, which reports it as an error at run time
+ *     - a division of, or by, -32768 is left to the Math class, which cannot take its absolute value
+ *     - a comparison is only folded if the difference of its operands does not overflow, since the Hack translation
+ *       of "lt" and "gt" compares the sign of that difference
+ *
+ * The identities are x + 0, x - 0, x * 1, x / 1, x | 0 and x &amp; -1 (which are x), 0 - x and x * -1 (which are
+ * -x), and x * 0, x - x, x &amp; 0 and x | -1 (which are constants). The identities that drop an operand only apply
+ * if that operand has no side effects. Double negations are removed, chains of additions and subtractions of
+ * constants such as "(x + 1) - 3" are combined into a single one, and the addition of a negative constant becomes a
+ * subtraction, since the VM cannot push a negative constant without negating it.
+ */
+public final class ConstantFolding implements Pass<ClassDeclaration> {
+
+    public static final String NAME = "constant folding";
+
+
+    /**
+     * Returns the name of this pass
+     *
+     * @return the name of this pass
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+
+    /**
+     * Folds the constant expressions of the given class
+     *
+     * @param unit              the syntax tree of the class
+     * @param report            the report in which to record the folded expressions
+     * @return the syntax tree with its constant expressions folded
+     */
+    @Override
+    public ClassDeclaration run(ClassDeclaration unit, PassReport report) {
+        return (ClassDeclaration) unit.accept(new Folder(report));
+    }
+
+
+    /**
+     * Returns the given value as a 16-bit two's complement integer
+     *
+     * @param value             the value to wrap
+     * @return the given value wrapped to 16 bits
+     */
+    static int wrap(int value) {
+        return (short) value;
+    }
+
+
+    /**
+     * Returns the constant value of the given expression, or null if it is not a constant
+     *
+     * @param expression        the expression whose value to return
+     * @return the constant value of the expression, or null if it is not a constant
+     */
+    static Integer valueOf(Expression expression) {
+
+        if(expression instanceof IntegerConstant) {
+            return ((IntegerConstant) expression).getValue();
+        }
+
+        if(expression instanceof KeywordConstant) {
+
+            switch(((KeywordConstant) expression).getKeyword()) {
+
+                case TRUE:
+                    return -1;
+
+                case FALSE:
+                case NULL:
+                    return 0;
+
+                default:
+                    return null;
+
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Returns the value of the given operation on the given constants, or null if it cannot be folded
+     *
+     * @param operator          the operator of the operation
+     * @param left              the left operand
+     * @param right             the right operand
+     * @return the value of the operation, or null if it cannot be folded
+     */
+    static Integer evaluate(Symbol operator, int left, int right) {
+
+        switch(operator) {
+
+            case PLUS:
+                return wrap(left + right);
+
+            case MINUS:
+                return wrap(left - right);
+
+            case MULTIPLY:
+                return wrap(left * right);
+
+            case DIVIDE:
+                boolean isDefined = (right != 0 && left != Short.MIN_VALUE && right != Short.MIN_VALUE);
+                return isDefined? wrap(left / right) : null;
+
+            case AMPERSAND:
+                return left & right;
+
+            case PIPE:
+                return left | right;
+
+            case EQUAL:
+                return (left == right)? -1 : 0;
+
+            case LESS_THAN:
+                return (wrap(left - right) != left - right)? null : (left < right)? -1 : 0;
+
+            case GREATER_THAN:
+                return (wrap(left - right) != left - right)? null : (left > right)? -1 : 0;
+
+            default:
+                return null;
+
+        }
+    }
+
+
+    /**
+     * Returns true if the given expressions have no side effects, and always have the same value; otherwise, returns
+     * false. Only the references to the same variable, or to the same entry of an array, are recognized.
+     *
+     * @param left              the first expression
+     * @param right             the second expression
+     * @return true if the given expressions always have the same value; otherwise, returns false
+     */
+    static boolean isSameValue(Expression left, Expression right) {
+
+        if(left instanceof VariableReference && right instanceof VariableReference) {
+            return ((VariableReference) left).isSameVariableAs((VariableReference) right);
+        }
+
+        if(left instanceof ArrayAccess && right instanceof ArrayAccess) {
+            ArrayAccess leftEntry = (ArrayAccess) left;
+            ArrayAccess rightEntry = (ArrayAccess) right;
+            return leftEntry.getArray().isSameVariableAs(rightEntry.getArray()) && leftEntry.isPure() &&
+                    isSameValue(leftEntry.getIndex(), rightEntry.getIndex());
+        }
+
+        Integer leftValue = valueOf(left);
+        return (leftValue != null && leftValue.equals(valueOf(right)));
+    }
+
+
+    /**
+     * The rewriter of a run of the pass
+     */
+    private static final class Folder extends TreeRewriter {
+
+
+        /**
+         * Constructor. Initializes this rewriter with the report of the run
+         *
+         * @param report            the report in which to record the folded expressions
+         */
+        Folder(PassReport report) {
+            super(report, NAME);
+        }
+
+
+        /**
+         * Folds a unary expression whose operand is a constant, and removes a double negation
+         *
+         * @param node              the unary expression to fold
+         * @return the folded expression
+         */
+        @Override
+        public Node visit(UnaryExpression node) {
+            UnaryExpression expression = (UnaryExpression) super.visit(node);
+            Expression operand = expression.getOperand();
+            Integer value = valueOf(operand);
+
+            if(value != null) {
+                int result = (expression.getOperator() == Symbol.MINUS)? wrap(-value) : ~value;
+                return rewritten(new IntegerConstant(expression.getSpan(), result));
+            }
+
+            if(operand instanceof UnaryExpression && ((UnaryExpression) operand).getOperator() ==
+                    expression.getOperator()) {
+                return rewritten(((UnaryExpression) operand).getOperand());
+            }
+
+            return expression;
+        }
+
+
+        /**
+         * Folds a binary expression whose operands are constants, or simplifies it if it is an identity
+         *
+         * @param node              the binary expression to fold
+         * @return the folded expression
+         */
+        @Override
+        public Node visit(BinaryExpression node) {
+            BinaryExpression expression = (BinaryExpression) super.visit(node);
+            Symbol operator = expression.getOperator();
+            Expression left = expression.getLeft();
+            Expression right = expression.getRight();
+            SourceSpan span = expression.getSpan();
+            Integer leftValue = valueOf(left);
+            Integer rightValue = valueOf(right);
+
+            if(leftValue != null && rightValue != null) {
+                Integer result = evaluate(operator, leftValue, rightValue);
+                return (result != null)? rewritten(new IntegerConstant(span, result)) : expression;
+            }
+
+            if(rightValue != null && (operator == Symbol.PLUS || operator == Symbol.MINUS)) {
+                return foldOffset(expression, (operator == Symbol.PLUS)? rightValue : wrap(-rightValue));
+            }
+
+            if(leftValue != null) {
+                return simplify(expression, operator, right, leftValue, true);
+            }
+
+            if(rightValue != null) {
+                return simplify(expression, operator, left, rightValue, false);
+            }
+
+            if(operator == Symbol.MINUS && isSameValue(left, right)) {
+                return rewritten(new IntegerConstant(span, 0));
+            }
+
+            if((operator == Symbol.AMPERSAND || operator == Symbol.PIPE) && isSameValue(left, right)) {
+                return rewritten(left);
+            }
+
+            return expression;
+        }
+
+
+        /**
+         * Simplifies the addition of a constant offset to an expression (a subtraction being the addition of the
+         * negated constant). The offset is combined with the constant offset of the expression, if any, and the
+         * result is x if the offset is 0, x - c if the offset is a negative -c, and x + c otherwise.
+         *
+         * @param expression        the addition or subtraction to simplify
+         * @param offset            the constant offset added to the left operand
+         * @return the simplified expression
+         */
+        private Expression foldOffset(BinaryExpression expression, int offset) {
+            Expression operand = expression.getLeft();
+            boolean isCombined = false;
+
+            if(operand instanceof BinaryExpression) {
+                BinaryExpression inner = (BinaryExpression) operand;
+                Integer innerValue = valueOf(inner.getRight());
+
+                if(innerValue != null && (inner.getOperator() == Symbol.PLUS || inner.getOperator() == Symbol.MINUS)) {
+                    offset = wrap(offset + ((inner.getOperator() == Symbol.PLUS)? innerValue : -innerValue));
+                    operand = inner.getLeft();
+                    isCombined = true;
+                }
+            }
+
+            if(offset == 0) {
+                return rewritten(operand);
+            }
+
+            Symbol operator = (offset < 0 && offset != Short.MIN_VALUE)? Symbol.MINUS : Symbol.PLUS;
+            int constant = (operator == Symbol.MINUS)? -offset : offset;
+
+            /** x + c and x - c are left as they are, unless their constant was a keyword or a negative constant */
+            boolean isUnchanged = (!isCombined && operator == expression.getOperator() &&
+                    expression.getRight() instanceof IntegerConstant && valueOf(expression.getRight()) == constant);
+
+            if(isUnchanged) {
+                return expression;
+            }
+
+            return rewritten(new BinaryExpression(expression.getSpan(), operator, operand,
+                                                  new IntegerConstant(expression.getRight().getSpan(), constant)));
+        }
+
+
+        /**
+         * Simplifies an operation whose operand is a constant, if it is an identity
+         *
+         * @param expression        the operation to simplify
+         * @param operator          the operator of the operation
+         * @param operand           the operand that is not a constant
+         * @param value             the value of the constant operand
+         * @param isConstantLeft    whether the constant is the left operand
+         * @return the simplified expression, or the given expression if it is not an identity
+         */
+        private Expression simplify(BinaryExpression expression, Symbol operator, Expression operand, int value,
+                                    boolean isConstantLeft) {
+            SourceSpan span = expression.getSpan();
+
+            switch(operator) {
+
+                case PLUS:
+                    return (value == 0)? rewritten(operand) : expression;
+
+                case MINUS:
+                    /** Only 0 - x is left, since x - c is an offset */
+                    return (value == 0)? rewritten(new UnaryExpression(span, Symbol.MINUS, operand)) : expression;
+
+                case MULTIPLY:
+                    if(value == 1) {
+                        return rewritten(operand);
+                    } else if(value == -1) {
+                        return rewritten(new UnaryExpression(span, Symbol.MINUS, operand));
+                    } else if(value == 0 && operand.isPure()) {
+                        return rewritten(new IntegerConstant(span, 0));
+                    }
+
+                    return expression;
+
+                case DIVIDE:
+                    return (value == 1 && !isConstantLeft)? rewritten(operand) : expression;
+
+                case AMPERSAND:
+                    if(value == -1) {
+                        return rewritten(operand);
+                    } else if(value == 0 && operand.isPure()) {
+                        return rewritten(new IntegerConstant(span, 0));
+                    }
+
+                    return expression;
+
+                case PIPE:
+                    if(value == 0) {
+                        return rewritten(operand);
+                    } else if(value == -1 && operand.isPure()) {
+                        return rewritten(new IntegerConstant(span, -1));
+                    }
+
+                    return expression;
+
+                default:
+                    return expression;
+
+            }
+        }
+
+    }
+
+}
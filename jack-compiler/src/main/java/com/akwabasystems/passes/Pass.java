@@ -0,0 +1,34 @@
+package com.akwabasystems.passes;
+
+
+/**
+ * An optimization pass, which transforms a unit of a program (the syntax tree of a class, or a VM function) into an
+ * equivalent one.
+ *
+ * A pass must not modify the given unit: it returns a new unit if it rewrites anything, or the given unit otherwise.
+ * A pass keeps no state between runs, so a single pass can run on several units at the same time. It records the
+ * number of its rewrites in the report of the compilation.
+ *
+ * @param <T>       the type of the units on which the pass runs
+ */
+public interface Pass<T> {
+
+
+    /**
+     * Returns the name of this pass, under which its rewrites are reported
+     *
+     * @return the name of this pass
+     */
+    String getName();
+
+
+    /**
+     * Runs this pass on the given unit, and returns the transformed unit
+     *
+     * @param unit              the unit on which to run the pass
+     * @param report            the report in which to record the rewrites of the pass
+     * @return the transformed unit, or the given unit if the pass rewrote nothing
+     */
+    T run(T unit, PassReport report);
+
+}
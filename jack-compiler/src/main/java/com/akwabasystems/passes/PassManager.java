@@ -0,0 +1,70 @@
+package com.akwabasystems.passes;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Runs a sequence of passes on a unit of a program, each pass on the result of the previous one.
+ *
+ * The passes are added once, and the manager can then run them on any number of units, at the same time if needed,
+ * since the passes keep no state. A manager without passes returns the given unit.
+ *
+ * @param <T>       the type of the units on which the passes run
+ */
+public final class PassManager<T> {
+    private final List<Pass<T>> passes = new ArrayList<>();
+
+
+    /**
+     * Adds the given pass, which runs after the passes that have already been added
+     *
+     * @param pass              the pass to add
+     * @return a reference to this class instance
+     */
+    public PassManager<T> add(Pass<T> pass) {
+        passes.add(pass);
+        return this;
+    }
+
+
+    /**
+     * Returns the passes of this manager, in the order in which they run
+     *
+     * @return the passes of this manager
+     */
+    public List<Pass<T>> getPasses() {
+        return Collections.unmodifiableList(passes);
+    }
+
+
+    /**
+     * Returns true if this manager has no passes; otherwise, returns false
+     *
+     * @return true if this manager has no passes; otherwise, returns false
+     */
+    public boolean isEmpty() {
+        return passes.isEmpty();
+    }
+
+
+    /**
+     * Runs the passes on the given unit, in order, and returns the transformed unit
+     *
+     * @param unit              the unit on which to run the passes
+     * @param report            the report in which the passes record their rewrites
+     * @return the transformed unit
+     */
+    public T run(T unit, PassReport report) {
+        T result = unit;
+
+        for(Pass<T> pass : passes) {
+            result = pass.run(result, report);
+        }
+
+        return result;
+    }
+
+}
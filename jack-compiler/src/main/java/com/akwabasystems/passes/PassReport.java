@@ -0,0 +1,94 @@
+package com.akwabasystems.passes;
+
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * The number of rewrites made by each pass during the compilation of a file, in the order in which the passes first
+ * reported a rewrite
+ */
+public final class PassReport {
+    private final Map<String,Integer> rewrites = new LinkedHashMap<>();
+
+
+    /**
+     * Records the given number of rewrites made by a pass
+     *
+     * @param passName          the name of the pass
+     * @param count             the number of rewrites to record
+     */
+    public void record(String passName, int count) {
+        if(count > 0) {
+            rewrites.merge(passName, count, Integer::sum);
+        }
+    }
+
+
+    /**
+     * Records a rewrite made by a pass
+     *
+     * @param passName          the name of the pass
+     */
+    public void record(String passName) {
+        record(passName, 1);
+    }
+
+
+    /**
+     * Returns the number of rewrites made by the given pass
+     *
+     * @param passName          the name of the pass
+     * @return the number of rewrites made by the given pass
+     */
+    public int getRewriteCount(String passName) {
+        return rewrites.getOrDefault(passName, 0);
+    }
+
+
+    /**
+     * Returns the total number of rewrites made by all the passes
+     *
+     * @return the total number of rewrites
+     */
+    public int getRewriteCount() {
+        return rewrites.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+
+    /**
+     * Returns the number of rewrites of each pass that made at least one, keyed by the name of the pass
+     *
+     * @return the number of rewrites of each pass
+     */
+    public Map<String,Integer> getRewrites() {
+        return Collections.unmodifiableMap(rewrites);
+    }
+
+
+    /**
+     * Returns the string representation of this report (for instance, "constant folding: 12, strength reduction: 3"),
+     * or "no rewrites" if the passes made none
+     *
+     * @return the string representation of this report
+     */
+    @Override
+    public String toString() {
+
+        if(rewrites.isEmpty()) {
+            return "no rewrites";
+        }
+
+        StringBuilder builder = new StringBuilder();
+
+        for(Map.Entry<String,Integer> entry : rewrites.entrySet()) {
+            builder.append(builder.length() > 0? ", " : "")
+                   .append(String.format("%s: %s", entry.getKey(), entry.getValue()));
+        }
+
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,383 @@
+package com.akwabasystems.passes;
+
+
+import com.akwabasystems.ir.Instruction;
+import com.akwabasystems.ir.Opcode;
+import com.akwabasystems.ir.VMFunction;
+import com.akwabasystems.model.ArithmeticCommand;
+import com.akwabasystems.model.Segment;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A code pass that replaces the calls to Math.multiply and Math.divide by a constant with inline sequences of VM
+ * instructions, which take a few dozen instructions instead of hundreds.
+ *
+ * The VM has no shift instruction, so the sequences are made of additions and bitwise operations:
+ *
+ *     - x * c, where c has few enough bits, is computed by doubling and adding x along the bits of c (Horner's
+ *       method): x * 5 (101 in binary) is ((x + x) + (x + x)) + x. This takes one step for each bit of c after the
+ *       highest, and one step for each other bit that is set. A negative constant negates the product.
+ *     - x / 2^k is computed bit by bit: bit i of x (for i >= k) becomes bit i - k of the quotient, and the sign bit
+ *       is extended. A division truncates toward zero, so 2^k - 1 is first added to a negative x. A division by
+ *       -2^k negates the quotient.
+ *     - x - ((x / 2^k) * 2^k), the remainder of a division in Jack, is computed as x &amp; (2^k - 1), minus 2^k if x
+ *       is negative and the remainder is not 0, so that it has the sign of x. The pattern is only recognized when x
+ *       is a variable (a single push instruction).
+ *
+ * The results are those of the Math class: the 16-bit two's complement results of the operations, with quotients
+ * truncated toward zero. The value of x is kept in "temp 1", and the intermediate results in "temp 2": the compiler
+ * only uses "temp 0", and no call is made while these are in use. When x is a single push instruction (a variable or
+ * an array entry), that instruction is repeated instead.
+ */
+public final class StrengthReduction implements Pass<VMFunction> {
+
+    public static final String NAME = "strength reduction";
+    public static final int MAX_MULTIPLY_STEPS = 12;
+    private static final Instruction PUSH_OPERAND = Instruction.push(Segment.TEMP, 1);
+    private static final Instruction POP_OPERAND = Instruction.pop(Segment.TEMP, 1);
+    private static final Instruction PUSH_RESULT = Instruction.push(Segment.TEMP, 2);
+    private static final Instruction POP_RESULT = Instruction.pop(Segment.TEMP, 2);
+    private static final Instruction MULTIPLY = Instruction.call("Math.multiply", 2);
+    private static final Instruction DIVIDE = Instruction.call("Math.divide", 2);
+
+
+    /**
+     * Returns the name of this pass
+     *
+     * @return the name of this pass
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+
+    /**
+     * Replaces the multiplications and divisions by a constant of the given function with inline sequences
+     *
+     * @param unit              the function whose multiplications and divisions to replace
+     * @param report            the report in which to record the replaced operations
+     * @return the function with its multiplications and divisions replaced, or the given function if it has none
+     */
+    @Override
+    public VMFunction run(VMFunction unit, PassReport report) {
+        List<Instruction> instructions = unit.getInstructions();
+        List<Instruction> result = new ArrayList<>(instructions.size());
+        int rewrites = 0;
+
+        for(int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+
+            if(isRemainder(instructions, i)) {
+                remainder(result, instruction, instructions.get(i + 2).getIndex());
+                rewrites++;
+                i += 6;
+            } else if(instruction.equals(MULTIPLY) && reduceMultiplication(result)) {
+                rewrites++;
+            } else if(instruction.equals(DIVIDE) && reduceDivision(result)) {
+                rewrites++;
+            } else {
+                result.add(instruction);
+            }
+        }
+
+        report.record(NAME, rewrites);
+        return (rewrites > 0)? unit.withInstructions(result) : unit;
+    }
+
+
+    /**
+     * Returns the number of steps (doublings and additions) of the multiplication by the given constant
+     *
+     * @param constant          the constant by which to multiply
+     * @return the number of steps of the multiplication
+     */
+    static int multiplySteps(int constant) {
+        int magnitude = Math.abs(constant);
+        return (31 - Integer.numberOfLeadingZeros(magnitude)) + (Integer.bitCount(magnitude) - 1);
+    }
+
+
+    /**
+     * Returns true if the given value is a power of two between 2 and 16384; otherwise, returns false
+     *
+     * @param value             the value to check
+     * @return true if the given value is a power of two between 2 and 16384; otherwise, returns false
+     */
+    static boolean isPowerOfTwo(int value) {
+        return (value >= 2 && value <= (1 << 14) && Integer.bitCount(value) == 1);
+    }
+
+
+    /**
+     * Returns the constant pushed by the instructions at the end of the given code ("push constant c", or "push
+     * constant c" followed by "neg" for a negative constant), or null if the code does not end with a constant
+     *
+     * @param code              the code whose last value to return
+     * @return the constant pushed at the end of the code, or null if there is none
+     */
+    private static Integer constantAtEnd(List<Instruction> code) {
+        int size = code.size();
+
+        if(size >= 1 && code.get(size - 1).isPushConstant()) {
+            return code.get(size - 1).getIndex();
+        }
+
+        boolean isNegated = (size >= 2 && code.get(size - 1).equals(Instruction.arithmetic(ArithmeticCommand.NEG)) &&
+                code.get(size - 2).isPushConstant());
+        return isNegated? -code.get(size - 2).getIndex() : null;
+    }
+
+
+    /**
+     * Returns the number of instructions that push the given constant
+     *
+     * @param constant          the constant
+     * @return the number of instructions that push the constant
+     */
+    private static int constantLength(int constant) {
+        return (constant < 0)? 2 : 1;
+    }
+
+
+    /**
+     * Returns the last instruction of the given code if it is a push that can be repeated to push the same value again
+     * (any push that does not read one of the temp registers); otherwise, returns null
+     *
+     * @param code              the code whose last instruction to return
+     * @return the last instruction of the code if it can be repeated, or null
+     */
+    private static Instruction repeatablePushAtEnd(List<Instruction> code) {
+        Instruction last = code.isEmpty()? null : code.get(code.size() - 1);
+        boolean isRepeatable = (last != null && last.getOpcode() == Opcode.PUSH && last.getSegment() != Segment.TEMP);
+        return isRepeatable? last : null;
+    }
+
+
+    /**
+     * Removes the given number of instructions from the end of the given code
+     *
+     * @param code              the code from which to remove the instructions
+     * @param count             the number of instructions to remove
+     */
+    private static void removeLast(List<Instruction> code, int count) {
+        code.subList(code.size() - count, code.size()).clear();
+    }
+
+
+    /**
+     * Returns true if the instructions at the given position compute the remainder x - ((x / 2^k) * 2^k) of a variable
+     * x; otherwise, returns false
+     *
+     * @param instructions      the instructions of the function
+     * @param position          the position of the first instruction of the pattern
+     * @return true if the instructions at the given position compute a remainder; otherwise, returns false
+     */
+    private static boolean isRemainder(List<Instruction> instructions, int position) {
+
+        if(position + 6 >= instructions.size()) {
+            return false;
+        }
+
+        List<Instruction> pattern = instructions.subList(position, position + 7);
+        Instruction variable = pattern.get(0);
+        boolean isVariable = (variable.getOpcode() == Opcode.PUSH && variable.getSegment() != Segment.TEMP &&
+                !variable.isPushConstant());
+
+        return isVariable && variable.equals(pattern.get(1)) && pattern.get(2).isPushConstant() &&
+                isPowerOfTwo(pattern.get(2).getIndex()) && pattern.get(3).equals(DIVIDE) &&
+                pattern.get(4).equals(pattern.get(2)) && pattern.get(5).equals(MULTIPLY) &&
+                pattern.get(6).equals(Instruction.arithmetic(ArithmeticCommand.SUB));
+    }
+
+
+    /**
+     * Replaces the multiplication whose operands are at the end of the given code, if one of them is a constant whose
+     * multiplication takes at most MAX_MULTIPLY_STEPS steps. A constant left operand is only recognized if the right
+     * operand is a single push instruction. The code is left unchanged if the multiplication is not replaced.
+     *
+     * @param code              the code that pushes the operands of the multiplication
+     * @return true if the multiplication was replaced; otherwise, returns false
+     */
+    private static boolean reduceMultiplication(List<Instruction> code) {
+        Integer constant = constantAtEnd(code);
+        Instruction operand = null;
+
+        if(constant == null) {
+            operand = repeatablePushAtEnd(code);
+            constant = (operand != null)? constantAtEnd(code.subList(0, code.size() - 1)) : null;
+        }
+
+        boolean isReducible = (constant != null && Math.abs(constant) >= 2 && constant != Short.MIN_VALUE &&
+                multiplySteps(constant) <= MAX_MULTIPLY_STEPS);
+
+        if(!isReducible) {
+            return false;
+        }
+
+        removeLast(code, constantLength(constant) + ((operand != null)? 1 : 0));
+
+        if(operand != null) {
+            code.add(operand);
+        }
+
+        multiply(code, repeatablePushAtEnd(code), constant);
+        return true;
+    }
+
+
+    /**
+     * Replaces the division whose operands are at the end of the given code, if the divisor is a power of two or its
+     * negation. The code is left unchanged if the division is not replaced.
+     *
+     * @param code              the code that pushes the operands of the division
+     * @return true if the division was replaced; otherwise, returns false
+     */
+    private static boolean reduceDivision(List<Instruction> code) {
+        Integer constant = constantAtEnd(code);
+
+        if(constant == null || !isPowerOfTwo(Math.abs(constant))) {
+            return false;
+        }
+
+        removeLast(code, constantLength(constant));
+        divide(code, repeatablePushAtEnd(code), constant);
+        return true;
+    }
+
+
+    /**
+     * Appends the multiplication of x, which is at the top of the stack, by the given constant
+     *
+     * @param code              the code to which to append the instructions
+     * @param source            the push instruction of x, or null if it must be kept in "temp 1"
+     * @param constant          the constant by which to multiply
+     */
+    private static void multiply(List<Instruction> code, Instruction source, int constant) {
+        int magnitude = Math.abs(constant);
+        Instruction operand = (source != null)? source : PUSH_OPERAND;
+        boolean isOperandNeeded = (source == null && Integer.bitCount(magnitude) > 1);
+
+        if(isOperandNeeded) {
+            code.add(POP_OPERAND);
+            code.add(PUSH_OPERAND);
+        }
+
+        /** The first doubling adds x to itself; the next ones add the result to itself, through "temp 2" */
+        boolean isFirstDoubling = true;
+
+        for(int bit = 30 - Integer.numberOfLeadingZeros(magnitude); bit >= 0; bit--) {
+
+            if(isFirstDoubling && (source != null || isOperandNeeded)) {
+                code.add(operand);
+            } else {
+                code.add(POP_RESULT);
+                code.add(PUSH_RESULT);
+                code.add(PUSH_RESULT);
+            }
+
+            code.add(Instruction.arithmetic(ArithmeticCommand.ADD));
+            isFirstDoubling = false;
+
+            if((magnitude & (1 << bit)) != 0) {
+                code.add(operand);
+                code.add(Instruction.arithmetic(ArithmeticCommand.ADD));
+            }
+        }
+
+        if(constant < 0) {
+            code.add(Instruction.arithmetic(ArithmeticCommand.NEG));
+        }
+    }
+
+
+    /**
+     * Appends the division of x, which is at the top of the stack, by the given power of two or its negation
+     *
+     * @param code              the code to which to append the instructions
+     * @param source            the push instruction of x, or null if it is not a single push
+     * @param constant          the power of two (or its negation) by which to divide
+     */
+    private static void divide(List<Instruction> code, Instruction source, int constant) {
+        int divisor = Math.abs(constant);
+        int shift = Integer.numberOfTrailingZeros(divisor);
+
+        /** t = x + ((x < 0) & (2^k - 1)), so that the quotient is truncated toward zero */
+        if(source != null) {
+            code.add(source);
+        } else {
+            code.add(POP_OPERAND);
+            code.add(PUSH_OPERAND);
+            code.add(PUSH_OPERAND);
+        }
+
+        code.add(Instruction.pushConstant(0));
+        code.add(Instruction.arithmetic(ArithmeticCommand.LT));
+        code.add(Instruction.pushConstant(divisor - 1));
+        code.add(Instruction.arithmetic(ArithmeticCommand.AND));
+        code.add(Instruction.arithmetic(ArithmeticCommand.ADD));
+        code.add(POP_OPERAND);
+
+        /** Bit i of t becomes bit i - k of the quotient: ((t & 2^i) > 0) & 2^(i - k) */
+        for(int bit = shift; bit < 15; bit++) {
+            code.add(PUSH_OPERAND);
+            code.add(Instruction.pushConstant(1 << bit));
+            code.add(Instruction.arithmetic(ArithmeticCommand.AND));
+            code.add(Instruction.pushConstant(0));
+            code.add(Instruction.arithmetic(ArithmeticCommand.GT));
+            code.add(Instruction.pushConstant(1 << (bit - shift)));
+            code.add(Instruction.arithmetic(ArithmeticCommand.AND));
+
+            if(bit > shift) {
+                code.add(Instruction.arithmetic(ArithmeticCommand.ADD));
+            }
+        }
+
+        /** The sign bit is extended: (t < 0) & -2^(15 - k) */
+        code.add(PUSH_OPERAND);
+        code.add(Instruction.pushConstant(0));
+        code.add(Instruction.arithmetic(ArithmeticCommand.LT));
+        code.add(Instruction.pushConstant(1 << (15 - shift)));
+        code.add(Instruction.arithmetic(ArithmeticCommand.NEG));
+        code.add(Instruction.arithmetic(ArithmeticCommand.AND));
+        code.add(Instruction.arithmetic(ArithmeticCommand.ADD));
+
+        if(constant < 0) {
+            code.add(Instruction.arithmetic(ArithmeticCommand.NEG));
+        }
+    }
+
+
+    /**
+     * Appends the remainder of the division of x by the given power of two, with the sign of x:
+     *
+     *     r = x & (2^k - 1)
+     *     r + ((x < 0) & ~(r = 0) & -2^k)
+     *
+     * @param code              the code to which to append the instructions
+     * @param variable          the push instruction of x
+     * @param divisor           the power of two by which to divide
+     */
+    private static void remainder(List<Instruction> code, Instruction variable, int divisor) {
+        code.add(variable);
+        code.add(Instruction.pushConstant(divisor - 1));
+        code.add(Instruction.arithmetic(ArithmeticCommand.AND));
+        code.add(POP_OPERAND);
+        code.add(PUSH_OPERAND);
+        code.add(variable);
+        code.add(Instruction.pushConstant(0));
+        code.add(Instruction.arithmetic(ArithmeticCommand.LT));
+        code.add(PUSH_OPERAND);
+        code.add(Instruction.pushConstant(0));
+        code.add(Instruction.arithmetic(ArithmeticCommand.EQ));
+        code.add(Instruction.arithmetic(ArithmeticCommand.NOT));
+        code.add(Instruction.arithmetic(ArithmeticCommand.AND));
+        code.add(Instruction.pushConstant(divisor));
+        code.add(Instruction.arithmetic(ArithmeticCommand.NEG));
+        code.add(Instruction.arithmetic(ArithmeticCommand.AND));
+        code.add(Instruction.arithmetic(ArithmeticCommand.ADD));
+    }
+
+}
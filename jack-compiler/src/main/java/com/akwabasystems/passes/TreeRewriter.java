@@ -0,0 +1,319 @@
+package com.akwabasystems.passes;
+
+
+import com.akwabasystems.ast.ArrayAccess;
+import com.akwabasystems.ast.BinaryExpression;
+import com.akwabasystems.ast.ClassDeclaration;
+import com.akwabasystems.ast.DoStatement;
+import com.akwabasystems.ast.Expression;
+import com.akwabasystems.ast.IfStatement;
+import com.akwabasystems.ast.IntegerConstant;
+import com.akwabasystems.ast.KeywordConstant;
+import com.akwabasystems.ast.LetStatement;
+import com.akwabasystems.ast.Node;
+import com.akwabasystems.ast.ReturnStatement;
+import com.akwabasystems.ast.Statement;
+import com.akwabasystems.ast.StringConstant;
+import com.akwabasystems.ast.SubroutineCall;
+import com.akwabasystems.ast.SubroutineDeclaration;
+import com.akwabasystems.ast.UnaryExpression;
+import com.akwabasystems.ast.VariableReference;
+import com.akwabasystems.ast.Visitor;
+import com.akwabasystems.ast.WhileStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A visitor that rewrites a syntax tree bottom-up: each node is rebuilt from the rewritten nodes of its children, and
+ * is returned unchanged if none of them changed, so a tree that is not rewritten is returned as is.
+ *
+ * This base class rewrites nothing. A pass overrides the methods of the nodes it rewrites, and calls the method of the
+ * base class to rewrite their children first. Since a rewriter keeps the report of its run, a pass creates one for
+ * each run.
+ */
+public abstract class TreeRewriter implements Visitor<Node> {
+    private final PassReport report;
+    private final String passName;
+
+
+    /**
+     * Constructor. Initializes this rewriter with the report in which to record the rewrites of its pass
+     *
+     * @param report            the report in which to record the rewrites
+     * @param passName          the name of the pass under which the rewrites are recorded
+     */
+    protected TreeRewriter(PassReport report, String passName) {
+        this.report = report;
+        this.passName = passName;
+    }
+
+
+    /**
+     * Records a rewrite of the pass, and returns the given node
+     *
+     * @param <N>               the type of the node
+     * @param node              the node that replaces the rewritten one
+     * @return the given node
+     */
+    protected <N extends Node> N rewritten(N node) {
+        report.record(passName);
+        return node;
+    }
+
+
+    /**
+     * Rewrites the given expression
+     *
+     * @param expression        the expression to rewrite
+     * @return the rewritten expression, or null if the given expression is null
+     */
+    protected Expression rewrite(Expression expression) {
+        return (expression != null)? (Expression) expression.accept(this) : null;
+    }
+
+
+    /**
+     * Rewrites the given statements
+     *
+     * @param statements        the statements to rewrite
+     * @return the rewritten statements, or the given list if none of them was rewritten
+     */
+    protected List<Statement> rewrite(List<Statement> statements) {
+        List<Statement> result = new ArrayList<>(statements.size());
+        boolean isChanged = false;
+
+        for(Statement statement : statements) {
+            Statement rewrittenStatement = (Statement) statement.accept(this);
+            isChanged |= (rewrittenStatement != statement);
+            result.add(rewrittenStatement);
+        }
+
+        return isChanged? result : statements;
+    }
+
+
+    /**
+     * Rewrites the subroutines of a class
+     *
+     * @param node              the class declaration to rewrite
+     * @return the rewritten class declaration
+     */
+    @Override
+    public Node visit(ClassDeclaration node) {
+        List<SubroutineDeclaration> subroutines = new ArrayList<>();
+        boolean isChanged = false;
+
+        for(SubroutineDeclaration subroutine : node.getSubroutines()) {
+            SubroutineDeclaration rewrittenSubroutine = (SubroutineDeclaration) subroutine.accept(this);
+            isChanged |= (rewrittenSubroutine != subroutine);
+            subroutines.add(rewrittenSubroutine);
+        }
+
+        return isChanged? node.withSubroutines(subroutines) : node;
+    }
+
+
+    /**
+     * Rewrites the statements of a subroutine
+     *
+     * @param node              the subroutine declaration to rewrite
+     * @return the rewritten subroutine declaration
+     */
+    @Override
+    public Node visit(SubroutineDeclaration node) {
+        List<Statement> statements = rewrite(node.getStatements());
+        return (statements != node.getStatements())? node.withStatements(statements) : node;
+    }
+
+
+    /**
+     * Rewrites the index and the value of a let statement
+     *
+     * @param node              the let statement to rewrite
+     * @return the rewritten let statement
+     */
+    @Override
+    public Node visit(LetStatement node) {
+        Expression index = rewrite(node.getIndex());
+        Expression value = rewrite(node.getValue());
+
+        return (index != node.getIndex() || value != node.getValue())?
+                new LetStatement(node.getSpan(), node.getTarget(), index, value) : node;
+    }
+
+
+    /**
+     * Rewrites the condition and the clauses of an if statement
+     *
+     * @param node              the if statement to rewrite
+     * @return the rewritten if statement
+     */
+    @Override
+    public Node visit(IfStatement node) {
+        Expression condition = rewrite(node.getCondition());
+        List<Statement> thenStatements = rewrite(node.getThenStatements());
+        List<Statement> elseStatements = rewrite(node.getElseStatements());
+
+        boolean isChanged = (condition != node.getCondition() || thenStatements != node.getThenStatements() ||
+                elseStatements != node.getElseStatements());
+        return isChanged? new IfStatement(node.getSpan(), condition, thenStatements, elseStatements) : node;
+    }
+
+
+    /**
+     * Rewrites the condition and the body of a while statement
+     *
+     * @param node              the while statement to rewrite
+     * @return the rewritten while statement
+     */
+    @Override
+    public Node visit(WhileStatement node) {
+        Expression condition = rewrite(node.getCondition());
+        List<Statement> statements = rewrite(node.getStatements());
+
+        return (condition != node.getCondition() || statements != node.getStatements())?
+                new WhileStatement(node.getSpan(), condition, statements) : node;
+    }
+
+
+    /**
+     * Rewrites the call of a do statement
+     *
+     * @param node              the do statement to rewrite
+     * @return the rewritten do statement
+     */
+    @Override
+    public Node visit(DoStatement node) {
+        SubroutineCall call = (SubroutineCall) node.getCall().accept(this);
+        return (call != node.getCall())? new DoStatement(node.getSpan(), call) : node;
+    }
+
+
+    /**
+     * Rewrites the value of a return statement
+     *
+     * @param node              the return statement to rewrite
+     * @return the rewritten return statement
+     */
+    @Override
+    public Node visit(ReturnStatement node) {
+        Expression value = rewrite(node.getValue());
+        return (value != node.getValue())? new ReturnStatement(node.getSpan(), value) : node;
+    }
+
+
+    /**
+     * Returns an integer constant, which has no children
+     *
+     * @param node              the integer constant to rewrite
+     * @return the given integer constant
+     */
+    @Override
+    public Node visit(IntegerConstant node) {
+        return node;
+    }
+
+
+    /**
+     * Returns a string constant, which has no children
+     *
+     * @param node              the string constant to rewrite
+     * @return the given string constant
+     */
+    @Override
+    public Node visit(StringConstant node) {
+        return node;
+    }
+
+
+    /**
+     * Returns a keyword constant, which has no children
+     *
+     * @param node              the keyword constant to rewrite
+     * @return the given keyword constant
+     */
+    @Override
+    public Node visit(KeywordConstant node) {
+        return node;
+    }
+
+
+    /**
+     * Returns a reference to a variable, which has no children
+     *
+     * @param node              the reference to rewrite
+     * @return the given reference
+     */
+    @Override
+    public Node visit(VariableReference node) {
+        return node;
+    }
+
+
+    /**
+     * Rewrites the index of an array entry
+     *
+     * @param node              the array entry to rewrite
+     * @return the rewritten array entry
+     */
+    @Override
+    public Node visit(ArrayAccess node) {
+        Expression index = rewrite(node.getIndex());
+        return (index != node.getIndex())? new ArrayAccess(node.getSpan(), node.getArray(), index) : node;
+    }
+
+
+    /**
+     * Rewrites the operand of a unary expression
+     *
+     * @param node              the unary expression to rewrite
+     * @return the rewritten unary expression
+     */
+    @Override
+    public Node visit(UnaryExpression node) {
+        Expression operand = rewrite(node.getOperand());
+        return (operand != node.getOperand())?
+                new UnaryExpression(node.getSpan(), node.getOperator(), operand) : node;
+    }
+
+
+    /**
+     * Rewrites the operands of a binary expression
+     *
+     * @param node              the binary expression to rewrite
+     * @return the rewritten binary expression
+     */
+    @Override
+    public Node visit(BinaryExpression node) {
+        Expression left = rewrite(node.getLeft());
+        Expression right = rewrite(node.getRight());
+
+        return (left != node.getLeft() || right != node.getRight())?
+                new BinaryExpression(node.getSpan(), node.getOperator(), left, right) : node;
+    }
+
+
+    /**
+     * Rewrites the receiver and the arguments of a subroutine call
+     *
+     * @param node              the subroutine call to rewrite
+     * @return the rewritten subroutine call
+     */
+    @Override
+    public Node visit(SubroutineCall node) {
+        Expression receiver = rewrite(node.getReceiver());
+        List<Expression> arguments = new ArrayList<>();
+        boolean isChanged = (receiver != node.getReceiver());
+
+        for(Expression argument : node.getArguments()) {
+            Expression rewrittenArgument = rewrite(argument);
+            isChanged |= (rewrittenArgument != argument);
+            arguments.add(rewrittenArgument);
+        }
+
+        return isChanged? new SubroutineCall(node.getSpan(), receiver, node.getFunctionName(), arguments,
+                                             node.getArgumentCount()) : node;
+    }
+
+}
@@ -1,13 +1,22 @@
 
 package com.akwabasystems.runtime;
 
+import com.akwabasystems.ast.ClassDeclaration;
+import com.akwabasystems.ir.VMFunction;
 import com.akwabasystems.model.OutputType;
-import com.akwabasystems.parsing.JackAnalyzer;
+import com.akwabasystems.parsing.ProjectCompiler;
+import com.akwabasystems.passes.ConstantFolding;
+import com.akwabasystems.passes.PassManager;
+import com.akwabasystems.passes.StrengthReduction;
 import java.io.File;
+import java.io.IOException;
 import org.apache.commons.lang.StringUtils;
-import com.akwabasystems.parsing.Analyzer;
 import com.akwabasystems.utils.VMUtils;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 
@@ -17,15 +26,28 @@ import java.util.stream.Stream;
  * from the code based on the command-line arguments.
  * 
  * Usage:
- *          java -jar JackCompiler-jar-with-dependencies [--xml-tokens] [--xml-tree] <fileOrDirectory>
+ *          java -jar JackCompiler-jar-with-dependencies [--xml-tokens] [--xml-tree] [--vmb] [--watch]
+ *                  [--threads=n] [--fold-constants] [--reduce-strength] <fileOrDirectory>
  * 
  * Options:
  *      --xml-tokens        Outputs an XML file with the tokens contained in the input code
  *      --xml-tree          Outputs an XML file with the syntax tree of the input code
  *      --code-gen          Generates VM code from the source files (default option)
+ *      --vmb               Generates VM code in the binary format (".vmb" files) that the VM translator loads
+ *                          without parsing
+ *      --watch             Keeps running after the first compilation, and recompiles each ".jack" file whenever it
+ *                          changes, printing the time of each compilation
+ *      --threads=n         The maximum number of files to compile at the same time (default: one per processor)
+ *      --fold-constants    Evaluates the constant expressions at compile time, and simplifies the arithmetic and
+ *                          logical identities (x + 0, x * 1, x * 0, x - x, etc). The number of rewrites is reported
+ *                          for each file
+ *      --reduce-strength   Replaces the multiplications by small constants, and the divisions by powers of two, with
+ *                          inline sequences of additions and bitwise operations instead of calls to the Math class.
+ *                          The number of rewrites is reported for each file
  * 
  *      fileOrDirectory     The file or directory to parse. Each ".jack" file will be parsed into its equivalent
- *                          ".xml" or ".vm" output
+ *                          ".xml", ".vm" or ".vmb" output. The time spent on each file, and the errors that stopped
+ *                          the compilation of a file, are reported once all the files have been compiled
  * 
  */
 public final class JackMain {
@@ -34,6 +56,15 @@ public final class JackMain {
     private static final String XML_TOKENS_FLAG = "--xml-tokens";
     private static final String XML_TREE_FLAG = "--xml-tree";
     private static final String CODE_GEN_FLAG = "--code-gen";
+    private static final String BINARY_CODE_GEN_FLAG = "--vmb";
+    private static final String WATCH_FLAG = "--watch";
+    private static final String THREADS_FLAG = "--threads=";
+    private static final String FOLD_CONSTANTS_FLAG = "--fold-constants";
+    private static final String REDUCE_STRENGTH_FLAG = "--reduce-strength";
+    private static boolean shouldWatch = false;
+    private static final PassManager<ClassDeclaration> treePasses = new PassManager<>();
+    private static final PassManager<VMFunction> codePasses = new PassManager<>();
+    private static int threads = ProjectCompiler.DEFAULT_THREADS;
 
 
     /**
@@ -48,34 +79,62 @@ public final class JackMain {
         
         if(args.length < 1) {
             StringBuilder buffer = new StringBuilder("\nUsage:\n");
-            buffer.append("\tjava -jar JackCompiler-jar-with-dependencies [--xml-tokens] [--xml-tree] <fileOrDirectory>\n")
+            buffer.append("\tjava -jar JackCompiler-jar-with-dependencies [--xml-tokens] [--xml-tree] [--vmb] [--watch] ")
+                  .append("<fileOrDirectory>\n")
                   .append("\n")
                   .append("Options:\n")
                   .append("\t--xml-tokens\t\tOutputs an XML file with the tokens contained in the input code\n")
                   .append("\t--xml-tree\t\tOutputs an XML file with the syntax tree of the input code\n")
                   .append("\t--code-gen\t\tGenerates VM code from the source files (default option)\n")
-                  .append("\t\t\t\tBoth options are mutually exclusive\n")
+                  .append("\t--vmb\t\t\tGenerates VM code in the binary format (\".vmb\" files)\n")
+                  .append("\t\t\t\tThese options are mutually exclusive\n")
+                  .append("\t--watch\t\t\tRecompiles each \".jack\" file whenever it changes\n")
+                  .append("\t--threads=n\t\tThe maximum number of files to compile at the same time\n")
+                  .append("\t--fold-constants\tEvaluates the constant expressions at compile time\n")
+                  .append("\t--reduce-strength\tInlines the multiplications and divisions by constants\n")
                   .append("\t<fileOrDirectory>\tThe file or directory to parse. Each \".jack\" file will be parsed \n")
-                  .append("\t\t\t\tinto its equivalent \".xml\" or \".vm\" output.\n");
+                  .append("\t\t\t\tinto its equivalent \".xml\", \".vm\" or \".vmb\" output.\n");
             System.out.println(buffer.toString());
             return;
         }
 
-        if(args.length == 2) {
+        if(args.length >= 2) {
             boolean shouldOutputXMLTokens = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(XML_TOKENS_FLAG));
             boolean shouldOutputXMLTree = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(XML_TREE_FLAG));
+            boolean shouldOutputBinary = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(BINARY_CODE_GEN_FLAG));
+            shouldWatch = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(WATCH_FLAG));
+            threads = Stream.of(args)
+                            .filter((arg) -> arg.toLowerCase().startsWith(THREADS_FLAG))
+                            .map((arg) -> Integer.parseInt(arg.substring(THREADS_FLAG.length())))
+                            .findFirst()
+                            .orElse(ProjectCompiler.DEFAULT_THREADS);
+
+            if(Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(FOLD_CONSTANTS_FLAG))) {
+                treePasses.add(new ConstantFolding());
+            }
+
+            if(Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(REDUCE_STRENGTH_FLAG))) {
+                codePasses.add(new StrengthReduction());
+            }
             
             if(shouldOutputXMLTokens) {
                 outputType = OutputType.XML_TOKENS;
             } else if(shouldOutputXMLTree) {
                 outputType = OutputType.XML_TREE;
+            } else if(shouldOutputBinary) {
+                outputType = OutputType.BINARY_CODE_GENERATION;
             }
 
             inputFileArgument = Stream.of(args)
                                     .filter((arg) -> {
                                         return !(arg.equalsIgnoreCase(XML_TOKENS_FLAG) || 
                                                 arg.equalsIgnoreCase(XML_TREE_FLAG) || 
-                                                arg.equalsIgnoreCase(CODE_GEN_FLAG));
+                                                arg.equalsIgnoreCase(CODE_GEN_FLAG) ||
+                                                arg.equalsIgnoreCase(BINARY_CODE_GEN_FLAG) ||
+                                                arg.equalsIgnoreCase(WATCH_FLAG) ||
+                                                arg.equalsIgnoreCase(FOLD_CONSTANTS_FLAG) ||
+                                                arg.equalsIgnoreCase(REDUCE_STRENGTH_FLAG) ||
+                                                arg.toLowerCase().startsWith(THREADS_FLAG));
                                      })
                                     .findFirst()
                                     .orElse(null);
@@ -110,16 +169,69 @@ public final class JackMain {
 
         /** Now process each ".jack" file or a directory of such files */
         if (inputFile.isDirectory()) {
-            Stream.of(inputFile.listFiles())
-                .filter((File file) -> VMUtils.hasExtension(file, "jack"))
-                .forEach((File file) -> {
-                    Analyzer analyzer = new JackAnalyzer();
-                    analyzer.setOutputType(outputType).parse(file);
-                });
+            File[] files = inputFile.listFiles();
+            Arrays.sort(files);
+            compile(Stream.of(files)
+                          .filter((File file) -> VMUtils.hasExtension(file, "jack"))
+                          .collect(Collectors.toList()));
         } else {
-            Analyzer analyzer = new JackAnalyzer();
-            analyzer.setOutputType(outputType).parse(inputFile);
+            compile(Arrays.asList(inputFile));
         }
+
+        if(shouldWatch) {
+            watch(inputFile);
+        }
+    }
+
+
+    /**
+     * Compiles the given files with a project compiler, then prints the time spent on each file and the total time
+     * 
+     * @param files             the files to compile
+     * @throws InterruptedException if the current thread is interrupted while waiting for the files
+     */
+    private static void compile(List<File> files) throws InterruptedException {
+        long startTime = System.nanoTime();
+        List<ProjectCompiler.Result> results = new ProjectCompiler().setOutputType(outputType)
+                                                                    .setThreads(threads)
+                                                                    .setTreePasses(treePasses)
+                                                                    .setCodePasses(codePasses)
+                                                                    .compile(files);
+
+        System.out.print(ProjectCompiler.report(results, System.nanoTime() - startTime));
+    }
+
+
+    /**
+     * Watches the directory of the given input file, and recompiles each of its ".jack" files (or only the input
+     * file, if it is not a directory) whenever it changes. The JVM stays warm across compilations.
+     * 
+     * @param inputFile         the input file to watch
+     * @throws IOException if the directory of the input file cannot be watched
+     * @throws InterruptedException if the current thread is interrupted while waiting for changes
+     */
+    private static void watch(final File inputFile) throws IOException, InterruptedException {
+        File absoluteFile = inputFile.getAbsoluteFile();
+        File directory = absoluteFile.isDirectory()? absoluteFile : absoluteFile.getParentFile();
+        System.out.printf("Watching '%s' for changes (press Ctrl+C to stop)\n", directory);
+
+        new SourceWatcher(directory, "jack").watch((Set<File> changedFiles) -> {
+            List<File> files = changedFiles.stream()
+                                           .filter((file) -> absoluteFile.isDirectory() || file.equals(absoluteFile))
+                                           .filter(File::exists)
+                                           .collect(Collectors.toList());
+
+            /** Syntax errors are reported for their own file, and do not stop the watcher */
+            if(!files.isEmpty()) {
+                try {
+
+                    compile(files);
+
+                } catch(InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
     }
 
 }
@@ -2,7 +2,6 @@
 package com.akwabasystems.utils;
 
 import java.io.File;
-import java.util.regex.Pattern;
 import org.apache.commons.lang.StringUtils;
 
 
@@ -13,15 +12,46 @@ public class VMUtils {
     
     
     /**
-     * Removes all comments from the given command
+     * Removes all comments from the given command: line comments ("//" up to the end of the line) and block comments
+     * (from "/*" up to the first end of comment). A block comment that is not closed is left in the command. The
+     * command is scanned once, without regular expressions, since every source file goes through this method.
      * 
      * @param command           the command from which to remove the comments
      * @return a version of the given command stripped of all comments
      */
     public static String stripComments(String command) {
-        Pattern pattern = Pattern.compile("\\/\\/[^\n\r]*|/\\*([^*]|[\n\r]|(\\*+([^*/]|[\\r\\n])))*\\*+/", 
-                Pattern.MULTILINE);
-        return command.replaceAll(pattern.pattern(), "").trim();
+        StringBuilder builder = new StringBuilder(command.length());
+        int length = command.length();
+        int index = 0;
+
+        while(index < length) {
+            char c = command.charAt(index);
+            char next = (index + 1 < length)? command.charAt(index + 1) : 0;
+
+            if(c == '/' && next == '/') {
+                index += 2;
+
+                while(index < length && command.charAt(index) != '\n' && command.charAt(index) != '\r') {
+                    index++;
+                }
+
+                continue;
+            }
+
+            if(c == '/' && next == '*') {
+                int end = command.indexOf("*/", index + 2);
+
+                if(end >= 0) {
+                    index = end + 2;
+                    continue;
+                }
+            }
+
+            builder.append(c);
+            index++;
+        }
+
+        return builder.toString().trim();
     }
     
     
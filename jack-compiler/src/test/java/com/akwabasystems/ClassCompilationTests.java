@@ -2,8 +2,22 @@
 package com.akwabasystems;
 
 
+import com.akwabasystems.model.ClassSignature;
+import com.akwabasystems.model.Keyword;
+import com.akwabasystems.model.SubroutineSignature;
+import com.akwabasystems.parsing.JackAnalyzer;
+import com.akwabasystems.parsing.JackTokenizer;
+import com.akwabasystems.parsing.ProjectCompiler;
+import com.akwabasystems.parsing.SignatureIndex;
+import com.akwabasystems.parsing.SignatureScanner;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -13,6 +27,20 @@ import junit.framework.TestCase;
 public class ClassCompilationTests extends TestCase {
     private static final String REGEXP = "(?:function|constructor|method)\\s+(void|\\w+)\\s+([a-z]\\w+)\\s*\\(([^\\)]*)\\)";
     private static Pattern pattern = Pattern.compile(REGEXP);
+
+    private SourceDirectory sources;
+
+
+    @Override
+    protected void setUp() throws IOException {
+        sources = new SourceDirectory("program");
+    }
+
+
+    @Override
+    protected void tearDown() {
+        sources.delete();
+    }
     
 
     @Test
@@ -66,4 +94,155 @@ public class ClassCompilationTests extends TestCase {
         assertEquals("The function should have 3 arguments", 3, arguments.length);
     }
 
+
+    @Test
+    public void testSignatureScanning() {
+        String input = "class Game {\n"
+                     + "  field int score;\n"
+                     + "  constructor Game new(int Score /* initial score */, boolean visible) {\n"
+                     + "    if (visible) { let score = Score; }\n"
+                     + "    return this;\n"
+                     + "  }\n"
+                     + "  method void Run() { do Output.printString(\"function void fake()\"); return; }\n"
+                     + "  function Array f(Array a,\n"
+                     + "                   char c) { while (true) { } return a; }\n"
+                     + "}";
+
+        List<SubroutineSignature> signatures = new SignatureScanner(new JackTokenizer(input)).scan();
+        assertEquals(3, signatures.size());
+
+        SubroutineSignature constructor = signatures.get(0);
+        assertTrue(constructor.isConstructor());
+        assertEquals("Game", constructor.getReturnType());
+        assertEquals("Game.new", constructor.getQualifiedName());
+        assertEquals(Arrays.asList("int", "boolean"), constructor.getParameterTypes());
+
+        SubroutineSignature method = signatures.get(1);
+        assertTrue(method.isMethod());
+        assertEquals("Run", method.getName());
+        assertEquals(0, method.getArgumentCount());
+
+        SubroutineSignature function = signatures.get(2);
+        assertEquals(Keyword.FUNCTION, function.getKind());
+        assertEquals("f", function.getName());
+        assertEquals("Array", function.getReturnType());
+        assertEquals(Arrays.asList("Array", "char"), function.getParameterTypes());
+    }
+
+
+    @Test
+    public void testCallsToSubroutinesNotMatchedByPattern() throws IOException {
+        File file = sources.write("Main", "class Main { function void main() { do f(1); do Main.Run(); return; } "
+                                          + "function void f(int x) { return; } function void Run() { return; } }");
+
+        new JackAnalyzer().compile(file);
+        String output = sources.readOutput(file);
+
+        /** One-letter and capitalized names were not matched by the declaration pattern */
+        assertTrue(output.contains("push constant 1\ncall Main.f 1\n"));
+        assertTrue(output.contains("call Main.Run 0\n"));
+    }
+
+
+    @Test
+    public void testClassSignatureScanning() {
+        String input = "class Ball {\n"
+                     + "  field int x, y;\n"
+                     + "  static int count;\n"
+                     + "  field Array trail;\n"
+                     + "  method void move(int dx, int dy) { var int z; return; }\n"
+                     + "}";
+
+        ClassSignature signature = new SignatureScanner(new JackTokenizer(input)).scanClass();
+        assertEquals("Ball", signature.getName());
+        assertEquals(3, signature.getFieldCount());
+        assertEquals(1, signature.getSubroutines().size());
+        assertEquals(2, signature.getSubroutine("move").getArgumentCount());
+        assertNull(signature.getSubroutine("draw"));
+
+        SignatureIndex index = new SignatureIndex(Collections.singletonList(signature));
+        assertEquals(1, index.size());
+        assertTrue(index.lookup("Ball", "move").isMethod());
+        assertNull(index.lookup("Ball", "draw"));
+        assertNull(index.lookup("Output", "println"));
+    }
+
+
+    @Test
+    public void testCallsAreResolvedAgainstTheProgram() throws Exception {
+        String ball = "class Ball { field int x; "
+                    + "constructor Ball new() { let x = 0; return this; } "
+                    + "method int x() { return x; } "
+                    + "method void move(int dx) { let x = x + dx; return; } "
+                    + "function int count() { return 1; } }";
+        String main = "class Main { function void main() { var Ball ball; var int n; "
+                    + "let ball = Ball.new(); do ball.move(2); let n = ball.x() + Ball.count(); "
+                    + "do Output.printInt(n); return; } }";
+
+        String output = compileProgram(ball, main).get(1);
+        assertTrue(output.contains("call Ball.new 0\n"));
+        assertTrue(output.contains("push local 0\npush constant 2\ncall Ball.move 2\n"));
+        assertTrue(output.contains("push local 0\ncall Ball.x 1\ncall Ball.count 0\nadd\n"));
+    }
+
+
+    @Test
+    public void testInvalidCallsAreReported() throws Exception {
+        String ball = "class Ball { method void move(int dx) { return; } function int count() { return 1; } }";
+        String[] calls = {
+            "do Ball.move(1);",
+            "do ball.count();",
+            "do ball.move();",
+            "do Ball.bounce();"
+        };
+        String[] errors = {
+            "Method 'Ball.move' must be called on an object",
+            "'Ball.count' is not a method",
+            "'Ball.move' expects 1 arguments, but 0 were given",
+            "Subroutine 'Ball.bounce' not found"
+        };
+
+        for(int i = 0; i < calls.length; i++) {
+            String main = String.format("class Main { function void main() { var Ball ball; %s return; } }", calls[i]);
+            List<String> output = compileProgram(ball, main);
+            assertEquals(errors[i], output.get(1).trim());
+        }
+    }
+
+
+    @Test
+    public void testMethodCallInExpressionPassesThis() throws Exception {
+        String counter = "class Counter { field int count; "
+                       + "method int next(int step) { return count + step; } "
+                       + "method int twice() { return next(1) + next(2); } }";
+
+        String output = compileProgram(counter).get(0);
+        assertTrue(output.contains("push pointer 0\npush constant 1\ncall Counter.next 2\n"));
+        assertTrue(output.contains("push pointer 0\npush constant 2\ncall Counter.next 2\n"));
+    }
+
+
+    /**
+     * Compiles the given classes as one program, and returns the generated code of each class, or the message of the
+     * error that stopped its compilation
+     *
+     * @param classes           the code of the classes of the program
+     * @return the generated code of each class, or the message of its error
+     */
+    private List<String> compileProgram(String... classes) throws Exception {
+        List<File> files = new ArrayList<>();
+
+        for(String code : classes) {
+            files.add(sources.write(code.split("\\s+")[1], code));
+        }
+
+        List<String> outputs = new ArrayList<>();
+
+        for(ProjectCompiler.Result result : new ProjectCompiler().compile(files)) {
+            outputs.add(result.isSuccessful()? sources.readOutput(result.getFile()) : result.getError().getMessage());
+        }
+
+        return outputs;
+    }
+
 }
@@ -0,0 +1,112 @@
+package com.akwabasystems;
+
+import com.akwabasystems.model.StandardLibrary;
+import com.akwabasystems.parsing.CompilationContext;
+import com.akwabasystems.parsing.ProjectCompiler;
+import com.akwabasystems.parsing.SignatureIndex;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+
+
+public class CompilationContextTests extends TestCase {
+
+    private SourceDirectory sources;
+
+
+    @Override
+    protected void setUp() throws IOException {
+        sources = new SourceDirectory("context");
+    }
+
+
+    @Override
+    protected void tearDown() {
+        sources.delete();
+    }
+
+
+    public void testEachContextHasItsOwnPassReport() {
+        CompilationContext context = new CompilationContext();
+        CompilationContext otherContext = new CompilationContext();
+
+        context.getPassReport().record("folding", 2);
+        context.getPassReport().record("folding");
+
+        assertEquals(context.getPassReport().getRewriteCount("folding"), 3);
+        assertEquals(otherContext.getPassReport().getRewriteCount(), 0);
+        assertEquals(otherContext.getPassReport().toString(), "no rewrites");
+    }
+
+
+    public void testDefaultContextHasNoPasses() {
+        CompilationContext context = new CompilationContext();
+
+        assertTrue(context.getTreePasses().isEmpty());
+        assertTrue(context.getCodePasses().isEmpty());
+        assertSame(context.getSignatureIndex(), SignatureIndex.EMPTY);
+    }
+
+
+    public void testNestedCallsHaveTheirOwnArgumentCount() throws Exception {
+        String code = compile("class Main { function void main() { do Foo.f(Foo.g(1, 2), 3); "
+                              + "do Foo.f(4, Foo.g(5, 6, 7)); do Output.printInt(Math.max(1, Foo.h())); return; } }");
+
+        assertTrue(code.contains("call Foo.g 2\npush constant 3\ncall Foo.f 2"));
+        assertTrue(code.contains("call Foo.g 3\ncall Foo.f 2"));
+        assertTrue(code.contains("call Foo.h 0\ncall Math.max 2\ncall Output.printInt 1"));
+    }
+
+
+    public void testStandardLibraryIsImmutable() {
+        StandardLibrary library = StandardLibrary.getInstance();
+
+        assertSame(library, new CompilationContext().getStandardLibrary());
+        assertEquals(library.getExpectedArguments("Math", "multiply"), Integer.valueOf(2));
+        assertNull(library.getExpectedArguments("Math", "pow"));
+        assertFalse(library.isStandardLibraryObject("Main"));
+    }
+
+
+    public void testConcurrentCompilationMatchesSequentialCompilation() throws Exception {
+        List<File> files = new ArrayList<>();
+
+        for(int i = 0; i < 32; i++) {
+            String code = String.format("class Class%s { function int f(int a) { do Foo.f(Foo.g(a, %s), Math.min(a, "
+                                        + "Foo.h(1, 2, 3))); return Math.max(a, %s); } }", i, i, i);
+            files.add(sources.write("Class" + i, code));
+        }
+
+        new ProjectCompiler().setThreads(1).compile(files);
+        List<String> sequentialOutput = readOutput(files);
+
+        List<ProjectCompiler.Result> results = new ProjectCompiler().setThreads(8).compile(files);
+
+        assertTrue(results.stream().allMatch(ProjectCompiler.Result::isSuccessful));
+        assertEquals(readOutput(files), sequentialOutput);
+        assertTrue(sequentialOutput.get(5).contains("call Foo.h 3\ncall Math.min 2\ncall Foo.f 2"));
+    }
+
+
+    private String compile(String code) throws Exception {
+        File file = sources.write("Main", code);
+
+        new ProjectCompiler().compile(Collections.singletonList(file));
+        return sources.readOutput(file);
+    }
+
+
+    private List<String> readOutput(List<File> files) throws IOException {
+        List<String> output = new ArrayList<>();
+
+        for(File file : files) {
+            output.add(sources.readOutput(file));
+        }
+
+        return output;
+    }
+
+}
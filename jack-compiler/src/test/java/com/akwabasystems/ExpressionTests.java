@@ -1,13 +1,35 @@
 
 package com.akwabasystems;
 
+import com.akwabasystems.model.Grammar;
+import com.akwabasystems.model.Keyword;
+import com.akwabasystems.model.Symbol;
+import com.akwabasystems.model.Token;
+import com.akwabasystems.model.TokenType;
+import com.akwabasystems.parsing.JackAnalyzer;
 import com.akwabasystems.parsing.XMLCompilationEngine;
 import com.akwabasystems.parsing.JackTokenizer;
 import com.akwabasystems.parsing.Tokenizer;
+import java.io.File;
+import java.io.IOException;
 import junit.framework.TestCase;
 
 
 public class ExpressionTests extends TestCase {
+
+    private SourceDirectory sources;
+
+
+    @Override
+    protected void setUp() throws IOException {
+        sources = new SourceDirectory("expression");
+    }
+
+
+    @Override
+    protected void tearDown() {
+        sources.delete();
+    }
     
     
     public void testTerminalOrKeywordConstants() {
@@ -626,4 +648,35 @@ public class ExpressionTests extends TestCase {
         assertEquals(compiler.toXML(), output.toString());
     }
     
+    
+    public void testPredictionsFromTokenKinds() {
+        assertTrue(Grammar.isOperator(Token.of(Symbol.PIPE)));
+        assertTrue(Grammar.isOperator(Token.of(Symbol.MINUS)));
+        assertFalse(Grammar.isOperator(Token.of(Symbol.TILDE)));
+        assertTrue(Grammar.isUnaryOperator(Token.of(Symbol.TILDE)));
+        assertFalse(Grammar.isUnaryOperator(Token.of(Symbol.PLUS)));
+        assertTrue(Grammar.isKeywordConstant(Token.of(Keyword.NULL)));
+        assertFalse(Grammar.isKeywordConstant(Token.of(Keyword.VAR)));
+        assertTrue(Grammar.predictsClassVarDeclarationFrom(Token.of(Keyword.FIELD)));
+        assertTrue(Grammar.predictsSubroutineFrom(Token.of(Keyword.CONSTRUCTOR)));
+        assertTrue(Grammar.predictsStatementsFrom(Token.of(Keyword.RETURN)));
+        assertFalse(Grammar.predictsStatementsFrom(Token.of(Keyword.ELSE)));
+        
+        /** Identifiers and constants are never predicted from their text */
+        assertFalse(Grammar.predictsStatementsFrom(new Token(TokenType.STRING_CONSTANT, "let")));
+        assertFalse(Grammar.isOperator(new Token(TokenType.STRING_CONSTANT, "+")));
+        assertFalse(Grammar.isKeywordConstant(new Token(TokenType.IDENTIFIER, "symbol")));
+        assertFalse(Grammar.isOperator(Token.endOfFile()));
+    }
+    
+    
+    public void testIdentifierNamedAfterTokenType() throws IOException {
+        File file = sources.write("Main", "class Main { function int f(int symbol) { return symbol + 1; } }");
+        
+        new JackAnalyzer().compile(file);
+        String output = sources.readOutput(file);
+        
+        /** The variable used to be taken for a terminal element, and was not pushed */
+        assertTrue(output.contains("push argument 0\npush constant 1\nadd"));
+    }
 }
@@ -0,0 +1,332 @@
+package com.akwabasystems;
+
+import com.akwabasystems.ast.ClassDeclaration;
+import com.akwabasystems.ir.CodeGenerator;
+import com.akwabasystems.ir.Instruction;
+import com.akwabasystems.ir.VMFunction;
+import com.akwabasystems.model.Segment;
+import com.akwabasystems.parsing.CodeCompilationEngine;
+import com.akwabasystems.parsing.JackTokenizer;
+import com.akwabasystems.passes.ConstantFolding;
+import com.akwabasystems.passes.PassReport;
+import com.akwabasystems.passes.StrengthReduction;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+
+
+public class OptimizationTests extends TestCase {
+
+    private static final int[] OPERANDS = { -32768, -32767, -20000, -257, -256, -17, -16, -15, -2, -1, 0, 1, 2, 15,
+                                            16, 17, 255, 256, 1000, 12345, 32766, 32767 };
+    private PassReport report;
+    private VMFunction function;
+
+
+    @Override
+    protected void setUp() {
+        report = new PassReport();
+    }
+
+
+    public void testConstantFolding() {
+        assertEquals(fold("16384 + (3 * 32)"), "push constant 16480");
+        assertEquals(fold("(2 + 3) * (4 - 1) / 2"), "push constant 7");
+        assertEquals(fold("(12 & 10) | 1"), "push constant 9");
+        assertEquals(report.getRewriteCount(ConstantFolding.NAME), 8);
+
+        /** Negative results are pushed as the negation of their absolute value */
+        assertEquals(fold("-1"), "push constant 1\nneg");
+        assertEquals(fold("~0"), "push constant 1\nneg");
+        assertEquals(fold("-(-5)"), "push constant 5");
+        assertEquals(fold("~true"), "push constant 0");
+        assertEquals(fold("7 / -2"), "push constant 3\nneg");
+    }
+
+
+    public void testSixteenBitArithmetic() {
+        assertEquals(fold("32767 + 1"), "push constant 32767\nneg\npush constant 1\nsub");
+        assertEquals(fold("256 * 256"), "push constant 0");
+        assertEquals(fold("300 * 300"), "push constant 24464");
+        assertEquals(fold("0 - 32767 - 2"), "push constant 32767");
+    }
+
+
+    public void testComparisons() {
+        assertEquals(fold("3 < 5"), "push constant 1\nneg");
+        assertEquals(fold("3 > 5"), "push constant 0");
+        assertEquals(fold("(1 + 1) = 2"), "push constant 1\nneg");
+
+        /** The difference of the operands overflows, so the comparison is left to the VM */
+        assertEquals(fold("32767 > -2"), "push constant 32767\npush constant 2\nneg\ngt");
+    }
+
+
+    public void testDivisionsThatAreNotFolded() {
+        assertEquals(fold("1 / 0"), "push constant 1\npush constant 0\ncall Math.divide 2");
+        assertEquals(report.getRewriteCount(), 0);
+
+        assertEquals(fold("(-32767 - 1) / 2"),
+                "push constant 32767\nneg\npush constant 1\nsub\npush constant 2\ncall Math.divide 2");
+    }
+
+
+    public void testIdentities() {
+        assertEquals(fold("x + 0"), "push argument 0");
+        assertEquals(fold("0 + x"), "push argument 0");
+        assertEquals(fold("x - 0"), "push argument 0");
+        assertEquals(fold("x * 1"), "push argument 0");
+        assertEquals(fold("1 * x"), "push argument 0");
+        assertEquals(fold("x / 1"), "push argument 0");
+        assertEquals(fold("x | false"), "push argument 0");
+        assertEquals(fold("x & true"), "push argument 0");
+        assertEquals(fold("x * 0"), "push constant 0");
+        assertEquals(fold("x - x"), "push constant 0");
+        assertEquals(fold("a[y] - a[y]"), "push constant 0");
+        assertEquals(fold("x & 0"), "push constant 0");
+        assertEquals(fold("x | (y | y)"), "push argument 0\npush argument 1\nor");
+        assertEquals(fold("0 - x"), "push argument 0\nneg");
+        assertEquals(fold("x * (-1)"), "push argument 0\nneg");
+        assertEquals(fold("~(~x)"), "push argument 0");
+    }
+
+
+    public void testSideEffectsAreKept() {
+        assertEquals(fold("Main.f(x, y, a) * 0"),
+                "push argument 0\npush argument 1\npush argument 2\ncall Main.f 3\npush constant 0\n"
+                + "call Math.multiply 2");
+        assertEquals(fold("Main.f(x, y, a) - Main.f(x, y, a)").split("\n").length, 9);
+        assertEquals(fold("(x / y) * 0"), "push argument 0\npush argument 1\ncall Math.divide 2\npush constant 0\n"
+                + "call Math.multiply 2");
+        assertEquals(report.getRewriteCount(), 0);
+    }
+
+
+    public void testOffsets() {
+        assertEquals(fold("x + 1"), "push argument 0\npush constant 1\nadd");
+        assertEquals(report.getRewriteCount(), 0);
+
+        assertEquals(fold("x + (-3)"), "push argument 0\npush constant 3\nsub");
+        assertEquals(fold("x - (-3)"), "push argument 0\npush constant 3\nadd");
+        assertEquals(fold("(x + 1) - 3"), "push argument 0\npush constant 2\nsub");
+        assertEquals(fold("x - 1 + 1"), "push argument 0");
+        assertEquals(fold("a[x + 2 + 2]"), "push argument 0\npush constant 4\nadd\npush argument 2\nadd\n"
+                + "pop pointer 1\npush that 0");
+    }
+
+
+    public void testNothingToFold() {
+        String code = "class Main { function int f(int x) { let x = x + 1; return x * 2; } }";
+        ClassDeclaration tree = new CodeCompilationEngine(new JackTokenizer(code), null).parseClass();
+
+        assertSame(new ConstantFolding().run(tree, report), tree);
+        assertEquals(report.toString(), "no rewrites");
+    }
+
+
+    public void testMultiplicationByConstants() {
+        assertEquals(reduce("x * 4").toString(), "function Main.f 0\npush argument 0\npush argument 0\nadd\n"
+                + "pop temp 2\npush temp 2\npush temp 2\nadd\nreturn\n");
+        assertEquals(reduce("x * 5").toString(), "function Main.f 0\npush argument 0\npush argument 0\nadd\n"
+                + "pop temp 2\npush temp 2\npush temp 2\nadd\npush argument 0\nadd\nreturn\n");
+        assertEquals(report.getRewriteCount(StrengthReduction.NAME), 2);
+
+        for(int constant : new int[] { 2, 3, 5, 10, 32, 352, 4096, -4, -7 }) {
+            for(String expression : new String[] { "x * %s", "%s * x", "(x + y) * %s", "a[y] * %s" }) {
+                String operand = (constant < 0)? String.format("(%s)", constant) : String.valueOf(constant);
+                VMFunction reduced = reduce(String.format(expression, operand));
+                assertFalse(reduced.toString().contains("Math.multiply"));
+
+                for(int x : OPERANDS) {
+                    assertEquals(String.format(expression, constant) + " with x = " + x, (short) (x * constant),
+                                 execute(reduced, x, 0));
+                }
+            }
+        }
+    }
+
+
+    public void testMultiplicationsThatAreNotReduced() {
+        for(String expression : new String[] { "x * y", "x * 1", "x * 32767", "(x + 1) * (y + 1)", "x * (y + 1)" }) {
+            assertSame(reduce(expression), function);
+        }
+
+        assertEquals(report.getRewriteCount(), 0);
+
+        /** The multiplication by a variable is kept as a single call, next to the reduced one */
+        String code = reduce("(x * y) + (x * 4)").toString();
+        assertEquals(code.split("call Math.multiply 2", -1).length, 2);
+        assertEquals(report.getRewriteCount(), 1);
+    }
+
+
+    public void testDivisionByPowersOfTwo() {
+        for(int constant : new int[] { 2, 4, 16, 256, 16384, -8 }) {
+            for(String expression : new String[] { "x / %s", "(x + y) / %s" }) {
+                String operand = (constant < 0)? String.format("(%s)", constant) : String.valueOf(constant);
+                VMFunction reduced = reduce(String.format(expression, operand));
+                assertFalse(reduced.toString().contains("Math.divide"));
+
+                /** The quotient is truncated toward zero */
+                for(int x : OPERANDS) {
+                    assertEquals(String.format(expression, constant) + " with x = " + x, (short) (x / constant),
+                                 execute(reduced, x, 0));
+                }
+            }
+        }
+
+        for(String expression : new String[] { "x / 3", "x / y", "16 / x", "x / 1" }) {
+            assertSame(reduce(expression), function);
+        }
+    }
+
+
+    public void testRemainderOfPowersOfTwo() {
+        for(int constant : new int[] { 2, 16, 1024 }) {
+            VMFunction reduced = reduce(String.format("x - ((x / %s) * %s)", constant, constant));
+            String code = reduced.toString();
+            assertFalse(code.contains("Math.divide") || code.contains("Math.multiply"));
+            assertTrue(reduced.getInstructions().size() < 20);
+
+            for(int x : OPERANDS) {
+                assertEquals(String.format("x %% %s with x = %s", constant, x), (short) (x % constant),
+                             execute(reduced, x, 0));
+            }
+        }
+
+        assertEquals(report.getRewriteCount(StrengthReduction.NAME), 3);
+    }
+
+
+    /**
+     * Returns the VM code of the given expression, once folded, without the "return" that follows it. The expression
+     * can refer to the arguments x, y and a (an array).
+     */
+    private String fold(String expression) {
+        String code = String.format("class Main { function int f(int x, int y, Array a) { return %s; } }",
+                                    expression);
+        ClassDeclaration tree = new CodeCompilationEngine(new JackTokenizer(code), null).parseClass();
+        VMFunction function = new CodeGenerator().lower(new ConstantFolding().run(tree, report)).get(0);
+
+        List<Instruction> instructions = function.getInstructions();
+        StringBuilder builder = new StringBuilder();
+
+        for(Instruction instruction : instructions.subList(0, instructions.size() - 1)) {
+            builder.append(builder.length() > 0? "\n" : "").append(instruction);
+        }
+
+        return builder.toString();
+    }
+
+
+    /**
+     * Returns the function that returns the given expression, once its multiplications and divisions are reduced. The
+     * expression can refer to the arguments x, y and a (an array whose entries are the value of x). The function
+     * before the reduction is kept in the "function" field.
+     */
+    private VMFunction reduce(String expression) {
+        String code = String.format("class Main { function int f(int x, int y, Array a) { return %s; } }",
+                                    expression);
+        ClassDeclaration tree = new CodeCompilationEngine(new JackTokenizer(code), null).parseClass();
+        function = new CodeGenerator().lower(tree).get(0);
+        return new StrengthReduction().run(function, report);
+    }
+
+
+    /**
+     * Executes the given function, which has no branches, with the given values of x and y, and returns its result.
+     * The array argument "a" is at address 1000, and all its entries are x. The calls to the Math class are computed
+     * with the 16-bit semantics of the VM.
+     */
+    private int execute(VMFunction function, int x, int y) {
+        Deque<Integer> stack = new ArrayDeque<>();
+        Map<Segment, int[]> segments = new EnumMap<>(Segment.class);
+        segments.put(Segment.ARGUMENT, new int[] { x, y, 1000 });
+        segments.put(Segment.TEMP, new int[8]);
+        segments.put(Segment.POINTER, new int[2]);
+
+        for(Instruction instruction : function.getInstructions()) {
+            switch(instruction.getOpcode()) {
+
+                case PUSH:
+                    boolean isArrayEntry = (instruction.getSegment() == Segment.THAT);
+                    stack.push(instruction.isPushConstant()? instruction.getIndex() :
+                               isArrayEntry? x : segments.get(instruction.getSegment())[instruction.getIndex()]);
+                    break;
+
+                case POP:
+                    segments.get(instruction.getSegment())[instruction.getIndex()] = stack.pop();
+                    break;
+
+                case CALL:
+                    int right = stack.pop();
+                    int left = stack.pop();
+                    boolean isMultiplication = instruction.getName().equals("Math.multiply");
+                    stack.push((int) (short) (isMultiplication? left * right : left / right));
+                    break;
+
+                case RETURN:
+                    return stack.pop();
+
+                default:
+                    stack.push(evaluate(instruction, stack));
+                    break;
+
+            }
+        }
+
+        throw new IllegalStateException("The function did not return");
+    }
+
+
+    /**
+     * Evaluates the given arithmetic instruction on the given stack
+     */
+    private int evaluate(Instruction instruction, Deque<Integer> stack) {
+        int right = stack.pop();
+
+        switch(instruction.getCommand()) {
+
+            case NEG:
+                return (short) -right;
+
+            case NOT:
+                return ~right;
+
+            default:
+                break;
+
+        }
+
+        int left = stack.pop();
+
+        switch(instruction.getCommand()) {
+
+            case ADD:
+                return (short) (left + right);
+
+            case SUB:
+                return (short) (left - right);
+
+            case AND:
+                return left & right;
+
+            case OR:
+                return left | right;
+
+            case EQ:
+                return (left == right)? -1 : 0;
+
+            case GT:
+                return (left > right)? -1 : 0;
+
+            default:
+                return (left < right)? -1 : 0;
+
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.akwabasystems;
+
+import com.akwabasystems.ast.ClassDeclaration;
+import com.akwabasystems.parsing.ProjectCompiler;
+import com.akwabasystems.passes.ConstantFolding;
+import com.akwabasystems.passes.PassManager;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+
+public class ProjectCompilerTests extends TestCase {
+
+    private SourceDirectory sources;
+
+
+    @Override
+    protected void setUp() throws IOException {
+        sources = new SourceDirectory("project");
+    }
+
+
+    @Override
+    protected void tearDown() {
+        sources.delete();
+    }
+
+
+    public void testCompileAllFiles() throws Exception {
+        List<File> files = Arrays.asList(
+                sources.write("Main", "class Main { function void main() { do Util.run(1, 2); } }"),
+                sources.write("Util", "class Util { function int run(int a, int b) { return a; } }"),
+                sources.write("Empty", "class Empty { }"));
+
+        List<ProjectCompiler.Result> results = new ProjectCompiler().setThreads(2).compile(files);
+
+        assertEquals(results.size(), 3);
+
+        for(int i = 0; i < files.size(); i++) {
+            assertEquals(results.get(i).getFile(), files.get(i));
+            assertTrue(results.get(i).isSuccessful());
+        }
+
+        assertTrue(sources.readOutput(files.get(0)).contains("call Util.run 2"));
+        assertTrue(sources.file("Util.vm").exists());
+        assertTrue(sources.file("Empty.vm").exists());
+    }
+
+
+    public void testErrorsAreReportedPerFile() throws Exception {
+        List<File> files = Arrays.asList(sources.write("Broken", "class Broken { function void f() { return } }"),
+                                         sources.write("Valid", "class Valid { function void f() { return; } }"),
+                                         sources.file("Missing.jack"));
+
+        List<ProjectCompiler.Result> results = new ProjectCompiler().compile(files);
+
+        assertFalse(results.get(0).isSuccessful());
+        assertTrue(results.get(0).getError() instanceof Error);
+        assertTrue(results.get(1).isSuccessful());
+        assertTrue(results.get(2).getError() instanceof IOException);
+
+        String report = ProjectCompiler.report(results, 0);
+        assertTrue(report.startsWith("Compiled 1 of 3 files"));
+        assertTrue(report.contains("Broken.jack: failed"));
+    }
+
+
+    public void testFilesAreNotLimitedByTimeout() throws Exception {
+        File[] files = new File[24];
+
+        for(int i = 0; i < files.length; i++) {
+            files[i] = sources.write("Class" + i, "class Class" + i + " { function int f() { return " + i + "; } }");
+        }
+
+        long startTime = System.nanoTime();
+        List<ProjectCompiler.Result> results = new ProjectCompiler().setThreads(4).compile(Arrays.asList(files));
+        long elapsedTime = (System.nanoTime() - startTime) / 1_000_000;
+
+        /** The analyzer used to wait for a fixed delay of 2 seconds for each file */
+        assertTrue(results.stream().allMatch(ProjectCompiler.Result::isSuccessful));
+        assertTrue(String.format("Compiled in %s ms", elapsedTime), elapsedTime < 2000);
+    }
+
+
+    public void testRewritesAreReportedPerFile() throws Exception {
+        List<File> files = Arrays.asList(
+                sources.write("Screen", "class Screen { function int address(int x, int y) { "
+                                        + "return 16384 + (y * (2 * 16)) + (x / 16) + 0; } }"),
+                sources.write("Plain", "class Plain { function int f(int x) { return x; } }"));
+
+        PassManager<ClassDeclaration> treePasses = new PassManager<ClassDeclaration>().add(new ConstantFolding());
+        List<ProjectCompiler.Result> results = new ProjectCompiler().setTreePasses(treePasses).compile(files);
+
+        assertEquals(results.get(0).getPassReport().getRewriteCount(ConstantFolding.NAME), 2);
+        assertEquals(results.get(1).getPassReport().getRewriteCount(), 0);
+
+        String code = sources.readOutput(files.get(0));
+        assertTrue(code.contains("push argument 1\npush constant 32\ncall Math.multiply 2"));
+        assertFalse(code.contains("push constant 0"));
+
+        String report = ProjectCompiler.report(results, 0);
+        assertTrue(report.contains("Screen.jack: "));
+        assertTrue(report.contains(" ms (constant folding: 2)\n"));
+        assertFalse(report.split("Plain.jack: ")[1].split("\n")[0].contains("("));
+    }
+
+
+    public void testInvalidNumberOfThreads() {
+        try {
+            new ProjectCompiler().setThreads(0);
+            fail("The number of threads must be positive");
+        } catch(IllegalArgumentException expected) {
+        }
+    }
+
+}
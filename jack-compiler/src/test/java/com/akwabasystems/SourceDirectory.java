@@ -0,0 +1,83 @@
+package com.akwabasystems;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+
+/**
+ * A temporary directory of Jack source files, for the tests that compile files to disk. The tests create it in
+ * setUp() and delete it in tearDown(), so the directory and the generated files are removed even when a test fails.
+ */
+final class SourceDirectory {
+
+    private final File directory;
+
+
+    /**
+     * Creates a temporary directory whose name starts with the given prefix
+     *
+     * @param prefix            the prefix of the name of the directory
+     * @throws IOException if the directory cannot be created
+     */
+    SourceDirectory(String prefix) throws IOException {
+        this.directory = Files.createTempDirectory(prefix).toFile();
+    }
+
+
+    /**
+     * Returns the file of the given name in this directory, whether or not it exists
+     *
+     * @param fileName          the name of the file
+     * @return the file of the given name in this directory
+     */
+    File file(String fileName) {
+        return new File(directory, fileName);
+    }
+
+
+    /**
+     * Writes the code of the given class to a ".jack" file named after the class
+     *
+     * @param className         the name of the class
+     * @param code              the code of the class
+     * @return the file that was written
+     * @throws IOException if the file cannot be written
+     */
+    File write(String className, String code) throws IOException {
+        File file = file(className + ".jack");
+        Files.write(file.toPath(), code.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+
+    /**
+     * Returns the contents of the ".vm" file generated for the given source file
+     *
+     * @param sourceFile        the ".jack" file that was compiled
+     * @return the generated VM code
+     * @throws IOException if the ".vm" file cannot be read
+     */
+    String readOutput(File sourceFile) throws IOException {
+        File vmFile = file(sourceFile.getName().replace(".jack", ".vm"));
+        return new String(Files.readAllBytes(vmFile.toPath()), StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Deletes the files of this directory, then the directory itself
+     */
+    void delete() {
+        File[] files = directory.listFiles();
+
+        if(files != null) {
+            for(File file : files) {
+                file.delete();
+            }
+        }
+
+        directory.delete();
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.akwabasystems;
+
+import com.akwabasystems.ast.ArrayAccess;
+import com.akwabasystems.ast.BinaryExpression;
+import com.akwabasystems.ast.ClassDeclaration;
+import com.akwabasystems.ast.DoStatement;
+import com.akwabasystems.ast.IntegerConstant;
+import com.akwabasystems.ast.LetStatement;
+import com.akwabasystems.ast.ReturnStatement;
+import com.akwabasystems.ast.SourceSpan;
+import com.akwabasystems.ast.SubroutineCall;
+import com.akwabasystems.ast.SubroutineDeclaration;
+import com.akwabasystems.ast.VariableReference;
+import com.akwabasystems.ast.WhileStatement;
+import com.akwabasystems.ir.CodeGenerator;
+import com.akwabasystems.ir.Instruction;
+import com.akwabasystems.ir.Opcode;
+import com.akwabasystems.ir.VMFunction;
+import com.akwabasystems.model.Keyword;
+import com.akwabasystems.model.Segment;
+import com.akwabasystems.model.StandardLibrary;
+import com.akwabasystems.model.Symbol;
+import com.akwabasystems.parsing.CodeCompilationEngine;
+import com.akwabasystems.parsing.CompilationContext;
+import com.akwabasystems.parsing.JackTokenizer;
+import com.akwabasystems.parsing.SignatureIndex;
+import com.akwabasystems.parsing.VMCodeWriter;
+import com.akwabasystems.passes.Pass;
+import com.akwabasystems.passes.PassManager;
+import com.akwabasystems.passes.PassReport;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import junit.framework.TestCase;
+
+
+public class SyntaxTreeTests extends TestCase {
+
+    private static final String POINT = "class Point {\n"
+                                      + "  field int x, y;\n"
+                                      + "  method void move(int dx, Array steps) {\n"
+                                      + "    var int i;\n"
+                                      + "    while (i < 3) {\n"
+                                      + "      let x = x + dx * 2;\n"
+                                      + "      let steps[i] = y;\n"
+                                      + "      let i = i + 1;\n"
+                                      + "    }\n"
+                                      + "    do Output.printInt(x);\n"
+                                      + "    return;\n"
+                                      + "  }\n"
+                                      + "}\n";
+
+
+    public void testSyntaxTree() {
+        ClassDeclaration tree = parse(POINT);
+        assertEquals(tree.getName(), "Point");
+        assertEquals(tree.getFieldCount(), 2);
+        assertEquals(tree.getSpan().textIn(POINT), POINT.trim());
+
+        SubroutineDeclaration method = tree.getSubroutines().get(0);
+        assertEquals(method.getKind(), Keyword.METHOD);
+        assertEquals(method.getFunctionName(), "Point.move");
+        assertEquals(method.getLocalCount(), 1);
+        assertEquals(method.getStatements().size(), 3);
+
+        WhileStatement loop = (WhileStatement) method.getStatements().get(0);
+        assertEquals(loop.getCondition().getSpan().textIn(POINT), "i < 3");
+
+        /** Jack has no operator precedence: "x + dx * 2" is "(x + dx) * 2" */
+        LetStatement assignment = (LetStatement) loop.getStatements().get(0);
+        BinaryExpression value = (BinaryExpression) assignment.getValue();
+        assertEquals(value.getOperator(), Symbol.MULTIPLY);
+        assertEquals(value.getLeft().getSpan().textIn(POINT), "x + dx");
+        assertEquals(((IntegerConstant) value.getRight()).getValue(), 2);
+        assertEquals(assignment.getSpan().textIn(POINT), "let x = x + dx * 2;");
+
+        /** Variables are resolved to their segments; "this" is the first argument of a method */
+        VariableReference field = assignment.getTarget();
+        assertEquals(field.getSegment(), Segment.THIS);
+        assertEquals(field.getIndex(), 0);
+
+        LetStatement arrayAssignment = (LetStatement) loop.getStatements().get(1);
+        assertTrue(arrayAssignment.isArrayEntry());
+        assertEquals(arrayAssignment.getTarget().getSegment(), Segment.ARGUMENT);
+        assertEquals(arrayAssignment.getTarget().getIndex(), 2);
+        assertEquals(arrayAssignment.getTarget().getType(), "Array");
+
+        SubroutineCall call = ((DoStatement) method.getStatements().get(1)).getCall();
+        assertNull(call.getReceiver());
+        assertEquals(call.getFunctionName(), "Output.printInt");
+        assertEquals(call.getArgumentCount(), 1);
+        assertEquals(call.getSpan().textIn(POINT), "Output.printInt(x)");
+    }
+
+
+    public void testExpressionPurity() {
+        String code = "class Main { function int f(Array a, int i) { "
+                    + "return a[i + 1] + (\"s\" = 0) + Main.f(a, i) + (i / 2); } }";
+        ClassDeclaration tree = parse(code);
+        SubroutineDeclaration function = tree.getSubroutines().get(0);
+        BinaryExpression sum = (BinaryExpression) ((ReturnStatement) function.getStatements().get(0)).getValue();
+
+        assertFalse("A division can fail", sum.getRight().isPure());
+
+        BinaryExpression withCall = (BinaryExpression) sum.getLeft();
+        assertFalse("A call can have any side effect", withCall.getRight().isPure());
+
+        BinaryExpression withString = (BinaryExpression) withCall.getLeft();
+        assertFalse("A string constant allocates a string", withString.getRight().isPure());
+        assertTrue(withString.getLeft() instanceof ArrayAccess);
+        assertTrue(withString.getLeft().isPure());
+    }
+
+
+    public void testLowering() {
+        List<VMFunction> functions = new CodeGenerator().lower(parse(POINT));
+        assertEquals(functions.size(), 1);
+
+        String expected = "function Point.move 1\n"
+                        + "push argument 0\npop pointer 0\n"
+                        + "label WHILE_EXP0\npush local 0\npush constant 3\nlt\nnot\nif-goto WHILE_END0\n"
+                        + "push this 0\npush argument 1\nadd\npush constant 2\ncall Math.multiply 2\npop this 0\n"
+                        + "push local 0\npush argument 2\nadd\npush this 1\n"
+                        + "pop temp 0\npop pointer 1\npush temp 0\npop that 0\n"
+                        + "push local 0\npush constant 1\nadd\npop local 0\n"
+                        + "goto WHILE_EXP0\nlabel WHILE_END0\n"
+                        + "push this 0\ncall Output.printInt 1\npop temp 0\n"
+                        + "push constant 0\nreturn\n";
+        assertEquals(functions.get(0).toString(), expected);
+    }
+
+
+    public void testNegativeConstants() {
+        ClassDeclaration tree = parse("class Main { function int f() { return 0; } }");
+        SubroutineDeclaration function = tree.getSubroutines().get(0);
+        SourceSpan span = function.getSpan();
+
+        for(int value : new int[] { -5, -32768 }) {
+            SubroutineDeclaration constant = function.withStatements(Collections.singletonList(
+                    new ReturnStatement(span, new IntegerConstant(span, value))));
+            String code = new CodeGenerator().lower(tree.withSubroutines(Collections.singletonList(constant)))
+                                             .get(0).toString();
+
+            assertEquals(code, (value == -5)? "function Main.f 0\npush constant 5\nneg\nreturn\n" :
+                    "function Main.f 0\npush constant 32767\nneg\npush constant 1\nsub\nreturn\n");
+        }
+    }
+
+
+    public void testInstructions() {
+        assertEquals(Instruction.push(Segment.LOCAL, 3).toString(), "push local 3");
+        assertEquals(Instruction.branch("IF_TRUE0").toString(), "if-goto IF_TRUE0");
+        assertEquals(Instruction.call("Math.divide", 2), Instruction.call("Math.divide", 2));
+        assertFalse(Instruction.pushConstant(1).equals(Instruction.push(Segment.LOCAL, 1)));
+        assertTrue(Instruction.pushConstant(7).isPushConstant());
+        assertEquals(Instruction.ret().getOpcode(), Opcode.RETURN);
+    }
+
+
+    public void testPassManager() throws Exception {
+        /** A pass that removes every "pop temp 0" instruction, and records how many it removed */
+        Pass<VMFunction> pass = new Pass<VMFunction>() {
+
+            @Override
+            public String getName() {
+                return "discard removal";
+            }
+
+            @Override
+            public VMFunction run(VMFunction function, PassReport report) {
+                Instruction discard = Instruction.pop(Segment.TEMP, 0);
+                List<Instruction> instructions = function.getInstructions().stream()
+                        .filter((instruction) -> !instruction.equals(discard))
+                        .collect(Collectors.toList());
+                report.record(getName(), function.getInstructions().size() - instructions.size());
+                return function.withInstructions(instructions);
+            }
+        };
+
+        PassManager<VMFunction> codePasses = new PassManager<VMFunction>().add(pass);
+        CompilationContext context = new CompilationContext(StandardLibrary.getInstance(), SignatureIndex.EMPTY,
+                                                            new PassManager<>(), codePasses);
+
+        File file = File.createTempFile("Point", ".vm");
+        CodeCompilationEngine engine = new CodeCompilationEngine(new JackTokenizer(POINT),
+                                                                 new VMCodeWriter(file.getAbsolutePath()), context);
+        engine.compileClass();
+        String code = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        file.delete();
+
+        /** One "pop temp 0" comes from the array assignment, the other from the "do" statement */
+        assertFalse(code.contains("pop temp 0"));
+        assertTrue(code.contains("call Output.printInt 1\npush constant 0\nreturn\n"));
+        assertEquals(context.getPassReport().getRewriteCount("discard removal"), 2);
+        assertEquals(context.getPassReport().toString(), "discard removal: 2");
+    }
+
+
+    public void testMethodCallOnArgument() throws Exception {
+        String code = "class Main { function void draw(Point p) { do p.move(1, null); return; } }";
+        ClassDeclaration tree = parse(code);
+        List<VMFunction> functions = new CodeGenerator().lower(tree);
+
+        List<String> instructions = new ArrayList<>();
+        functions.get(0).getInstructions().forEach((instruction) -> instructions.add(instruction.toString()));
+
+        assertEquals(instructions.subList(0, 5), Arrays.asList("push argument 0", "push constant 1",
+                "push constant 0", "call Point.move 3", "pop temp 0"));
+    }
+
+
+    private ClassDeclaration parse(String code) {
+        return new CodeCompilationEngine(new JackTokenizer(code), null).parseClass();
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.akwabasystems;
+
+import com.akwabasystems.parsing.JackTokenizer;
+import com.akwabasystems.parsing.Tokenizer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * A timing harness for the tokenizer. It tokenizes every ".jack" file of the given directories (by default, the Jack
+ * OS and the programs of project 11) a number of times, and prints the average time of a round over the whole corpus.
+ *
+ * JMH is not among the dependencies of the build, so this harness is a plain main class, run from the jack-compiler
+ * directory after "mvn test-compile":
+ *
+ *     java -cp target/classes:target/test-classes com.akwabasystems.TokenizerBenchmark [directory ...]
+ *
+ * The rounds include the comment stripping done by the JackTokenizer constructor. The first half of the rounds warm
+ * up the JIT compiler and are not timed.
+ */
+public class TokenizerBenchmark {
+
+    private static final String[] DEFAULT_DIRECTORIES = { "../OS", "../nand2tetris/projects/11" };
+    private static final int ROUNDS = 200;
+
+
+    /**
+     * Tokenizes the ".jack" files of the given directories, or of the default directories if none is given, and
+     * prints the number of tokens and the average time of a round
+     *
+     * @param args              the directories to search for ".jack" files
+     * @throws IOException if a file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        List<String> sources = new ArrayList<>();
+
+        for(String directory : (args.length > 0)? args : DEFAULT_DIRECTORIES) {
+            collectSources(new File(directory), sources);
+        }
+
+        if(sources.isEmpty()) {
+            System.out.println("No .jack files were found");
+            return;
+        }
+
+        long tokens = 0;
+        long elapsed = 0;
+
+        for(int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            tokens = tokenize(sources);
+
+            if(round >= ROUNDS / 2) {
+                elapsed += System.nanoTime() - start;
+            }
+        }
+
+        System.out.println(String.format("%d files, %d tokens: %.2f ms per round (%d timed rounds)", sources.size(),
+                                         tokens, elapsed / 1e6 / (ROUNDS - ROUNDS / 2), ROUNDS - ROUNDS / 2));
+    }
+
+
+    /**
+     * Adds the contents of the ".jack" files of the given directory and its subdirectories to the given list
+     *
+     * @param directory         the directory to search
+     * @param sources           the list to which to add the contents of the files
+     * @throws IOException if a file cannot be read
+     */
+    private static void collectSources(File directory, List<String> sources) throws IOException {
+        File[] files = directory.listFiles();
+
+        if(files == null) {
+            return;
+        }
+
+        Arrays.sort(files);
+
+        for(File file : files) {
+            if(file.isDirectory()) {
+                collectSources(file, sources);
+            } else if(file.getName().endsWith(".jack")) {
+                sources.add(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+
+    /**
+     * Tokenizes the given sources and returns the total number of tokens
+     *
+     * @param sources           the sources to tokenize
+     * @return the total number of tokens
+     */
+    private static long tokenize(List<String> sources) {
+        long tokens = 0;
+
+        for(String source : sources) {
+            Tokenizer tokenizer = new JackTokenizer(source);
+
+            while(tokenizer.hasMoreTokens()) {
+                tokenizer.nextToken();
+                tokens++;
+            }
+        }
+
+        return tokens;
+    }
+
+}
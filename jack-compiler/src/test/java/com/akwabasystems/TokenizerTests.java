@@ -1,10 +1,15 @@
 
 package com.akwabasystems;
 
+import com.akwabasystems.model.Keyword;
+import com.akwabasystems.model.Symbol;
 import com.akwabasystems.model.Token;
+import com.akwabasystems.model.TokenKind;
 import com.akwabasystems.model.TokenType;
 import com.akwabasystems.parsing.JackTokenizer;
 import com.akwabasystems.parsing.Tokenizer;
+import java.util.ArrayList;
+import java.util.List;
 import junit.framework.TestCase;
 
 /**
@@ -483,4 +488,96 @@ public class TokenizerTests extends TestCase {
         assertEquals(token.getType(), TokenType.INT_CONSTANT);
         assertEquals(token.getText(), "32767");
     }
+    
+    
+    public void testCharacterClasses() {
+        String input = "let _x1=007;\tdo x_2.f(\"\u00e9t\u00e9\");"; 
+        Tokenizer tokenizer = new JackTokenizer(input);
+        
+        String[] texts = { "let", "_x1", "=", "007", ";", "do", "x_2", ".", "f", "(", "\u00e9t\u00e9", ")", ";" };
+        TokenType[] types = { TokenType.KEYWORD, TokenType.IDENTIFIER, TokenType.SYMBOL, TokenType.INT_CONSTANT,
+                              TokenType.SYMBOL, TokenType.KEYWORD, TokenType.IDENTIFIER, TokenType.SYMBOL,
+                              TokenType.IDENTIFIER, TokenType.SYMBOL, TokenType.STRING_CONSTANT, TokenType.SYMBOL,
+                              TokenType.SYMBOL };
+        
+        for(int i = 0; i < texts.length; i++) {
+            Token token = tokenizer.nextToken();
+            assertEquals(token.getType(), types[i]);
+            assertEquals(token.getText(), texts[i]);
+        }
+        
+        assertEquals(tokenizer.nextToken().getType(), TokenType.END_OF_FILE);
+    }
+    
+    
+    public void testInvalidCharacters() {
+        try {
+            new JackTokenizer("let x = \u00e9;").toXML("tokens");
+            fail("Non-ASCII characters are only valid in string constants");
+        } catch(Error expected) {
+            assertEquals(expected.getMessage(), "Invalid character: '\u00e9'");
+        }
+        
+        try {
+            new JackTokenizer("let s = \"open;").toXML("tokens");
+            fail("A string constant must be closed");
+        } catch(Error expected) {
+            assertEquals(expected.getMessage(), "Unterminated string constant");
+        }
+        
+        assertEquals(new JackTokenizer("").nextToken().getType(), TokenType.END_OF_FILE);
+    }
+    
+    
+    public void testTokensAreShared() {
+        JackTokenizer tokenizer = new JackTokenizer("let count = count + 10; // comment\nlet total = count * 10;");
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        
+        while((token = tokenizer.nextToken()).getType() != TokenType.END_OF_FILE) {
+            tokens.add(token);
+        }
+        
+        assertEquals(tokens.size(), 14);
+        assertSame(tokens.get(0), Token.of(Keyword.LET));
+        assertSame(tokens.get(7), Token.of(Keyword.LET));
+        assertSame(tokens.get(2), Token.of(Symbol.EQUAL));
+        assertTrue(tokens.get(6).is(Symbol.SEMICOLON));
+        assertEquals(tokens.get(6).getKind(), TokenKind.of(Symbol.SEMICOLON));
+        assertEquals(tokens.get(0).getKeyword(), Keyword.LET);
+        
+        /** Each identifier and integer constant is returned as the same instance, and identifiers are numbered */
+        assertSame(tokens.get(1), tokens.get(3));
+        assertSame(tokens.get(1), tokens.get(10));
+        assertSame(tokens.get(5), tokens.get(12));
+        assertEquals(tokens.get(1).getKind(), TokenKind.IDENTIFIER);
+        assertEquals(tokens.get(1).getId(), 0);
+        assertEquals(tokens.get(8).getId(), 1);
+        assertEquals(tokens.get(5).getId(), Token.NO_ID);
+        assertEquals(tokenizer.getIdentifierCount(), 2);
+        
+        /** The offsets are those of the input without comments */
+        assertEquals(tokenizer.getTokenOffset(), tokenizer.getInput().length());
+        assertEquals(new Token(TokenType.KEYWORD, "let").getKind(), TokenKind.of(Keyword.LET));
+    }
+    
+    
+    public void testTokenPosition() {
+        Tokenizer tokenizer = new JackTokenizer("do Output.printString(\"Hi\");");
+        
+        tokenizer.nextToken();
+        assertEquals(tokenizer.getTokenOffset(), 0);
+        assertEquals(tokenizer.getTokenLength(), 2);
+        
+        tokenizer.nextToken();
+        assertEquals(tokenizer.getTokenOffset(), 3);
+        assertEquals(tokenizer.getTokenLength(), 6);
+        
+        for(int i = 0; i < 4; i++) {
+            tokenizer.nextToken();
+        }
+        
+        assertEquals(tokenizer.getTokenOffset(), 22);
+        assertEquals(tokenizer.getTokenLength(), 4);
+    }
 }
@@ -44,6 +44,10 @@ public class TokenizerXMLTests extends TestCase {
         
         normalizedInput = VMUtils.stripComments(input.toString());
         assertEquals(normalizedInput, "class SquareGame { }");
+        
+        assertEquals(VMUtils.stripComments("a /**/ b /*/ c */ d"), "a  b  d");
+        assertEquals(VMUtils.stripComments("a // b /* c\r\n*/ d"), "a \r\n*/ d");
+        assertEquals(VMUtils.stripComments("a /* b // c"), "a /* b");
     }
     
     
@@ -0,0 +1,93 @@
+package com.akwabasystems;
+
+import com.akwabasystems.parsing.VMBinaryEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import junit.framework.TestCase;
+
+
+public class VMBinaryEncoderTests extends TestCase {
+
+
+    public void testEncoding() {
+        StringBuilder code = new StringBuilder();
+        code.append("function Main.main 0\n")
+            .append("push constant 7\n")
+            .append("pop static 1\n")
+            .append("label WHILE_EXP0\n")
+            .append("not\n")
+            .append("return\n");
+
+        ByteBuffer buffer = ByteBuffer.wrap(VMBinaryEncoder.encode(code.toString(), "Main.vm"));
+
+        assertEquals(buffer.get(), 'V');
+        assertEquals(buffer.get(), 'M');
+        assertEquals(buffer.get(), 'B');
+        assertEquals(buffer.get(), 1);
+
+        /** The pool holds the names in order of first use, followed by the file name */
+        assertEquals(buffer.getShort(), 4);
+        assertEquals(buffer.getShort(), 5);
+        assertEquals(readName(buffer), "Main.main");
+        assertEquals(readName(buffer), "constant");
+        assertEquals(readName(buffer), "static");
+        assertEquals(readName(buffer), "WHILE_EXP0");
+        assertEquals(readName(buffer), "Main.vm");
+        assertEquals(buffer.getInt(), 6);
+
+        /** function Main.main 0 */
+        assertEquals(buffer.get(), 6);
+        assertEquals(buffer.get() & 0xFF, 0xFF);
+        assertEquals(buffer.getShort(), 0);
+        assertEquals(buffer.getInt(), 0);
+
+        /** push constant 7 */
+        assertEquals(buffer.get(), 1);
+        assertEquals(buffer.get(), 0);
+        assertEquals(buffer.getShort(), 1);
+        assertEquals(buffer.getInt(), 7);
+
+        /** pop static 1 */
+        assertEquals(buffer.get(), 2);
+        assertEquals(buffer.get(), 7);
+        assertEquals(buffer.getShort(), 2);
+        assertEquals(buffer.getInt(), 1);
+
+        /** label WHILE_EXP0 */
+        assertEquals(buffer.get(), 3);
+        assertEquals(buffer.get() & 0xFF, 0xFF);
+        assertEquals(buffer.getShort(), 3);
+        assertEquals(buffer.getInt(), 0);
+
+        /** not */
+        assertEquals(buffer.get(), 0);
+        assertEquals(buffer.get(), 8);
+        assertEquals(buffer.getShort() & 0xFFFF, 0xFFFF);
+        assertEquals(buffer.getInt(), 0);
+
+        /** return */
+        assertEquals(buffer.get(), 7);
+        assertEquals(buffer.get() & 0xFF, 0xFF);
+        assertEquals(buffer.getShort() & 0xFFFF, 0xFFFF);
+        assertEquals(buffer.getInt(), 0);
+        assertFalse(buffer.hasRemaining());
+    }
+
+
+    public void testInvalidCommand() {
+
+        try {
+            VMBinaryEncoder.encode("jump LOOP\n", "Main.vm");
+            fail("An invalid command should not be encoded");
+        } catch(IllegalArgumentException expected) {
+        }
+    }
+
+
+    private static String readName(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+}
@@ -5,6 +5,9 @@ package com.akwabasystems.model;
 /**
  * An abstract implementation of the VMCommand class. It provides default implementations of the interface methods,
  * which can later be overridden by subclasses.
+ *
+ * A command is either created from its syntax, in which case its arguments are parsed from it, or as a view over a row
+ * of a CommandTable, in which case its arguments are read from the table and its syntax is only built when requested.
  */
 public abstract class AbstractVMCommand implements VMCommand {
     
@@ -14,6 +17,8 @@ public abstract class AbstractVMCommand implements VMCommand {
     protected int argument2 = 0;
     protected String fileName;
     protected String context;
+    protected CommandTable table;
+    protected int row = CommandTable.NONE;
     
     
     /**
@@ -49,6 +54,19 @@ public abstract class AbstractVMCommand implements VMCommand {
     }
 
 
+    /**
+     * Initializes this command as a view over the given row of a command table
+     *
+     * @param table         the table that holds the command
+     * @param row           the row of the command in the table
+     */
+    public AbstractVMCommand(CommandTable table, int row) {
+        this.type = table.type(row);
+        this.table = table;
+        this.row = row;
+    }
+
+
     /**
      * Parses the arguments for the given command, splitting them into first and second arguments if necessary
      */
@@ -99,6 +117,11 @@ public abstract class AbstractVMCommand implements VMCommand {
      */
     @Override
     public String getCommand() {
+
+        if(command == null && table != null) {
+            command = table.text(row);
+        }
+
         return command;
     }
 
@@ -120,7 +143,7 @@ public abstract class AbstractVMCommand implements VMCommand {
      */
     @Override
     public String getArgument1() {
-        return argument1;
+        return (table != null)? table.argument1(row) : argument1;
     };
     
     
@@ -131,7 +154,7 @@ public abstract class AbstractVMCommand implements VMCommand {
      */
     @Override
     public int getArgument2() {
-        return argument2;
+        return (table != null)? table.index(row) : argument2;
     }
     
     
@@ -151,6 +174,7 @@ public abstract class AbstractVMCommand implements VMCommand {
      * 
      * @return the file name for this command
      */
+    @Override
     public String getFileName() {
         return fileName;
     }
@@ -179,6 +203,19 @@ public abstract class AbstractVMCommand implements VMCommand {
     }
     
     
+    /**
+     * Returns the assembly code for this command
+     * 
+     * @return the assembly code for this command
+     */
+    @Override
+    public String toAssemblyCode() {
+        StringBuilder builder = new StringBuilder();
+        appendAssemblyCode(builder);
+        return builder.toString();
+    }
+    
+    
     /**
      * Returns a string representation of this command
      * 
@@ -19,16 +19,37 @@ public final class ArithmeticCommand extends AbstractVMCommand {
         super(CommandType.C_ARITHMETIC, command);
     }
 
+
+    /**
+     * Creates an instance of this class as a view over the given row of a command table
+     * 
+     * @param table         the table that holds the command
+     * @param row           the row of the command in the table
+     */
+    public ArithmeticCommand(CommandTable table, int row) {
+        super(table, row);
+    }
+
     
     /**
-     * Returns the assembly code for this command
+     * Appends the assembly code for this command to the given builder
      * 
-     * @return the assembly code for this command
+     * @param builder       the builder to which to append the assembly code
      */
     @Override
-    public String toAssemblyCode() {
-        ArithmeticCommandType commandType = ArithmeticCommandType.fromCommand(getCommand());
-        return commandType.toAssemblyCode(getCommand());
+    public void appendAssemblyCode(StringBuilder builder) {
+        getOperation().appendAssemblyCode(builder);
+    }
+
+
+    /**
+     * Returns the type of operation of this command
+     * 
+     * @return the type of operation of this command
+     */
+    public ArithmeticCommandType getOperation() {
+        return (table != null)? ArithmeticCommandType.fromOperation(table.operation(row)) :
+                ArithmeticCommandType.fromCommand(getCommand());
     }
     
 }
@@ -14,232 +14,176 @@ public enum ArithmeticCommandType {
     ADD {
         
         @Override
-        public String toAssemblyCode(String command) {
-            StringBuilder buffer = new StringBuilder();
-
-            buffer.append("@SP\n")
-                  .append("AM=M-1\n")
-                  .append("D=M\n")
-                  .append("@SP\n")
-                  .append("AM=M-1\n")
-                  .append("MD=D+M\n")
-                  .append("@SP\n")
-                  .append("M=M+1");
-
-            return buffer.toString();
+        public void appendAssemblyCode(StringBuilder builder) {
+            builder.append(POP_OPERANDS)
+                   .append("MD=D+M\n")
+                   .append(VMUtils.incrementStackPointer());
         }
         
     },
     
+
     SUB {
         
         @Override
-        public String toAssemblyCode(String command) {
-            StringBuilder buffer = new StringBuilder();
-
-            buffer.append("@SP\n")
-                  .append("AM=M-1\n")
-                  .append("D=M\n")
-                  .append("@SP\n")
-                  .append("AM=M-1\n")
-                  .append("MD=M-D\n")
-                  .append("@SP\n")
-                  .append("M=M+1");
-
-            return buffer.toString();
+        public void appendAssemblyCode(StringBuilder builder) {
+            builder.append(POP_OPERANDS)
+                   .append("MD=M-D\n")
+                   .append(VMUtils.incrementStackPointer());
         }
         
     },
     
+
     NEG {
         
         @Override
-        public String toAssemblyCode(String command) {
-            StringBuilder buffer = new StringBuilder();
-
-            buffer.append("@SP\n")
-                  .append("AM=M-1\n")
-                  .append("M=-M\n")
-                  .append("@SP\n")
-                  .append("M=M+1");
-
-            return buffer.toString();
+        public void appendAssemblyCode(StringBuilder builder) {
+            builder.append("@SP\nAM=M-1\n")
+                   .append("M=-M\n")
+                   .append(VMUtils.incrementStackPointer());
         }
         
     },
     
+
     EQ {
         
         @Override
-        public String toAssemblyCode(String command) {
-            StringBuilder buffer = new StringBuilder();
-            Long increment = counter.incrementAndGet();
-
-            buffer.append("@SP\n")
-                  .append("AM=M-1\n")
-                  .append("D=M\n")
-                  .append("@SP\n")
-                  .append("AM=M-1\n")
-                  .append("D=M-D\n")
-                  .append(String.format("@IF_EQUAL_TO%s\n", increment))
-                  .append("D;JEQ\n")
-                  .append("@SP\n")
-                  .append("A=M\n")
-                  .append("M=0\n")
-                  .append(String.format("@IF_EQUAL_TO_END%s\n", increment))
-                  .append("0;JMP\n")
-                  .append(String.format("(IF_EQUAL_TO%s)\n", increment))
-                  .append("@SP\n")
-                  .append("A=M\n")
-                  .append("M=-1\n")
-                  .append(String.format("(IF_EQUAL_TO_END%s)\n", increment))
-                  .append("@SP\n")
-                  .append("M=M+1");
-
-            return buffer.toString();   
+        public void appendAssemblyCode(StringBuilder builder) {
+            appendComparison(builder, "IF_EQUAL_TO", "D;JEQ");
         }
-
+        
     },
-
+    
 
     GT {
-
+        
         @Override
-        public String toAssemblyCode(String command) {
-            StringBuilder buffer = new StringBuilder();
-            Long increment = counter.incrementAndGet();
-            
-            buffer.append("@SP\n")
-                  .append("AM=M-1\n")
-                  .append("D=M\n")
-                  .append("@SP\n")
-                  .append("AM=M-1\n")
-                  .append("D=M-D\n")
-                  .append(String.format("@IF_GREATER_THAN%s\n", increment))
-                  .append("D;JGT\n")
-                  .append("@SP\n")
-                  .append("A=M\n")
-                  .append("M=0\n")
-                  .append(String.format("@IF_GREATER_THAN_END%s\n", increment))
-                  .append("0;JMP\n")
-                  .append(String.format("(IF_GREATER_THAN%s)\n", increment))
-                  .append("@SP\n")
-                  .append("A=M\n")
-                  .append("M=-1\n")
-                  .append(String.format("(IF_GREATER_THAN_END%s)\n", increment))
-                  .append("@SP\n")
-                  .append("M=M+1");
-
-            return buffer.toString();
+        public void appendAssemblyCode(StringBuilder builder) {
+            appendComparison(builder, "IF_GREATER_THAN", "D;JGT");
         }
-
+        
     },
     
-    
+
     LT {
         
         @Override
-        public String toAssemblyCode(String command) {
-            StringBuilder buffer = new StringBuilder();
-            Long increment = counter.incrementAndGet();
-            
-            buffer.append("@SP\n")
-                  .append("AM=M-1\n")
-                  .append("D=M\n")
-                  .append("@SP\n")
-                  .append("AM=M-1\n")
-                  .append("D=M-D\n")
-                  .append(String.format("@IF_LESS_THAN%s\n", increment))
-                  .append("D;JLT\n")
-                  .append("@SP\n")
-                  .append("A=M\n")
-                  .append("M=0\n")
-                  .append(String.format("@IF_LESS_THAN_END%s\n", increment))
-                  .append("0;JMP\n")
-                  .append(String.format("(IF_LESS_THAN%s)\n", increment))
-                  .append("@SP\n")
-                  .append("A=M\n")
-                  .append("M=-1\n")
-                  .append(String.format("(IF_LESS_THAN_END%s)\n", increment))
-                  .append("@SP\n")
-                  .append("M=M+1");
-
-            return buffer.toString();
+        public void appendAssemblyCode(StringBuilder builder) {
+            appendComparison(builder, "IF_LESS_THAN", "D;JLT");
         }
         
     },
-
+    
 
     AND {
         
         @Override
-        public String toAssemblyCode(String command) {
-            StringBuilder buffer = new StringBuilder();
-
-            buffer.append("@SP\n")
-                  .append("AM=M-1\n")
-                  .append("D=M\n")
-                  .append("@SP\n")
-                  .append("AM=M-1\n")
-                  .append("MD=D&M\n")
-                  .append("@SP\n")
-                  .append("M=M+1");
-
-            return buffer.toString();
+        public void appendAssemblyCode(StringBuilder builder) {
+            builder.append(POP_OPERANDS)
+                   .append("MD=D&M\n")
+                   .append(VMUtils.incrementStackPointer());
         }
         
     },
     
-    
+
     OR {
         
         @Override
-        public String toAssemblyCode(String command) {
-            StringBuilder buffer = new StringBuilder();
-
-            buffer.append("@SP\n")
-                  .append("AM=M-1\n")
-                  .append("D=M\n")
-                  .append("@SP\n")
-                  .append("AM=M-1\n")
-                  .append("MD=D|M\n")
-                  .append("@SP\n")
-                  .append("M=M+1");
-
-            return buffer.toString();
+        public void appendAssemblyCode(StringBuilder builder) {
+            builder.append(POP_OPERANDS)
+                   .append("MD=D|M\n")
+                   .append(VMUtils.incrementStackPointer());
         }
         
     },
     
-    
+
     NOT {
         
         @Override
-        public String toAssemblyCode(String command) {
-            StringBuilder buffer = new StringBuilder();
-
-            buffer.append("@SP\n")
-                  .append("AM=M-1\n")
-                  .append("M=!M\n")
-                  .append("@SP\n")
-                  .append("M=M+1");
-
-            return buffer.toString();
+        public void appendAssemblyCode(StringBuilder builder) {
+            builder.append("@SP\nAM=M-1\n")
+                   .append("M=!M\n")
+                   .append(VMUtils.incrementStackPointer());
         }
         
     };
     
     
     private static final AtomicLong counter = new AtomicLong(0);
+    private static final String POP_OPERANDS = "@SP\nAM=M-1\nD=M\n@SP\nAM=M-1\n";
+
+    /** The constants, cached since values() returns a new array on each call */
+    private static final ArithmeticCommandType[] VALUES = values();
     
+
+    /**
+     * Returns the number of unique labels that have been generated for comparison commands (eq, gt, lt). The labels
+     * are numbered from 1 to this count.
+     * 
+     * @return the number of unique labels that have been generated for comparison commands
+     */
+    public static long labelCount() {
+        return counter.get();
+    }
+
+
+    /**
+     * Resets the numbering of the unique labels generated for comparison commands
+     */
+    public static void resetLabelCount() {
+        counter.set(0);
+    }
+
     
+    /**
+     * Appends the assembly code for this command type to the given builder
+     * 
+     * @param builder           the builder to which to append the code
+     */
+    public abstract void appendAssemblyCode(StringBuilder builder);
+
+
     /**
      * Returns the assembly code for the given command
      * 
      * @param command           the command for which to return the assembly code
      * @return the assembly code for the given command
      */
-    public abstract String toAssemblyCode(String command);
+    public String toAssemblyCode(String command) {
+        StringBuilder builder = new StringBuilder();
+        appendAssemblyCode(builder);
+        return builder.toString();
+    }
+
+
+    /**
+     * Appends the assembly code of a comparison to the given builder. The comparison pops its two operands, and
+     * pushes true (-1) if the given jump condition holds for their difference, or false (0) otherwise. Its labels
+     * are made unique by a number that is incremented for each comparison.
+     * 
+     * @param builder           the builder to which to append the code
+     * @param label             the prefix of the labels of the comparison
+     * @param jump              the conditional jump taken when the comparison is true
+     */
+    private static void appendComparison(StringBuilder builder, String label, String jump) {
+        long increment = counter.incrementAndGet();
+
+        builder.append(POP_OPERANDS)
+               .append("D=M-D\n")
+               .append('@').append(label).append(increment).append('\n')
+               .append(jump).append('\n')
+               .append("@SP\nA=M\nM=0\n")
+               .append('@').append(label).append("_END").append(increment).append('\n')
+               .append("0;JMP\n")
+               .append('(').append(label).append(increment).append(")\n")
+               .append("@SP\nA=M\nM=-1\n")
+               .append('(').append(label).append("_END").append(increment).append(")\n")
+               .append(VMUtils.incrementStackPointer());
+    }
     
 
     /**
@@ -258,7 +202,7 @@ public enum ArithmeticCommandType {
         String syntax = VMUtils.stripComments(command);
         String[] parts = syntax.split(" ");
 
-        for(ArithmeticCommandType type : values()) {
+        for(ArithmeticCommandType type : VALUES) {
             if(type.name().toLowerCase().equals(parts[0].toLowerCase())) {
                 return type;
             }
@@ -267,4 +211,28 @@ public enum ArithmeticCommandType {
         return null;
     }
 
+
+    /**
+     * Returns the enum constant of the given arithmetic command. The operation of a command that was parsed into a
+     * table is read from the table rather than from the syntax of the command.
+     * 
+     * @param command          the arithmetic command for which to find the enum constant
+     * @return the enum constant of the given arithmetic command
+     */
+    public static ArithmeticCommandType of(VMCommand command) {
+        return (command instanceof ArithmeticCommand)? ((ArithmeticCommand) command).getOperation() :
+                fromCommand(command.getCommand());
+    }
+
+
+    /**
+     * Returns the enum constant with the given operation number, which is its ordinal
+     * 
+     * @param operation         the operation number of the enum constant
+     * @return the enum constant with the given operation number
+     */
+    public static ArithmeticCommandType fromOperation(int operation) {
+        return VALUES[operation];
+    }
+
 }
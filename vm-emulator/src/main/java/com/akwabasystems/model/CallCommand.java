@@ -2,6 +2,8 @@
 package com.akwabasystems.model;
 
 import com.akwabasystems.utils.VMUtils;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -11,10 +13,18 @@ import java.util.concurrent.ConcurrentMap;
  * appropriate segments (LCL, ARG, THIS, THAT) prior to invoking the target function. It also contains a registry
  * that keeps track of the invocation count for each function. This allows it to set a unique return address in case
  * a function is called recursively.
+ * 
+ * A call that is marked as a tail call (a call that is immediately followed by the return command of the calling
+ * function) reuses the frame of the calling function instead of saving a new one: see appendTailCallAssemblyCode().
  */
 public final class CallCommand extends AbstractVMCommand {
     
     private static final ConcurrentMap<String,Integer> registry = new ConcurrentHashMap<>();
+    private static final int FRAME_SIZE = 5;
+    private static final String[] FRAME_SEGMENTS = { "LCL", "ARG", "THIS", "THAT" };
+    public static final int UNKNOWN_ARGUMENTS = -1;
+    private boolean isTailCall = false;
+    private int callingFunctionArguments = UNKNOWN_ARGUMENTS;
     
     
     /**
@@ -26,38 +36,99 @@ public final class CallCommand extends AbstractVMCommand {
         super(CommandType.C_CALL, command);
     }
 
+
+    /**
+     * Creates an instance of this class as a view over the given row of a command table
+     * 
+     * @param table         the table that holds the command
+     * @param row           the row of the command in the table
+     */
+    public CallCommand(CommandTable table, int row) {
+        super(table, row);
+    }
+
+
+    /**
+     * Returns the number of times that each function has been called by the commands translated so far. The return
+     * addresses of the calls to a function f are numbered from 1 to this count ("f$ret", then "f$ret2", and so on).
+     * 
+     * @return the number of times that each function has been called, keyed by function name
+     */
+    public static Map<String,Integer> invocationCounts() {
+        return new TreeMap<>(registry);
+    }
+
+
+    /**
+     * Resets the numbering of the return addresses of all the functions
+     */
+    public static void resetInvocationCounts() {
+        registry.clear();
+    }
+
     
     /**
-     * Returns the assembly code for this command
+     * Specifies whether this command is a tail call
      * 
-     * @return the assembly code for this command
+     * @param isTailCall        a flag that specifies whether this command is a tail call
+     * @return a reference to this class instance
+     */
+    public CallCommand setTailCall(boolean isTailCall) {
+        this.isTailCall = isTailCall;
+        return this;
+    }
+
+
+    /**
+     * Sets the number of arguments of the function that encloses this command, if it is known. This allows a tail call
+     * to reuse the frame of the calling function with fewer moves.
+     * 
+     * @param arguments         the number of arguments of the calling function, or UNKNOWN_ARGUMENTS
+     * @return a reference to this class instance
+     */
+    public CallCommand setCallingFunctionArguments(int arguments) {
+        this.callingFunctionArguments = arguments;
+        return this;
+    }
+
+
+    /**
+     * Returns true if this command is a tail call; otherwise, returns false
+     * 
+     * @return true if this command is a tail call; otherwise, returns false
+     */
+    public boolean isTailCall() {
+        return isTailCall;
+    }
+
+    
+    /**
+     * Appends the assembly code for this command to the given builder
+     * 
+     * @param builder       the builder to which to append the assembly code
      */
     @Override
-    public String toAssemblyCode() {
+    public void appendAssemblyCode(StringBuilder builder) {
+
+        if(isTailCall) {
+            appendTailCallAssemblyCode(builder);
+            return;
+        }
+
         String functionName = getArgument1();
-        String returnAddress = String.format("%s$ret", functionName);
         
         /** 
          * Map the function name to the number of times it has been invoked. This is useful for recursive calls,
          * as the return address for each call must be different.
          */
-        int invocations = 0;
-        
-        if(registry.containsKey(functionName)) {
-            invocations = registry.get(functionName);
-        }
-        
-        registry.put(functionName, ++invocations);
-        returnAddress = (invocations == 1)? returnAddress : String.format("%s%s", returnAddress, invocations);
-        
-        StringBuilder builder = new StringBuilder();
+        int invocations = registry.merge(functionName, 1, Integer::sum);
         
         /** 
          * Generate the code for the return address 
          * push return-address
          */
-        builder.append(String.format("@%s\n", returnAddress))
-               .append("D=A\n")
+        appendReturnAddress(builder.append('@'), functionName, invocations)
+               .append("\nD=A\n")
                .append(VMUtils.pushToStackAssemblyCode())
                .append("\n");
 
@@ -68,18 +139,15 @@ public final class CallCommand extends AbstractVMCommand {
          * push THIS
          * push THAT
          */
-        String[] segments = { "LCL", "ARG", "THIS", "THAT" };
-        
-        for(String segment : segments) {
-            builder.append(VMUtils.pushSegmentToStackAssemblyCode(segment));
-            builder.append("\n");
+        for(String segment : FRAME_SEGMENTS) {
+            VMUtils.appendPushSegmentToStack(builder, segment).append("\n");
         }
 
         /**
          * Generate the code for repositioning the ARG segment
          * ARG = SP - n - 5 (n = number of arguments) 
          */
-        builder.append(String.format("@%s\n", getArgument2()))
+        builder.append('@').append(getArgument2()).append('\n')
                .append("D=A\n")
                .append("@5\n")
                .append("D=D+A\n")
@@ -101,16 +169,204 @@ public final class CallCommand extends AbstractVMCommand {
          * Generate the code for jumping to the called function
          * goto fn
          */
-        builder.append(String.format("@%s\n", getArgument1()))
+        builder.append('@').append(functionName).append('\n')
                .append("0;JMP\n");
         
         /**
          * Generate the code for the return address label
          * (return-address)
          */
-        builder.append(String.format("(%s)", returnAddress));
+        appendReturnAddress(builder.append('('), functionName, invocations).append(')');
+    }
+
 
-        return builder.toString();
+    /**
+     * Appends the return address of the given invocation of a function to the given builder. The first invocation
+     * returns to "function$ret", and the next ones to "function$ret2", "function$ret3", and so on.
+     *
+     * @param builder           the builder to which to append the return address
+     * @param functionName      the name of the invoked function
+     * @param invocations       the number of invocations of the function, including this one
+     * @return the given builder
+     */
+    private static StringBuilder appendReturnAddress(StringBuilder builder, String functionName, int invocations) {
+        builder.append(functionName).append("$ret");
+        return (invocations == 1)? builder : builder.append(invocations);
     }
-    
+
+
+    /**
+     * Returns the assembly code for this command as a tail call. Since the return command of the calling function
+     * would immediately return the value of the called function, the called function can return directly to the
+     * caller of the calling function. The frame of the calling function is therefore reused: its arguments are
+     * replaced with the n arguments of the call, followed by the frame that the calling function saved when it was
+     * called (return address, LCL, ARG, THIS, THAT), and the called function is jumped to. No return address is
+     * generated, the segments of the calling function are not saved, and the stack does not grow.
+     * 
+     * How the values are moved depends on the number of arguments of the calling function, if it is known:
+     * 
+     *      - if it is n (for instance, a recursive call), the saved frame is already in place, and only the
+     *        arguments are moved
+     *      - if it is greater than n, the saved frame is first moved down, then the arguments are moved below it
+     *      - otherwise, the saved frame is pushed on top of the arguments, and the whole block (n + 5 values) is
+     *        moved down to the argument segment
+     * 
+     * @param builder           the builder to which to append the assembly code
+     */
+    private void appendTailCallAssemblyCode(StringBuilder builder) {
+        int arguments = getArgument2();
+        boolean isFrameInPlace = (callingFunctionArguments == arguments);
+        boolean canMoveFrameDown = (callingFunctionArguments > arguments);
+
+        if(isFrameInPlace || canMoveFrameDown) {
+
+            if(canMoveFrameDown) {
+
+                /**
+                 * Move the saved frame down, right after the new arguments
+                 * R13 = LCL - 5
+                 * R14 = ARG + n
+                 * repeat 5 times: *R14 = *R13; R13 = R13 + 1; R14 = R14 + 1
+                 */
+                builder.append("@LCL\n")
+                       .append("D=M\n")
+                       .append('@').append(FRAME_SIZE).append('\n')
+                       .append("D=D-A\n")
+                       .append("@R13\n")
+                       .append("M=D\n")
+                       .append("@ARG\n")
+                       .append("D=M\n")
+                       .append('@').append(arguments).append('\n')
+                       .append("D=D+A\n")
+                       .append("@R14\n")
+                       .append("M=D\n");
+
+                appendCopyAssemblyCode(builder, FRAME_SIZE);
+            }
+
+            /**
+             * Pop the arguments into the argument segment, from the last one to the first one
+             * R13 = ARG + n
+             * repeat n times: R13 = R13 - 1; *R13 = pop()
+             */
+            builder.append("@ARG\n")
+                   .append("D=M\n")
+                   .append('@').append(arguments).append('\n')
+                   .append("D=D+A\n")
+                   .append("@R13\n")
+                   .append("M=D\n");
+
+            for(int i = 0; i < arguments; i++) {
+                builder.append(VMUtils.popFromStackAssemblyCode())
+                       .append("@R13\n")
+                       .append("AM=M-1\n")
+                       .append("M=D\n");
+            }
+
+            /**
+             * Reposition the LCL segment (if the frame was moved) and the stack pointer right after the frame
+             * LCL = ARG + n + 5
+             * SP = LCL
+             */
+            if(canMoveFrameDown) {
+                builder.append("@ARG\n")
+                       .append("D=M\n")
+                       .append('@').append(arguments + FRAME_SIZE).append('\n')
+                       .append("D=D+A\n")
+                       .append("@LCL\n")
+                       .append("M=D\n");
+            } else {
+                builder.append("@LCL\n")
+                       .append("D=M\n");
+            }
+
+            builder.append("@SP\n")
+                   .append("M=D\n");
+
+        } else {
+
+            /**
+             * Push the saved frame of the calling function on top of the arguments
+             * R13 = LCL - 5
+             * repeat 5 times: push *R13; R13 = R13 + 1
+             */
+            builder.append("@LCL\n")
+                   .append("D=M\n")
+                   .append('@').append(FRAME_SIZE).append('\n')
+                   .append("D=D-A\n")
+                   .append("@R13\n")
+                   .append("M=D\n");
+
+            for(int i = 0; i < FRAME_SIZE; i++) {
+                builder.append("@R13\n")
+                       .append("AM=M+1\n")
+                       .append("A=A-1\n")
+                       .append("D=M\n")
+                       .append("@SP\n")
+                       .append("AM=M+1\n")
+                       .append("A=A-1\n")
+                       .append("M=D\n");
+            }
+
+            /**
+             * Move the arguments and the frame down to the argument segment of the calling function
+             * R13 = SP - n - 5
+             * R14 = ARG
+             * repeat n + 5 times: *R14 = *R13; R13 = R13 + 1; R14 = R14 + 1
+             */
+            builder.append("@SP\n")
+                   .append("D=M\n")
+                   .append('@').append(arguments + FRAME_SIZE).append('\n')
+                   .append("D=D-A\n")
+                   .append("@R13\n")
+                   .append("M=D\n")
+                   .append("@ARG\n")
+                   .append("D=M\n")
+                   .append("@R14\n")
+                   .append("M=D\n");
+
+            appendCopyAssemblyCode(builder, arguments + FRAME_SIZE);
+
+            /**
+             * Reposition the LCL segment and the stack pointer right after the moved frame
+             * LCL = SP = R14
+             */
+            builder.append("@R14\n")
+                   .append("D=M\n")
+                   .append("@LCL\n")
+                   .append("M=D\n")
+                   .append("@SP\n")
+                   .append("M=D\n");
+        }
+
+        /**
+         * Generate the code for jumping to the called function
+         * goto fn
+         */
+        builder.append('@').append(getArgument1()).append('\n')
+               .append("0;JMP");
+    }
+
+
+    /**
+     * Appends the assembly code for copying the given number of values from the address in R13 to the address in
+     * R14, in ascending order. Both addresses are incremented past the copied values.
+     * 
+     * @param builder           the builder to which to append the assembly code
+     * @param count             the number of values to copy
+     */
+    private static void appendCopyAssemblyCode(StringBuilder builder, int count) {
+
+        for(int i = 0; i < count; i++) {
+            builder.append("@R13\n")
+                   .append("AM=M+1\n")
+                   .append("A=A-1\n")
+                   .append("D=M\n")
+                   .append("@R14\n")
+                   .append("AM=M+1\n")
+                   .append("A=A-1\n")
+                   .append("M=D\n");
+        }
+    }
+
 }
@@ -0,0 +1,296 @@
+package com.akwabasystems.model;
+
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * A compact, struct-of-arrays representation of parsed VM commands.
+ *
+ * Each row holds the type of a command, its operation (the ordinal of its ArithmeticCommandType for arithmetic
+ * commands, or of its Segment for memory access commands), the id of its interned name (the segment, label or function
+ * name), and its index (the second argument). Names are interned in a table that is shared by all the rows, so that a
+ * name that occurs many times (a function called from many places, a segment name) is stored only once, and can be
+ * looked up from a byte range without allocating a string.
+ *
+ * The command classes can be created as views over a row of this table (see CommandType.command(CommandTable, int)).
+ */
+public final class CommandTable {
+
+    public static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 256;
+    private static final CommandType[] TYPES = CommandType.values();
+    private static final String[] ARITHMETIC_COMMANDS = CommandType.C_ARITHMETIC.commandList().toArray(new String[0]);
+
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private byte[] operations = new byte[INITIAL_CAPACITY];
+    private int[] names = new int[INITIAL_CAPACITY];
+    private int[] indices = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private final List<String> nameList = new ArrayList<>();
+    private int[] nameSlots = emptySlots(INITIAL_CAPACITY);
+
+
+    /**
+     * Appends a row to this table
+     *
+     * @param type              the type of the command
+     * @param operation         the ordinal of the arithmetic command type or segment, or NONE
+     * @param name              the id of the interned name of the command, or NONE
+     * @param index             the index (second argument) of the command
+     * @return the index of the new row
+     */
+    public int add(CommandType type, int operation, int name, int index) {
+
+        if(size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            operations = Arrays.copyOf(operations, capacity);
+            names = Arrays.copyOf(names, capacity);
+            indices = Arrays.copyOf(indices, capacity);
+        }
+
+        types[size] = (byte) type.ordinal();
+        operations[size] = (byte) operation;
+        names[size] = name;
+        indices[size] = index;
+
+        return size++;
+    }
+
+
+    /**
+     * Returns the number of rows in this table
+     *
+     * @return the number of rows in this table
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Returns the type of the command at the given row
+     *
+     * @param row               the row of the command
+     * @return the type of the command at the given row
+     */
+    public CommandType type(int row) {
+        return TYPES[types[row]];
+    }
+
+
+    /**
+     * Returns the operation of the command at the given row (the ordinal of its ArithmeticCommandType or Segment), or
+     * NONE if the command has no operation or an unknown segment
+     *
+     * @param row               the row of the command
+     * @return the operation of the command at the given row
+     */
+    public int operation(int row) {
+        return operations[row];
+    }
+
+
+    /**
+     * Returns the id of the interned name of the command at the given row, or NONE if the command has no name
+     *
+     * @param row               the row of the command
+     * @return the id of the interned name of the command at the given row
+     */
+    public int name(int row) {
+        return names[row];
+    }
+
+
+    /**
+     * Returns the index (second argument) of the command at the given row
+     *
+     * @param row               the row of the command
+     * @return the index of the command at the given row
+     */
+    public int index(int row) {
+        return indices[row];
+    }
+
+
+    /**
+     * Returns the first argument of the command at the given row, or an empty string if the command has none
+     *
+     * @param row               the row of the command
+     * @return the first argument of the command at the given row
+     */
+    public String argument1(int row) {
+        return (names[row] == NONE)? "" : nameList.get(names[row]);
+    }
+
+
+    /**
+     * Returns the syntax of the command at the given row (for instance, "push constant 7")
+     *
+     * @param row               the row of the command
+     * @return the syntax of the command at the given row
+     */
+    public String text(int row) {
+        CommandType type = type(row);
+
+        switch(type) {
+            case C_ARITHMETIC:
+                return ARITHMETIC_COMMANDS[operations[row]];
+            case C_RETURN:
+                return "return";
+            case C_LABEL:
+            case C_GOTO:
+            case C_IF:
+                return String.format("%s %s", type.commandList().get(0), argument1(row));
+            default:
+                return String.format("%s %s %s", type.commandList().get(0), argument1(row), indices[row]);
+        }
+    }
+
+
+    /**
+     * Returns the name with the given id
+     *
+     * @param id                the id of the name
+     * @return the name with the given id
+     */
+    public String nameOf(int id) {
+        return nameList.get(id);
+    }
+
+
+    /**
+     * Returns the number of distinct names in this table
+     *
+     * @return the number of distinct names in this table
+     */
+    public int nameCount() {
+        return nameList.size();
+    }
+
+
+    /**
+     * Interns the given name, and returns its id
+     *
+     * @param name              the name to intern
+     * @return the id of the given name
+     */
+    public int intern(String name) {
+        int slot = name.hashCode() & (nameSlots.length - 1);
+
+        while(nameSlots[slot] != NONE) {
+            if(nameList.get(nameSlots[slot]).equals(name)) {
+                return nameSlots[slot];
+            }
+
+            slot = (slot + 1) & (nameSlots.length - 1);
+        }
+
+        return addName(slot, name);
+    }
+
+
+    /**
+     * Interns the name made up of the given range of ASCII bytes, and returns its id. The hash is computed as
+     * String.hashCode() would, and a string is only created the first time a name is seen.
+     *
+     * @param buffer            the buffer that holds the name
+     * @param start             the index of the first byte of the name
+     * @param end               the index after the last byte of the name
+     * @return the id of the name
+     */
+    public int intern(byte[] buffer, int start, int end) {
+        int hash = 0;
+
+        for(int i = start; i < end; i++) {
+            hash = 31 * hash + (buffer[i] & 0xFF);
+        }
+
+        int slot = hash & (nameSlots.length - 1);
+
+        while(nameSlots[slot] != NONE) {
+            if(matches(nameList.get(nameSlots[slot]), buffer, start, end)) {
+                return nameSlots[slot];
+            }
+
+            slot = (slot + 1) & (nameSlots.length - 1);
+        }
+
+        return addName(slot, new String(buffer, start, end - start, StandardCharsets.ISO_8859_1));
+    }
+
+
+    /**
+     * Adds the given name to the name table at the given slot, growing the table if it is more than half full
+     *
+     * @param slot              the free slot for the name
+     * @param name              the name to add
+     * @return the id of the name
+     */
+    private int addName(int slot, String name) {
+        int id = nameList.size();
+        nameList.add(name);
+        nameSlots[slot] = id;
+
+        if(nameList.size() * 2 > nameSlots.length) {
+            nameSlots = emptySlots(nameSlots.length * 2);
+
+            for(int i = 0; i < nameList.size(); i++) {
+                String current = nameList.get(i);
+                int newSlot = current.hashCode() & (nameSlots.length - 1);
+
+                while(nameSlots[newSlot] != NONE) {
+                    newSlot = (newSlot + 1) & (nameSlots.length - 1);
+                }
+
+                nameSlots[newSlot] = i;
+            }
+        }
+
+        return id;
+    }
+
+
+    /**
+     * Returns true if the given name matches the given range of bytes; otherwise, returns false
+     *
+     * @param name              the name to compare
+     * @param buffer            the buffer that holds the bytes
+     * @param start             the index of the first byte
+     * @param end               the index after the last byte
+     * @return true if the given name matches the given range of bytes; otherwise, returns false
+     */
+    private static boolean matches(String name, byte[] buffer, int start, int end) {
+
+        if(name.length() != end - start) {
+            return false;
+        }
+
+        for(int i = 0; i < name.length(); i++) {
+            if(name.charAt(i) != (buffer[start + i] & 0xFF)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Returns an array of the given length, filled with NONE
+     *
+     * @param length            the length of the array
+     * @return an array of the given length, filled with NONE
+     */
+    private static int[] emptySlots(int length) {
+        int[] slots = new int[length];
+        Arrays.fill(slots, NONE);
+        return slots;
+    }
+
+}
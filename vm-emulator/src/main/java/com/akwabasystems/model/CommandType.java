@@ -22,6 +22,11 @@ public enum CommandType {
         public VMCommand command(String command) {
             return new ArithmeticCommand(command);
         }
+
+        @Override
+        public VMCommand command(CommandTable table, int row) {
+            return new ArithmeticCommand(table, row);
+        }
     },
     
     C_PUSH {
@@ -34,6 +39,11 @@ public enum CommandType {
         public VMCommand command(String command) {
             return new PushCommand(command);
         }
+
+        @Override
+        public VMCommand command(CommandTable table, int row) {
+            return new PushCommand(table, row);
+        }
     },
     
     C_POP {
@@ -46,6 +56,11 @@ public enum CommandType {
         public VMCommand command(String command) {
             return new PopCommand(command);
         }
+
+        @Override
+        public VMCommand command(CommandTable table, int row) {
+            return new PopCommand(table, row);
+        }
     },
     
     C_LABEL {
@@ -58,6 +73,11 @@ public enum CommandType {
         public VMCommand command(String command) {
             return new LabelCommand(command);
         }
+
+        @Override
+        public VMCommand command(CommandTable table, int row) {
+            return new LabelCommand(table, row);
+        }
     },
     
     C_GOTO {
@@ -70,6 +90,11 @@ public enum CommandType {
         public VMCommand command(String command) {
             return new GotoCommand(command);
         }
+
+        @Override
+        public VMCommand command(CommandTable table, int row) {
+            return new GotoCommand(table, row);
+        }
     },
     
     C_IF {
@@ -82,6 +107,11 @@ public enum CommandType {
         public VMCommand command(String command) {
             return new IfCommand(command);
         }
+
+        @Override
+        public VMCommand command(CommandTable table, int row) {
+            return new IfCommand(table, row);
+        }
     },
     
     C_FUNCTION {
@@ -94,6 +124,11 @@ public enum CommandType {
         public VMCommand command(String command) {
             return new FunctionCommand(command);
         }
+
+        @Override
+        public VMCommand command(CommandTable table, int row) {
+            return new FunctionCommand(table, row);
+        }
     },
     
     C_RETURN {
@@ -106,6 +141,11 @@ public enum CommandType {
         public VMCommand command(String command) {
             return new ReturnCommand(command);
         }
+
+        @Override
+        public VMCommand command(CommandTable table, int row) {
+            return new ReturnCommand(table, row);
+        }
     },
     
     C_CALL {
@@ -118,6 +158,11 @@ public enum CommandType {
         public VMCommand command(String command) {
             return new CallCommand(command);
         }
+
+        @Override
+        public VMCommand command(CommandTable table, int row) {
+            return new CallCommand(table, row);
+        }
     };
     
     /**
@@ -135,6 +180,16 @@ public enum CommandType {
      * @return the VMCommand associated to this enum constant
      */
     public abstract VMCommand command(String command);
+
+
+    /**
+     * Returns the VMCommand associated to this enum constant, as a view over the given row of a command table
+     * 
+     * @param table             the table that holds the command
+     * @param row               the row of the command in the table
+     * @return the VMCommand associated to this enum constant
+     */
+    public abstract VMCommand command(CommandTable table, int row);
     
 
     /**
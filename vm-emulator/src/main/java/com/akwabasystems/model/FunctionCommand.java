@@ -17,30 +17,31 @@ public final class FunctionCommand extends AbstractVMCommand {
         super(CommandType.C_FUNCTION, command);
     }
 
+
+    /**
+     * Creates an instance of this class as a view over the given row of a command table
+     * 
+     * @param table         the table that holds the command
+     * @param row           the row of the command in the table
+     */
+    public FunctionCommand(CommandTable table, int row) {
+        super(table, row);
+    }
+
     
     /**
-     * Returns the assembly code for this command
+     * Appends the assembly code for this command to the given builder
      * 
-     * @return the assembly code for this command
+     * @param builder       the builder to which to append the assembly code
      */
     @Override
-    public String toAssemblyCode() {
-        StringBuilder builder = new StringBuilder();
-        builder.append(String.format("(%s)", getArgument1()));
+    public void appendAssemblyCode(StringBuilder builder) {
+        builder.append('(').append(getArgument1()).append(')');
         int totalArguments = getArgument2();
 
-        if(totalArguments > 0) {
-            builder.append("\n");
-            
-            for(int i = 0; i < totalArguments; i++) {
-                builder.append(Segment.CONSTANT.pushAssemblyCode(0));
-
-                if(i != totalArguments - 1) {
-                    builder.append("\n");
-                }
-            }
+        for(int i = 0; i < totalArguments; i++) {
+            builder.append('\n');
+            Segment.CONSTANT.appendPushAssemblyCode(builder, 0);
         }
-        
-        return builder.toString();
     }
 }
@@ -17,20 +17,28 @@ public final class GotoCommand extends AbstractVMCommand {
     public GotoCommand(String command) {
         super(CommandType.C_GOTO, command);
     }
+
+
+    /**
+     * Creates an instance of this class as a view over the given row of a command table
+     * 
+     * @param table         the table that holds the command
+     * @param row           the row of the command in the table
+     */
+    public GotoCommand(CommandTable table, int row) {
+        super(table, row);
+    }
     
     
     /**
-     * Returns the assembly code for this command
+     * Appends the assembly code for this command to the given builder
      * 
-     * @return the assembly code for this command
+     * @param builder       the builder to which to append the assembly code
      */
     @Override
-    public String toAssemblyCode() {
-        StringBuilder builder = new StringBuilder();
-        builder.append(String.format("@%s$%s\n", getContext(), getArgument1()))
+    public void appendAssemblyCode(StringBuilder builder) {
+        builder.append('@').append(getContext()).append('$').append(getArgument1()).append('\n')
                .append("0;JMP");
-        
-        return builder.toString();
     }
 
 }
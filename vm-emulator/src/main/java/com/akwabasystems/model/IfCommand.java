@@ -1,6 +1,8 @@
 
 package com.akwabasystems.model;
 
+import com.akwabasystems.utils.VMUtils;
+
 
 /**
  * A class that represents a conditional jump command (if-goto label). It outputs the code for performing a jump
@@ -16,24 +18,29 @@ public final class IfCommand extends AbstractVMCommand {
     public IfCommand(String command) {
         super(CommandType.C_IF, command);
     }
+
+
+    /**
+     * Creates an instance of this class as a view over the given row of a command table
+     * 
+     * @param table         the table that holds the command
+     * @param row           the row of the command in the table
+     */
+    public IfCommand(CommandTable table, int row) {
+        super(table, row);
+    }
     
     
     /**
-     * Returns the assembly code for this command
+     * Appends the assembly code for this command to the given builder
      * 
-     * @return the assembly code for this command
+     * @param builder       the builder to which to append the assembly code
      */
     @Override
-    public String toAssemblyCode() {
-        StringBuilder builder = new StringBuilder();
-
-        builder.append("@SP\n")
-               .append("AM=M-1\n")
-               .append("D=M\n")
-               .append(String.format("@%s$%s\n", getContext(), getArgument1()))
+    public void appendAssemblyCode(StringBuilder builder) {
+        builder.append(VMUtils.popFromStackAssemblyCode())
+               .append('@').append(getContext()).append('$').append(getArgument1()).append('\n')
                .append("D;JNE");
-        
-        return builder.toString();
     }
 
 }
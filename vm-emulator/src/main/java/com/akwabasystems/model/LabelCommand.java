@@ -18,15 +18,26 @@ public final class LabelCommand extends AbstractVMCommand {
         super(CommandType.C_LABEL, command);
     }
 
+
+    /**
+     * Creates an instance of this class as a view over the given row of a command table
+     * 
+     * @param table         the table that holds the command
+     * @param row           the row of the command in the table
+     */
+    public LabelCommand(CommandTable table, int row) {
+        super(table, row);
+    }
+
     
     /**
-     * Returns the assembly code for this command
+     * Appends the assembly code for this command to the given builder
      * 
-     * @return the assembly code for this command
+     * @param builder       the builder to which to append the assembly code
      */
     @Override
-    public String toAssemblyCode() {
-        return String.format("(%s$%s)", getContext(), getArgument1());
+    public void appendAssemblyCode(StringBuilder builder) {
+        builder.append('(').append(getContext()).append('$').append(getArgument1()).append(')');
     }
 
 }
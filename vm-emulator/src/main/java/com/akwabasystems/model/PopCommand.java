@@ -16,20 +16,33 @@ public final class PopCommand extends AbstractVMCommand {
     public PopCommand(String command) {
         super(CommandType.C_POP, command);
     }
+
+
+    /**
+     * Creates an instance of this class as a view over the given row of a command table
+     * 
+     * @param table         the table that holds the command
+     * @param row           the row of the command in the table
+     */
+    public PopCommand(CommandTable table, int row) {
+        super(table, row);
+    }
     
     
     /**
-     * Returns the assembly code for this command
+     * Appends the assembly code for this command to the given builder
      * 
-     * @return the assembly code for this command
+     * @param builder       the builder to which to append the assembly code
      */
     @Override
-    public String toAssemblyCode() {
+    public void appendAssemblyCode(StringBuilder builder) {
         Segment segment = Segment.fromArgument(getArgument1());
-        boolean isStaticSegment = (segment == Segment.STATIC);
-        
-        return (isStaticSegment)? Segment.popFromStaticSegmentIndex(getFileName(), getArgument2()) : 
-                segment.popAssemblyCode(getArgument2()); 
+
+        if(segment == Segment.STATIC) {
+            Segment.appendPopToStaticSegmentIndex(builder, getFileName(), getArgument2());
+        } else {
+            segment.appendPopAssemblyCode(builder, getArgument2());
+        }
     }
     
 }
@@ -19,17 +19,30 @@ public final class PushCommand extends AbstractVMCommand {
 
 
     /**
-     * Returns the assembly code for this command
+     * Creates an instance of this class as a view over the given row of a command table
      * 
-     * @return the assembly code for this command
+     * @param table         the table that holds the command
+     * @param row           the row of the command in the table
+     */
+    public PushCommand(CommandTable table, int row) {
+        super(table, row);
+    }
+
+
+    /**
+     * Appends the assembly code for this command to the given builder
+     * 
+     * @param builder       the builder to which to append the assembly code
      */
     @Override
-    public String toAssemblyCode() {
+    public void appendAssemblyCode(StringBuilder builder) {
         Segment segment = Segment.fromArgument(getArgument1());
-        boolean isStaticSegment = (segment == Segment.STATIC);
 
-        return (isStaticSegment)? Segment.pushToStaticSegmentIndex(getFileName(), getArgument2()) : 
-                segment.pushAssemblyCode(getArgument2()); 
+        if(segment == Segment.STATIC) {
+            Segment.appendPushFromStaticSegmentIndex(builder, getFileName(), getArgument2());
+        } else {
+            segment.appendPushAssemblyCode(builder, getArgument2());
+        }
     }
 
 }
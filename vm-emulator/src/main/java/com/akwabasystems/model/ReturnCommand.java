@@ -10,6 +10,9 @@ import com.akwabasystems.utils.VMUtils;
  */
 public final class ReturnCommand extends AbstractVMCommand {
     
+    /** The code of a return does not depend on its function, so it is generated once */
+    private static final String ASSEMBLY_CODE = returnAssemblyCode();
+    
     
     /**
      * Creates an instance of this class with the given command
@@ -20,14 +23,35 @@ public final class ReturnCommand extends AbstractVMCommand {
         super(CommandType.C_RETURN, command);
     }
 
+
+    /**
+     * Creates an instance of this class as a view over the given row of a command table
+     * 
+     * @param table         the table that holds the command
+     * @param row           the row of the command in the table
+     */
+    public ReturnCommand(CommandTable table, int row) {
+        super(table, row);
+    }
+
     
     /**
-     * Returns the assembly code for this command
+     * Appends the assembly code for this command to the given builder
      * 
-     * @return the assembly code for this command
+     * @param builder       the builder to which to append the assembly code
      */
     @Override
-    public String toAssemblyCode() {
+    public void appendAssemblyCode(StringBuilder builder) {
+        builder.append(ASSEMBLY_CODE);
+    }
+
+    
+    /**
+     * Returns the assembly code of a return command
+     * 
+     * @return the assembly code of a return command
+     */
+    private static String returnAssemblyCode() {
         StringBuilder builder = new StringBuilder();
 
         /** 
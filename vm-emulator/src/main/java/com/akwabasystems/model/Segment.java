@@ -19,19 +19,12 @@ public enum Segment {
         }
 
         @Override
-        public String pushAssemblyCode(int index) {
-            StringBuilder buffer = new StringBuilder();
-
-            buffer.append(String.format("@%s\n", String.valueOf(index)))
-                  .append("D=A\n")
-                  .append(VMUtils.pushToStackAssemblyCode());
-
-            return buffer.toString();
+        public void appendPushAssemblyCode(StringBuilder builder, int index) {
+            builder.append('@').append(index).append("\nD=A\n").append(VMUtils.pushToStackAssemblyCode());
         }
 
         @Override
-        public String popAssemblyCode(int index) {
-            return "";
+        public void appendPopAssemblyCode(StringBuilder builder, int index) {
         }
     },
 
@@ -44,13 +37,13 @@ public enum Segment {
         }
         
         @Override
-        public String pushAssemblyCode(int index) {
-            return pushFromSegmentIndex("LCL", index);
+        public void appendPushAssemblyCode(StringBuilder builder, int index) {
+            appendPushFromSegmentMapping(builder, "LCL", index, false);
         }
         
         @Override
-        public String popAssemblyCode(int index) {
-            return popToSegmentIndex("LCL", index);
+        public void appendPopAssemblyCode(StringBuilder builder, int index) {
+            appendPopToSegmentMapping(builder, "LCL", index, false);
         }
     },
     
@@ -63,13 +56,13 @@ public enum Segment {
         }
         
         @Override
-        public String pushAssemblyCode(int index) {
-            return pushFromSegmentIndex("ARG", index);
+        public void appendPushAssemblyCode(StringBuilder builder, int index) {
+            appendPushFromSegmentMapping(builder, "ARG", index, false);
         }
         
         @Override
-        public String popAssemblyCode(int index) {
-            return popToSegmentIndex("ARG", index);
+        public void appendPopAssemblyCode(StringBuilder builder, int index) {
+            appendPopToSegmentMapping(builder, "ARG", index, false);
         }
         
     },
@@ -83,13 +76,13 @@ public enum Segment {
         }
         
         @Override
-        public String pushAssemblyCode(int index) {
-            return pushFromSegmentIndex("THIS", index);
+        public void appendPushAssemblyCode(StringBuilder builder, int index) {
+            appendPushFromSegmentMapping(builder, "THIS", index, false);
         }
         
         @Override
-        public String popAssemblyCode(int index) {
-            return popToSegmentIndex("THIS", index);
+        public void appendPopAssemblyCode(StringBuilder builder, int index) {
+            appendPopToSegmentMapping(builder, "THIS", index, false);
         }
        
     },
@@ -103,13 +96,13 @@ public enum Segment {
         }
         
         @Override
-        public String pushAssemblyCode(int index) {
-            return pushFromSegmentIndex("THAT", index);
+        public void appendPushAssemblyCode(StringBuilder builder, int index) {
+            appendPushFromSegmentMapping(builder, "THAT", index, false);
         }
         
         @Override
-        public String popAssemblyCode(int index) {
-            return popToSegmentIndex("THAT", index);
+        public void appendPopAssemblyCode(StringBuilder builder, int index) {
+            appendPopToSegmentMapping(builder, "THAT", index, false);
         }
         
     },
@@ -123,13 +116,13 @@ public enum Segment {
         }
         
         @Override
-        public String pushAssemblyCode(int index) {
-            return pushFromDirectSegmentIndex("3", index);
+        public void appendPushAssemblyCode(StringBuilder builder, int index) {
+            appendPushFromSegmentMapping(builder, "3", index, true);
         }
         
         @Override
-        public String popAssemblyCode(int index) {
-            return popToDirectSegmentIndex("3", index);
+        public void appendPopAssemblyCode(StringBuilder builder, int index) {
+            appendPopToSegmentMapping(builder, "3", index, true);
         }
         
     },
@@ -143,13 +136,13 @@ public enum Segment {
         }
         
         @Override
-        public String pushAssemblyCode(int index) {
-            return pushFromDirectSegmentIndex("5", index);
+        public void appendPushAssemblyCode(StringBuilder builder, int index) {
+            appendPushFromSegmentMapping(builder, "5", index, true);
         }
         
         @Override
-        public String popAssemblyCode(int index) {
-            return popToDirectSegmentIndex("5", index);
+        public void appendPopAssemblyCode(StringBuilder builder, int index) {
+            appendPopToSegmentMapping(builder, "5", index, true);
         }
     },
     
@@ -162,17 +155,19 @@ public enum Segment {
         }
         
         @Override
-        public String pushAssemblyCode(int index) {
-            return "";
+        public void appendPushAssemblyCode(StringBuilder builder, int index) {
         }
         
         @Override
-        public String popAssemblyCode(int index) {
-            return "";
+        public void appendPopAssemblyCode(StringBuilder builder, int index) {
         }
     };
 
 
+    /** The constants, cached since values() returns a new array on each call */
+    private static final Segment[] VALUES = values();
+
+
     /**
      * Returns the argument for this enum constant
      * 
@@ -181,13 +176,35 @@ public enum Segment {
     public abstract String argument();
     
     
+    /**
+     * Appends the assembly code of the push command for this enum constant to the given builder
+     * 
+     * @param builder       the builder to which to append the code
+     * @param index         the index of the memory segment at which to push the item 
+     */
+    public abstract void appendPushAssemblyCode(StringBuilder builder, int index);
+    
+    
+    /**
+     * Appends the assembly code of the pop command for this enum constant to the given builder
+     * 
+     * @param builder       the builder to which to append the code
+     * @param index         the index of the memory segment from which to pop the item 
+     */
+    public abstract void appendPopAssemblyCode(StringBuilder builder, int index);
+    
+    
     /**
      * Returns the assembly code of the push command for this enum constant
      * 
      * @param index         the index of the memory segment at which to push the item 
      * @return the assembly code of the push command for this enum constant
      */
-    public abstract String pushAssemblyCode(int index);
+    public String pushAssemblyCode(int index) {
+        StringBuilder builder = new StringBuilder();
+        appendPushAssemblyCode(builder, index);
+        return builder.toString();
+    }
     
     
     /**
@@ -196,7 +213,11 @@ public enum Segment {
      * @param index         the index of the memory segment from which to pop the item 
      * @return the assembly code of the pop command for this enum constant
      */
-    public abstract String popAssemblyCode(int index);
+    public String popAssemblyCode(int index) {
+        StringBuilder builder = new StringBuilder();
+        appendPopAssemblyCode(builder, index);
+        return builder.toString();
+    }
     
     
     /**
@@ -234,15 +255,27 @@ public enum Segment {
      * @return the assembly code for pushing an item from a given segment onto the stack
      */
     public static String pushFromSegmentMapping(String segment, int index, boolean isDirectMapping) {
-        StringBuilder buffer = new StringBuilder();
-        buffer.append(String.format("@%s\n", segment))
-              .append((isDirectMapping)? "D=A\n" : "D=M\n")
-              .append(String.format("@%s\n", index))
-              .append("A=D+A\n")
-              .append("D=M\n")
-              .append(VMUtils.pushToStackAssemblyCode());
+        return appendPushFromSegmentMapping(new StringBuilder(), segment, index, isDirectMapping).toString();
+    }
+
 
-        return buffer.toString();
+    /**
+     * Appends the assembly code for pushing an item from a given segment onto the stack to the given builder
+     * 
+     * @param builder           the builder to which to append the code
+     * @param segment           the segment from which to get the value
+     * @param index             the index of the memory segment at which to get the value 
+     * @param isDirectMapping   a flag that specifies whether to use a direct mapping (A register) rather than an
+     *                          indirect one (the M memory)
+     * @return the given builder
+     */
+    public static StringBuilder appendPushFromSegmentMapping(StringBuilder builder, String segment, int index,
+                                                             boolean isDirectMapping) {
+        return builder.append('@').append(segment)
+                      .append((isDirectMapping)? "\nD=A\n@" : "\nD=M\n@")
+                      .append(index)
+                      .append("\nA=D+A\nD=M\n")
+                      .append(VMUtils.pushToStackAssemblyCode());
     }
     
     
@@ -281,22 +314,28 @@ public enum Segment {
      * @return the assembly code for popping an item from the stack into a given segment
      */
     public static String popToSegmentMapping(String segment, int index, boolean isDirectMapping) {
-        StringBuilder buffer = new StringBuilder();
-
-        buffer.append(String.format("@%s\n", segment))
-              .append((isDirectMapping)? "D=A\n" : "D=M\n")
-              .append(String.format("@%s\n", index))
-              .append("D=D+A\n")
-              .append("@R15\n")
-              .append("M=D\n");
-
-        buffer.append(VMUtils.popFromStackAssemblyCode());
+        return appendPopToSegmentMapping(new StringBuilder(), segment, index, isDirectMapping).toString();
+    }
 
-        buffer.append("@R15\n")
-              .append("A=M\n")
-              .append("M=D");
 
-        return buffer.toString();
+    /**
+     * Appends the assembly code for popping an item from the stack into a given segment to the given builder
+     * 
+     * @param builder           the builder to which to append the code
+     * @param segment           the segment into which to push the value
+     * @param index             the index of the memory segment at which to put the value 
+     * @param isDirectMapping   a flag that specifies whether to use a direct mapping (A register) rather than an
+     *                          indirect one (the M memory)
+     * @return the given builder
+     */
+    public static StringBuilder appendPopToSegmentMapping(StringBuilder builder, String segment, int index,
+                                                          boolean isDirectMapping) {
+        return builder.append('@').append(segment)
+                      .append((isDirectMapping)? "\nD=A\n@" : "\nD=M\n@")
+                      .append(index)
+                      .append("\nD=D+A\n@R15\nM=D\n")
+                      .append(VMUtils.popFromStackAssemblyCode())
+                      .append("@R15\nA=M\nM=D");
     }
     
     
@@ -309,15 +348,23 @@ public enum Segment {
      * @return the assembly code of the push command from the given static segment and onto the stack
      */
     public static String pushToStaticSegmentIndex(String fileName, int index) {
-        String symbol = String.format("@%s.%s", fileName, index);
-        
-        StringBuilder buffer = new StringBuilder();
-        buffer.append(symbol)
-                .append("\n")
-                .append("D=M\n")
-                .append(VMUtils.pushToStackAssemblyCode());
+        return appendPushFromStaticSegmentIndex(new StringBuilder(), fileName, index).toString();
+    }
 
-          return buffer.toString();
+
+    /**
+     * Appends the assembly code of the push command from the given static segment and onto the stack to the given
+     * builder
+     * 
+     * @param builder       the builder to which to append the code
+     * @param fileName      the name of the file for the current command; needed to compute the symbol name.
+     * @param index         the index of the memory segment from which to get the value 
+     * @return the given builder
+     */
+    public static StringBuilder appendPushFromStaticSegmentIndex(StringBuilder builder, String fileName, int index) {
+        return builder.append('@').append(fileName).append('.').append(index)
+                      .append("\nD=M\n")
+                      .append(VMUtils.pushToStackAssemblyCode());
     }
 
 
@@ -330,17 +377,22 @@ public enum Segment {
      * @return the assembly code of the pop command from the stack into the given static segment
      */
     public static String popFromStaticSegmentIndex(String fileName, int index) {
-        String symbol = String.format("@%s.%s", fileName, index);
-        
-        StringBuilder builder = new StringBuilder();
-        builder.append("@SP\n")
-               .append("AM=M-1\n")
-               .append("D=M\n")
-               .append(symbol)
-               .append("\n")
-               .append("M=D");
-        
-        return builder.toString();
+        return appendPopToStaticSegmentIndex(new StringBuilder(), fileName, index).toString();
+    }
+
+
+    /**
+     * Appends the assembly code of the pop command from the stack into the given static segment to the given builder
+     * 
+     * @param builder       the builder to which to append the code
+     * @param fileName      the name of the file for the current command; needed to compute the symbol name.
+     * @param index         the index of the memory segment at which to store the value 
+     * @return the given builder
+     */
+    public static StringBuilder appendPopToStaticSegmentIndex(StringBuilder builder, String fileName, int index) {
+        return builder.append(VMUtils.popFromStackAssemblyCode())
+                      .append('@').append(fileName).append('.').append(index)
+                      .append("\nM=D");
     }
     
 
@@ -356,7 +408,7 @@ public enum Segment {
             return null;
         }
         
-        for(Segment type : values()) {
+        for(Segment type : VALUES) {
             if(type.argument().equals(argument)) {
                 return type;
             }
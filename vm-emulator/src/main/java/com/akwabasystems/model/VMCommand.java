@@ -50,6 +50,15 @@ public interface VMCommand {
      * @return the assembly code for this command
      */
     String toAssemblyCode();
+
+
+    /**
+     * Appends the assembly code for this command to the given builder. Translating a program this way writes the
+     * code of all its commands into a single buffer, without creating an intermediate string for each command.
+     * 
+     * @param builder       the builder to which to append the assembly code
+     */
+    void appendAssemblyCode(StringBuilder builder);
     
     
     /**
@@ -60,6 +69,14 @@ public interface VMCommand {
     void setFileName(String fileName);
     
     
+    /**
+     * Returns the name of the file for this command
+     * 
+     * @return the name of the file for this command
+     */
+    String getFileName();
+    
+    
     /**
      * Sets the context for this command, which is that of the enclosing function, and is used to output unique
      * symbols and/or labels
@@ -0,0 +1,149 @@
+package com.akwabasystems.runtime;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+
+/**
+ * Watches a directory for changes to its source files, and hands each burst of changes to a rebuild action.
+ *
+ * Saving a file from an editor usually produces several events (create, modify, rename), and a checkout or a compiler
+ * may touch many files at once, so events are debounced: once an event is received, the watcher keeps collecting
+ * events until none has arrived for the debounce delay, and then runs the action once with all the files that
+ * changed. Only the files with one of the watched extensions are reported, so the files written by the action itself
+ * (for instance, ".asm" files) do not trigger a new rebuild. If events were lost (an overflow), all the source files
+ * of the directory are reported.
+ */
+public final class SourceWatcher {
+
+    public static final long DEFAULT_DEBOUNCE_DELAY = 50;
+    private final File directory;
+    private final List<String> extensions;
+    private long debounceDelay = DEFAULT_DEBOUNCE_DELAY;
+    private Runnable readyListener = null;
+
+
+    /**
+     * Creates a watcher for the source files with the given extensions in the given directory
+     *
+     * @param directory             the directory to watch
+     * @param extensions            the extensions of the source files (for instance, "vm")
+     */
+    public SourceWatcher(File directory, String... extensions) {
+        this.directory = directory.getAbsoluteFile();
+        this.extensions = Arrays.asList(extensions);
+    }
+
+
+    /**
+     * Sets the delay without events after which a burst of changes is considered complete
+     *
+     * @param delay                 the debounce delay, in milliseconds
+     * @return a reference to this class instance
+     */
+    public SourceWatcher setDebounceDelay(long delay) {
+        this.debounceDelay = delay;
+        return this;
+    }
+
+
+    /**
+     * Sets the action to run once the directory is registered with the watch service, before the watcher waits for
+     * the first change. The changes made after the action has run are reported.
+     *
+     * @param listener              the action to run once the directory is registered, or null
+     * @return a reference to this class instance
+     */
+    public SourceWatcher setReadyListener(Runnable listener) {
+        this.readyListener = listener;
+        return this;
+    }
+
+
+    /**
+     * Watches the directory until the current thread is interrupted (or the directory is deleted), and runs the given
+     * action after each burst of changes, with the set of changed source files
+     *
+     * @param action                the action to run with the changed files
+     * @throws IOException if the directory cannot be watched
+     * @throws InterruptedException if the current thread is interrupted while waiting for changes
+     */
+    public void watch(Consumer<Set<File>> action) throws IOException, InterruptedException {
+
+        try(WatchService service = FileSystems.getDefault().newWatchService()) {
+            directory.toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            boolean isValid = true;
+
+            if(readyListener != null) {
+                readyListener.run();
+            }
+
+            while(isValid) {
+                Set<File> changedFiles = new TreeSet<>();
+                WatchKey key = service.take();
+
+                /** Collect the events of the burst until the directory has been quiet for the debounce delay */
+                while(key != null && isValid) {
+                    collectChanges(key, changedFiles);
+                    isValid = key.reset();
+                    key = service.poll(debounceDelay, TimeUnit.MILLISECONDS);
+                }
+
+                if(!changedFiles.isEmpty()) {
+                    action.accept(changedFiles);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Adds the source files that changed according to the events of the given key to the given set
+     *
+     * @param key                   the key that holds the events
+     * @param changedFiles          the set of changed files
+     */
+    private void collectChanges(WatchKey key, Set<File> changedFiles) {
+
+        for(WatchEvent<?> event : key.pollEvents()) {
+            if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                File[] files = directory.listFiles((dir, name) -> isSourceFile(name));
+                changedFiles.addAll(Arrays.asList((files != null)? files : new File[0]));
+                continue;
+            }
+
+            Path path = (Path) event.context();
+
+            if(isSourceFile(path.toString())) {
+                changedFiles.add(new File(directory, path.toString()));
+            }
+        }
+    }
+
+
+    /**
+     * Returns true if the file with the given name has one of the watched extensions; otherwise, returns false
+     *
+     * @param fileName              the name of the file
+     * @return true if the file has one of the watched extensions; otherwise, returns false
+     */
+    private boolean isSourceFile(String fileName) {
+        int index = fileName.lastIndexOf('.');
+        return (index > 0 && extensions.contains(fileName.substring(index + 1)));
+    }
+
+}
@@ -2,17 +2,43 @@
 package com.akwabasystems.runtime;
 
 
+import com.akwabasystems.model.ArithmeticCommandType;
+import com.akwabasystems.model.CallCommand;
+import com.akwabasystems.model.VMCommand;
+import com.akwabasystems.vm.CodeStatistics;
 import com.akwabasystems.vm.CodeWriter;
+import com.akwabasystems.vm.DeadFunctionEliminator;
+import com.akwabasystems.vm.FunctionInliner;
+import com.akwabasystems.vm.HackAssembler;
+import com.akwabasystems.vm.IntrinsicRegistry;
+import com.akwabasystems.vm.OSImage;
+import com.akwabasystems.vm.StackCachingCodeGenerator;
 import com.akwabasystems.vm.VMParser;
 import com.akwabasystems.vm.Parser;
+import com.akwabasystems.vm.VMBinaryFormat;
 import com.akwabasystems.vm.VMCodeWriter;
-import java.io.BufferedReader;
+import com.akwabasystems.vm.VMInterpreter;
+import com.akwabasystems.vm.VMProgram;
+import com.akwabasystems.vm.TailCallOptimizer;
+import com.akwabasystems.vm.TranslationCache;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.commons.lang.StringUtils;
 
@@ -22,31 +48,110 @@ import org.apache.commons.lang.StringUtils;
  * commands inside the file(s), and outputs the corresponding assembly files (".asm" extension).
  *
  * Usage:
- *          java -jar VMEmulator-jar-with-dependencies [--no-bootstrap] [--debug] <fileOrDirectory>
+ *          java -jar VMEmulator-jar-with-dependencies [--no-bootstrap] [--debug] [--cache-stack]
+ *                  [--optimize-segments] [--eliminate-dead-functions] [--inline] [--inline-budget=n]
+ *                  [--interpret] [--max-steps=n] [--intrinsics[=Class,...]] [--to-binary] [--to-text]
+ *                  [--hack] [--keep-asm] [--tail-calls] [--incremental] [--watch] [--stats] [--stats-top=n]
+ *                  [--os-image] <fileOrDirectory>
  * 
  * Options:
  *      --no-bootstrap      Prevents the insertion of the bootstrap code (SP=256; call Sys.init)
  *      --debug             Outputs debugging information for each command
+ *      --cache-stack       Caches the top-most value of the stack in the D register across commands
+ *      --optimize-segments Accesses the items at small indices of the local, argument, this and that segments with
+ *                          shorter code, and reuses the address of a popped item for an adjacent push from the same
+ *                          segment
+ *      --eliminate-dead-functions
+ *                          Removes the functions that are not reachable from Sys.init, and prints a reachability
+ *                          report
+ *      --inline            Inlines the calls to small leaf functions, and prints an inlining report
+ *      --inline-budget=n   The maximum number of commands that inlining may add to the program (default: 4096)
+ *      --interpret         Executes the VM program directly instead of translating it to assembly code
+ *      --max-steps=n       The maximum number of commands to execute in interpreter mode (default: 100000000)
+ *      --intrinsics[=Class,...]
+ *                          Runs native implementations of the hot Jack OS functions (Math, Memory) in interpreter
+ *                          mode, optionally only for the given classes
+ *      --to-binary         Converts each ".vm" file to the binary format (".vmb" extension) instead of translating it
+ *      --to-text           Converts each ".vmb" file back to a ".vm" file instead of translating it
+ *      --hack              Assembles the translated code in process, and outputs the Hack binary code (".hack"
+ *                          extension) instead of the assembly code
+ *      --keep-asm          Also outputs the assembly code when the "--hack" option is specified
+ *      --tail-calls        Translates the calls that are immediately followed by a return into jumps that reuse the
+ *                          frame of the calling function, and prints a tail call report
+ *      --incremental       Reuses the translated code of the files that have not changed since the previous build,
+ *                          from a cache in the ".vmcache" directory next to the input files. The option is ignored
+ *                          when a whole-program option (inlining, dead function elimination, tail calls) is specified
+ *      --watch             Keeps running after the first build, and rebuilds the program whenever its ".vm" or ".vmb"
+ *                          files change, printing the time of each rebuild. Implies "--incremental"
+ *      --stats             Prints a code size report (the number of Hack instructions generated for each function,
+ *                          command type, arithmetic command and segment), and saves it as JSON to a ".stats.json" file
+ *                          next to the output file
+ *      --stats-top=n       The number of functions with the most instructions to list in the report (default: 10)
+ *      --os-image          Runs the initialization of the Jack OS (the commands of Sys.init that precede the call to
+ *                          Main.main) at build time with the VM interpreter, and replaces it with bootstrap code that
+ *                          writes the resulting RAM image, so that the program starts directly with Main.main. The
+ *                          init functions are only removed from the code with "--eliminate-dead-functions"
  *      <fileOrDirectory>   The file or directory to parse. The output file name will be generated by appending '.asm' 
- *                          to the file or directory name
+ *                          to the file or directory name. A ".vmb" file is loaded instead of the ".vm" file with the
+ *                          same name when it is at least as recent
  * 
  *
  */
 public final class VMMain {
 
+    private static final long DEFAULT_MAX_STEPS = 100_000_000L;
     private static boolean shouldBootstrap = true;
     private static boolean shouldDebug = false;
+    private static boolean shouldCacheStack = false;
+    private static boolean shouldOptimizeSegments = false;
+    private static boolean shouldEliminateDeadFunctions = false;
+    private static boolean shouldInline = false;
+    private static int inliningBudget = FunctionInliner.DEFAULT_BUDGET;
+    private static boolean shouldInterpret = false;
+    private static long maxSteps = DEFAULT_MAX_STEPS;
+    private static IntrinsicRegistry intrinsics = null;
+    private static boolean shouldConvertToBinary = false;
+    private static boolean shouldConvertToText = false;
+    private static boolean shouldAssemble = false;
+    private static boolean shouldKeepAssemblyCode = false;
+    private static boolean shouldOptimizeTailCalls = false;
+    private static boolean shouldTranslateIncrementally = false;
+    private static boolean shouldWatch = false;
+    private static boolean shouldReportStatistics = false;
+    private static int topFunctions = CodeStatistics.DEFAULT_TOP_FUNCTIONS;
+    private static boolean shouldUseOSImage = false;
+    private static OSImage osImage = null;
     private static final String BOOTSTRAP_FLAG = "--no-bootstrap";
     private static final String DEBUG_FLAG = "--debug";
+    private static final String STACK_CACHING_FLAG = "--cache-stack";
+    private static final String SEGMENT_ADDRESSING_FLAG = "--optimize-segments";
+    private static final String DEAD_FUNCTIONS_FLAG = "--eliminate-dead-functions";
+    private static final String INLINE_FLAG = "--inline";
+    private static final String INLINE_BUDGET_FLAG = "--inline-budget=";
+    private static final String INTERPRET_FLAG = "--interpret";
+    private static final String MAX_STEPS_FLAG = "--max-steps=";
+    private static final String INTRINSICS_FLAG = "--intrinsics";
+    private static final String TO_BINARY_FLAG = "--to-binary";
+    private static final String TO_TEXT_FLAG = "--to-text";
+    private static final String HACK_FLAG = "--hack";
+    private static final String KEEP_ASM_FLAG = "--keep-asm";
+    private static final String TAIL_CALLS_FLAG = "--tail-calls";
+    private static final String INCREMENTAL_FLAG = "--incremental";
+    private static final String WATCH_FLAG = "--watch";
+    private static final String STATS_FLAG = "--stats";
+    private static final String STATS_TOP_FLAG = "--stats-top=";
+    private static final String OS_IMAGE_FLAG = "--os-image";
+    private static final String VM_EXTENSION = "vm";
     
     private static final Function<File,Boolean> IsSysInitFile = (file) -> {
-        return (file.getName().equalsIgnoreCase("Sys.vm") || 
-                file.getName().equalsIgnoreCase("SysInit.vm"));
+        String baseName = StringUtils.split(file.getName(), ".")[0];
+        return (baseName.equalsIgnoreCase("Sys") || baseName.equalsIgnoreCase("SysInit"));
     };
     
     private static final Function<File,Boolean> HasVMExtension = (file) -> {
         String[] parts = StringUtils.split(file.getName(), ".");
-        return (parts[parts.length - 1].equals("vm"));
+        return (parts[parts.length - 1].equals(VM_EXTENSION) ||
+                parts[parts.length - 1].equals(VMBinaryFormat.EXTENSION));
     };
     
     
@@ -61,12 +166,39 @@ public final class VMMain {
         
         if(args.length < 1) {
             StringBuilder buffer = new StringBuilder("\nUsage:\n");
-            buffer.append("\tjava -jar VMEmulator-jar-with-dependencies [--no-bootstrap] [--debug] <fileOrDirectory>\n")
+            buffer.append("\tjava -jar VMEmulator-jar-with-dependencies [--no-bootstrap] [--debug] [--cache-stack] ")
+                  .append("[--optimize-segments] [--eliminate-dead-functions] [--inline] [--inline-budget=n] ")
+                  .append("[--interpret] ")
+                  .append("[--max-steps=n] [--intrinsics[=Class,...]] [--to-binary] [--to-text] [--hack] [--keep-asm] ")
+                  .append("[--tail-calls] [--incremental] [--watch] [--stats] [--stats-top=n] [--os-image] ")
+                  .append("<fileOrDirectory>\n")
                   .append("\n")
                   .append("Options:\n")
                   .append("\t--no-bootstrap\t\tPrevents the insertion of the bootstrap code\n")
                   .append("\t\t\t\t(SP=256; call Sys.init).\n")
                   .append("\t--debug\t\tOutputs debugging information for each command\n")
+                  .append("\t--cache-stack\t\tCaches the top-most value of the stack in the D register\n")
+                  .append("\t--optimize-segments\tAccesses the local, argument, this and that segments with\n")
+                  .append("\t\t\t\tshorter code\n")
+                  .append("\t--eliminate-dead-functions\n")
+                  .append("\t\t\t\tRemoves the functions that are not reachable from Sys.init\n")
+                  .append("\t--inline\t\tInlines the calls to small leaf functions\n")
+                  .append("\t--inline-budget=n\tThe maximum number of commands that inlining may add\n")
+                  .append("\t--interpret\t\tExecutes the VM program directly instead of translating it\n")
+                  .append("\t--max-steps=n\t\tThe maximum number of commands to execute in interpreter mode\n")
+                  .append("\t--intrinsics[=Class,...]\n")
+                  .append("\t\t\t\tRuns native implementations of the Jack OS functions in interpreter mode\n")
+                  .append("\t--to-binary\t\tConverts each \".vm\" file to the binary format (\".vmb\")\n")
+                  .append("\t--to-text\t\tConverts each \".vmb\" file back to a \".vm\" file\n")
+                  .append("\t--hack\t\t\tAssembles the translated code in process, and outputs the Hack binary code\n")
+                  .append("\t--keep-asm\t\tAlso outputs the assembly code when \"--hack\" is specified\n")
+                  .append("\t--tail-calls\t\tTranslates the calls followed by a return into frame-reusing jumps\n")
+                  .append("\t--incremental\t\tReuses the translated code of the files that have not changed\n")
+                  .append("\t--watch\t\t\tRebuilds the program whenever its files change\n")
+                  .append("\t--stats\t\t\tPrints a code size report, and saves it as JSON (\".stats.json\")\n")
+                  .append("\t--stats-top=n\t\tThe number of functions to list in the code size report\n")
+                  .append("\t--os-image\t\tRuns the initialization of the Jack OS at build time, and starts the\n")
+                  .append("\t\t\t\tprogram with Main.main\n")
                   .append("\t<fileOrDirectory>\tThe file or directory to parse. The output file name will be generated\n")
                   .append("\t\t\t\tby appending '.asm' to the file or directory name.\n");
             System.out.println(buffer.toString());
@@ -74,14 +206,43 @@ public final class VMMain {
         }
 
         if(args.length >= 2) {
+
+            try {
+                inliningBudget = (int) numericOption(args, INLINE_BUDGET_FLAG, FunctionInliner.DEFAULT_BUDGET,
+                                                     Integer.MAX_VALUE);
+                maxSteps = numericOption(args, MAX_STEPS_FLAG, DEFAULT_MAX_STEPS, Long.MAX_VALUE);
+                topFunctions = (int) numericOption(args, STATS_TOP_FLAG, CodeStatistics.DEFAULT_TOP_FUNCTIONS,
+                                                   Integer.MAX_VALUE);
+            } catch(IllegalArgumentException invalidOption) {
+                System.out.println(String.format("Input error: %s\n", invalidOption.getMessage()));
+                return;
+            }
+
             boolean hasNoBootstrapFlag = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(BOOTSTRAP_FLAG));
             boolean hasDebugFlag = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(DEBUG_FLAG));
+            boolean hasStackCachingFlag = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(STACK_CACHING_FLAG));
             shouldBootstrap = !hasNoBootstrapFlag;
             shouldDebug = hasDebugFlag;
+            shouldCacheStack = hasStackCachingFlag;
+            shouldOptimizeSegments = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(SEGMENT_ADDRESSING_FLAG));
+            shouldEliminateDeadFunctions = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(DEAD_FUNCTIONS_FLAG));
+            shouldInline = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(INLINE_FLAG));
+            shouldInterpret = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(INTERPRET_FLAG));
+            intrinsics = intrinsicRegistry(args);
+            shouldConvertToBinary = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(TO_BINARY_FLAG));
+            shouldConvertToText = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(TO_TEXT_FLAG));
+            shouldAssemble = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(HACK_FLAG));
+            shouldKeepAssemblyCode = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(KEEP_ASM_FLAG));
+            shouldOptimizeTailCalls = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(TAIL_CALLS_FLAG));
+            shouldWatch = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(WATCH_FLAG));
+            shouldReportStatistics = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(STATS_FLAG));
+            shouldUseOSImage = Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(OS_IMAGE_FLAG));
+            shouldTranslateIncrementally = shouldWatch ||
+                    Stream.of(args).anyMatch((arg) -> arg.equalsIgnoreCase(INCREMENTAL_FLAG));
 
             inputFileArgument = Stream.of(args)
                                     .filter((arg) -> {
-                                        return !(arg.equalsIgnoreCase(BOOTSTRAP_FLAG) || arg.equalsIgnoreCase(DEBUG_FLAG));
+                                        return !arg.startsWith("--");
                                      })
                                     .findFirst()
                                     .orElse(null);
@@ -110,6 +271,48 @@ public final class VMMain {
         }
 
         handleInputFile(inputFile);
+
+        if(shouldWatch) {
+            watch(inputFile);
+        }
+    }
+
+
+    /**
+     * Watches the directory of the given input file, and handles the input file again whenever its VM files change.
+     * The label numbering is reset before each rebuild, so that the output of a rebuild is the same as that of a new
+     * run of the program.
+     *
+     * @param inputFile         the input file to watch
+     * @throws IOException if the directory of the input file cannot be watched
+     * @throws InterruptedException if the current thread is interrupted while waiting for changes
+     */
+    private static void watch(final File inputFile) throws IOException, InterruptedException {
+        File directory = inputFile.isDirectory()? inputFile : inputFile.getAbsoluteFile().getParentFile();
+        String baseName = StringUtils.split(inputFile.getName(), ".")[0];
+        System.out.printf("Watching '%s' for changes (press Ctrl+C to stop)\n", directory.getAbsolutePath());
+
+        new SourceWatcher(directory, VM_EXTENSION, VMBinaryFormat.EXTENSION).watch((changedFiles) -> {
+            boolean isInputChanged = inputFile.isDirectory() || changedFiles.stream().anyMatch((file) -> {
+                return StringUtils.split(file.getName(), ".")[0].equals(baseName);
+            });
+
+            if(!isInputChanged) {
+                return;
+            }
+
+            ArithmeticCommandType.resetLabelCount();
+            StackCachingCodeGenerator.resetComparisonCount();
+            CallCommand.resetInvocationCounts();
+
+            long startTime = System.nanoTime();
+            String fileNames = changedFiles.stream().map(File::getName).collect(Collectors.joining(", "));
+            System.out.printf("Changed: %s\n", fileNames);
+            handleInputFile(inputFile);
+
+            long elapsedTime = (System.nanoTime() - startTime) / 1_000_000;
+            System.out.printf("Rebuilt in %s ms\n", elapsedTime);
+        });
     }
 
 
@@ -133,10 +336,14 @@ public final class VMMain {
 
         /** Pre-process the file to make sure that any "Sys.vm" file, if present, gets processed first */
         List<File> files = new ArrayList<>();
+        File[] directoryFiles = isDirectory? inputFile.listFiles() : new File[0];
+
+        /** Sort the files by name, so that the output does not depend on the order in which they are listed */
+        Arrays.sort(directoryFiles);
 
         if(isDirectory) {
-            Stream.of(inputFile.listFiles())
-                    .filter(file -> IsSysInitFile.apply(file))
+            Stream.of(directoryFiles)
+                    .filter(file -> IsSysInitFile.apply(file) && HasVMExtension.apply(file))
                     .forEach(file -> files.add(file));
         } else {
             files.add(inputFile);
@@ -147,7 +354,7 @@ public final class VMMain {
          * make sure to skip it in the iteration
          */
         if(isDirectory) {
-            for(File file : inputFile.listFiles()) {
+            for(File file : directoryFiles) {
                 boolean endsWithVM = HasVMExtension.apply(file);
                 boolean isBootstrapFile = IsSysInitFile.apply(file);
 
@@ -155,18 +362,176 @@ public final class VMMain {
                     files.add(file);
                 }
             }
+
+            /** Load each file once, in the position of the first of its formats to be listed */
+            files.replaceAll(VMMain::fileToLoad);
+            Set<File> filesToLoad = new LinkedHashSet<>(files);
+            filesToLoad.remove(null);
+            files.clear();
+            files.addAll(filesToLoad);
         }
 
         String outputFilePath = (isDirectory)? String.format("%s/%s", inputFile.getAbsolutePath(), outputFileName) : 
                 inputFile.getAbsolutePath().replace(inputFile.getName(), outputFileName);
         StringBuilder builder = new StringBuilder();
+        Map<String,Parser> parsers = new LinkedHashMap<>();
+        boolean hasWholeProgramPass = (shouldInline || shouldEliminateDeadFunctions || shouldOptimizeTailCalls ||
+                shouldReportStatistics || shouldUseOSImage);
+
+        if(shouldTranslateIncrementally && !hasWholeProgramPass && !shouldInterpret &&
+                !shouldConvertToBinary && !shouldConvertToText) {
+            File cacheDirectory = new File(isDirectory? inputFile : inputFile.getAbsoluteFile().getParentFile(),
+                                           TranslationCache.DIRECTORY_NAME);
+            translateIncrementally(files, cacheDirectory, outputFilePath);
+            return;
+        }
+
+        if(shouldTranslateIncrementally && hasWholeProgramPass) {
+            System.out.println("The specified options require a full translation: translating all the files");
+        }
 
         files.stream().forEach((file) -> {
-            builder.append(parseFile(file))
-                   .append("\n");
+            Parser parser = parseFile(file);
+            parsers.put(parser.getFileName(), parser);
         });
 
-        writeAssemblyCode(builder.toString(), outputFilePath);
+        if(shouldConvertToBinary || shouldConvertToText) {
+            convertFiles(files, parsers.values());
+            return;
+        }
+
+        osImage = null;
+
+        if(shouldUseOSImage && shouldBootstrap && !shouldInterpret) {
+            captureOSImage(parsers);
+        }
+
+        if(shouldInline) {
+            inlineFunctions(parsers);
+        }
+
+        if(shouldEliminateDeadFunctions) {
+            eliminateDeadFunctions(parsers.values());
+        }
+
+        if(shouldInterpret) {
+            interpret(parsers);
+            return;
+        }
+
+        if(shouldOptimizeTailCalls) {
+            optimizeTailCalls(parsers.values());
+        }
+
+        CodeStatistics statistics = shouldReportStatistics? new CodeStatistics() : null;
+
+        parsers.values().stream().forEach((parser) -> {
+            parser.setStatistics(statistics).appendAssemblyCode(builder);
+            builder.append("\n");
+        });
+
+        writeOutput(builder.toString(), outputFilePath);
+
+        if(statistics != null) {
+            writeStatistics(statistics, outputFilePath);
+        }
+    }
+
+
+    /**
+     * Prints the code size report of the given statistics, and writes them as JSON to the ".stats.json" file that
+     * corresponds to the given assembly file
+     *
+     * @param statistics            the statistics of the translated program
+     * @param outputFile            the name of the destination file for the assembly code
+     */
+    private static void writeStatistics(CodeStatistics statistics, String outputFile) {
+        String statisticsFile = outputFile.replaceFirst("\\.asm$", ".stats.json");
+
+        if(shouldBootstrap) {
+            statistics.recordBootstrap(bootstrapCode());
+        }
+
+        System.out.print(statistics.report(topFunctions));
+
+        try {
+
+            Files.write(Paths.get(statisticsFile), statistics.toJSON().getBytes(StandardCharsets.UTF_8));
+            System.out.printf("Code size statistics saved successfully to '%s'\n", statisticsFile);
+
+        } catch(IOException cannotWrite) {
+            System.out.printf("Couldn't access input or output files - Cause: %s\n", cannotWrite.getMessage());
+        }
+    }
+
+
+    /**
+     * Translates the given files with the translation cache: the code of each file whose content is found in the
+     * cache is reused, and only the other files are parsed and translated (and their code is stored in the cache).
+     * The fragments are then linked into the assembly code of the program, which is identical to that of a full
+     * translation.
+     *
+     * @param files                 the files of the program, in translation order
+     * @param cacheDirectory        the directory of the translation cache
+     * @param outputFilePath        the name of the destination file for the code
+     */
+    private static void translateIncrementally(List<File> files, File cacheDirectory, String outputFilePath) {
+        String options = String.format("debug=%s,cache-stack=%s,optimize-segments=%s,bootstrap=%s", shouldDebug,
+                                       shouldCacheStack, shouldOptimizeSegments, shouldBootstrap);
+        TranslationCache cache = new TranslationCache(cacheDirectory, options);
+        List<TranslationCache.Fragment> fragments = new ArrayList<>();
+        long startTime = System.nanoTime();
+
+        /** The bootstrap code depends on the parser options, which must be set even if no file is parsed */
+        new VMParser().setDebugEnabled(shouldDebug).shouldBootstrap(shouldBootstrap);
+
+        try {
+
+            for(File file : files) {
+                TranslationCache.Fragment fragment = cache.lookup(file);
+
+                if(fragment == null) {
+                    fragment = TranslationCache.translate(parseFile(file));
+                    cache.store(file, fragment);
+                }
+
+                fragments.add(fragment);
+            }
+
+            cache.save();
+
+        } catch(IOException cannotAccess) {
+            System.out.printf("Couldn't access input or output files - Cause: %s\n", cannotAccess.getMessage());
+            return;
+        }
+
+        String assemblyCode = TranslationCache.link(fragments);
+        long elapsedTime = (System.nanoTime() - startTime) / 1_000_000;
+        System.out.printf("Translated %s files in %s ms (%s cached, %s translated)\n", files.size(), elapsedTime,
+                          cache.hitCount(), cache.missCount());
+
+        writeOutput(assemblyCode, outputFilePath);
+    }
+
+
+    /**
+     * Writes the output for the given assembly code of the program: the Hack binary code if the "--hack" option is
+     * specified, and the assembly code otherwise (or if the "--keep-asm" option is also specified)
+     *
+     * @param assemblyCode          the assembly code of the program, without the bootstrap code
+     * @param outputFile            the name of the destination file for the assembly code
+     */
+    private static void writeOutput(String assemblyCode, String outputFile) {
+
+        if(shouldAssemble) {
+            writeBinaryCode(assemblyCode, outputFile);
+
+            if(!shouldKeepAssemblyCode) {
+                return;
+            }
+        }
+
+        writeAssemblyCode(assemblyCode, outputFile);
     }
 
 
@@ -182,7 +547,7 @@ public final class VMMain {
         StringBuilder builder = new StringBuilder();
 
         if(shouldBootstrap) {
-            builder.append(VMParser.bootstrapCode());
+            builder.append(bootstrapCode());
         }
 
         builder.append(assemblyCode);
@@ -200,36 +565,355 @@ public final class VMMain {
 
 
     /**
-     * Processes the given file, and returns the assembly code from its VM commands.
+     * Assembles the given code in process, and writes the resulting Hack binary code to the ".hack" file that
+     * corresponds to the given assembly file. The code is handed to the assembler directly, so no intermediate
+     * assembly file is written or read.
      *
-     * @param inputFile         the file to process
-     * @return the assembly code from the VM commands in the given file
+     * @param assemblyCode          the assembly code of the program, without the bootstrap code
+     * @param outputFile            the name of the destination file for the assembly code
      */
-    private static String parseFile(final File file) {
-        BufferedReader reader;
-        StringBuilder assemblyCode = new StringBuilder();
+    private static void writeBinaryCode(String assemblyCode, String outputFile) {
+        HackAssembler assembler = new HackAssembler();
+        String binaryFile = outputFile.replaceFirst("\\.asm$", ".hack");
+        long startTime = System.nanoTime();
 
         try {
 
-            Parser parser = new VMParser();
-            parser.setFileName(file.getName());
-            parser.setDebugEnabled(shouldDebug).shouldBootstrap(shouldBootstrap);
-            reader = new BufferedReader(new FileReader(file));
-            String line;
+            if(shouldBootstrap) {
+                assembler.append(bootstrapCode());
+            }
+
+            assembler.append(assemblyCode);
+            Files.write(Paths.get(binaryFile), assembler.binaryCode().getBytes(StandardCharsets.ISO_8859_1));
+
+            long elapsedTime = (System.nanoTime() - startTime) / 1_000_000;
+            System.out.printf("Binary code (%s instructions, %s ms) saved successfully to '%s'\n",
+                              assembler.size(), elapsedTime, binaryFile);
+
+        } catch(IllegalArgumentException invalidCode) {
+            System.out.printf("Couldn't assemble the program - Cause: %s\n", invalidCode.getMessage());
+        } catch(IOException cannotWrite) {
+            System.out.printf("Couldn't access input or output files - Cause: %s\n", cannotWrite.getMessage());
+        }
+    }
+
+
+    /**
+     * Executes the program made up of the commands of the given parsers with the VM interpreter, then prints the
+     * number of executed commands and the elapsed time. If bootstrapping is enabled and the program declares
+     * Sys.init, then execution starts there; otherwise, it starts with the first command.
+     *
+     * @param parsers           the parsers for the files of the program, keyed by file name
+     */
+    private static void interpret(Map<String,Parser> parsers) {
+        Map<String,List<VMCommand>> programs = new LinkedHashMap<>();
+        parsers.forEach((fileName, parser) -> programs.put(fileName, parser.getCommands()));
+
+        try {
+
+            VMProgram program = VMProgram.lower(programs);
+            VMInterpreter interpreter = new VMInterpreter(program);
 
-            while((line = reader.readLine()) != null) {
-                parser.parse(line);
+            if(intrinsics != null) {
+                interpreter.setIntrinsics(intrinsics);
+            }
+
+            if(shouldBootstrap && program.functionIndex(DeadFunctionEliminator.ENTRY_POINT) >= 0) {
+                interpreter.bootstrap();
+            } else {
+                interpreter.poke(0, VMInterpreter.STACK_BASE_ADDRESS);
             }
 
-            reader.close();
+            long startTime = System.nanoTime();
+            long steps = interpreter.run(maxSteps);
+            long elapsedTime = (System.nanoTime() - startTime) / 1_000_000;
 
-            assemblyCode.append(parser.assemblyCode());
+            System.out.printf("Executed %s commands in %s ms (%s, %s intrinsic calls)\n", steps, elapsedTime,
+                              interpreter.isHalted()? "halted" : "step limit reached",
+                              interpreter.getIntrinsicCalls());
+
+        } catch(IllegalArgumentException | IllegalStateException invalidProgram) {
+            System.out.printf("Couldn't execute the program - Cause: %s\n", invalidProgram.getMessage());
+        }
+    }
+
+
+    /**
+     * Returns the value of the numeric option with the given prefix (for instance, "--max-steps="), or the default
+     * value if the option is not specified
+     *
+     * @param args              the argument list to this program
+     * @param prefix            the prefix of the option
+     * @param defaultValue      the value to return if the option is not specified
+     * @param maxValue          the largest value that the option accepts
+     * @return the value of the numeric option with the given prefix
+     * @throws IllegalArgumentException if the value of the option is not a non-negative integer, or is larger than the
+     *         maximum value
+     */
+    private static long numericOption(String[] args, String prefix, long defaultValue, long maxValue) {
+        String option = Stream.of(args)
+                            .filter((arg) -> arg.toLowerCase().startsWith(prefix))
+                            .findFirst()
+                            .orElse(null);
+
+        if(option == null) {
+            return defaultValue;
+        }
+
+        String text = option.substring(prefix.length());
+        long value;
+
+        try {
+            value = Long.parseLong(text);
+        } catch(NumberFormatException notANumber) {
+            value = -1;
+        }
+
+        if(value < 0) {
+            throw new IllegalArgumentException(String.format("Invalid value for %s: '%s' (expected a non-negative " +
+                                                             "integer)", prefix.replace("=", ""), text));
+        } else if(value > maxValue) {
+            throw new IllegalArgumentException(String.format("Invalid value for %s: '%s' (max: %s)",
+                                                             prefix.replace("=", ""), text, maxValue));
+        }
+
+        return value;
+    }
+
+
+    /**
+     * Returns the registry of intrinsics requested by the "--intrinsics" option, or null if the option is not
+     * specified. Without a value, the intrinsics of all the classes are enabled; otherwise, only those of the classes
+     * in the given comma-separated list are (for instance, "--intrinsics=Math,Memory")
+     *
+     * @param args              the argument list to this program
+     * @return the registry of intrinsics requested by the "--intrinsics" option, or null if it is not specified
+     */
+    private static IntrinsicRegistry intrinsicRegistry(String[] args) {
+        String option = Stream.of(args)
+                            .filter((arg) -> arg.equalsIgnoreCase(INTRINSICS_FLAG) ||
+                                             arg.toLowerCase().startsWith(INTRINSICS_FLAG + "="))
+                            .findFirst()
+                            .orElse(null);
+
+        if(option == null) {
+            return null;
+        }
+
+        IntrinsicRegistry registry = IntrinsicRegistry.standard();
+
+        if(option.contains("=")) {
+            List<String> classes = Arrays.asList(StringUtils.split(option.substring(option.indexOf('=') + 1), ","));
+            registry.classes().stream().forEach((className) -> {
+                registry.setEnabled(className, classes.contains(className));
+            });
+        }
+
+        return registry;
+    }
+
+
+    /**
+     * Captures the OS image of the program made up of the commands of the given parsers, and installs it in the
+     * program, then prints a summary. If the image cannot be captured, the program is left unchanged, and the regular
+     * bootstrap code is used.
+     *
+     * @param parsers           the parsers for the files of the program, keyed by file name
+     */
+    private static void captureOSImage(Map<String,Parser> parsers) {
+        Map<String,List<VMCommand>> programs = new LinkedHashMap<>();
+        parsers.forEach((fileName, parser) -> programs.put(fileName, parser.getCommands()));
+
+        try {
+
+            long startTime = System.nanoTime();
+            OSImage image = OSImage.capture(programs, maxSteps);
+            int removedCommands = image.install(programs);
+            long elapsedTime = (System.nanoTime() - startTime) / 1_000_000;
+            osImage = image;
+
+            System.out.printf("OS image: %s words, replacing %s commands of Sys.init that executed %s commands " +
+                              "(%s ms)\n", image.size(), removedCommands, image.getInitializationSteps(), elapsedTime);
+
+        } catch(IllegalArgumentException | IllegalStateException cannotCapture) {
+            System.out.printf("Couldn't capture the OS image - Cause: %s\n", cannotCapture.getMessage());
+        }
+    }
+
+
+    /**
+     * Returns the bootstrap code of the program: the code that writes the OS image if one was captured, and the
+     * regular bootstrap code (SP=256; call Sys.init) otherwise
+     *
+     * @return the bootstrap code of the program
+     */
+    private static String bootstrapCode() {
+        return (osImage != null)? osImage.bootstrapCode(shouldDebug) : VMParser.bootstrapCode();
+    }
+
+
+    /**
+     * Inlines the calls to small leaf functions in the program made up of the commands of the given parsers, then
+     * prints the inlining report
+     *
+     * @param parsers           the parsers for the files of the program, keyed by file name
+     */
+    private static void inlineFunctions(Map<String,Parser> parsers) {
+        Map<String,List<VMCommand>> programs = new LinkedHashMap<>();
+        parsers.forEach((fileName, parser) -> programs.put(fileName, parser.getCommands()));
+
+        FunctionInliner inliner = new FunctionInliner().setBudget(inliningBudget).inline(programs);
+        System.out.print(inliner.report());
+    }
+
+
+    /**
+     * Removes the functions that are not reachable from the entry point (Sys.init) of the program made up of the
+     * commands of the given parsers, then prints the reachability report
+     *
+     * @param parsers           the parsers for the files of the program
+     */
+    private static void eliminateDeadFunctions(Collection<Parser> parsers) {
+        List<List<VMCommand>> programs = new ArrayList<>();
+        parsers.stream().forEach((parser) -> programs.add(parser.getCommands()));
+
+        DeadFunctionEliminator eliminator = new DeadFunctionEliminator().analyze(programs);
+        programs.stream().forEach((commands) -> eliminator.eliminate(commands));
+
+        System.out.print(eliminator.report());
+    }
+
+
+    /**
+     * Marks the tail calls of the program made up of the commands of the given parsers, so that they are translated
+     * into frame-reusing jumps, then prints the tail call report
+     *
+     * @param parsers           the parsers for the files of the program
+     */
+    private static void optimizeTailCalls(Collection<Parser> parsers) {
+        List<List<VMCommand>> programs = new ArrayList<>();
+        parsers.stream().forEach((parser) -> programs.add(parser.getCommands()));
+
+        System.out.print(new TailCallOptimizer().optimize(programs).report());
+    }
+
+
+    /**
+     * Returns the file to load in place of the given file of a directory. A ".vmb" file is loaded instead of the ".vm"
+     * file with the same name if it is at least as recent, and the ".vm" file is loaded otherwise. When converting
+     * files, only the files of the source format are loaded, so null is returned for the others.
+     *
+     * @param file              the file of the directory
+     * @return the file to load in place of the given file, or null if neither should be loaded
+     */
+    private static File fileToLoad(File file) {
+        boolean isBinary = isBinaryFile(file);
+
+        if(shouldConvertToBinary || shouldConvertToText) {
+            return (isBinary == shouldConvertToText)? file : null;
+        }
+
+        File textFile = isBinary? siblingFile(file, VM_EXTENSION) : file;
+        File binaryFile = isBinary? file : siblingFile(file, VMBinaryFormat.EXTENSION);
+
+        if(!textFile.exists() || !binaryFile.exists()) {
+            return file;
+        }
+
+        return (binaryFile.lastModified() >= textFile.lastModified())? binaryFile : textFile;
+    }
+
+
+    /**
+     * Writes the converted version of each of the given files: a ".vmb" file for each ".vm" file if the "--to-binary"
+     * option is specified, and a ".vm" file for each ".vmb" file if the "--to-text" option is specified
+     *
+     * @param files             the files to convert
+     * @param parsers           the parsers that hold the commands of the files, in the same order
+     */
+    private static void convertFiles(List<File> files, Collection<Parser> parsers) {
+        Iterator<Parser> iterator = parsers.iterator();
+
+        for(File file : files) {
+            Parser parser = iterator.next();
+
+            if(isBinaryFile(file) != shouldConvertToText) {
+                continue;
+            }
+
+            File outputFile = siblingFile(file, shouldConvertToText? VM_EXTENSION : VMBinaryFormat.EXTENSION);
+            byte[] output = shouldConvertToText?
+                    VMBinaryFormat.toText(parser.getCommandTable()).getBytes(StandardCharsets.ISO_8859_1) :
+                    VMBinaryFormat.encode(parser.getCommandTable(), parser.getFileName());
+
+            try {
+
+                Files.write(outputFile.toPath(), output);
+                System.out.printf("Wrote '%s'\n", outputFile.getAbsolutePath());
+
+            } catch(IOException cannotWrite) {
+                System.out.printf("Couldn't access input or output files - Cause: %s\n", cannotWrite.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * Returns true if the given file has the extension of the binary format (".vmb"); otherwise, returns false
+     *
+     * @param file              the file to check
+     * @return true if the given file has the extension of the binary format; otherwise, returns false
+     */
+    private static boolean isBinaryFile(File file) {
+        return file.getName().endsWith(String.format(".%s", VMBinaryFormat.EXTENSION));
+    }
+
+
+    /**
+     * Returns the file in the same directory as the given file, with the same base name and the given extension
+     *
+     * @param file              the file
+     * @param extension         the extension of the sibling file
+     * @return the file with the same base name as the given file, and the given extension
+     */
+    private static File siblingFile(File file, String extension) {
+        String baseName = file.getName().substring(0, file.getName().lastIndexOf('.'));
+        return new File(file.getAbsoluteFile().getParentFile(), String.format("%s.%s", baseName, extension));
+    }
+
+
+    /**
+     * Processes the given file, and returns the parser that holds its VM commands.
+     *
+     * @param inputFile         the file to process
+     * @return the parser that holds the VM commands in the given file
+     */
+    private static Parser parseFile(final File file) {
+        Parser parser = new VMParser();
+
+        try {
+
+            parser.setFileName(file.getName());
+            parser.setDebugEnabled(shouldDebug)
+                  .shouldBootstrap(shouldBootstrap)
+                  .setStackCachingEnabled(shouldCacheStack)
+                  .setSegmentAddressingEnabled(shouldOptimizeSegments);
+
+            if(isBinaryFile(file)) {
+                try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    parser.parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                }
+            } else {
+                parser.parse(Files.readAllBytes(file.toPath()));
+            }
 
         } catch(IOException cannotRead) {
             System.out.printf("Couldn't access input or output files - Cause: %s\n", cannotRead.getMessage());
+        } catch(IllegalArgumentException invalidFile) {
+            System.out.printf("Couldn't load '%s' - Cause: %s\n", file.getName(), invalidFile.getMessage());
         }
         
-        return assemblyCode.toString();
+        return parser;
     }
 }
 
@@ -7,6 +7,11 @@ package com.akwabasystems.utils;
  */
 public class VMUtils {
     
+    private static final String PUSH_TO_STACK = "@SP\nA=M\nM=D\n@SP\nM=M+1";
+    private static final String POP_FROM_STACK = "@SP\nAM=M-1\nD=M\n";
+    private static final String INCREMENT_STACK_POINTER = "@SP\nM=M+1";
+
+    
     /**
      * Generates the assembly code for pushing a value onto the stack. The value is the one stored at the memory
      * location addressed by the current value of the stack pointer.
@@ -14,13 +19,7 @@ public class VMUtils {
      * @return the assembly code for pushing a value onto the stack
      */
     public static String pushToStackAssemblyCode() {
-        StringBuilder builder = new StringBuilder();
-        builder.append("@SP\n")
-               .append("A=M\n")
-               .append("M=D\n")
-               .append(incrementStackPointer());
-        
-        return builder.toString();
+        return PUSH_TO_STACK;
     }
     
     
@@ -31,12 +30,19 @@ public class VMUtils {
      * @return the assembly code for pushing the base value of a given segment onto the stack.
      */
     public static String pushSegmentToStackAssemblyCode(String segment) {
-        StringBuilder builder = new StringBuilder();
-        builder.append(String.format("@%s\n", segment))
-               .append("D=M\n")
-               .append(pushToStackAssemblyCode());
-        
-        return builder.toString();
+        return appendPushSegmentToStack(new StringBuilder(), segment).toString();
+    }
+
+
+    /**
+     * Appends the assembly code for pushing the base value of a given segment onto the stack to the given builder
+     * 
+     * @param builder           the builder to which to append the code
+     * @param segment           the segment whose value to push onto the stack
+     * @return the given builder
+     */
+    public static StringBuilder appendPushSegmentToStack(StringBuilder builder, String segment) {
+        return builder.append('@').append(segment).append("\nD=M\n").append(PUSH_TO_STACK);
     }
     
 
@@ -47,12 +53,7 @@ public class VMUtils {
      * @return the assembly code for popping the top-most value of the stack.
      */
     public static String popFromStackAssemblyCode() {
-        StringBuilder builder = new StringBuilder();
-        builder.append("@SP\n")
-               .append("AM=M-1\n")
-               .append("D=M\n");
-        
-        return builder.toString();
+        return POP_FROM_STACK;
     }
     
     
@@ -62,11 +63,7 @@ public class VMUtils {
      * @return the assembly code for incrementing the stack pointer 
      */
     public static String incrementStackPointer() {
-        StringBuilder builder = new StringBuilder();
-        builder.append("@SP\n")
-               .append("M=M+1");
-        
-        return builder.toString();
+        return INCREMENT_STACK_POINTER;
     }
     
     
@@ -0,0 +1,337 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.ArithmeticCommandType;
+import com.akwabasystems.model.CommandType;
+import com.akwabasystems.model.Segment;
+import com.akwabasystems.model.VMCommand;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Collects code-size statistics while a program is translated: the number of VM commands and of Hack instructions
+ * generated for each function, for each command type, for each arithmetic command and for each memory segment (push
+ * and pop commands).
+ *
+ * The translator records the code of each command as it emits it, so the statistics do not require a second
+ * translation, and counting an instruction only takes a scan of its line. Labels and comments are not instructions,
+ * and are not counted. When the top of the stack is cached in D, the instructions that spill the cached value are
+ * attributed to the command whose translation emitted them.
+ *
+ * The statistics can be printed as a text report (with the functions that generate the most instructions), or as
+ * JSON, so that the code size of a program can be tracked across compiler changes.
+ */
+public final class CodeStatistics {
+
+    public static final int DEFAULT_TOP_FUNCTIONS = 10;
+    public static final int ROM_SIZE = HackAssembler.MAX_ADDRESS + 1;
+    private static final String TOP_LEVEL = "(top level)";
+    private final Map<String,Counter> functions = new LinkedHashMap<>();
+    private final Map<CommandType,Counter> commandTypes = new EnumMap<>(CommandType.class);
+    private final Map<ArithmeticCommandType,Counter> arithmeticCommands = new EnumMap<>(ArithmeticCommandType.class);
+    private final Map<Segment,Counter> segments = new EnumMap<>(Segment.class);
+    private final Counter total = new Counter();
+    private long bootstrapInstructions = 0;
+    private String currentFunction = TOP_LEVEL;
+
+
+    /**
+     * The number of VM commands and Hack instructions of an entry of the statistics
+     */
+    private static final class Counter {
+
+        private long commands = 0;
+        private long instructions = 0;
+
+
+        /**
+         * Adds a command with the given number of instructions to this counter
+         *
+         * @param instructionCount      the number of instructions of the command
+         */
+        private void add(long instructionCount) {
+            commands++;
+            instructions += instructionCount;
+        }
+
+    }
+
+
+    /**
+     * Marks the start of the commands of a file. The commands that precede the first function of the file are
+     * attributed to the top level.
+     *
+     * @param fileName              the name of the file
+     * @return a reference to this class instance
+     */
+    public CodeStatistics startFile(String fileName) {
+        currentFunction = TOP_LEVEL;
+        return this;
+    }
+
+
+    /**
+     * Records the code generated for the bootstrap of the program
+     *
+     * @param code                  the code of the bootstrap
+     * @return a reference to this class instance
+     */
+    public CodeStatistics recordBootstrap(CharSequence code) {
+        bootstrapInstructions += instructionCount(code, 0, code.length());
+        return this;
+    }
+
+
+    /**
+     * Records the code generated for the given command, which is found in the given range of the code
+     *
+     * @param command               the translated command
+     * @param code                  the code that holds the code of the command
+     * @param start                 the index of the first character of the code of the command
+     * @param end                   the index after the last character of the code of the command
+     * @return a reference to this class instance
+     */
+    public CodeStatistics record(VMCommand command, CharSequence code, int start, int end) {
+        long instructions = instructionCount(code, start, end);
+
+        if(command.getType() == CommandType.C_FUNCTION) {
+            currentFunction = command.getArgument1();
+        }
+
+        functions.computeIfAbsent(currentFunction, (name) -> new Counter()).add(instructions);
+        commandTypes.computeIfAbsent(command.getType(), (type) -> new Counter()).add(instructions);
+        total.add(instructions);
+
+        if(command.getType() == CommandType.C_ARITHMETIC) {
+            ArithmeticCommandType type = ArithmeticCommandType.of(command);
+            arithmeticCommands.computeIfAbsent(type, (key) -> new Counter()).add(instructions);
+        } else if(command.getType() == CommandType.C_PUSH || command.getType() == CommandType.C_POP) {
+            Segment segment = Segment.fromArgument(command.getArgument1());
+            segments.computeIfAbsent(segment, (key) -> new Counter()).add(instructions);
+        }
+
+        return this;
+    }
+
+
+    /**
+     * Returns the total number of instructions of the program, including the bootstrap code
+     *
+     * @return the total number of instructions of the program
+     */
+    public long instructionCount() {
+        return total.instructions + bootstrapInstructions;
+    }
+
+
+    /**
+     * Returns the number of instructions generated for the given function
+     *
+     * @param function              the name of the function
+     * @return the number of instructions generated for the given function
+     */
+    public long instructionCount(String function) {
+        Counter counter = functions.get(function);
+        return (counter != null)? counter.instructions : 0;
+    }
+
+
+    /**
+     * Returns the number of instructions generated for the given command type
+     *
+     * @param type                  the command type
+     * @return the number of instructions generated for the given command type
+     */
+    public long instructionCount(CommandType type) {
+        Counter counter = commandTypes.get(type);
+        return (counter != null)? counter.instructions : 0;
+    }
+
+
+    /**
+     * Returns the names of the functions that generate the most instructions, in decreasing order of instructions
+     *
+     * @param count                 the maximum number of functions to return
+     * @return the names of the functions that generate the most instructions
+     */
+    public List<String> topFunctions(int count) {
+        List<String> names = new ArrayList<>(functions.keySet());
+        names.sort((name, other) -> Long.compare(functions.get(other).instructions, functions.get(name).instructions));
+        return names.subList(0, Math.min(count, names.size()));
+    }
+
+
+    /**
+     * Returns a text report of the statistics, with the given number of functions that generate the most
+     * instructions
+     *
+     * @param topFunctions          the number of functions to list
+     * @return a text report of the statistics
+     */
+    public String report(int topFunctions) {
+        long instructions = instructionCount();
+        StringBuilder builder = new StringBuilder("Code size report\n");
+        builder.append(String.format("  Instructions: %s (bootstrap: %s), VM commands: %s, functions: %s\n",
+                                     instructions, bootstrapInstructions, total.commands, functions.size()))
+               .append(String.format("  ROM usage: %s%% of %s%s\n", percentage(instructions, ROM_SIZE), ROM_SIZE,
+                                     (instructions > ROM_SIZE)?
+                                             String.format(" (exceeded by %s)", instructions - ROM_SIZE) : ""));
+
+        appendSection(builder, "By command type", commandTypes, instructions);
+        appendSection(builder, "By arithmetic command", arithmeticCommands, instructions);
+        appendSection(builder, "By segment (push and pop)", segments, instructions);
+
+        builder.append(String.format("  Top %s functions:\n", Math.min(topFunctions, functions.size())));
+
+        topFunctions(topFunctions).forEach((function) -> {
+            Counter counter = functions.get(function);
+            builder.append(String.format("    - %s: %s instructions (%s%%), %s commands\n", function,
+                                         counter.instructions, percentage(counter.instructions, instructions),
+                                         counter.commands));
+        });
+
+        return builder.toString();
+    }
+
+
+    /**
+     * Returns the statistics as a JSON object. The functions are listed in decreasing order of instructions.
+     *
+     * @return the statistics as a JSON object
+     */
+    public String toJSON() {
+        StringBuilder builder = new StringBuilder("{\n");
+        builder.append(String.format("  \"instructions\": %s,\n", instructionCount()))
+               .append(String.format("  \"bootstrapInstructions\": %s,\n", bootstrapInstructions))
+               .append(String.format("  \"commands\": %s,\n", total.commands))
+               .append(String.format("  \"romSize\": %s,\n", ROM_SIZE));
+
+        appendJSONObject(builder, "commandTypes", commandTypes);
+        builder.append(",\n");
+        appendJSONObject(builder, "arithmeticCommands", arithmeticCommands);
+        builder.append(",\n");
+        appendJSONObject(builder, "segments", segments);
+        builder.append(",\n  \"functions\": [");
+
+        List<String> names = topFunctions(functions.size());
+
+        for(int i = 0; i < names.size(); i++) {
+            Counter counter = functions.get(names.get(i));
+            builder.append((i == 0)? "\n" : ",\n")
+                   .append(String.format("    { \"name\": \"%s\", \"commands\": %s, \"instructions\": %s }",
+                                         escape(names.get(i)), counter.commands, counter.instructions));
+        }
+
+        builder.append(names.isEmpty()? "]\n" : "\n  ]\n")
+               .append("}\n");
+
+        return builder.toString();
+    }
+
+
+    /**
+     * Appends a section of the text report, which lists the counters of the given map
+     *
+     * @param builder               the builder for the report
+     * @param title                 the title of the section
+     * @param counters              the counters of the section
+     * @param instructions          the total number of instructions of the program
+     */
+    private static void appendSection(StringBuilder builder, String title, Map<? extends Enum<?>,Counter> counters,
+                                      long instructions) {
+
+        if(counters.isEmpty()) {
+            return;
+        }
+
+        builder.append(String.format("  %s:\n", title));
+
+        counters.forEach((key, counter) -> {
+            builder.append(String.format("    - %s: %s instructions (%s%%), %s commands, %.1f per command\n", key,
+                                         counter.instructions, percentage(counter.instructions, instructions),
+                                         counter.commands, (double) counter.instructions / counter.commands));
+        });
+    }
+
+
+    /**
+     * Appends a JSON object member that maps the keys of the given counters to their values
+     *
+     * @param builder               the builder for the JSON object
+     * @param name                  the name of the member
+     * @param counters              the counters of the member
+     */
+    private static void appendJSONObject(StringBuilder builder, String name, Map<? extends Enum<?>,Counter> counters) {
+        builder.append(String.format("  \"%s\": {", name));
+        String separator = "\n";
+
+        for(Map.Entry<? extends Enum<?>,Counter> entry : counters.entrySet()) {
+            builder.append(separator)
+                   .append(String.format("    \"%s\": { \"commands\": %s, \"instructions\": %s }", entry.getKey(),
+                                         entry.getValue().commands, entry.getValue().instructions));
+            separator = ",\n";
+        }
+
+        builder.append(counters.isEmpty()? "}" : "\n  }");
+    }
+
+
+    /**
+     * Returns the number of instructions in the given range of the code: the lines that are neither blank, comments,
+     * nor label definitions
+     *
+     * @param code                  the code that holds the instructions
+     * @param start                 the index of the first character of the range
+     * @param end                   the index after the last character of the range
+     * @return the number of instructions in the given range of the code
+     */
+    public static long instructionCount(CharSequence code, int start, int end) {
+        long count = 0;
+        boolean isLineStart = true;
+
+        for(int i = start; i < end; i++) {
+            char character = code.charAt(i);
+
+            if(character == '\n') {
+                isLineStart = true;
+            } else if(isLineStart && !Character.isWhitespace(character)) {
+                isLineStart = false;
+                boolean isComment = (character == '/' && i + 1 < end && code.charAt(i + 1) == '/');
+
+                if(character != '(' && !isComment) {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+
+    /**
+     * Returns the given part of the given total as a percentage, with one decimal
+     *
+     * @param part                  the part
+     * @param total                 the total
+     * @return the given part of the given total as a percentage
+     */
+    private static String percentage(long part, long total) {
+        return String.format("%.1f", (total == 0)? 0.0 : 100.0 * part / total);
+    }
+
+
+    /**
+     * Escapes the given string for inclusion in a JSON string
+     *
+     * @param value                 the string to escape
+     * @return the escaped string
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.CommandType;
+import com.akwabasystems.model.VMCommand;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+
+/**
+ * A link-time pass that removes the functions which can never be called from a program.
+ *
+ * The pass operates on the parsed commands of all the files of a program. It first builds the call graph of the
+ * program from its function declarations (function f n) and calls (call f n), then walks that graph from the entry
+ * point (Sys.init) to find the reachable functions. Every other function, along with all of its commands, is then
+ * removed before the assembly code is generated.
+ *
+ * Commands that are not enclosed in a function are always kept, and the calls they make are treated as additional
+ * entry points. If the program does not declare its entry point, then no function is removed.
+ */
+public final class DeadFunctionEliminator {
+
+    public static final String ENTRY_POINT = "Sys.init";
+
+    private final Map<String,Set<String>> callGraph = new LinkedHashMap<>();
+    private final Map<String,Integer> commandCounts = new LinkedHashMap<>();
+    private final Set<String> reachableFunctions = new LinkedHashSet<>();
+    private final Set<String> rootCalls = new LinkedHashSet<>();
+
+
+    /**
+     * Builds the call graph from the given command lists (one list per file) and computes the set of functions that
+     * are reachable from the entry point
+     *
+     * @param programs          the lists of commands that make up the program
+     * @return a reference to this class instance
+     */
+    public DeadFunctionEliminator analyze(Collection<List<VMCommand>> programs) {
+        callGraph.clear();
+        commandCounts.clear();
+        reachableFunctions.clear();
+        rootCalls.clear();
+
+        for(List<VMCommand> commands : programs) {
+            String currentFunction = null;
+
+            for(VMCommand command : commands) {
+
+                if(command.getType() == CommandType.C_FUNCTION) {
+                    currentFunction = command.getArgument1();
+                    callGraph.putIfAbsent(currentFunction, new LinkedHashSet<>());
+                } else if(command.getType() == CommandType.C_CALL) {
+                    Set<String> callees = (currentFunction == null)? rootCalls : callGraph.get(currentFunction);
+                    callees.add(command.getArgument1());
+                }
+
+                if(currentFunction != null) {
+                    commandCounts.merge(currentFunction, 1, Integer::sum);
+                }
+            }
+        }
+
+        if(!callGraph.containsKey(ENTRY_POINT)) {
+            reachableFunctions.addAll(callGraph.keySet());
+            return this;
+        }
+
+        Deque<String> pending = new ArrayDeque<>(rootCalls);
+        pending.add(ENTRY_POINT);
+
+        while(!pending.isEmpty()) {
+            String function = pending.poll();
+
+            if(reachableFunctions.add(function) && callGraph.containsKey(function)) {
+                pending.addAll(callGraph.get(function));
+            }
+        }
+
+        return this;
+    }
+
+
+    /**
+     * Removes the commands of all unreachable functions from the given command list
+     *
+     * @param commands          the list of commands from which to remove the unreachable functions
+     * @return the number of commands that were removed
+     */
+    public int eliminate(List<VMCommand> commands) {
+        int removedCommands = 0;
+
+        synchronized(commands) {
+            boolean isReachable = true;
+            Iterator<VMCommand> iterator = commands.iterator();
+
+            while(iterator.hasNext()) {
+                VMCommand command = iterator.next();
+
+                if(command.getType() == CommandType.C_FUNCTION) {
+                    isReachable = isReachable(command.getArgument1());
+                }
+
+                if(!isReachable) {
+                    iterator.remove();
+                    removedCommands++;
+                }
+            }
+        }
+
+        return removedCommands;
+    }
+
+
+    /**
+     * Returns true if the given function is reachable from the entry point; otherwise, returns false
+     *
+     * @param function          the name of the function to check
+     * @return true if the given function is reachable from the entry point; otherwise, returns false
+     */
+    public boolean isReachable(String function) {
+        return reachableFunctions.contains(function);
+    }
+
+
+    /**
+     * Returns the names of the declared functions that are not reachable from the entry point
+     *
+     * @return the names of the declared functions that are not reachable from the entry point
+     */
+    public Set<String> unreachableFunctions() {
+        Set<String> functions = new TreeSet<>(callGraph.keySet());
+        functions.removeAll(reachableFunctions);
+        return functions;
+    }
+
+
+    /**
+     * Returns a report of the reachability analysis, which lists the number of reachable and removed functions and
+     * commands, as well as the name of each removed function
+     *
+     * @return a report of the reachability analysis
+     */
+    public String report() {
+        Set<String> unreachable = unreachableFunctions();
+        int totalCommands = commandCounts.values().stream().mapToInt(Integer::intValue).sum();
+        int removedCommands = unreachable.stream().mapToInt(commandCounts::get).sum();
+
+        StringBuilder builder = new StringBuilder("Reachability report\n");
+        builder.append(String.format("  Entry point: %s%s\n", ENTRY_POINT,
+                                     callGraph.containsKey(ENTRY_POINT)? "" : " (not found; nothing removed)"))
+               .append(String.format("  Functions: %s declared, %s reachable, %s removed\n", callGraph.size(),
+                                     callGraph.size() - unreachable.size(), unreachable.size()))
+               .append(String.format("  Commands: %s declared, %s removed\n", totalCommands, removedCommands));
+
+        unreachable.forEach((function) -> {
+            builder.append(String.format("    - %s (%s commands)\n", function, commandCounts.get(function)));
+        });
+
+        return builder.toString();
+    }
+
+}
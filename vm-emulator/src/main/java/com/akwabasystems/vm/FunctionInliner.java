@@ -0,0 +1,434 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.ArithmeticCommandType;
+import com.akwabasystems.model.CommandType;
+import com.akwabasystems.model.Segment;
+import com.akwabasystems.model.VMCommand;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * A whole-program pass that inlines small leaf functions at their call sites.
+ *
+ * A function is a candidate for inlining if it makes no calls, contains no labels or jumps, ends with its only return
+ * command, leaves exactly one value on the stack when it returns, and has no more than a given number of commands
+ * (the size threshold). Each call to a candidate (call f n) is then replaced with the following sequence:
+ *
+ *      - the n arguments are popped off the caller's stack into temp slots
+ *      - the local variables of the function are initialized to 0 in further temp slots
+ *      - the THIS and THAT pointers are saved into temp slots if the function changes them
+ *      - the body of the function, where "argument i" and "local i" are mapped to their temp slots
+ *      - the saved pointers are restored, leaving the return value on top of the stack
+ *
+ * The temp slots are allocated from the top of the temp segment (temp 7 downwards), above any slot that the function
+ * itself uses, and above any slot that the calling function uses, since the caller may keep a value in a temp slot
+ * across the call. A call is left untouched if there are not enough slots left, if it passes fewer arguments than the
+ * function reads, or if inlining it would exceed the budget, which is the total number of commands that the pass is
+ * allowed to add to the program.
+ */
+public final class FunctionInliner {
+
+    public static final int DEFAULT_SIZE_THRESHOLD = 8;
+    public static final int DEFAULT_BUDGET = 4096;
+    private static final int TEMP_SEGMENT_SIZE = 8;
+
+    private int sizeThreshold = DEFAULT_SIZE_THRESHOLD;
+    private int budget = DEFAULT_BUDGET;
+    private final Map<String,Candidate> candidates = new LinkedHashMap<>();
+    private final Map<String,Integer> inlinedSites = new TreeMap<>();
+    private final Map<String,Integer> maxTempIndices = new HashMap<>();
+    private int addedCommands = 0;
+
+
+    /**
+     * Sets the maximum number of commands, excluding the function declaration and return command, that a function
+     * may contain in order to be inlined
+     *
+     * @param sizeThreshold         the size threshold to set
+     * @return a reference to this class instance
+     */
+    public FunctionInliner setSizeThreshold(int sizeThreshold) {
+        this.sizeThreshold = sizeThreshold;
+        return this;
+    }
+
+
+    /**
+     * Sets the maximum number of commands that this pass may add to the program
+     *
+     * @param budget                the budget to set
+     * @return a reference to this class instance
+     */
+    public FunctionInliner setBudget(int budget) {
+        this.budget = budget;
+        return this;
+    }
+
+
+    /**
+     * Inlines the calls to small leaf functions in the given programs, which map the name of each file to its list
+     * of commands. The command lists are updated in place.
+     *
+     * @param programs          the command lists of the program, keyed by file name
+     * @return a reference to this class instance
+     */
+    public FunctionInliner inline(Map<String,List<VMCommand>> programs) {
+        candidates.clear();
+        inlinedSites.clear();
+        maxTempIndices.clear();
+        addedCommands = 0;
+
+        programs.forEach((fileName, commands) -> findCandidates(fileName, commands));
+
+        programs.forEach((fileName, commands) -> {
+            synchronized(commands) {
+                List<VMCommand> result = new ArrayList<>(commands.size());
+                String scope = fileName;
+
+                for(VMCommand command : commands) {
+
+                    if(command.getType() == CommandType.C_FUNCTION) {
+                        scope = command.getArgument1();
+                    }
+
+                    List<VMCommand> expansion = (command.getType() == CommandType.C_CALL)?
+                            expand(command, maxTempIndices.getOrDefault(scope, -1)) : null;
+
+                    if(expansion == null) {
+                        result.add(command);
+                    } else {
+                        result.addAll(expansion);
+                    }
+                }
+
+                commands.clear();
+                commands.addAll(result);
+            }
+        });
+
+        return this;
+    }
+
+
+    /**
+     * Returns true if the given function can be inlined; otherwise, returns false
+     *
+     * @param function          the name of the function to check
+     * @return true if the given function can be inlined; otherwise, returns false
+     */
+    public boolean isCandidate(String function) {
+        return candidates.containsKey(function);
+    }
+
+
+    /**
+     * Returns a report of the inlining pass, which lists the number of call sites that were inlined for each function
+     *
+     * @return a report of the inlining pass
+     */
+    public String report() {
+        int totalSites = inlinedSites.values().stream().mapToInt(Integer::intValue).sum();
+
+        StringBuilder builder = new StringBuilder("Inlining report\n");
+        builder.append(String.format("  Candidates: %s functions (size threshold: %s)\n", candidates.size(),
+                                     sizeThreshold))
+               .append(String.format("  Call sites inlined: %s\n", totalSites))
+               .append(String.format("  Commands added: %s (budget: %s)\n", addedCommands, budget));
+
+        inlinedSites.forEach((function, sites) -> {
+            builder.append(String.format("    - %s (%s sites)\n", function, sites));
+        });
+
+        return builder.toString();
+    }
+
+
+    /**
+     * Finds the functions in the given command list that can be inlined, and records the highest temp index that each
+     * function of the list uses (the commands that precede the first function are recorded under the file name)
+     *
+     * @param fileName          the name of the file that contains the commands
+     * @param commands          the command list to search
+     */
+    private void findCandidates(String fileName, List<VMCommand> commands) {
+        Candidate candidate = null;
+        String scope = fileName;
+
+        synchronized(commands) {
+            for(VMCommand command : commands) {
+
+                if(command.getType() == CommandType.C_FUNCTION) {
+                    register(candidate);
+                    candidate = new Candidate(command.getArgument1(), command.getArgument2(), fileName);
+                    scope = command.getArgument1();
+                } else if(candidate != null) {
+                    candidate.add(command);
+                }
+
+                boolean isTempAccess = (command.getType() == CommandType.C_PUSH ||
+                        command.getType() == CommandType.C_POP) &&
+                        Segment.fromArgument(command.getArgument1()) == Segment.TEMP;
+
+                if(isTempAccess) {
+                    maxTempIndices.merge(scope, command.getArgument2(), Math::max);
+                }
+            }
+        }
+
+        register(candidate);
+    }
+
+
+    /**
+     * Registers the given function as a candidate if it is eligible for inlining
+     *
+     * @param candidate         the function to register
+     */
+    private void register(Candidate candidate) {
+        if(candidate != null && candidate.isEligible(sizeThreshold)) {
+            candidates.put(candidate.name, candidate);
+        }
+    }
+
+
+    /**
+     * Returns the commands that replace the given call, or null if the call cannot be inlined
+     *
+     * @param call              the call command to expand
+     * @param callerTempIndex   the highest temp index used by the calling function, or -1 if it uses none
+     * @return the commands that replace the given call, or null if the call cannot be inlined
+     */
+    private List<VMCommand> expand(VMCommand call, int callerTempIndex) {
+        Candidate candidate = candidates.get(call.getArgument1());
+        int argumentCount = call.getArgument2();
+
+        if(candidate == null || argumentCount <= candidate.maxArgumentIndex) {
+            return null;
+        }
+
+        int slotCount = argumentCount + candidate.localCount + candidate.savedPointers.size();
+        boolean hasEnoughSlots = (TEMP_SEGMENT_SIZE - slotCount > Math.max(candidate.maxTempIndex, callerTempIndex));
+        int expansionSize = argumentCount + candidate.localCount * 2 + candidate.savedPointers.size() * 4 +
+                candidate.body.size();
+
+        if(!hasEnoughSlots || addedCommands + expansionSize - 1 > budget) {
+            return null;
+        }
+
+        int firstArgumentSlot = TEMP_SEGMENT_SIZE - argumentCount;
+        int firstLocalSlot = firstArgumentSlot - candidate.localCount;
+        int firstSavedSlot = firstLocalSlot - candidate.savedPointers.size();
+        List<VMCommand> expansion = new ArrayList<>(expansionSize);
+
+        for(int i = argumentCount - 1; i >= 0; i--) {
+            expansion.add(command(call, String.format("pop temp %s", firstArgumentSlot + i), null));
+        }
+
+        for(int i = 0; i < candidate.localCount; i++) {
+            expansion.add(command(call, "push constant 0", null));
+            expansion.add(command(call, String.format("pop temp %s", firstLocalSlot + i), null));
+        }
+
+        for(int i = 0; i < candidate.savedPointers.size(); i++) {
+            expansion.add(command(call, String.format("push pointer %s", candidate.savedPointers.get(i)), null));
+            expansion.add(command(call, String.format("pop temp %s", firstSavedSlot + i), null));
+        }
+
+        for(VMCommand command : candidate.body) {
+            String syntax = command.getCommand();
+            Segment segment = Segment.fromArgument(command.getArgument1());
+            boolean isMemoryAccess = (command.getType() != CommandType.C_ARITHMETIC);
+
+            if(isMemoryAccess && segment == Segment.ARGUMENT) {
+                syntax = String.format("%s temp %s", operation(command), firstArgumentSlot + command.getArgument2());
+            } else if(isMemoryAccess && segment == Segment.LOCAL) {
+                syntax = String.format("%s temp %s", operation(command), firstLocalSlot + command.getArgument2());
+            }
+
+            String fileName = (isMemoryAccess && segment == Segment.STATIC)? candidate.fileName : null;
+            expansion.add(command(call, syntax, fileName));
+        }
+
+        for(int i = 0; i < candidate.savedPointers.size(); i++) {
+            expansion.add(command(call, String.format("push temp %s", firstSavedSlot + i), null));
+            expansion.add(command(call, String.format("pop pointer %s", candidate.savedPointers.get(i)), null));
+        }
+
+        addedCommands += expansion.size() - 1;
+        inlinedSites.merge(candidate.name, 1, Integer::sum);
+
+        return expansion;
+    }
+
+
+    /**
+     * Creates the command with the given syntax in the context of the given call
+     *
+     * @param call              the call command being expanded
+     * @param syntax            the syntax of the command to create
+     * @param fileName          the file name to set for the command, or null to use that of the caller
+     * @return the command with the given syntax
+     */
+    private static VMCommand command(VMCommand call, String syntax, String fileName) {
+        VMCommand command = CommandType.fromCommand(syntax);
+        command.setContext(call.getContext());
+
+        if(fileName != null) {
+            command.setFileName(fileName);
+        }
+
+        return command;
+    }
+
+
+    /**
+     * Returns the operation ("push" or "pop") of the given memory access command
+     *
+     * @param command           the memory access command
+     * @return the operation of the given memory access command
+     */
+    private static String operation(VMCommand command) {
+        return (command.getType() == CommandType.C_PUSH)? "push" : "pop";
+    }
+
+
+    /**
+     * A function that may be inlined, along with the information gathered from its body
+     */
+    private static final class Candidate {
+
+        private final String name;
+        private final int localCount;
+        private final String fileName;
+        private final List<VMCommand> body = new ArrayList<>();
+        private final List<Integer> savedPointers = new ArrayList<>();
+        private int maxArgumentIndex = -1;
+        private int maxTempIndex = -1;
+        private int returnCount = 0;
+        private boolean hasUnsupportedCommand = false;
+        private boolean isReturnLast = false;
+
+
+        /**
+         * Creates a candidate for the function with the given name and number of local variables
+         *
+         * @param name          the name of the function
+         * @param localCount    the number of local variables of the function
+         * @param fileName      the name of the file that declares the function
+         */
+        Candidate(String name, int localCount, String fileName) {
+            this.name = name;
+            this.localCount = localCount;
+            this.fileName = fileName;
+        }
+
+
+        /**
+         * Adds the given command to the body of this function
+         *
+         * @param command       the command to add
+         */
+        void add(VMCommand command) {
+            isReturnLast = (command.getType() == CommandType.C_RETURN);
+
+            switch(command.getType()) {
+
+                case C_RETURN:
+                    returnCount++;
+                    break;
+
+                case C_PUSH:
+                case C_POP:
+                    inspect(command);
+                    body.add(command);
+                    break;
+
+                case C_ARITHMETIC:
+                    body.add(command);
+                    break;
+
+                default:
+                    hasUnsupportedCommand = true;
+                    break;
+            }
+        }
+
+
+        /**
+         * Records the segment usage of the given memory access command
+         *
+         * @param command       the memory access command to inspect
+         */
+        private void inspect(VMCommand command) {
+            Segment segment = Segment.fromArgument(command.getArgument1());
+            int index = command.getArgument2();
+            boolean isPop = (command.getType() == CommandType.C_POP);
+
+            if(segment == null) {
+                hasUnsupportedCommand = true;
+            } else if(segment == Segment.ARGUMENT) {
+                maxArgumentIndex = Math.max(maxArgumentIndex, index);
+            } else if(segment == Segment.LOCAL) {
+                hasUnsupportedCommand |= (index >= localCount);
+            } else if(segment == Segment.TEMP) {
+                maxTempIndex = Math.max(maxTempIndex, index);
+            } else if(segment == Segment.POINTER && isPop && !savedPointers.contains(index)) {
+                savedPointers.add(index);
+            }
+        }
+
+
+        /**
+         * Returns true if this function can be inlined; otherwise, returns false
+         *
+         * @param sizeThreshold     the maximum number of commands in the body of the function
+         * @return true if this function can be inlined; otherwise, returns false
+         */
+        boolean isEligible(int sizeThreshold) {
+            boolean isWellFormed = (!hasUnsupportedCommand && returnCount == 1 && isReturnLast);
+            return isWellFormed && body.size() <= sizeThreshold && returnsSingleValue();
+        }
+
+
+        /**
+         * Returns true if the body of this function never pops more values than it pushed, and leaves exactly one
+         * value (the return value) on the stack
+         *
+         * @return true if the body of this function leaves exactly one value on the stack
+         */
+        private boolean returnsSingleValue() {
+            int depth = 0;
+
+            for(VMCommand command : body) {
+
+                if(command.getType() == CommandType.C_PUSH) {
+                    depth++;
+                } else if(command.getType() == CommandType.C_POP) {
+                    depth--;
+                } else {
+                    ArithmeticCommandType type = ArithmeticCommandType.fromCommand(command.getCommand());
+                    boolean isUnary = (type == ArithmeticCommandType.NEG || type == ArithmeticCommandType.NOT);
+                    depth -= (isUnary)? 0 : 1;
+
+                    if(depth < 1) {
+                        return false;
+                    }
+                }
+
+                if(depth < 0) {
+                    return false;
+                }
+            }
+
+            return (depth == 1);
+        }
+
+    }
+
+}
@@ -0,0 +1,326 @@
+package com.akwabasystems.vm;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * An in-process assembler for the code generated by the VM translator, which produces the Hack binary code of a
+ * program without writing and re-reading an intermediate ".asm" file.
+ *
+ * The generated code is appended chunk by chunk (for instance, the code of each VM file). Each line is scanned once,
+ * without regular expressions, into a structured instruction: a label definition records the current address of its
+ * symbol, a numeric A-instruction is encoded immediately, a symbolic A-instruction is kept as a reference to an
+ * interned symbol, and a C-instruction is encoded through a cache, since the translator emits the same few
+ * C-instructions over and over. Symbols are resolved once all the code has been appended: labels first, then the
+ * predefined symbols, and finally variables, which are allocated from address 16 in order of first use (as the
+ * standalone assembler does).
+ */
+public final class HackAssembler {
+
+    public static final int VARIABLE_BASE_ADDRESS = 16;
+    public static final int MAX_ADDRESS = 0x7FFF;
+    private static final int SYMBOL_FLAG = 1 << 30;
+    private static final int UNDEFINED = -1;
+    private static final Map<String,Integer> COMP_CODES = new HashMap<>();
+    private static final Map<String,Integer> DEST_CODES = new HashMap<>();
+    private static final Map<String,Integer> JUMP_CODES = new HashMap<>();
+
+    static {
+        String[] comp = { "0", "1", "-1", "D", "A", "!D", "!A", "-D", "-A", "D+1", "A+1", "D-1", "A-1", "D+A", "D-A",
+                          "A-D", "D&A", "D|A" };
+        int[] bits = { 0b0101010, 0b0111111, 0b0111010, 0b0001100, 0b0110000, 0b0001101, 0b0110001, 0b0001111,
+                       0b0110011, 0b0011111, 0b0110111, 0b0001110, 0b0110010, 0b0000010, 0b0010011, 0b0000111,
+                       0b0000000, 0b0010101 };
+
+        for(int i = 0; i < comp.length; i++) {
+            COMP_CODES.put(comp[i], bits[i]);
+
+            if(comp[i].contains("A")) {
+                COMP_CODES.put(comp[i].replace('A', 'M'), bits[i] | 0b1000000);
+            }
+        }
+
+        String[] dest = { "", "M", "D", "MD", "A", "AM", "AD", "AMD" };
+        String[] jump = { "", "JGT", "JEQ", "JGE", "JLT", "JNE", "JLE", "JMP" };
+
+        for(int i = 0; i < dest.length; i++) {
+            DEST_CODES.put(dest[i], i);
+            JUMP_CODES.put(jump[i], i);
+        }
+    }
+
+    private int[] instructions = new int[1024];
+    private int size = 0;
+    private final Map<String,Integer> symbolIds = new HashMap<>();
+    private final List<String> symbols = new ArrayList<>();
+    private int[] labelAddresses = new int[256];
+    private final Map<String,Integer> cInstructionCache = new HashMap<>();
+    private boolean endsWithLabel = false;
+
+
+    /**
+     * Appends the given assembly code to the program
+     *
+     * @param code              the assembly code to append
+     * @return a reference to this assembler
+     * @throws IllegalArgumentException if the code contains an invalid instruction
+     */
+    public HackAssembler append(CharSequence code) {
+        int length = code.length();
+        int start = 0;
+
+        while(start < length) {
+            int end = start;
+
+            while(end < length && code.charAt(end) != '\n') {
+                end++;
+            }
+
+            appendLine(code, start, end);
+            start = end + 1;
+        }
+
+        return this;
+    }
+
+
+    /**
+     * Returns the number of instructions in the program
+     *
+     * @return the number of instructions in the program
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Resolves the symbols of the program, and returns its binary code as one 16-bit word per instruction
+     *
+     * @return the binary code of the program
+     * @throws IllegalArgumentException if a symbol resolves to an address that does not fit in an A-instruction (for
+     *                                  instance, a label in a program that is larger than the 32K ROM)
+     */
+    public short[] toBinary() {
+        SymbolTable symbolTable = new SymbolTable();
+        int[] addresses = new int[symbols.size()];
+        int variableAddress = VARIABLE_BASE_ADDRESS;
+        short[] binary = new short[size];
+
+        for(int id = 0; id < symbols.size(); id++) {
+            addresses[id] = (labelAddresses[id] != UNDEFINED)? labelAddresses[id] :
+                    symbolTable.getAddress(symbols.get(id));
+        }
+
+        for(int i = 0; i < size; i++) {
+            int instruction = instructions[i];
+
+            if((instruction & SYMBOL_FLAG) != 0) {
+                int id = instruction & ~SYMBOL_FLAG;
+
+                if(addresses[id] == UNDEFINED) {
+                    addresses[id] = variableAddress++;
+                }
+
+                if(addresses[id] > MAX_ADDRESS) {
+                    throw new IllegalArgumentException(String.format("The address of '%s' (%s) is out of range",
+                                                                     symbols.get(id), addresses[id]));
+                }
+
+                instruction = addresses[id];
+            }
+
+            binary[i] = (short) instruction;
+        }
+
+        return binary;
+    }
+
+
+    /**
+     * Returns the binary code of the program in the text format of ".hack" files: one 16-character bit string per
+     * instruction, separated by line breaks. As with the standalone assembler, the text ends with a line break if the
+     * program ends with a label.
+     *
+     * @return the binary code of the program as text
+     * @throws IllegalArgumentException if a symbol resolves to an address that does not fit in an A-instruction
+     */
+    public String binaryCode() {
+        short[] binary = toBinary();
+        char[] text = new char[Math.max(0, binary.length * 17 - (endsWithLabel? 0 : 1))];
+
+        for(int i = 0; i < binary.length; i++) {
+            int offset = i * 17;
+
+            for(int bit = 0; bit < 16; bit++) {
+                text[offset + bit] = ((binary[i] >> (15 - bit)) & 1) == 1? '1' : '0';
+            }
+
+            if(i < binary.length - 1 || endsWithLabel) {
+                text[offset + 16] = '\n';
+            }
+        }
+
+        return new String(text);
+    }
+
+
+    /**
+     * Scans the line in the given range of the code, and appends its instruction to the program. Comments and blank
+     * lines are skipped.
+     *
+     * @param code              the code that holds the line
+     * @param start             the index of the first character of the line
+     * @param end               the index after the last character of the line
+     */
+    private void appendLine(CharSequence code, int start, int end) {
+
+        for(int i = start; i < end - 1; i++) {
+            if(code.charAt(i) == '/' && code.charAt(i + 1) == '/') {
+                end = i;
+                break;
+            }
+        }
+
+        while(start < end && Character.isWhitespace(code.charAt(start))) {
+            start++;
+        }
+
+        while(end > start && Character.isWhitespace(code.charAt(end - 1))) {
+            end--;
+        }
+
+        if(start == end) {
+            return;
+        }
+
+        char first = code.charAt(start);
+        endsWithLabel = (first == '(' && code.charAt(end - 1) == ')');
+
+        if(first == '(' && code.charAt(end - 1) == ')') {
+            defineLabel(code.subSequence(start + 1, end - 1).toString());
+        } else if(first == '@' && end - start > 1 && Character.isDigit(code.charAt(start + 1))) {
+            add(decode(code, start + 1, end));
+        } else if(first == '@') {
+            add(SYMBOL_FLAG | symbolId(code.subSequence(start + 1, end).toString()));
+        } else {
+            String instruction = code.subSequence(start, end).toString();
+            add(cInstructionCache.computeIfAbsent(instruction, HackAssembler::encode));
+        }
+    }
+
+
+    /**
+     * Records the address of the next instruction as that of the given label
+     *
+     * @param label             the label to define
+     */
+    private void defineLabel(String label) {
+        labelAddresses[symbolId(label)] = size;
+    }
+
+
+    /**
+     * Appends the given instruction (a binary code, or a reference to a symbol) to the program
+     *
+     * @param instruction       the instruction to append
+     */
+    private void add(int instruction) {
+
+        if(size == instructions.length) {
+            instructions = Arrays.copyOf(instructions, size * 2);
+        }
+
+        instructions[size++] = instruction;
+    }
+
+
+    /**
+     * Returns the id of the given symbol, interning it if it is seen for the first time
+     *
+     * @param symbol            the symbol to look up
+     * @return the id of the given symbol
+     */
+    private int symbolId(String symbol) {
+        Integer id = symbolIds.get(symbol);
+
+        if(id == null) {
+            id = symbols.size();
+            symbols.add(symbol);
+            symbolIds.put(symbol, id);
+
+            if(id == labelAddresses.length) {
+                labelAddresses = Arrays.copyOf(labelAddresses, id * 2);
+            }
+
+            labelAddresses[id] = UNDEFINED;
+        }
+
+        return id;
+    }
+
+
+    /**
+     * Decodes the constant of a numeric A-instruction
+     *
+     * @param code              the code that holds the constant
+     * @param start             the index of the first digit
+     * @param end               the index after the last digit
+     * @return the decoded constant
+     * @throws IllegalArgumentException if the constant is not a valid 15-bit number
+     */
+    private static int decode(CharSequence code, int start, int end) {
+        int value = 0;
+
+        for(int i = start; i < end; i++) {
+            int digit = code.charAt(i) - '0';
+
+            if(digit < 0 || digit > 9 || value > MAX_ADDRESS) {
+                throw new IllegalArgumentException(String.format("Invalid constant: %s",
+                                                                 code.subSequence(start, end)));
+            }
+
+            value = value * 10 + digit;
+        }
+
+        if(value > MAX_ADDRESS) {
+            throw new IllegalArgumentException(String.format("Invalid constant: %s", code.subSequence(start, end)));
+        }
+
+        return value;
+    }
+
+
+    /**
+     * Returns the binary code of the given C-instruction ("dest=comp;jump")
+     *
+     * @param instruction       the C-instruction to encode
+     * @return the binary code of the given C-instruction
+     * @throws IllegalArgumentException if the instruction is invalid
+     */
+    private static int encode(String instruction) {
+        int equals = instruction.indexOf('=');
+        int semicolon = instruction.indexOf(';');
+        int compEnd = (semicolon < 0)? instruction.length() : semicolon;
+
+        String dest = (equals < 0)? "" : instruction.substring(0, equals).trim();
+        String comp = instruction.substring(equals + 1, compEnd).trim();
+        String jump = (semicolon < 0)? "" : instruction.substring(semicolon + 1).trim();
+
+        Integer compCode = COMP_CODES.get(comp);
+        Integer destCode = DEST_CODES.get(dest);
+        Integer jumpCode = JUMP_CODES.get(jump);
+
+        if(compCode == null || destCode == null || jumpCode == null) {
+            throw new IllegalArgumentException(String.format("Invalid instruction: %s", instruction));
+        }
+
+        return 0b111 << 13 | compCode << 6 | destCode << 3 | jumpCode;
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.akwabasystems.vm;
+
+
+/**
+ * A native implementation of a VM function, which the interpreter runs in place of the VM code of that function.
+ *
+ * An intrinsic receives the RAM of the interpreter, the address of the first argument of the call on the stack and the
+ * address of the static variables of the file that declares the function, and returns the value that the function
+ * returns. It must leave the RAM in the same state as the VM function would (apart from the unused part of the
+ * stack), including the arrays and temp registers that the function writes to, so that the rest of the program
+ * cannot tell the difference.
+ */
+@FunctionalInterface
+public interface Intrinsic {
+
+    /**
+     * The value to return when the intrinsic cannot handle the given arguments (for instance, a division by zero),
+     * in which case the interpreter calls the VM function instead. Return values are 16-bit, so this value can never
+     * be a valid result.
+     */
+    int FALL_BACK = Integer.MIN_VALUE;
+
+
+    /**
+     * Invokes this intrinsic
+     *
+     * @param ram               the RAM of the interpreter
+     * @param arguments         the address of the first argument of the call
+     * @param statics           the address of the first static variable of the file that declares the function
+     * @return the value returned by the function, or FALL_BACK if the VM function must be called instead
+     */
+    int invoke(short[] ram, int arguments, int statics);
+
+}
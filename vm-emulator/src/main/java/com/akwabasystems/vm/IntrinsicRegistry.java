@@ -0,0 +1,122 @@
+package com.akwabasystems.vm;
+
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+
+/**
+ * A registry of the intrinsics that the interpreter runs in place of VM functions, keyed by function name (for
+ * instance, "Math.multiply").
+ *
+ * Intrinsics are toggled per class: all the intrinsics of a class are enabled when they are registered, and a class
+ * can be disabled (for instance, to test the VM code of Math.vm itself while the other classes still run natively).
+ */
+public final class IntrinsicRegistry {
+
+    private final Map<String,Intrinsic> intrinsics = new TreeMap<>();
+    private final Set<String> disabledClasses = new HashSet<>();
+
+
+    /**
+     * Returns a registry that holds the intrinsics for the Jack OS (see OSIntrinsics)
+     *
+     * @return a registry that holds the intrinsics for the Jack OS
+     */
+    public static IntrinsicRegistry standard() {
+        return OSIntrinsics.registerAll(new IntrinsicRegistry());
+    }
+
+
+    /**
+     * Registers an intrinsic for the given function
+     *
+     * @param function          the name of the function (for instance, "Math.multiply")
+     * @param intrinsic         the native implementation of the function
+     * @return a reference to this class instance
+     */
+    public IntrinsicRegistry register(String function, Intrinsic intrinsic) {
+        intrinsics.put(function, intrinsic);
+        return this;
+    }
+
+
+    /**
+     * Enables or disables the intrinsics of the given class
+     *
+     * @param className         the name of the class (for instance, "Math")
+     * @param enabled           whether the intrinsics of the class are enabled
+     * @return a reference to this class instance
+     */
+    public IntrinsicRegistry setEnabled(String className, boolean enabled) {
+
+        if(enabled) {
+            disabledClasses.remove(className);
+        } else {
+            disabledClasses.add(className);
+        }
+
+        return this;
+    }
+
+
+    /**
+     * Returns true if the intrinsics of the given class are enabled; otherwise, returns false
+     *
+     * @param className         the name of the class
+     * @return true if the intrinsics of the given class are enabled; otherwise, returns false
+     */
+    public boolean isEnabled(String className) {
+        return !disabledClasses.contains(className);
+    }
+
+
+    /**
+     * Returns the intrinsic for the given function, or null if there is none or if its class is disabled
+     *
+     * @param function          the name of the function
+     * @return the intrinsic for the given function, or null if there is none or if its class is disabled
+     */
+    public Intrinsic lookup(String function) {
+        return isEnabled(className(function))? intrinsics.get(function) : null;
+    }
+
+
+    /**
+     * Returns the names of the functions that have a registered intrinsic
+     *
+     * @return the names of the functions that have a registered intrinsic
+     */
+    public Set<String> functions() {
+        return Collections.unmodifiableSet(intrinsics.keySet());
+    }
+
+
+    /**
+     * Returns the names of the classes that have registered intrinsics
+     *
+     * @return the names of the classes that have registered intrinsics
+     */
+    public Set<String> classes() {
+        Set<String> classes = new TreeSet<>();
+        intrinsics.keySet().stream().forEach((function) -> classes.add(className(function)));
+        return classes;
+    }
+
+
+    /**
+     * Returns the name of the class of the given function
+     *
+     * @param function          the name of the function
+     * @return the name of the class of the given function
+     */
+    private static String className(String function) {
+        int index = function.indexOf('.');
+        return (index < 0)? function : function.substring(0, index);
+    }
+
+}
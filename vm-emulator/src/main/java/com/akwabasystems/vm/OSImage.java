@@ -0,0 +1,330 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.CommandType;
+import com.akwabasystems.model.VMCommand;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * A snapshot of the RAM of a program after the initialization of the Jack OS, which lets the program start directly
+ * with the call to Main.main.
+ *
+ * The Sys.init function of the Jack OS initializes each OS class (Memory, Math, Screen, Output, Keyboard) before it
+ * calls Main.main. These initializations do not depend on any input, but they take millions of cycles on every start
+ * of the program (Output.init alone builds the glyph table of the font). The image is captured by running Sys.init
+ * with the VM interpreter until it is about to call Main.main, and by recording the state of the RAM at that point:
+ * the pointers (SP, LCL, ARG, THIS, THAT), the static variables, the stack of Sys.init, the heap and the screen.
+ *
+ * Once the image is installed, the commands of Sys.init that precede the call to Main.main are replaced with a label,
+ * and the bootstrap code writes the image to the RAM, then jumps to that label. Only the words that are not 0 are
+ * written, since the RAM is cleared when the computer starts. The static variables are written through their symbols
+ * ("File.index"), as the assembler allocates their addresses in the translated code. The init functions are no longer
+ * called, so they are removed by dead function elimination.
+ */
+public final class OSImage {
+
+    public static final String MAIN_FUNCTION = "Main.main";
+    public static final String ENTRY_LABEL = "OS_IMAGE";
+    public static final int HEAP_BASE_ADDRESS = 2048;
+    private static final String[] POINTERS = { "SP", "LCL", "ARG", "THIS", "THAT" };
+    private static final int NO_VALUE = Integer.MIN_VALUE;
+    private final int[] pointers = new int[POINTERS.length];
+    private final Map<String,Integer> statics = new LinkedHashMap<>();
+    private final Map<Integer,Integer> memory = new TreeMap<>();
+    private String entryLabel = null;
+    private long initializationSteps = 0;
+
+
+    /**
+     * Captures the image of the given program, by running its Sys.init function with the VM interpreter until it
+     * calls Main.main. The program itself is not modified (see install()).
+     *
+     * @param programs          the command lists of the program, keyed by file name
+     * @param maxSteps          the maximum number of commands to execute for the initialization
+     * @return the image of the program after the initialization of the OS
+     * @throws IllegalArgumentException if the program cannot be lowered for the interpreter
+     * @throws IllegalStateException if Sys.init does not call Main.main, if the commands that precede the call contain
+     *         labels, or if the call is not reached within the given number of commands
+     */
+    public static OSImage capture(Map<String,List<VMCommand>> programs, long maxSteps) {
+        VMCommand call = findMainCall(programs);
+        VMProgram program = VMProgram.lower(programs);
+        int callIndex = mainCallIndex(program);
+        VMInterpreter interpreter = new VMInterpreter(program).setBreakpoint(callIndex).bootstrap();
+
+        interpreter.run(maxSteps);
+
+        if(interpreter.getProgramCounter() != callIndex || interpreter.isHalted()) {
+            throw new IllegalStateException(String.format("Main.main was not called within %s commands", maxSteps));
+        }
+
+        OSImage image = new OSImage();
+        image.entryLabel = String.format("%s$%s", call.getContext(), ENTRY_LABEL);
+        image.initializationSteps = interpreter.getSteps();
+
+        for(int i = 0; i < POINTERS.length; i++) {
+            image.pointers[i] = interpreter.peek(i);
+        }
+
+        program.staticAddresses().forEach((symbol, address) -> {
+            int value = interpreter.peek(address);
+
+            if(value != 0) {
+                image.statics.put(symbol, value);
+            }
+        });
+
+        /** The stack of Sys.init (its locals, and any value it pushed), then the heap and the screen */
+        image.capture(interpreter, VMInterpreter.STACK_BASE_ADDRESS, interpreter.peek(0));
+        image.capture(interpreter, HEAP_BASE_ADDRESS, VMInterpreter.KEYBOARD);
+
+        return image;
+    }
+
+
+    /**
+     * Records the words in the given range of the RAM of the given interpreter that are not 0
+     *
+     * @param interpreter       the interpreter that holds the RAM
+     * @param start             the first address of the range
+     * @param end               the address after the last address of the range
+     */
+    private void capture(VMInterpreter interpreter, int start, int end) {
+
+        for(int address = start; address < end; address++) {
+            int value = interpreter.peek(address);
+
+            if(value != 0) {
+                memory.put(address, value);
+            }
+        }
+    }
+
+
+    /**
+     * Installs this image in the given program: the commands of Sys.init that precede the call to Main.main are
+     * replaced with the label to which the bootstrap code jumps
+     *
+     * @param programs          the command lists of the program, keyed by file name
+     * @return the number of commands that were removed
+     * @throws IllegalStateException if Sys.init does not call Main.main, or if the commands that precede the call
+     *         contain labels
+     */
+    public int install(Map<String,List<VMCommand>> programs) {
+
+        for(List<VMCommand> commands : programs.values()) {
+            synchronized(commands) {
+                int functionIndex = functionIndex(commands, DeadFunctionEliminator.ENTRY_POINT);
+
+                if(functionIndex < 0) {
+                    continue;
+                }
+
+                int callIndex = mainCallIndex(commands, functionIndex);
+                VMCommand call = commands.get(callIndex);
+                VMCommand label = CommandType.fromCommand(String.format("label %s", ENTRY_LABEL));
+                label.setContext(call.getContext());
+                label.setFileName(call.getFileName());
+
+                List<VMCommand> initialization = commands.subList(functionIndex + 1, callIndex);
+                int removedCommands = initialization.size();
+                initialization.clear();
+                commands.add(functionIndex + 1, label);
+
+                return removedCommands;
+            }
+        }
+
+        throw new IllegalStateException("The program does not declare Sys.init");
+    }
+
+
+    /**
+     * Returns the bootstrap code that writes this image to the RAM, then jumps to the call to Main.main in Sys.init
+     *
+     * @param isDebugEnabled    a flag that specifies whether to output a comment before the bootstrap code
+     * @return the bootstrap code that writes this image to the RAM
+     */
+    public String bootstrapCode(boolean isDebugEnabled) {
+        StringBuilder builder = new StringBuilder();
+        int registerValue = NO_VALUE;
+
+        if(isDebugEnabled) {
+            builder.append("// Bootstrap (OS image)\n");
+        }
+
+        for(Map.Entry<String,Integer> entry : statics.entrySet()) {
+            registerValue = appendStore(builder, entry.getKey(), entry.getValue(), registerValue);
+        }
+
+        for(Map.Entry<Integer,Integer> entry : memory.entrySet()) {
+            registerValue = appendStore(builder, String.valueOf(entry.getKey()), entry.getValue(), registerValue);
+        }
+
+        for(int i = 0; i < POINTERS.length; i++) {
+            registerValue = appendStore(builder, POINTERS[i], pointers[i], registerValue);
+        }
+
+        builder.append('@').append(entryLabel).append('\n')
+               .append("0;JMP\n");
+
+        return builder.toString();
+    }
+
+
+    /**
+     * Appends the code that stores the given value at the given address. The values 0, 1 and -1 are stored directly;
+     * other values are loaded into D, unless D already holds them.
+     *
+     * @param builder           the builder to which to append the code
+     * @param address           the address (or symbol) at which to store the value
+     * @param value             the value to store
+     * @param registerValue     the value held in D, or NO_VALUE if it is unknown
+     * @return the value held in D after the code
+     */
+    private static int appendStore(StringBuilder builder, String address, int value, int registerValue) {
+
+        if(value >= -1 && value <= 1) {
+            builder.append('@').append(address).append('\n')
+                   .append("M=").append(value).append('\n');
+            return registerValue;
+        }
+
+        if(value != registerValue) {
+            /** Only non-negative constants can be loaded into A, so a negative value v is loaded as !(~v) */
+            builder.append('@').append((value >= 0)? value : ~value).append('\n')
+                   .append((value >= 0)? "D=A\n" : "D=!A\n");
+        }
+
+        builder.append('@').append(address).append('\n')
+               .append("M=D\n");
+        return value;
+    }
+
+
+    /**
+     * Returns the number of RAM words that the bootstrap code writes, including the pointers
+     *
+     * @return the number of RAM words that the bootstrap code writes
+     */
+    public int size() {
+        return POINTERS.length + statics.size() + memory.size();
+    }
+
+
+    /**
+     * Returns the number of VM commands that Sys.init executes before it calls Main.main, which the image saves on
+     * each start of the program
+     *
+     * @return the number of VM commands that Sys.init executes before it calls Main.main
+     */
+    public long getInitializationSteps() {
+        return initializationSteps;
+    }
+
+
+    /**
+     * Returns the first call to Main.main in the Sys.init function of the given program
+     *
+     * @param programs          the command lists of the program, keyed by file name
+     * @return the first call to Main.main in Sys.init
+     * @throws IllegalStateException if Sys.init does not call Main.main, or if the commands that precede the call
+     *         contain labels
+     */
+    private static VMCommand findMainCall(Map<String,List<VMCommand>> programs) {
+
+        for(List<VMCommand> commands : programs.values()) {
+            synchronized(commands) {
+                int functionIndex = functionIndex(commands, DeadFunctionEliminator.ENTRY_POINT);
+
+                if(functionIndex >= 0) {
+                    return commands.get(mainCallIndex(commands, functionIndex));
+                }
+            }
+        }
+
+        throw new IllegalStateException("The program does not declare Sys.init");
+    }
+
+
+    /**
+     * Returns the index of the first call to Main.main in the lowered instructions of Sys.init
+     *
+     * @param program           the lowered program
+     * @return the index of the first call to Main.main in Sys.init
+     * @throws IllegalStateException if Sys.init does not call Main.main
+     */
+    private static int mainCallIndex(VMProgram program) {
+        int entryPoint = program.functionIndex(DeadFunctionEliminator.ENTRY_POINT);
+        int mainIndex = program.functionIndex(MAIN_FUNCTION);
+        int[] code = program.getCode();
+
+        for(int i = entryPoint; entryPoint >= 0 && i < program.size(); i++) {
+            if(!program.functionAt(i).equals(DeadFunctionEliminator.ENTRY_POINT)) {
+                break;
+            }
+
+            int offset = i * VMProgram.INSTRUCTION_SIZE;
+
+            if(code[offset] == VMProgram.CALL && code[offset + 1] == mainIndex) {
+                return i;
+            }
+        }
+
+        throw new IllegalStateException("Sys.init does not call Main.main");
+    }
+
+
+    /**
+     * Returns the index of the given function in the given command list, or -1 if the list does not declare it
+     *
+     * @param commands          the command list
+     * @param function          the name of the function
+     * @return the index of the given function in the given command list, or -1 if the list does not declare it
+     */
+    private static int functionIndex(List<VMCommand> commands, String function) {
+
+        for(int i = 0; i < commands.size(); i++) {
+            VMCommand command = commands.get(i);
+
+            if(command.getType() == CommandType.C_FUNCTION && command.getArgument1().equals(function)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Returns the index of the first call to Main.main in the function that starts at the given index of the given
+     * command list
+     *
+     * @param commands          the command list
+     * @param functionIndex     the index of the function command
+     * @return the index of the first call to Main.main in the function
+     * @throws IllegalStateException if the function does not call Main.main, or if the commands that precede the call
+     *         contain labels
+     */
+    private static int mainCallIndex(List<VMCommand> commands, int functionIndex) {
+
+        for(int i = functionIndex + 1; i < commands.size(); i++) {
+            VMCommand command = commands.get(i);
+
+            if(command.getType() == CommandType.C_FUNCTION) {
+                break;
+            } else if(command.getType() == CommandType.C_LABEL) {
+                throw new IllegalStateException("Sys.init declares labels before it calls Main.main");
+            } else if(command.getType() == CommandType.C_CALL && command.getArgument1().equals(MAIN_FUNCTION)) {
+                return i;
+            }
+        }
+
+        throw new IllegalStateException("Sys.init does not call Main.main");
+    }
+
+}
@@ -0,0 +1,269 @@
+package com.akwabasystems.vm;
+
+
+/**
+ * Native implementations of the hot functions of the Jack OS (nand2tetris/tools/OS), in the spirit of the built-in
+ * VM code of the nand2tetris tools.
+ *
+ * The Math functions compute the same 16-bit results as the bit loops of Math.vm. Math.divide also mirrors its loops
+ * step by step, since it fills the scratch array of Math.vm (static 1, the powers of two of the divisor) before reading
+ * it, and reads the powers of two that Math.init stores in static 0. The Memory functions mirror the free-list
+ * algorithm of Memory.vm step by step (the heap starts at address 2048, and each block holds its size and the address
+ * of the next block in its first two words). Every function that assigns an array entry also leaves the last
+ * assigned value in "temp 0", as the compiled code does, so that the RAM is in the same state after each call as with
+ * the VM code. Calls that end in Sys.error (division by zero, square root of a negative number, invalid allocation
+ * size) fall back to the VM code, so that the errors are reported as usual.
+ */
+public final class OSIntrinsics {
+
+    public static final int HEAP_BASE_ADDRESS = 2048;
+    public static final int HEAP_END_ADDRESS = 16379;
+    private static final int TEMP_ADDRESS = 5;
+    private static final int DIVIDE_MAX_POWER = 15;
+
+
+    /**
+     * Prevents the instantiation of this class
+     */
+    private OSIntrinsics() {}
+
+
+    /**
+     * Registers the intrinsics of this class in the given registry
+     *
+     * @param registry          the registry in which to register the intrinsics
+     * @return a reference to the given registry
+     */
+    public static IntrinsicRegistry registerAll(IntrinsicRegistry registry) {
+        return registry.register("Math.abs", OSIntrinsics::abs)
+                       .register("Math.multiply", OSIntrinsics::multiply)
+                       .register("Math.divide", OSIntrinsics::divide)
+                       .register("Math.sqrt", OSIntrinsics::sqrt)
+                       .register("Math.max", OSIntrinsics::max)
+                       .register("Math.min", OSIntrinsics::min)
+                       .register("Memory.peek", OSIntrinsics::peek)
+                       .register("Memory.poke", OSIntrinsics::poke)
+                       .register("Memory.alloc", OSIntrinsics::alloc)
+                       .register("Memory.deAlloc", OSIntrinsics::deAlloc);
+    }
+
+
+    /**
+     * Math.abs(x)
+     *
+     * @param ram               the RAM of the interpreter
+     * @param arguments         the address of the first argument of the call
+     * @param statics           the address of the static variables of the file of the function
+     * @return the absolute value of x
+     */
+    static int abs(short[] ram, int arguments, int statics) {
+        return (short) Math.abs(ram[arguments]);
+    }
+
+
+    /**
+     * Math.multiply(x, y)
+     *
+     * @param ram               the RAM of the interpreter
+     * @param arguments         the address of the first argument of the call
+     * @param statics           the address of the static variables of the file of the function
+     * @return the product of x and y
+     */
+    static int multiply(short[] ram, int arguments, int statics) {
+        return (short) (ram[arguments] * ram[arguments + 1]);
+    }
+
+
+    /**
+     * Math.divide(x, y)
+     *
+     * @param ram               the RAM of the interpreter
+     * @param arguments         the address of the first argument of the call
+     * @param statics           the address of the static variables of the file of the function
+     * @return the integer part of x / y, or FALL_BACK if y is zero
+     */
+    static int divide(short[] ram, int arguments, int statics) {
+        short x = ram[arguments];
+        short y = ram[arguments + 1];
+
+        if(y == 0) {
+            return Intrinsic.FALL_BACK;
+        }
+
+        int powers = ram[statics] & 0xFFFF;
+        int accumulator = ram[statics + 1] & 0xFFFF;
+        boolean isNegative = (x < 0 && y > 0) || (x > 0 && y < 0);
+        boolean isComplete = false;
+        int i = 0;
+        short quotient = 0;
+
+        ram[accumulator] = (short) Math.abs(y);
+        ram[TEMP_ADDRESS] = ram[accumulator];
+        x = (short) Math.abs(x);
+
+        /** Store the multiples y * 2^i of the divisor until the next one would overflow or exceed x */
+        while(i < DIVIDE_MAX_POWER && !isComplete) {
+            short multiple = ram[accumulator + i];
+            isComplete = ((short) (32767 - (short) (multiple - 1)) < (short) (multiple - 1));
+
+            if(!isComplete) {
+                ram[accumulator + i + 1] = (short) (multiple + multiple);
+                ram[TEMP_ADDRESS] = ram[accumulator + i + 1];
+                isComplete = ((short) (ram[accumulator + i + 1] - 1) > (short) (x - 1));
+
+                if(!isComplete) {
+                    i++;
+                }
+            }
+        }
+
+        /** Subtract the multiples from the largest to the smallest */
+        for(; i > -1; i--) {
+            if((short) (ram[accumulator + i] - 1) <= (short) (x - 1)) {
+                quotient = (short) (quotient + ram[powers + i]);
+                x = (short) (x - ram[accumulator + i]);
+            }
+        }
+
+        return (isNegative && quotient != 0)? (short) -quotient : quotient;
+    }
+
+
+    /**
+     * Math.sqrt(x)
+     *
+     * @param ram               the RAM of the interpreter
+     * @param arguments         the address of the first argument of the call
+     * @param statics           the address of the static variables of the file of the function
+     * @return the integer part of the square root of x, or FALL_BACK if x is negative
+     */
+    static int sqrt(short[] ram, int arguments, int statics) {
+        short value = ram[arguments];
+        return (value < 0)? Intrinsic.FALL_BACK : (int) Math.sqrt(value);
+    }
+
+
+    /**
+     * Math.max(a, b)
+     *
+     * @param ram               the RAM of the interpreter
+     * @param arguments         the address of the first argument of the call
+     * @param statics           the address of the static variables of the file of the function
+     * @return the greater of a and b
+     */
+    static int max(short[] ram, int arguments, int statics) {
+        return Math.max(ram[arguments], ram[arguments + 1]);
+    }
+
+
+    /**
+     * Math.min(a, b)
+     *
+     * @param ram               the RAM of the interpreter
+     * @param arguments         the address of the first argument of the call
+     * @param statics           the address of the static variables of the file of the function
+     * @return the smaller of a and b
+     */
+    static int min(short[] ram, int arguments, int statics) {
+        return Math.min(ram[arguments], ram[arguments + 1]);
+    }
+
+
+    /**
+     * Memory.peek(address)
+     *
+     * @param ram               the RAM of the interpreter
+     * @param arguments         the address of the first argument of the call
+     * @param statics           the address of the static variables of the file of the function
+     * @return the value at the given address
+     */
+    static int peek(short[] ram, int arguments, int statics) {
+        return ram[ram[arguments] & 0xFFFF];
+    }
+
+
+    /**
+     * Memory.poke(address, value)
+     *
+     * @param ram               the RAM of the interpreter
+     * @param arguments         the address of the first argument of the call
+     * @param statics           the address of the static variables of the file of the function
+     * @return 0, as the VM code of void functions does
+     */
+    static int poke(short[] ram, int arguments, int statics) {
+        ram[ram[arguments] & 0xFFFF] = ram[arguments + 1];
+        ram[TEMP_ADDRESS] = ram[arguments + 1];
+        return 0;
+    }
+
+
+    /**
+     * Memory.alloc(size). Walks the free list from the heap base until it finds a block whose size is at least the
+     * requested size, splits the block if it is large enough, and marks it as allocated
+     *
+     * @param ram               the RAM of the interpreter
+     * @param arguments         the address of the first argument of the call
+     * @param statics           the address of the static variables of the file of the function
+     * @return the address of the allocated block, or FALL_BACK if the size is invalid or the heap is exhausted
+     */
+    static int alloc(short[] ram, int arguments, int statics) {
+        short size = ram[arguments];
+
+        if(size < 1) {
+            return Intrinsic.FALL_BACK;
+        }
+
+        int block = HEAP_BASE_ADDRESS;
+        int visited = 0;
+
+        while(ram[block] < size) {
+            block = ram[block + 1] & 0xFFFF;
+
+            if(++visited > ram.length) {
+                return Intrinsic.FALL_BACK;
+            }
+        }
+
+        if((short) (block + size) > HEAP_END_ADDRESS) {
+            return Intrinsic.FALL_BACK;
+        }
+
+        if(ram[block] > (short) (size + 2)) {
+            int remainder = block + size + 2;
+            ram[remainder] = (short) (ram[block] - size - 2);
+            ram[remainder + 1] = (ram[block + 1] == (short) (block + 2))? (short) (block + size + 4) : ram[block + 1];
+            ram[block + 1] = (short) remainder;
+        }
+
+        ram[block] = 0;
+        ram[TEMP_ADDRESS] = 0;
+        return (short) (block + 2);
+    }
+
+
+    /**
+     * Memory.deAlloc(object). Returns the block of the given object to the free list, and merges it with the next
+     * block if that block is free
+     *
+     * @param ram               the RAM of the interpreter
+     * @param arguments         the address of the first argument of the call
+     * @param statics           the address of the static variables of the file of the function
+     * @return 0, as the VM code of void functions does
+     */
+    static int deAlloc(short[] ram, int arguments, int statics) {
+        int segment = (ram[arguments] - 2) & 0xFFFF;
+        int next = ram[segment + 1] & 0xFFFF;
+
+        if(ram[next] == 0) {
+            ram[segment] = (short) (ram[segment + 1] - segment - 2);
+            ram[TEMP_ADDRESS] = ram[segment];
+        } else {
+            ram[segment] = (short) (ram[segment + 1] - segment + ram[next]);
+            ram[segment + 1] = (ram[next + 1] == (short) (next + 2))? (short) (segment + 2) : ram[next + 1];
+            ram[TEMP_ADDRESS] = ram[segment + 1];
+        }
+
+        return 0;
+    }
+
+}
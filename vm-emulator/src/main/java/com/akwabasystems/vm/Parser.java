@@ -1,6 +1,11 @@
 
 package com.akwabasystems.vm;
 
+import com.akwabasystems.model.CommandTable;
+import com.akwabasystems.model.VMCommand;
+import java.nio.ByteBuffer;
+import java.util.List;
+
 
 /**
  * An interface that defines the methods necessary for parsing VM files, and for providing access to the generated
@@ -17,6 +22,22 @@ public interface Parser {
     void parse(String command);
     
     
+    /**
+     * Parses all the commands in the given source (for instance, the contents of a ".vm" file)
+     * 
+     * @param source        the source to parse 
+     */
+    void parse(byte[] source);
+    
+    
+    /**
+     * Loads the commands in the given binary buffer (the contents of a ".vmb" file)
+     * 
+     * @param buffer        the buffer that holds the binary representation of the commands
+     */
+    void parse(ByteBuffer buffer);
+    
+    
     /**
      * Sets the file name for this parser. This name is used to output unique symbols (labels, return addresses, etc)
      * 
@@ -26,6 +47,14 @@ public interface Parser {
     Parser setFileName(String fileName);
     
     
+    /**
+     * Returns the file name for this parser
+     * 
+     * @return the file name for this parser
+     */
+    String getFileName();
+    
+    
     /**
      * Returns the current function context for this parser
      * 
@@ -34,12 +63,36 @@ public interface Parser {
     String currentFunctionContext();
     
     
+    /**
+     * Returns the list of parsed VM commands
+     * 
+     * @return the list of parsed VM commands
+     */
+    List<VMCommand> getCommands();
+    
+    
+    /**
+     * Returns the table that holds the parsed VM commands
+     * 
+     * @return the table that holds the parsed VM commands
+     */
+    CommandTable getCommandTable();
+    
+    
     /**
      * Returns the assembly code from the parsed VM commands
      * 
      * @return the assembly code from the parsed VM commands
      */
     String assemblyCode();
+
+    
+    /**
+     * Appends the assembly code from the parsed VM commands to the given buffer
+     * 
+     * @param buffer        the buffer to which to append the assembly code
+     */
+    void appendAssemblyCode(StringBuilder buffer);
     
     
     /**
@@ -59,4 +112,31 @@ public interface Parser {
      */
     VMParser shouldBootstrap(boolean bootstrapEnabled);
     
+    
+    /**
+     * Specifies whether this parser should cache the top-most value of the stack in the D register
+     * 
+     * @param stackCachingEnabled   a flag that specifies whether to cache the top of the stack in D
+     * @return a reference to the Parser instance
+     */
+    VMParser setStackCachingEnabled(boolean stackCachingEnabled);
+
+    
+    /**
+     * Specifies whether this parser should access the local, argument, this and that segments with shorter code
+     * 
+     * @param segmentAddressingEnabled  a flag that specifies whether to use the shorter segment addressing
+     * @return a reference to the Parser instance
+     */
+    VMParser setSegmentAddressingEnabled(boolean segmentAddressingEnabled);
+    
+    
+    /**
+     * Sets the statistics in which to record the code generated for each command
+     * 
+     * @param statistics            the statistics in which to record the generated code, or null
+     * @return a reference to the Parser instance
+     */
+    VMParser setStatistics(CodeStatistics statistics);
+    
 }
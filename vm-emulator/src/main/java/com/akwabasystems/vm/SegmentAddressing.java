@@ -0,0 +1,194 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.CommandType;
+import com.akwabasystems.model.Segment;
+import com.akwabasystems.model.VMCommand;
+
+
+/**
+ * Generates shorter code for accessing the segments whose base address is held in memory: local, argument, this and
+ * that.
+ *
+ * The regular translation computes the address of an item as base + index using D ("@LCL, D=M, @i, A=D+A"), and a
+ * pop saves that address in R15 since D must also hold the popped value. For small indices, the address is instead
+ * computed in A alone, by incrementing the base address ("@LCL, A=M+1, A=A+1" for local 2): loading an item takes
+ * fewer instructions, and storing an item no longer needs R15.
+ *
+ * After a pop, A holds the address of the stored item and D its value. If the next command is a push from the same
+ * segment, that address is reused: the value is already in D when the indices are equal, and a nearby item is reached
+ * by incrementing or decrementing A. The registers are only known to hold that address if no other code has been
+ * emitted since the pop, so the caller must call forget() before emitting the code of any other command (including a
+ * label, which may be the target of a jump).
+ */
+public final class SegmentAddressing {
+
+    /** The largest index whose address is computed faster by increments than by "D=M, @i, A=D+A" */
+    private static final int MAX_LOADED_INDEX = 2;
+
+    /** The largest index whose address is computed faster by increments than by saving it in R15 */
+    private static final int MAX_STORED_INDEX = 6;
+
+    private Segment segment = null;
+    private int index = 0;
+
+
+    /**
+     * Returns true if the given segment is accessed through a base address held in memory (local, argument, this or
+     * that); otherwise, returns false
+     *
+     * @param segment           the segment to check
+     * @return true if the given segment is accessed through a base address held in memory; otherwise, returns false
+     */
+    public static boolean isAddressable(Segment segment) {
+        return (segment == Segment.LOCAL || segment == Segment.ARGUMENT || segment == Segment.THIS ||
+                segment == Segment.THAT);
+    }
+
+
+    /**
+     * Returns true if the given command is a push or a pop of a segment accessed through a base address held in
+     * memory; otherwise, returns false
+     *
+     * @param command           the command to check
+     * @return true if the given command accesses a segment through a base address held in memory
+     */
+    public static boolean isAddressableAccess(VMCommand command) {
+        boolean isAccess = (command.getType() == CommandType.C_PUSH || command.getType() == CommandType.C_POP);
+        return (isAccess && isAddressable(Segment.fromArgument(command.getArgument1())));
+    }
+
+
+    /**
+     * Returns true if the item at the given index is stored faster by computing its address in A, using
+     * appendStoreAddress(); otherwise, returns false
+     *
+     * @param index             the index of the item
+     * @return true if the item at the given index is stored faster by computing its address in A
+     */
+    public static boolean canStore(int index) {
+        return (index >= 0 && index <= MAX_STORED_INDEX);
+    }
+
+
+    /**
+     * Returns the symbol that holds the base address of the given segment (LCL, ARG, THIS or THAT)
+     *
+     * @param segment           the segment for which to return the symbol
+     * @return the symbol that holds the base address of the given segment
+     */
+    public static String baseSymbol(Segment segment) {
+
+        switch(segment) {
+            case LOCAL:
+                return "LCL";
+            case ARGUMENT:
+                return "ARG";
+            case THIS:
+                return "THIS";
+            default:
+                return "THAT";
+        }
+    }
+
+
+    /**
+     * Appends the code that loads the item at the given index of the given segment into D. Each line of the code is
+     * followed by a line break, and no code is appended if D already holds the item.
+     *
+     * @param builder           the builder to which to append the code
+     * @param segment           the segment of the item
+     * @param index             the index of the item
+     */
+    public void appendLoad(StringBuilder builder, Segment segment, int index) {
+        int distance = Math.abs(index - this.index);
+        boolean isAddressKnown = (segment == this.segment);
+        String increment = (index > this.index)? "A=A+1\n" : "A=A-1\n";
+        forget();
+
+        if(isAddressKnown && distance == 0) {
+            return;
+        }
+
+        if(isAddressKnown && distance < addressLength(index)) {
+
+            for(int i = 0; i < distance; i++) {
+                builder.append(increment);
+            }
+        } else if(index >= 0 && index <= MAX_LOADED_INDEX) {
+            appendIncrements(builder, segment, index);
+        } else {
+            builder.append('@').append(baseSymbol(segment)).append("\nD=M\n")
+                   .append('@').append(index).append("\nA=D+A\n");
+        }
+
+        builder.append("D=M\n");
+    }
+
+
+    /**
+     * Appends the code that loads the address of the item at the given index of the given segment into A, without
+     * changing D. Each line of the code is followed by a line break. The index must be one for which canStore()
+     * returns true.
+     *
+     * @param builder           the builder to which to append the code
+     * @param segment           the segment of the item
+     * @param index             the index of the item
+     */
+    public void appendStoreAddress(StringBuilder builder, Segment segment, int index) {
+        forget();
+        appendIncrements(builder, segment, index);
+    }
+
+
+    /**
+     * Records that the item at the given index of the given segment has just been stored: A holds its address, and
+     * D its value
+     *
+     * @param segment           the segment of the stored item
+     * @param index             the index of the stored item
+     */
+    public void stored(Segment segment, int index) {
+        this.segment = segment;
+        this.index = index;
+    }
+
+
+    /**
+     * Forgets the content of the registers, after code that may have changed them
+     */
+    public void forget() {
+        segment = null;
+        index = 0;
+    }
+
+
+    /**
+     * Appends the code that computes the address of the item at the given index in A, by incrementing the base
+     * address of the segment
+     *
+     * @param builder           the builder to which to append the code
+     * @param segment           the segment of the item
+     * @param index             the index of the item
+     */
+    private static void appendIncrements(StringBuilder builder, Segment segment, int index) {
+        builder.append('@').append(baseSymbol(segment)).append('\n')
+               .append((index == 0)? "A=M\n" : "A=M+1\n");
+
+        for(int i = 1; i < index; i++) {
+            builder.append("A=A+1\n");
+        }
+    }
+
+
+    /**
+     * Returns the number of instructions needed to compute the address of the item at the given index from scratch
+     *
+     * @param index             the index of the item
+     * @return the number of instructions needed to compute the address of the item at the given index
+     */
+    private static int addressLength(int index) {
+        return (index >= 0 && index <= MAX_LOADED_INDEX)? 2 + Math.max(0, index - 1) : 4;
+    }
+
+}
@@ -0,0 +1,468 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.ArithmeticCommandType;
+import com.akwabasystems.model.Segment;
+import com.akwabasystems.model.VMCommand;
+import com.akwabasystems.utils.VMUtils;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A code generator that translates a list of VM commands into Hack assembly code while caching the top-most value of
+ * the stack in the D register.
+ *
+ * The generator tracks statically whether the top of the stack currently lives in D. When it does, the stack pointer
+ * addresses the slot where that value would be stored, so a push followed by an arithmetic command no longer needs
+ * to store the value into memory and immediately reload it. The cached value is written back to the stack (spilled)
+ * before labels, jumps, function declarations, calls and returns, as well as at the end of the command list, so that
+ * the stack is always in its canonical state at those boundaries.
+ *
+ * Commands that cannot benefit from the cache (function, call, return, label and goto) are spilled and then
+ * translated using their regular assembly code.
+ */
+public final class StackCachingCodeGenerator {
+
+    private static final AtomicLong counter = new AtomicLong(0);
+    private final String fileName;
+    private StringBuilder buffer = new StringBuilder();
+    private boolean debugEnabled = false;
+    private boolean isCached = false;
+    private SegmentAddressing addressing = null;
+    private CodeStatistics statistics = null;
+
+
+    /**
+     * Creates an instance of this class for the given file name, which is used to output the static symbols of the
+     * commands that do not have a file name of their own
+     *
+     * @param fileName          the name of the file whose commands are translated
+     */
+    public StackCachingCodeGenerator(String fileName) {
+        this.fileName = fileName;
+    }
+
+
+    /**
+     * Returns the number of comparisons that have been translated with cached operands. The labels of those
+     * comparisons are numbered from 1 to this count.
+     *
+     * @return the number of comparisons that have been translated with cached operands
+     */
+    public static long comparisonCount() {
+        return counter.get();
+    }
+
+
+    /**
+     * Resets the numbering of the labels generated for comparisons
+     */
+    public static void resetComparisonCount() {
+        counter.set(0);
+    }
+
+
+    /**
+     * Specifies whether debugging should be enabled for this generator
+     *
+     * @param isDebugEnabled        a flag that specifies whether to output a comment before each command
+     * @return a reference to this class instance
+     */
+    public StackCachingCodeGenerator setDebugEnabled(boolean isDebugEnabled) {
+        debugEnabled = isDebugEnabled;
+        return this;
+    }
+
+
+    /**
+     * Specifies whether the local, argument, this and that segments should be accessed with the shorter code of
+     * SegmentAddressing
+     *
+     * @param isSegmentAddressingEnabled    a flag that specifies whether to use the shorter segment addressing
+     * @return a reference to this class instance
+     */
+    public StackCachingCodeGenerator setSegmentAddressingEnabled(boolean isSegmentAddressingEnabled) {
+        addressing = (isSegmentAddressingEnabled)? new SegmentAddressing() : null;
+        return this;
+    }
+
+
+    /**
+     * Sets the statistics in which to record the code generated for each command
+     *
+     * @param statistics        the statistics in which to record the generated code, or null
+     * @return a reference to this class instance
+     */
+    public StackCachingCodeGenerator setStatistics(CodeStatistics statistics) {
+        this.statistics = statistics;
+        return this;
+    }
+
+
+    /**
+     * Returns the assembly code for the given commands
+     *
+     * @param commands          the commands to translate
+     * @return the assembly code for the given commands
+     */
+    public String generate(List<VMCommand> commands) {
+        StringBuilder output = new StringBuilder();
+        generate(commands, output);
+        return output.toString();
+    }
+
+
+    /**
+     * Appends the assembly code for the given commands to the given builder
+     *
+     * @param commands          the commands to translate
+     * @param output            the builder to which to append the assembly code
+     */
+    public void generate(List<VMCommand> commands, StringBuilder output) {
+        int outputStart = output.length();
+        buffer = output;
+        isCached = false;
+
+        if(statistics != null) {
+            statistics.startFile(fileName);
+        }
+
+        for(int i = 0; i < commands.size(); i++) {
+            VMCommand command = commands.get(i);
+            int start = buffer.length();
+
+            if(command.getFileName() == null) {
+                command.setFileName(fileName);
+            }
+
+            if(debugEnabled) {
+                buffer.append("// ").append(command.getCommand()).append('\n');
+            }
+
+            translate(command);
+
+            /** The value that is still cached after the last command is spilled as part of that command */
+            if(i == commands.size() - 1) {
+                spill();
+            }
+
+            if(statistics != null) {
+                statistics.record(command, buffer, start, buffer.length());
+            }
+        }
+
+        spill();
+
+        /** Remove the trailing line break, as does the default translation */
+        if(buffer.length() > outputStart) {
+            buffer.setLength(buffer.length() - 1);
+        }
+    }
+
+
+    /**
+     * Translates the given command based on the current state of the cache
+     *
+     * @param command           the command to translate
+     */
+    private void translate(VMCommand command) {
+
+        if(addressing != null && !SegmentAddressing.isAddressableAccess(command)) {
+            addressing.forget();
+        }
+
+        switch(command.getType()) {
+
+            case C_PUSH:
+                translatePush(command);
+                break;
+
+            case C_POP:
+                translatePop(command);
+                break;
+
+            case C_ARITHMETIC:
+                translateArithmetic(ArithmeticCommandType.of(command));
+                break;
+
+            case C_IF:
+                load();
+                buffer.append('@').append(command.getContext()).append('$').append(command.getArgument1()).append('\n');
+                append("D;JNE");
+                isCached = false;
+                break;
+
+            default:
+                spill();
+                appendCommand(command);
+                break;
+        }
+    }
+
+
+    /**
+     * Translates a push command. The pushed value is loaded into D, which becomes the new top of the stack
+     *
+     * @param command           the push command to translate
+     */
+    private void translatePush(VMCommand command) {
+        Segment segment = Segment.fromArgument(command.getArgument1());
+        int index = command.getArgument2();
+        spill();
+
+        switch(segment) {
+
+            case CONSTANT:
+                appendAddress(index);
+                append("D=A");
+                break;
+
+            case STATIC:
+                buffer.append('@').append(command.getFileName()).append('.').append(index).append('\n');
+                append("D=M");
+                break;
+
+            case POINTER:
+            case TEMP:
+                appendAddress(directAddress(segment, index));
+                append("D=M");
+                break;
+
+            default:
+                if(addressing != null) {
+                    addressing.appendLoad(buffer, segment, index);
+                    break;
+                }
+
+                appendAddress(SegmentAddressing.baseSymbol(segment));
+                append("D=M");
+                appendAddress(index);
+                append("A=D+A");
+                append("D=M");
+                break;
+        }
+
+        isCached = true;
+    }
+
+
+    /**
+     * Translates a pop command. If the top of the stack is not cached, then the regular assembly code is used since
+     * it computes the target address before popping the value.
+     *
+     * @param command           the pop command to translate
+     */
+    private void translatePop(VMCommand command) {
+        Segment segment = Segment.fromArgument(command.getArgument1());
+        int index = command.getArgument2();
+
+        switch(segment) {
+
+            case STATIC:
+                load();
+                buffer.append('@').append(command.getFileName()).append('.').append(index).append('\n');
+                append("M=D");
+                break;
+
+            case POINTER:
+            case TEMP:
+                load();
+                appendAddress(directAddress(segment, index));
+                append("M=D");
+                break;
+
+            default:
+                if(addressing != null && SegmentAddressing.canStore(index)) {
+                    load();
+                    addressing.appendStoreAddress(buffer, segment, index);
+                    append("M=D");
+                    break;
+                }
+
+                if(!isCached) {
+                    appendCommand(command);
+                    break;
+                }
+
+                /**
+                 * Compute the target address while keeping the value in R13: D = address + value, then
+                 * A = D - value and D = D - A
+                 */
+                append("@R13");
+                append("M=D");
+                appendAddress(SegmentAddressing.baseSymbol(segment));
+                append("D=M");
+                appendAddress(index);
+                append("D=D+A");
+                append("@R13");
+                append("D=D+M");
+                append("A=D-M");
+                append("D=D-A");
+                append("M=D");
+                break;
+        }
+
+        /** Both pops of the indirect segments leave the address of the item in A, and its value in D */
+        if(addressing != null && SegmentAddressing.isAddressable(segment)) {
+            addressing.stored(segment, index);
+        }
+
+        isCached = false;
+    }
+
+
+    /**
+     * Translates an arithmetic or logical command. The result is left in D as the new top of the stack
+     *
+     * @param commandType       the type of arithmetic command to translate
+     */
+    private void translateArithmetic(ArithmeticCommandType commandType) {
+        load();
+
+        switch(commandType) {
+
+            case NEG:
+                append("D=-D");
+                break;
+
+            case NOT:
+                append("D=!D");
+                break;
+
+            case ADD:
+                popSecondOperand();
+                append("D=D+M");
+                break;
+
+            case SUB:
+                popSecondOperand();
+                append("D=M-D");
+                break;
+
+            case AND:
+                popSecondOperand();
+                append("D=D&M");
+                break;
+
+            case OR:
+                popSecondOperand();
+                append("D=D|M");
+                break;
+
+            default:
+                long increment = counter.incrementAndGet();
+                String jump = (commandType == ArithmeticCommandType.EQ)? "D;JEQ" :
+                        (commandType == ArithmeticCommandType.GT)? "D;JGT" : "D;JLT";
+
+                popSecondOperand();
+                append("D=M-D");
+                buffer.append("@CACHED_COMPARISON_TRUE").append(increment).append('\n');
+                append(jump);
+                append("D=0");
+                buffer.append("@CACHED_COMPARISON_END").append(increment).append('\n');
+                append("0;JMP");
+                buffer.append("(CACHED_COMPARISON_TRUE").append(increment).append(")\n");
+                append("D=-1");
+                buffer.append("(CACHED_COMPARISON_END").append(increment).append(")\n");
+                break;
+        }
+
+        isCached = true;
+    }
+
+
+    /**
+     * Pops the second operand of a binary command off the stack, leaving it addressed by A (that is, in M)
+     */
+    private void popSecondOperand() {
+        append("@SP");
+        append("AM=M-1");
+    }
+
+
+    /**
+     * Makes sure that the top of the stack is in D, popping it off the stack if it is not already cached
+     */
+    private void load() {
+        if(!isCached) {
+            buffer.append(VMUtils.popFromStackAssemblyCode());
+            isCached = true;
+        }
+    }
+
+
+    /**
+     * Writes the cached top of the stack back into memory, if it is currently held in D
+     */
+    private void spill() {
+        if(isCached) {
+            append("@SP");
+            append("M=M+1");
+            append("A=M-1");
+            append("M=D");
+            isCached = false;
+        }
+    }
+
+
+    /**
+     * Appends the given code to the output, followed by a line break
+     *
+     * @param code          the code to append
+     */
+    private void append(String code) {
+        if(!code.isEmpty()) {
+            buffer.append(code).append("\n");
+        }
+    }
+
+
+    /**
+     * Appends an A-instruction for the given symbol to the output
+     *
+     * @param symbol        the symbol to address
+     */
+    private void appendAddress(String symbol) {
+        buffer.append('@').append(symbol).append('\n');
+    }
+
+
+    /**
+     * Appends an A-instruction for the given address to the output
+     *
+     * @param address       the address to load into A
+     */
+    private void appendAddress(int address) {
+        buffer.append('@').append(address).append('\n');
+    }
+
+
+    /**
+     * Appends the regular assembly code of the given command to the output, followed by a line break if the command
+     * has any code
+     *
+     * @param command       the command whose code to append
+     */
+    private void appendCommand(VMCommand command) {
+        int start = buffer.length();
+        command.appendAssemblyCode(buffer);
+
+        if(buffer.length() > start) {
+            buffer.append('\n');
+        }
+    }
+
+
+    /**
+     * Returns the RAM address of the given direct segment (pointer or temp) at the specified index
+     *
+     * @param segment           the direct segment
+     * @param index             the index within the segment
+     * @return the RAM address of the given direct segment at the specified index
+     */
+    private static int directAddress(Segment segment, int index) {
+        return ((segment == Segment.POINTER)? 3 : 5) + index;
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.CallCommand;
+import com.akwabasystems.model.CommandType;
+import com.akwabasystems.model.VMCommand;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * A pass that marks the tail calls of a program, so that they are translated into frame-reusing jumps.
+ *
+ * A call (call f n) is a tail call if it is immediately followed by the return command of the function that encloses
+ * it: the value that the calling function returns is then the value that f returns, so f can return directly to the
+ * caller of the calling function (see CallCommand.setTailCall). Calls that are not enclosed in a function have no
+ * frame to reuse, and are left untouched.
+ *
+ * Since a VM function does not declare its number of arguments, the pass infers it from the call sites of the
+ * program: if all the calls to a function pass the same number of arguments (as is always the case for compiled Jack
+ * code), the tail calls that it makes can move fewer values.
+ *
+ * The command lists are not modified: the return command that follows a tail call is kept, so that the program still
+ * has the same meaning for any other consumer of the commands (such as the interpreter), which executes the call as a
+ * regular one.
+ */
+public final class TailCallOptimizer {
+
+    private final Map<String,Integer> tailCalls = new TreeMap<>();
+
+
+    /**
+     * Marks the tail calls in the given command lists (one list per file)
+     *
+     * @param programs          the lists of commands that make up the program
+     * @return a reference to this class instance
+     */
+    public TailCallOptimizer optimize(Collection<List<VMCommand>> programs) {
+        tailCalls.clear();
+        Map<String,Integer> arguments = argumentCounts(programs);
+
+        for(List<VMCommand> commands : programs) {
+            synchronized(commands) {
+                String currentFunction = null;
+
+                for(int i = 0; i < commands.size(); i++) {
+                    VMCommand command = commands.get(i);
+
+                    if(command.getType() == CommandType.C_FUNCTION) {
+                        currentFunction = command.getArgument1();
+                    }
+
+                    boolean isFollowedByReturn = (i + 1 < commands.size() &&
+                            commands.get(i + 1).getType() == CommandType.C_RETURN);
+
+                    if(command instanceof CallCommand && currentFunction != null && isFollowedByReturn) {
+                        ((CallCommand) command).setTailCall(true)
+                                               .setCallingFunctionArguments(arguments.getOrDefault(currentFunction,
+                                                       CallCommand.UNKNOWN_ARGUMENTS));
+                        tailCalls.merge(currentFunction, 1, Integer::sum);
+                    }
+                }
+            }
+        }
+
+        return this;
+    }
+
+
+    /**
+     * Returns the number of arguments of each function whose call sites all pass the same number of arguments. The
+     * functions whose call sites disagree are mapped to CallCommand.UNKNOWN_ARGUMENTS.
+     *
+     * @param programs          the lists of commands that make up the program
+     * @return the number of arguments of each called function
+     */
+    private static Map<String,Integer> argumentCounts(Collection<List<VMCommand>> programs) {
+        Map<String,Integer> arguments = new HashMap<>();
+
+        for(List<VMCommand> commands : programs) {
+            synchronized(commands) {
+                commands.stream()
+                        .filter((command) -> command.getType() == CommandType.C_CALL)
+                        .forEach((command) -> arguments.merge(command.getArgument1(), command.getArgument2(),
+                                (count, other) -> count.equals(other)? count : CallCommand.UNKNOWN_ARGUMENTS));
+            }
+        }
+
+        return arguments;
+    }
+
+
+    /**
+     * Returns the number of calls that were marked as tail calls
+     *
+     * @return the number of calls that were marked as tail calls
+     */
+    public int tailCallCount() {
+        return tailCalls.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+
+    /**
+     * Returns a report of the pass, which lists the number of tail calls in each function
+     *
+     * @return a report of the pass
+     */
+    public String report() {
+        StringBuilder builder = new StringBuilder("Tail call report\n");
+        builder.append(String.format("  Tail calls: %s in %s functions\n", tailCallCount(), tailCalls.size()));
+
+        tailCalls.forEach((function, calls) -> {
+            builder.append(String.format("    - %s (%s calls)\n", function, calls));
+        });
+
+        return builder.toString();
+    }
+
+}
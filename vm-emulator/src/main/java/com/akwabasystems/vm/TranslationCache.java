@@ -0,0 +1,621 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.ArithmeticCommandType;
+import com.akwabasystems.model.CallCommand;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+
+/**
+ * A build cache for the VM translator, which stores the assembly code translated for each VM file as a fragment,
+ * keyed by a hash of the content of the file and of the options of the translator. When a program is rebuilt, the
+ * fragments of the files that have not changed are reused, and only the others are parsed and translated.
+ *
+ * The code of a file does not only depend on the file: the labels generated for comparisons and return addresses are
+ * numbered across the whole program. Each file is therefore translated as if it were the first one of the program
+ * (its label numbering starts from 1), and its fragment records the number of labels that it uses (its exports).
+ * When the fragments are linked, the labels of each fragment are shifted by the number of labels of the fragments
+ * that precede it, so the linked code is identical to the code of a full translation. Static symbols are named after
+ * their file ("Main.0"), and user labels after their function ("Main.main$LOOP"), so they need no relocation.
+ *
+ * As with the index of a version control system, the cache keeps the key, the size and the modification time of
+ * each file of the previous build, so that the files that have not been touched are not read and hashed again.
+ */
+public final class TranslationCache {
+
+    public static final String DIRECTORY_NAME = ".vmcache";
+    private static final String FORMAT_VERSION = "VMC1";
+    private static final String ARITHMETIC_TARGET = "#arithmetic";
+    private static final String COMPARISON_TARGET = "#comparison";
+    private static final String ENTRY_EXTENSION = ".frag";
+    private static final String INDEX_FILE_NAME = "index";
+    private static final String RETURN_LABEL = "$ret";
+    private static final String[] ARITHMETIC_LABELS = { "IF_EQUAL_TO_END", "IF_EQUAL_TO", "IF_GREATER_THAN_END",
+                                                        "IF_GREATER_THAN", "IF_LESS_THAN_END", "IF_LESS_THAN" };
+    private static final String[] COMPARISON_LABELS = { "CACHED_COMPARISON_TRUE", "CACHED_COMPARISON_END" };
+    private final File directory;
+    private final String options;
+    private final Set<String> usedEntries = new HashSet<>();
+    private final Map<String,String> indexedKeys = new HashMap<>();
+    private final Map<String,String> keys = new TreeMap<>();
+    private long indexTime = 0;
+    private int hits = 0;
+    private int misses = 0;
+
+
+    /**
+     * A fragment of assembly code translated from a single VM file, along with the number of labels that it exports
+     * and its relocations: the positions of the numbers of its generated labels in the code
+     */
+    public static final class Fragment {
+
+        private final String code;
+        private final long labelCount;
+        private final long comparisonCount;
+        private final Map<String,Integer> invocationCounts;
+        private final List<Relocation> relocations;
+
+
+        /**
+         * Creates a fragment with the given code and exports
+         *
+         * @param code                  the assembly code of the fragment
+         * @param labelCount            the number of labels generated for arithmetic comparisons
+         * @param comparisonCount       the number of labels generated for comparisons with cached operands
+         * @param invocationCounts      the number of calls to each function
+         */
+        public Fragment(String code, long labelCount, long comparisonCount, Map<String,Integer> invocationCounts) {
+            this(code, labelCount, comparisonCount, invocationCounts, relocations(code, invocationCounts));
+        }
+
+
+        /**
+         * Creates a fragment with the given code, exports and relocations
+         *
+         * @param code                  the assembly code of the fragment
+         * @param labelCount            the number of labels generated for arithmetic comparisons
+         * @param comparisonCount       the number of labels generated for comparisons with cached operands
+         * @param invocationCounts      the number of calls to each function
+         * @param relocations           the relocations of the code
+         */
+        private Fragment(String code, long labelCount, long comparisonCount, Map<String,Integer> invocationCounts,
+                         List<Relocation> relocations) {
+            this.code = code;
+            this.labelCount = labelCount;
+            this.comparisonCount = comparisonCount;
+            this.invocationCounts = Collections.unmodifiableMap(new TreeMap<>(invocationCounts));
+            this.relocations = relocations;
+        }
+
+
+        /**
+         * Returns the assembly code of this fragment, with its labels numbered from 1
+         *
+         * @return the assembly code of this fragment
+         */
+        public String getCode() {
+            return code;
+        }
+
+
+        /**
+         * Returns the number of labels generated for the arithmetic comparisons of this fragment
+         *
+         * @return the number of labels generated for the arithmetic comparisons of this fragment
+         */
+        public long getLabelCount() {
+            return labelCount;
+        }
+
+
+        /**
+         * Returns the number of labels generated for the comparisons with cached operands of this fragment
+         *
+         * @return the number of labels generated for the comparisons with cached operands of this fragment
+         */
+        public long getComparisonCount() {
+            return comparisonCount;
+        }
+
+
+        /**
+         * Returns the number of calls to each function in this fragment
+         *
+         * @return the number of calls to each function in this fragment, keyed by function name
+         */
+        public Map<String,Integer> getInvocationCounts() {
+            return invocationCounts;
+        }
+
+
+        /**
+         * Returns the number of generated labels (definitions and references) to relocate when this fragment is
+         * linked after other fragments
+         *
+         * @return the number of generated labels in the code of this fragment
+         */
+        public int relocationCount() {
+            return relocations.size();
+        }
+
+    }
+
+
+    /**
+     * The position of the number of a generated label in the code of a fragment, and the kind of the label: the
+     * labels of arithmetic comparisons, those of comparisons with cached operands, or the return addresses of a
+     * function (whose first number is implicit: "f$ret" is followed by "f$ret2")
+     */
+    private static final class Relocation {
+
+        private final int start;
+        private final int end;
+        private final String target;
+
+
+        /**
+         * Creates a relocation for the given range of the code
+         *
+         * @param start                 the index of the first digit of the number
+         * @param end                   the index after the last digit of the number
+         * @param target                ARITHMETIC_TARGET, COMPARISON_TARGET, or the name of the called function
+         */
+        private Relocation(int start, int end, String target) {
+            this.start = start;
+            this.end = end;
+            this.target = target;
+        }
+
+    }
+
+
+    /**
+     * Creates a cache that stores its fragments in the given directory
+     *
+     * @param directory             the directory of the cache
+     * @param options               a description of the translator options that affect the generated code
+     */
+    public TranslationCache(File directory, String options) {
+        this.directory = directory;
+        this.options = options;
+        loadIndex();
+    }
+
+
+    /**
+     * Returns the fragment stored for the content of the given file, or null if there is none (or if it cannot be
+     * read)
+     *
+     * @param file                  the VM file
+     * @return the fragment stored for the content of the given file, or null if there is none
+     * @throws IOException if the file cannot be read
+     */
+    public Fragment lookup(File file) throws IOException {
+        File entry = new File(directory, key(file) + ENTRY_EXTENSION);
+        usedEntries.add(entry.getName());
+
+        if(entry.isFile()) {
+            Fragment fragment = read(entry);
+
+            if(fragment != null) {
+                hits++;
+                return fragment;
+            }
+        }
+
+        misses++;
+        return null;
+    }
+
+
+    /**
+     * Stores the given fragment for the content of the given file
+     *
+     * @param file                  the VM file
+     * @param fragment              the fragment translated from the file
+     * @throws IOException if the file cannot be read, or the fragment cannot be written
+     */
+    public void store(File file, Fragment fragment) throws IOException {
+        File entry = new File(directory, key(file) + ENTRY_EXTENSION);
+        usedEntries.add(entry.getName());
+
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(String.format("Cannot create the cache directory '%s'", directory));
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%s %s %s %s %s\n", FORMAT_VERSION, fragment.getLabelCount(),
+                                     fragment.getComparisonCount(), fragment.getInvocationCounts().size(),
+                                     fragment.relocationCount()));
+
+        fragment.getInvocationCounts().forEach((function, count) -> {
+            builder.append(String.format("%s %s\n", function, count));
+        });
+
+        for(Relocation relocation : fragment.relocations) {
+            builder.append(relocation.start).append(' ')
+                   .append(relocation.end).append(' ')
+                   .append(relocation.target).append('\n');
+        }
+
+        builder.append(fragment.getCode());
+        Files.write(entry.toPath(), builder.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+
+    /**
+     * Saves the index of the files that have been looked up, and removes the fragments that have not been looked up
+     * or stored by this cache instance, so that the cache only keeps the fragments of the current version of the
+     * program
+     *
+     * @return the number of removed fragments
+     * @throws IOException if the index cannot be written
+     */
+    public int save() throws IOException {
+        File[] entries = directory.listFiles((dir, name) -> name.endsWith(ENTRY_EXTENSION));
+        int removed = 0;
+
+        if(entries == null) {
+            return removed;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%s %s\n", FORMAT_VERSION, options));
+
+        keys.forEach((path, stampedKey) -> {
+            builder.append(String.format("%s %s\n", stampedKey, path));
+        });
+
+        Files.write(new File(directory, INDEX_FILE_NAME).toPath(), builder.toString().getBytes(StandardCharsets.UTF_8));
+
+        for(File entry : entries) {
+            if(!usedEntries.contains(entry.getName()) && entry.delete()) {
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+
+    /**
+     * Returns the number of lookups that found a fragment
+     *
+     * @return the number of lookups that found a fragment
+     */
+    public int hitCount() {
+        return hits;
+    }
+
+
+    /**
+     * Returns the number of lookups that did not find a fragment
+     *
+     * @return the number of lookups that did not find a fragment
+     */
+    public int missCount() {
+        return misses;
+    }
+
+
+    /**
+     * Translates the commands of the given parser into a fragment. The numbering of the generated labels is reset
+     * first, so that the code of the fragment does not depend on the files translated before it.
+     *
+     * @param parser                the parser that holds the commands of a VM file
+     * @return the fragment translated from the commands of the given parser
+     */
+    public static Fragment translate(Parser parser) {
+        ArithmeticCommandType.resetLabelCount();
+        StackCachingCodeGenerator.resetComparisonCount();
+        CallCommand.resetInvocationCounts();
+
+        String code = parser.assemblyCode();
+        return new Fragment(code, ArithmeticCommandType.labelCount(), StackCachingCodeGenerator.comparisonCount(),
+                            CallCommand.invocationCounts());
+    }
+
+
+    /**
+     * Links the given fragments into the assembly code of the program. The labels of each fragment are shifted by
+     * the number of labels exported by the fragments that precede it, and the code of each fragment is followed by a
+     * line break, as in a full translation.
+     *
+     * @param fragments             the fragments of the program, in translation order
+     * @return the assembly code of the program
+     */
+    public static String link(List<Fragment> fragments) {
+        StringBuilder builder = new StringBuilder(fragments.stream().mapToInt((f) -> f.getCode().length() + 1).sum());
+        Map<String,Integer> invocationOffsets = new HashMap<>();
+        long labelOffset = 0;
+        long comparisonOffset = 0;
+
+        for(Fragment fragment : fragments) {
+            String code = fragment.getCode();
+            int position = 0;
+
+            for(Relocation relocation : fragment.relocations) {
+                long offset = relocation.target.equals(ARITHMETIC_TARGET)? labelOffset :
+                        relocation.target.equals(COMPARISON_TARGET)? comparisonOffset :
+                        invocationOffsets.getOrDefault(relocation.target, 0);
+
+                if(offset == 0) {
+                    continue;
+                }
+
+                /** The number of the first return address of a function is implicit */
+                long number = (relocation.start == relocation.end)? 1 :
+                        Long.parseLong(code.substring(relocation.start, relocation.end));
+
+                builder.append(code, position, relocation.start).append(number + offset);
+                position = relocation.end;
+            }
+
+            builder.append(code, position, code.length())
+                   .append("\n");
+
+            labelOffset += fragment.getLabelCount();
+            comparisonOffset += fragment.getComparisonCount();
+            fragment.getInvocationCounts().forEach((function, count) -> {
+                invocationOffsets.merge(function, count, Integer::sum);
+            });
+        }
+
+        return builder.toString();
+    }
+
+
+    /**
+     * Returns the relocations of the given code: the position of the number of each generated label in a label
+     * definition or an A-instruction
+     *
+     * @param code                  the assembly code of a fragment
+     * @param invocationCounts      the number of calls to each function in the code
+     * @return the relocations of the given code
+     */
+    private static List<Relocation> relocations(String code, Map<String,Integer> invocationCounts) {
+        List<Relocation> relocations = new ArrayList<>();
+        int length = code.length();
+        int start = 0;
+
+        while(start < length) {
+            int end = code.indexOf('\n', start);
+            end = (end < 0)? length : end;
+
+            char first = code.charAt(start);
+            boolean isLabel = (first == '(' && end - start > 2 && code.charAt(end - 1) == ')');
+
+            if(first == '@' || isLabel) {
+                Relocation relocation = relocation(code, start + 1, isLabel? end - 1 : end, invocationCounts);
+
+                if(relocation != null) {
+                    relocations.add(relocation);
+                }
+            }
+
+            start = end + 1;
+        }
+
+        return relocations;
+    }
+
+
+    /**
+     * Returns the relocation of the symbol in the given range of the code, or null if the symbol is not a generated
+     * label
+     *
+     * @param code                  the assembly code of a fragment
+     * @param start                 the index of the first character of the symbol
+     * @param end                   the index after the last character of the symbol
+     * @param invocationCounts      the number of calls to each function in the code
+     * @return the relocation of the symbol, or null if the symbol is not a generated label
+     */
+    private static Relocation relocation(String code, int start, int end, Map<String,Integer> invocationCounts) {
+        String symbol = code.substring(start, end);
+        String[] prefixes = symbol.startsWith("IF_")? ARITHMETIC_LABELS :
+                symbol.startsWith("CACHED_COMPARISON_")? COMPARISON_LABELS : null;
+
+        if(prefixes != null) {
+            String target = (prefixes == ARITHMETIC_LABELS)? ARITHMETIC_TARGET : COMPARISON_TARGET;
+
+            for(String prefix : prefixes) {
+                if(symbol.startsWith(prefix) && isNumber(symbol, prefix.length(), false)) {
+                    return new Relocation(start + prefix.length(), end, target);
+                }
+            }
+
+            return null;
+        }
+
+        int index = symbol.lastIndexOf(RETURN_LABEL);
+
+        if(index <= 0 || !isNumber(symbol, index + RETURN_LABEL.length(), true)) {
+            return null;
+        }
+
+        String function = symbol.substring(0, index);
+        return invocationCounts.containsKey(function)?
+                new Relocation(start + index + RETURN_LABEL.length(), end, function) : null;
+    }
+
+
+    /**
+     * Returns true if the given symbol ends with a number from the given index; otherwise, returns false
+     *
+     * @param symbol                the symbol to check
+     * @param start                 the index of the first digit
+     * @param isOptional            a flag that specifies whether the number may be missing
+     * @return true if the given symbol ends with a number from the given index; otherwise, returns false
+     */
+    private static boolean isNumber(String symbol, int start, boolean isOptional) {
+
+        if(start == symbol.length()) {
+            return isOptional;
+        }
+
+        for(int i = start; i < symbol.length(); i++) {
+            if(!Character.isDigit(symbol.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Reads the fragment stored in the given cache entry
+     *
+     * @param entry                 the cache entry to read
+     * @return the fragment stored in the given cache entry, or null if the entry is invalid
+     */
+    private static Fragment read(File entry) {
+
+        try {
+
+            String content = new String(Files.readAllBytes(entry.toPath()), StandardCharsets.ISO_8859_1);
+            int lineEnd = content.indexOf('\n');
+            String[] header = content.substring(0, Math.max(lineEnd, 0)).split(" ");
+
+            if(header.length != 5 || !header[0].equals(FORMAT_VERSION)) {
+                return null;
+            }
+
+            Map<String,Integer> invocationCounts = new TreeMap<>();
+            List<Relocation> relocations = new ArrayList<>();
+            int functions = Integer.parseInt(header[3]);
+            int relocationCount = Integer.parseInt(header[4]);
+
+            for(int i = 0; i < functions + relocationCount; i++) {
+                int start = lineEnd + 1;
+                lineEnd = content.indexOf('\n', start);
+                int separator = content.indexOf(' ', start);
+
+                if(i < functions) {
+                    invocationCounts.put(content.substring(start, separator),
+                                         Integer.parseInt(content.substring(separator + 1, lineEnd)));
+                } else {
+                    int nextSeparator = content.indexOf(' ', separator + 1);
+                    relocations.add(new Relocation(Integer.parseInt(content.substring(start, separator)),
+                                                   Integer.parseInt(content.substring(separator + 1, nextSeparator)),
+                                                   content.substring(nextSeparator + 1, lineEnd)));
+                }
+            }
+
+            return new Fragment(content.substring(lineEnd + 1), Long.parseLong(header[1]),
+                                Long.parseLong(header[2]), invocationCounts, relocations);
+
+        } catch(IOException | RuntimeException invalidEntry) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Returns the key of the content of the given file. The key is taken from the index if the size and the
+     * modification time of the file have not changed since it was computed; otherwise, the file is read and hashed.
+     * A file that was modified no earlier than the index was saved is always hashed, since it may have been modified
+     * again within the resolution of the modification time.
+     *
+     * @param file                  the VM file
+     * @return the key of the content of the given file
+     * @throws IOException if the file cannot be read
+     */
+    private String key(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        long modificationTime = Files.getLastModifiedTime(file.toPath()).toMillis();
+        String stamp = String.format("%s %s", file.length(), modificationTime);
+        String stampedKey = keys.get(path);
+
+        if(stampedKey == null && modificationTime < indexTime) {
+            stampedKey = indexedKeys.get(path);
+        }
+
+        if(stampedKey == null || !stampedKey.endsWith(stamp)) {
+            stampedKey = String.format("%s %s", key(file.getName(), Files.readAllBytes(file.toPath())), stamp);
+        }
+
+        keys.put(path, stampedKey);
+
+        return stampedKey.substring(0, stampedKey.indexOf(' '));
+    }
+
+
+    /**
+     * Returns the key of the given file content: a SHA-256 hash of the format version, the translator options, the
+     * name of the file (which is used for its static symbols) and its content
+     *
+     * @param fileName              the name of the VM file
+     * @param source                the content of the VM file
+     * @return the key of the given file content, as a hexadecimal string
+     */
+    private String key(String fileName, byte[] source) {
+
+        try {
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.format("%s\n%s\n%s\n", FORMAT_VERSION, options, fileName)
+                                .getBytes(StandardCharsets.UTF_8));
+            byte[] hash = digest.digest(source);
+            StringBuilder builder = new StringBuilder();
+
+            for(byte value : hash) {
+                builder.append(Character.forDigit((value >> 4) & 0xF, 16))
+                       .append(Character.forDigit(value & 0xF, 16));
+            }
+
+            return builder.toString();
+
+        } catch(NoSuchAlgorithmException unsupported) {
+            throw new IllegalStateException("SHA-256 is not supported", unsupported);
+        }
+    }
+
+
+    /**
+     * Loads the index of the cache: the key, size and modification time of each file that was looked up by the
+     * previous build. The index is ignored if it was saved with different translator options.
+     */
+    private void loadIndex() {
+        File index = new File(directory, INDEX_FILE_NAME);
+
+        if(!index.isFile()) {
+            return;
+        }
+
+        try {
+
+            List<String> lines = Files.readAllLines(index.toPath(), StandardCharsets.UTF_8);
+            indexTime = index.lastModified();
+
+            if(lines.isEmpty() || !lines.get(0).equals(String.format("%s %s", FORMAT_VERSION, options))) {
+                return;
+            }
+
+            for(String line : lines.subList(1, lines.size())) {
+                String[] parts = line.split(" ", 4);
+
+                if(parts.length == 4) {
+                    indexedKeys.put(parts[3], String.format("%s %s %s", parts[0], parts[1], parts[2]));
+                }
+            }
+
+        } catch(IOException cannotRead) {
+            indexedKeys.clear();
+        }
+    }
+
+}
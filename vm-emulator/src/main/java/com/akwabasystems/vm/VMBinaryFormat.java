@@ -0,0 +1,244 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.ArithmeticCommandType;
+import com.akwabasystems.model.CommandTable;
+import com.akwabasystems.model.CommandType;
+import com.akwabasystems.model.Segment;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * The binary container format for VM code (".vmb" files), which can be loaded without any text parsing.
+ *
+ * All values are big-endian. A file is laid out as follows:
+ *
+ *      magic           4 bytes     'V', 'M', 'B', followed by the format version (1)
+ *      fileName        u2          the constant pool index of the name of the source file (for instance, "Main.vm"),
+ *                                  which is used for the symbols of static variables; commands do not refer to it
+ *      poolSize        u2          the number of entries in the constant pool
+ *      pool            poolSize x  (u2 length, followed by the ISO-8859-1 bytes of the name)
+ *      commandCount    u4          the number of commands
+ *      commands        commandCount x 8 bytes:
+ *                          type        u1  0=arithmetic, 1=push, 2=pop, 3=label, 4=goto, 5=if-goto, 6=function,
+ *                                          7=return, 8=call
+ *                          operation   u1  for arithmetic commands: 0=add, 1=sub, 2=neg, 3=eq, 4=gt, 5=lt, 6=and,
+ *                                          7=or, 8=not; for push and pop commands: 0=constant, 1=local, 2=argument,
+ *                                          3=this, 4=that, 5=pointer, 6=temp, 7=static; otherwise 0xFF
+ *                          name        u2  the constant pool index of the first argument (segment, label or
+ *                                          function name), or 0xFFFF if there is none
+ *                          index       i4  the second argument
+ *
+ * The type and operation codes are the ordinals of CommandType, ArithmeticCommandType and Segment. The Jack compiler
+ * has its own encoder for this format, so any change to the layout must be made in both modules.
+ */
+public final class VMBinaryFormat {
+
+    public static final String EXTENSION = "vmb";
+    public static final int VERSION = 1;
+    public static final int COMMAND_SIZE = 8;
+    private static final byte[] MAGIC = { 'V', 'M', 'B', VERSION };
+    private static final int NO_OPERATION = 0xFF;
+    private static final int NO_NAME = 0xFFFF;
+
+
+    /**
+     * Prevents the instantiation of this class
+     */
+    private VMBinaryFormat() {}
+
+
+    /**
+     * Encodes the commands in the given table into the binary format
+     *
+     * @param table             the table that holds the commands
+     * @param fileName          the name of the source file of the commands (for instance, "Main.vm")
+     * @return the binary representation of the commands
+     */
+    public static byte[] encode(CommandTable table, String fileName) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + table.nameCount() * 16 +
+                                                                table.size() * COMMAND_SIZE);
+
+        try(DataOutputStream output = new DataOutputStream(bytes)) {
+            int fileNameIndex = table.nameCount();
+
+            output.write(MAGIC);
+            output.writeShort(fileNameIndex);
+            output.writeShort(table.nameCount() + 1);
+
+            for(int id = 0; id < table.nameCount(); id++) {
+                writeName(output, table.nameOf(id));
+            }
+
+            writeName(output, fileName);
+            output.writeInt(table.size());
+
+            for(int row = 0; row < table.size(); row++) {
+                output.writeByte(table.type(row).ordinal());
+                output.writeByte((table.operation(row) == CommandTable.NONE)? NO_OPERATION : table.operation(row));
+                output.writeShort((table.name(row) == CommandTable.NONE)? NO_NAME : table.name(row));
+                output.writeInt(table.index(row));
+            }
+
+        } catch(IOException cannotWrite) {
+            throw new IllegalStateException(cannotWrite);
+        }
+
+        return bytes.toByteArray();
+    }
+
+
+    /**
+     * Decodes the commands in the given buffer, and appends them to the given table. The buffer is read from its
+     * current position, which can be that of a memory-mapped file.
+     *
+     * @param buffer            the buffer that holds the binary representation of the commands
+     * @param table             the table to which to append the commands
+     * @return the name of the source file of the commands
+     * @throws IllegalArgumentException if the buffer does not hold a valid binary representation
+     */
+    public static String decode(ByteBuffer buffer, CommandTable table) {
+
+        if(!isBinary(buffer)) {
+            throw new IllegalArgumentException("Not a VM binary file (invalid magic number or version)");
+        }
+
+        buffer.position(buffer.position() + MAGIC.length);
+        requireRemaining(buffer, 4);
+        int fileNameIndex = buffer.getShort() & 0xFFFF;
+        int poolSize = buffer.getShort() & 0xFFFF;
+        int[] nameIds = new int[poolSize];
+        String fileName = null;
+        byte[] name = new byte[64];
+
+        if(fileNameIndex >= poolSize) {
+            throw new IllegalArgumentException(String.format("Invalid file name index: %s", fileNameIndex));
+        }
+
+        for(int i = 0; i < poolSize; i++) {
+            requireRemaining(buffer, 2);
+            int length = buffer.getShort() & 0xFFFF;
+
+            if(length > name.length) {
+                name = new byte[length];
+            }
+
+            requireRemaining(buffer, length);
+            buffer.get(name, 0, length);
+
+            if(i == fileNameIndex) {
+                fileName = new String(name, 0, length, StandardCharsets.ISO_8859_1);
+                nameIds[i] = CommandTable.NONE;
+            } else {
+                nameIds[i] = table.intern(name, 0, length);
+            }
+        }
+
+        requireRemaining(buffer, 4);
+        int commandCount = buffer.getInt();
+        CommandType[] types = CommandType.values();
+
+        if(commandCount < 0) {
+            throw new IllegalArgumentException(String.format("Invalid command count: %s", commandCount & 0xFFFFFFFFL));
+        }
+
+        requireRemaining(buffer, (long) commandCount * COMMAND_SIZE);
+
+        for(int i = 0; i < commandCount; i++) {
+            int type = buffer.get() & 0xFF;
+            int operation = buffer.get() & 0xFF;
+            int nameIndex = buffer.getShort() & 0xFFFF;
+            int index = buffer.getInt();
+
+            boolean isInvalidArithmetic = (type == CommandType.C_ARITHMETIC.ordinal() &&
+                    operation >= ArithmeticCommandType.values().length);
+            boolean isInvalidMemoryAccess = (type == CommandType.C_PUSH.ordinal() ||
+                    type == CommandType.C_POP.ordinal()) && operation >= Segment.values().length;
+            boolean isInvalidName = (nameIndex != NO_NAME && nameIndex >= poolSize);
+
+            if(type >= types.length || isInvalidArithmetic || isInvalidMemoryAccess || isInvalidName) {
+                throw new IllegalArgumentException(String.format("Invalid command at position %s", i));
+            }
+
+            table.add(types[type], (operation == NO_OPERATION)? CommandTable.NONE : operation,
+                      (nameIndex == NO_NAME)? CommandTable.NONE : nameIds[nameIndex], index);
+        }
+
+        return fileName;
+    }
+
+
+    /**
+     * Returns true if the given buffer starts with the magic number of the binary format, from its current position;
+     * otherwise, returns false
+     *
+     * @param buffer            the buffer to check
+     * @return true if the given buffer starts with the magic number of the binary format; otherwise, returns false
+     */
+    public static boolean isBinary(ByteBuffer buffer) {
+
+        if(buffer.remaining() < MAGIC.length) {
+            return false;
+        }
+
+        for(int i = 0; i < MAGIC.length; i++) {
+            if(buffer.get(buffer.position() + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Returns the textual VM code for the commands in the given table, one command per line
+     *
+     * @param table             the table that holds the commands
+     * @return the textual VM code for the commands in the given table
+     */
+    public static String toText(CommandTable table) {
+        StringBuilder builder = new StringBuilder(table.size() * 16);
+
+        for(int row = 0; row < table.size(); row++) {
+            builder.append(table.text(row))
+                   .append("\n");
+        }
+
+        return builder.toString();
+    }
+
+
+    /**
+     * Checks that the given buffer has at least the given number of bytes left to read
+     *
+     * @param buffer            the buffer to check
+     * @param count             the number of bytes to read
+     * @throws IllegalArgumentException if the buffer has fewer bytes left
+     */
+    private static void requireRemaining(ByteBuffer buffer, long count) {
+
+        if(buffer.remaining() < count) {
+            throw new IllegalArgumentException("Truncated VM binary file");
+        }
+    }
+
+
+    /**
+     * Writes the given name as a constant pool entry
+     *
+     * @param output            the output stream
+     * @param name              the name to write
+     * @throws IOException if the name cannot be written
+     */
+    private static void writeName(DataOutputStream output, String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.ISO_8859_1);
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+}
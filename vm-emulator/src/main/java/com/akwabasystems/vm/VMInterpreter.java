@@ -0,0 +1,390 @@
+package com.akwabasystems.vm;
+
+
+import java.util.Arrays;
+import static com.akwabasystems.vm.VMProgram.INSTRUCTION_SIZE;
+
+
+/**
+ * An interpreter that executes a VM program directly, without translating it to assembly code.
+ *
+ * The interpreter runs the lowered instructions of a VMProgram against a RAM that follows the Hack memory layout:
+ * the SP, LCL, ARG, THIS and THAT pointers live at addresses 0 to 4, the temp segment at addresses 5 to 12, static
+ * variables from address 16, the stack from address 256, the screen memory map at address 16384 and the keyboard at
+ * address 24576. Function calls build the same frames as the translated code (return address, LCL, ARG, THIS, THAT),
+ * so the Jack OS runs unchanged, and the state of the RAM can be inspected after execution.
+ *
+ * Values are 16-bit two's complement integers. Comparison commands (eq, gt, lt) compare their operands as signed
+ * values, and push -1 (true) or 0 (false).
+ *
+ * Execution stops when the step limit is reached, when the program runs past its last instruction, or when the program
+ * halts, which is detected as a jump to itself (label LOOP, goto LOOP) or as a call to the Sys.halt function of the
+ * Jack OS.
+ *
+ * Calls to functions that have an enabled intrinsic (see IntrinsicRegistry) run the native implementation instead of
+ * the VM code of the function: the arguments are replaced with the returned value, as with the VM calling convention,
+ * and the call counts as a single step.
+ */
+public final class VMInterpreter {
+
+    public static final int RAM_SIZE = 24577;
+    public static final int SCREEN = 16384;
+    public static final int KEYBOARD = 24576;
+    public static final int STACK_BASE_ADDRESS = 256;
+    public static final String HALT_FUNCTION = "Sys.halt";
+
+    private static final int SP = 0;
+    private static final int LCL = 1;
+    private static final int ARG = 2;
+    private static final int THIS = 3;
+    private static final int THAT = 4;
+    private static final int TEMP = 5;
+
+    private static final int CONSTANT_SEGMENT = 0;
+    private static final int LOCAL_SEGMENT = 1;
+    private static final int ARGUMENT_SEGMENT = 2;
+    private static final int THIS_SEGMENT = 3;
+    private static final int THAT_SEGMENT = 4;
+    private static final int POINTER_SEGMENT = 5;
+    private static final int TEMP_SEGMENT = 6;
+
+    private final VMProgram program;
+    private final int[] code;
+    private final int haltIndex;
+    private final Intrinsic[] intrinsics;
+    private final int[] intrinsicStatics;
+    private final short[] ram = new short[RAM_SIZE];
+    private int programCounter = 0;
+    private int breakpoint = -1;
+    private long steps = 0;
+    private long intrinsicCalls = 0;
+    private boolean isHalted = false;
+
+
+    /**
+     * Creates an interpreter for the given program
+     *
+     * @param program           the program to execute
+     */
+    public VMInterpreter(VMProgram program) {
+        this.program = program;
+        this.code = program.getCode();
+        this.haltIndex = program.functionIndex(HALT_FUNCTION);
+        this.intrinsics = new Intrinsic[program.size()];
+        this.intrinsicStatics = new int[program.size()];
+    }
+
+
+    /**
+     * Sets the intrinsics to run in place of the VM functions of the program. The registry is resolved against the
+     * functions of the program when this method is called, so later changes to the registry require calling it
+     * again.
+     *
+     * @param registry          the registry of intrinsics
+     * @return a reference to this class instance
+     */
+    public VMInterpreter setIntrinsics(IntrinsicRegistry registry) {
+        Arrays.fill(intrinsics, null);
+
+        registry.functions().stream().forEach((function) -> {
+            int index = program.functionIndex(function);
+
+            if(index >= 0) {
+                intrinsics[index] = registry.lookup(function);
+                intrinsicStatics[index] = program.staticBaseOf(function);
+            }
+        });
+
+        return this;
+    }
+
+
+    /**
+     * Sets the index of an instruction before which execution stops, or -1 to run without a breakpoint. Execution
+     * can then be resumed after removing the breakpoint.
+     *
+     * @param index             the index of the instruction before which to stop, or -1
+     * @return a reference to this class instance
+     */
+    public VMInterpreter setBreakpoint(int index) {
+        this.breakpoint = index;
+        return this;
+    }
+
+
+    /**
+     * Initializes the pointers as the bootstrap code of the translator does (SP=261, LCL=261, ARG=256, THIS=0,
+     * THAT=0), and sets the program counter to the entry point (Sys.init)
+     *
+     * @return a reference to this class instance
+     * @throws IllegalStateException if the program does not declare Sys.init
+     */
+    public VMInterpreter bootstrap() {
+        int entryPoint = program.functionIndex(DeadFunctionEliminator.ENTRY_POINT);
+
+        if(entryPoint < 0) {
+            throw new IllegalStateException("The program does not declare Sys.init");
+        }
+
+        poke(SP, 261).poke(LCL, 261).poke(ARG, STACK_BASE_ADDRESS).poke(THIS, 0).poke(THAT, 0);
+        programCounter = entryPoint;
+        isHalted = false;
+
+        return this;
+    }
+
+
+    /**
+     * Executes the program until it halts, until it reaches the breakpoint, or until the given number of
+     * instructions have been executed
+     *
+     * @param maxSteps          the maximum number of instructions to execute
+     * @return the number of instructions that were executed
+     */
+    public long run(long maxSteps) {
+        long executed = 0;
+        int pc = programCounter;
+        int size = program.size();
+
+        while(executed < maxSteps && pc < size && pc != breakpoint && !isHalted) {
+            int offset = pc * INSTRUCTION_SIZE;
+            int operand1 = code[offset + 1];
+            int operand2 = code[offset + 2];
+            int sp = ram[SP];
+            pc++;
+            executed++;
+
+            switch(code[offset]) {
+
+                case VMProgram.PUSH:
+                    ram[sp] = (operand1 == CONSTANT_SEGMENT)? (short) operand2 : ram[address(operand1, operand2)];
+                    ram[SP] = (short) (sp + 1);
+                    break;
+
+                case VMProgram.POP:
+                    int target = address(operand1, operand2);
+                    ram[target] = ram[sp - 1];
+                    ram[SP] = (short) (sp - 1);
+                    break;
+
+                case VMProgram.ADD:
+                    ram[sp - 2] = (short) (ram[sp - 2] + ram[sp - 1]);
+                    ram[SP] = (short) (sp - 1);
+                    break;
+
+                case VMProgram.SUB:
+                    ram[sp - 2] = (short) (ram[sp - 2] - ram[sp - 1]);
+                    ram[SP] = (short) (sp - 1);
+                    break;
+
+                case VMProgram.NEG:
+                    ram[sp - 1] = (short) -ram[sp - 1];
+                    break;
+
+                case VMProgram.EQ:
+                    ram[sp - 2] = (short) ((ram[sp - 2] == ram[sp - 1])? -1 : 0);
+                    ram[SP] = (short) (sp - 1);
+                    break;
+
+                case VMProgram.GT:
+                    ram[sp - 2] = (short) ((ram[sp - 2] > ram[sp - 1])? -1 : 0);
+                    ram[SP] = (short) (sp - 1);
+                    break;
+
+                case VMProgram.LT:
+                    ram[sp - 2] = (short) ((ram[sp - 2] < ram[sp - 1])? -1 : 0);
+                    ram[SP] = (short) (sp - 1);
+                    break;
+
+                case VMProgram.AND:
+                    ram[sp - 2] = (short) (ram[sp - 2] & ram[sp - 1]);
+                    ram[SP] = (short) (sp - 1);
+                    break;
+
+                case VMProgram.OR:
+                    ram[sp - 2] = (short) (ram[sp - 2] | ram[sp - 1]);
+                    ram[SP] = (short) (sp - 1);
+                    break;
+
+                case VMProgram.NOT:
+                    ram[sp - 1] = (short) ~ram[sp - 1];
+                    break;
+
+                case VMProgram.GOTO:
+                    isHalted = (operand1 == pc - 1);
+                    pc = operand1;
+                    break;
+
+                case VMProgram.IF_GOTO:
+                    ram[SP] = (short) (sp - 1);
+
+                    if(ram[sp - 1] != 0) {
+                        pc = operand1;
+                    }
+                    break;
+
+                case VMProgram.FUNCTION:
+                    for(int i = 0; i < operand2; i++) {
+                        ram[sp + i] = 0;
+                    }
+
+                    ram[SP] = (short) (sp + operand2);
+                    break;
+
+                case VMProgram.CALL:
+                    if(operand1 == haltIndex) {
+                        isHalted = true;
+                        pc--;
+                        break;
+                    }
+
+                    Intrinsic intrinsic = intrinsics[operand1];
+
+                    if(intrinsic != null) {
+                        int arguments = sp - operand2;
+                        int result = intrinsic.invoke(ram, arguments, intrinsicStatics[operand1]);
+
+                        if(result != Intrinsic.FALL_BACK) {
+                            ram[arguments] = (short) result;
+                            ram[SP] = (short) (arguments + 1);
+                            intrinsicCalls++;
+                            break;
+                        }
+                    }
+
+                    ram[sp] = (short) pc;
+                    ram[sp + 1] = ram[LCL];
+                    ram[sp + 2] = ram[ARG];
+                    ram[sp + 3] = ram[THIS];
+                    ram[sp + 4] = ram[THAT];
+                    ram[ARG] = (short) (sp - operand2);
+                    ram[LCL] = (short) (sp + 5);
+                    ram[SP] = (short) (sp + 5);
+                    pc = operand1;
+                    break;
+
+                default:
+                    int frame = ram[LCL];
+                    int returnAddress = ram[frame - 5] & 0xFFFF;
+                    int argument = ram[ARG];
+                    ram[argument] = ram[sp - 1];
+                    ram[SP] = (short) (argument + 1);
+                    ram[THAT] = ram[frame - 1];
+                    ram[THIS] = ram[frame - 2];
+                    ram[ARG] = ram[frame - 3];
+                    ram[LCL] = ram[frame - 4];
+                    pc = returnAddress;
+                    break;
+            }
+        }
+
+        programCounter = pc;
+        isHalted |= (pc >= size);
+        steps += executed;
+
+        return executed;
+    }
+
+
+    /**
+     * Returns the RAM address of the given segment index
+     *
+     * @param segment           the segment (ordinal of the Segment enum constant)
+     * @param index             the index within the segment, or the resolved address of a static variable
+     * @return the RAM address of the given segment index
+     */
+    private int address(int segment, int index) {
+
+        switch(segment) {
+            case LOCAL_SEGMENT:
+                return ram[LCL] + index;
+            case ARGUMENT_SEGMENT:
+                return ram[ARG] + index;
+            case THIS_SEGMENT:
+                return (ram[THIS] & 0xFFFF) + index;
+            case THAT_SEGMENT:
+                return (ram[THAT] & 0xFFFF) + index;
+            case POINTER_SEGMENT:
+                return THIS + index;
+            case TEMP_SEGMENT:
+                return TEMP + index;
+            default:
+                return index;
+        }
+    }
+
+
+    /**
+     * Returns the value at the given RAM address
+     *
+     * @param address           the address to read
+     * @return the value at the given RAM address
+     */
+    public int peek(int address) {
+        return ram[address];
+    }
+
+
+    /**
+     * Sets the value at the given RAM address
+     *
+     * @param address           the address to write
+     * @param value             the value to write
+     * @return a reference to this class instance
+     */
+    public VMInterpreter poke(int address, int value) {
+        ram[address] = (short) value;
+        return this;
+    }
+
+
+    /**
+     * Returns the RAM of this interpreter
+     *
+     * @return the RAM of this interpreter
+     */
+    public short[] getRam() {
+        return ram;
+    }
+
+
+    /**
+     * Returns the index of the next instruction to execute
+     *
+     * @return the index of the next instruction to execute
+     */
+    public int getProgramCounter() {
+        return programCounter;
+    }
+
+
+    /**
+     * Returns the total number of instructions executed by this interpreter
+     *
+     * @return the total number of instructions executed by this interpreter
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+
+    /**
+     * Returns the total number of calls that were handled by intrinsics
+     *
+     * @return the total number of calls that were handled by intrinsics
+     */
+    public long getIntrinsicCalls() {
+        return intrinsicCalls;
+    }
+
+
+    /**
+     * Returns true if the program has halted; otherwise, returns false
+     *
+     * @return true if the program has halted; otherwise, returns false
+     */
+    public boolean isHalted() {
+        return isHalted;
+    }
+
+}
@@ -0,0 +1,301 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.ArithmeticCommandType;
+import com.akwabasystems.model.CommandTable;
+import com.akwabasystems.model.CommandType;
+import com.akwabasystems.model.Segment;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * A single-pass lexer for VM commands.
+ *
+ * It scans the bytes of a line once, without regular expressions or intermediate strings: it skips whitespace and
+ * comments, matches the command keyword and the segment name against precomputed byte sequences, decodes the index in
+ * place, and appends the command as a row of a CommandTable. Names (segments, labels, functions) are interned by the
+ * table, so a string is only created the first time a name is seen.
+ *
+ * As with the previous parsing logic, "//" starts a comment anywhere on a line, a line that is enclosed in block
+ * comment delimiters is a comment, command keywords are case-insensitive, and an invalid index is read as 0. An
+ * unknown command keyword, or an unknown segment in a push or pop command, is rejected.
+ */
+public final class VMLexer {
+
+    private static final byte[][] KEYWORDS = new byte[CommandType.values().length][];
+    private static final byte[][] ARITHMETIC_KEYWORDS = new byte[ArithmeticCommandType.values().length][];
+    private static final byte[][] SEGMENT_KEYWORDS = new byte[Segment.values().length][];
+
+    static {
+        for(CommandType type : CommandType.values()) {
+            KEYWORDS[type.ordinal()] = bytes(type.commandList().get(0));
+        }
+
+        for(ArithmeticCommandType type : ArithmeticCommandType.values()) {
+            ARITHMETIC_KEYWORDS[type.ordinal()] = bytes(type.name().toLowerCase());
+        }
+
+        for(Segment segment : Segment.values()) {
+            SEGMENT_KEYWORDS[segment.ordinal()] = bytes(segment.argument());
+        }
+    }
+
+    private final CommandTable table;
+
+
+    /**
+     * Creates a lexer that appends the commands it reads to the given table
+     *
+     * @param table             the table to which to append the commands
+     */
+    public VMLexer(CommandTable table) {
+        this.table = table;
+    }
+
+
+    /**
+     * Returns the table to which this lexer appends the commands it reads
+     *
+     * @return the table to which this lexer appends the commands it reads
+     */
+    public CommandTable getTable() {
+        return table;
+    }
+
+
+    /**
+     * Reads the command on the given line, and appends it to the table
+     *
+     * @param buffer            the buffer that holds the line
+     * @param start             the index of the first byte of the line
+     * @param end               the index after the last byte of the line (excluding the line terminator)
+     * @return the row of the command in the table, or CommandTable.NONE if the line is blank or a comment
+     * @throws IllegalArgumentException if the line does not start with a valid command, or if a push or pop command
+     *         does not name a valid segment
+     */
+    public int lex(byte[] buffer, int start, int end) {
+        end = stripComment(buffer, start, end);
+        start = skipWhitespace(buffer, start, end);
+
+        while(end > start && isWhitespace(buffer[end - 1])) {
+            end--;
+        }
+
+        boolean isBlockComment = (end - start >= 2 && buffer[start] == '/' && buffer[start + 1] == '*' &&
+                buffer[end - 2] == '*' && buffer[end - 1] == '/');
+
+        if(start == end || isBlockComment) {
+            return CommandTable.NONE;
+        }
+
+        int keywordEnd = tokenEnd(buffer, start, end);
+        CommandType type = keyword(buffer, start, keywordEnd);
+        int operation = CommandTable.NONE;
+
+        if(type == null) {
+            operation = match(ARITHMETIC_KEYWORDS, buffer, start, keywordEnd, true);
+
+            if(operation == CommandTable.NONE) {
+                throw new IllegalArgumentException(String.format("Invalid command: %s",
+                                                                 new String(buffer, start, end - start,
+                                                                            StandardCharsets.ISO_8859_1)));
+            }
+
+            type = CommandType.C_ARITHMETIC;
+        }
+
+        int nameStart = skipWhitespace(buffer, keywordEnd, end);
+        int nameEnd = tokenEnd(buffer, nameStart, end);
+
+        if(type == CommandType.C_PUSH || type == CommandType.C_POP) {
+            operation = match(SEGMENT_KEYWORDS, buffer, nameStart, nameEnd, false);
+
+            if(operation == CommandTable.NONE) {
+                throw new IllegalArgumentException(String.format("Invalid segment: %s",
+                                                                 new String(buffer, start, end - start,
+                                                                            StandardCharsets.ISO_8859_1)));
+            }
+        }
+
+        int name = (nameStart < nameEnd)? table.intern(buffer, nameStart, nameEnd) : CommandTable.NONE;
+
+        int indexStart = skipWhitespace(buffer, nameEnd, end);
+        int index = decode(buffer, indexStart, tokenEnd(buffer, indexStart, end));
+
+        return table.add(type, operation, name, index);
+    }
+
+
+    /**
+     * Returns the command type whose keyword matches the given range of bytes, or null if there is none. Arithmetic
+     * commands are matched separately.
+     *
+     * @param buffer            the buffer that holds the keyword
+     * @param start             the index of the first byte of the keyword
+     * @param end               the index after the last byte of the keyword
+     * @return the command type whose keyword matches the given range of bytes, or null if there is none
+     */
+    private static CommandType keyword(byte[] buffer, int start, int end) {
+        int index = match(KEYWORDS, buffer, start, end, true);
+        CommandType type = (index == CommandTable.NONE)? null : CommandType.values()[index];
+        return (type == CommandType.C_ARITHMETIC)? null : type;
+    }
+
+
+    /**
+     * Returns the index of the keyword that matches the given range of bytes, or CommandTable.NONE if there is none
+     *
+     * @param keywords          the keywords to match
+     * @param buffer            the buffer that holds the token
+     * @param start             the index of the first byte of the token
+     * @param end               the index after the last byte of the token
+     * @param ignoreCase        whether the match is case-insensitive
+     * @return the index of the keyword that matches the given range of bytes, or CommandTable.NONE if there is none
+     */
+    private static int match(byte[][] keywords, byte[] buffer, int start, int end, boolean ignoreCase) {
+
+        for(int i = 0; i < keywords.length; i++) {
+            byte[] keyword = keywords[i];
+
+            if(keyword.length != end - start) {
+                continue;
+            }
+
+            int j = 0;
+
+            while(j < keyword.length && (buffer[start + j] == keyword[j] ||
+                    (ignoreCase && isUpperCase(buffer[start + j]) && (buffer[start + j] | 0x20) == keyword[j]))) {
+                j++;
+            }
+
+            if(j == keyword.length) {
+                return i;
+            }
+        }
+
+        return CommandTable.NONE;
+    }
+
+
+    /**
+     * Decodes the integer in the given range of bytes. Plain decimal numbers are decoded in place; other forms (signs,
+     * hexadecimal or octal numbers) are decoded with Integer.decode. Invalid numbers are decoded as 0.
+     *
+     * @param buffer            the buffer that holds the number
+     * @param start             the index of the first byte of the number
+     * @param end               the index after the last byte of the number
+     * @return the decoded integer
+     */
+    private static int decode(byte[] buffer, int start, int end) {
+        boolean isPlainDecimal = (start < end) && (buffer[start] != '0' || end - start == 1) && (end - start < 10);
+        int value = 0;
+
+        for(int i = start; i < end && isPlainDecimal; i++) {
+            int digit = buffer[i] - '0';
+            isPlainDecimal = (digit >= 0 && digit <= 9);
+            value = value * 10 + digit;
+        }
+
+        if(isPlainDecimal || start == end) {
+            return (start == end)? 0 : value;
+        }
+
+        try {
+
+            return Integer.decode(new String(buffer, start, end - start, StandardCharsets.ISO_8859_1));
+
+        } catch(NumberFormatException invalidNumber) {
+            return 0;
+        }
+    }
+
+
+    /**
+     * Returns the end of the given line once any "//" comment is removed
+     *
+     * @param buffer            the buffer that holds the line
+     * @param start             the index of the first byte of the line
+     * @param end               the index after the last byte of the line
+     * @return the end of the line once any "//" comment is removed
+     */
+    private static int stripComment(byte[] buffer, int start, int end) {
+
+        for(int i = start; i < end - 1; i++) {
+            if(buffer[i] == '/' && buffer[i + 1] == '/') {
+                return i;
+            }
+        }
+
+        return end;
+    }
+
+
+    /**
+     * Returns the index of the first non-whitespace byte at or after the given index
+     *
+     * @param buffer            the buffer to scan
+     * @param start             the index from which to scan
+     * @param end               the index at which to stop
+     * @return the index of the first non-whitespace byte at or after the given index
+     */
+    private static int skipWhitespace(byte[] buffer, int start, int end) {
+
+        while(start < end && isWhitespace(buffer[start])) {
+            start++;
+        }
+
+        return start;
+    }
+
+
+    /**
+     * Returns the index of the first whitespace byte at or after the given index
+     *
+     * @param buffer            the buffer to scan
+     * @param start             the index from which to scan
+     * @param end               the index at which to stop
+     * @return the index of the first whitespace byte at or after the given index
+     */
+    private static int tokenEnd(byte[] buffer, int start, int end) {
+
+        while(start < end && !isWhitespace(buffer[start])) {
+            start++;
+        }
+
+        return start;
+    }
+
+
+    /**
+     * Returns true if the given byte is a whitespace character; otherwise, returns false
+     *
+     * @param value             the byte to check
+     * @return true if the given byte is a whitespace character; otherwise, returns false
+     */
+    private static boolean isWhitespace(byte value) {
+        return value == ' ' || value == '\t' || value == '\r' || value == '\n' || value == '\f';
+    }
+
+
+    /**
+     * Returns true if the given byte is an uppercase ASCII letter; otherwise, returns false
+     *
+     * @param value             the byte to check
+     * @return true if the given byte is an uppercase ASCII letter; otherwise, returns false
+     */
+    private static boolean isUpperCase(byte value) {
+        return value >= 'A' && value <= 'Z';
+    }
+
+
+    /**
+     * Returns the ASCII bytes of the given string
+     *
+     * @param value             the string to convert
+     * @return the ASCII bytes of the given string
+     */
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+}
@@ -2,9 +2,13 @@
 package com.akwabasystems.vm;
 
 
+import com.akwabasystems.model.CommandTable;
 import com.akwabasystems.model.CommandType;
+import com.akwabasystems.model.Segment;
 import com.akwabasystems.model.VMCommand;
 import com.akwabasystems.utils.VMUtils;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -23,14 +27,22 @@ import java.util.Stack;
  * corresponding assembly code representation. The final assembly code is then output to a file.
  * 
  * This class removes all in-line comments contained in the files prior to processing them.
+ *
+ * Commands are read by a VMLexer into a CommandTable, and the VMCommand objects in the command list are views over
+ * the rows of that table.
  */
 public final class VMParser implements Parser {
     
     private final List<VMCommand> commands = Collections.synchronizedList(new ArrayList<>());
+    private final CommandTable table = new CommandTable();
+    private final VMLexer lexer = new VMLexer(table);
     private String fileName;
     private final Stack<String> contexts = new Stack<>();
     private static boolean debugEnabled = false;
     private static boolean bootstrapEnabled = true;
+    private boolean stackCachingEnabled = false;
+    private boolean segmentAddressingEnabled = false;
+    private CodeStatistics statistics = null;
 
     
     /**
@@ -50,27 +62,79 @@ public final class VMParser implements Parser {
      */
     @Override
     public void parse(String command) {
-        String syntax = VMUtils.stripComments(command);
-        boolean isComment = syntax.startsWith("//") || (syntax.startsWith("/*") && syntax.endsWith("*/"));
-        boolean isValidCommand = (!syntax.isEmpty() && !isComment);
-        VMCommand currentCommand = null;
-
-        if(isValidCommand) {
-            currentCommand = CommandType.fromCommand(command);
-
-            /** Set the current context to the parsed function */
-            boolean isFunctionCall = (currentCommand.getType() == CommandType.C_CALL);
-            boolean isFunctionReturn = (currentCommand.getType() == CommandType.C_RETURN);
-            
-            if(isFunctionCall) {
-                onFunctionEnter(currentCommand.getArgument1());
-            } else if(isFunctionReturn) {
-                onFunctionExit();
+        byte[] line = command.getBytes(StandardCharsets.ISO_8859_1);
+        addCommand(lexer.lex(line, 0, line.length));
+    }
+
+
+    /**
+     * Parses all the commands in the given source (for instance, the contents of a ".vm" file), one command per line
+     *
+     * @param source        the source to parse
+     */
+    @Override
+    public void parse(byte[] source) {
+        int start = 0;
+
+        while(start < source.length) {
+            int end = start;
+
+            while(end < source.length && source[end] != '\n') {
+                end++;
             }
 
-            currentCommand.setContext(contexts.peek());
-            commands.add(currentCommand);
+            addCommand(lexer.lex(source, start, end));
+            start = end + 1;
+        }
+    }
+
+
+    /**
+     * Loads the commands in the given binary buffer (for instance, a memory-mapped ".vmb" file), without any text
+     * parsing. The file name of this parser is set to the name of the source file recorded in the buffer, so that
+     * static variables get the same symbols as when the source file is parsed.
+     *
+     * @param buffer        the buffer that holds the binary representation of the commands
+     * @throws IllegalArgumentException if the buffer does not hold a valid binary representation
+     */
+    @Override
+    public void parse(ByteBuffer buffer) {
+        int firstRow = table.size();
+        fileName = VMBinaryFormat.decode(buffer, table);
+
+        for(int row = firstRow; row < table.size(); row++) {
+            addCommand(row);
+        }
+    }
+
+
+    /**
+     * Adds the command at the given row of the command table to the command list. It sets the context of the command
+     * to the appropriate one when entering and leaving a function.
+     *
+     * @param row           the row of the command, or CommandTable.NONE if the parsed line holds no command
+     */
+    private void addCommand(int row) {
+
+        if(row == CommandTable.NONE) {
+            return;
+        }
+
+        CommandType type = table.type(row);
+        VMCommand currentCommand = type.command(table, row);
+
+        /** Set the current context to the parsed function */
+        boolean isFunctionCall = (type == CommandType.C_CALL);
+        boolean isFunctionReturn = (type == CommandType.C_RETURN);
+
+        if(isFunctionCall) {
+            onFunctionEnter(currentCommand.getArgument1());
+        } else if(isFunctionReturn) {
+            onFunctionExit();
         }
+
+        currentCommand.setContext(contexts.peek());
+        commands.add(currentCommand);
     }
     
     
@@ -87,6 +151,17 @@ public final class VMParser implements Parser {
     }
     
     
+    /**
+     * Returns the file name for this parser
+     * 
+     * @return the file name for this parser
+     */
+    @Override
+    public String getFileName() {
+        return fileName;
+    }
+    
+    
     /**
      * A method invoked when the parser enters a function context. It sets the current context to that of the function.
      * 
@@ -167,6 +242,68 @@ public final class VMParser implements Parser {
     }
 
 
+    /**
+     * Specifies whether this parser should cache the top-most value of the stack in the D register when generating
+     * the assembly code
+     *
+     * @param isStackCachingEnabled     a flag that specifies whether to cache the top of the stack in D
+     * @return a reference to the Parser instance
+     */
+    @Override
+    public VMParser setStackCachingEnabled(boolean isStackCachingEnabled) {
+        stackCachingEnabled = isStackCachingEnabled;
+        return this;
+    }
+
+
+    /**
+     * Returns true if this parser caches the top-most value of the stack in the D register; otherwise, returns false
+     *
+     * @return true if this parser caches the top-most value of the stack in the D register; otherwise, returns false
+     */
+    public boolean isStackCachingEnabled() {
+        return stackCachingEnabled;
+    }
+
+
+    /**
+     * Specifies whether this parser should access the local, argument, this and that segments with the shorter code
+     * of SegmentAddressing when generating the assembly code
+     *
+     * @param isSegmentAddressingEnabled    a flag that specifies whether to use the shorter segment addressing
+     * @return a reference to the Parser instance
+     */
+    @Override
+    public VMParser setSegmentAddressingEnabled(boolean isSegmentAddressingEnabled) {
+        segmentAddressingEnabled = isSegmentAddressingEnabled;
+        return this;
+    }
+
+
+    /**
+     * Returns true if this parser accesses the segments with the shorter code of SegmentAddressing; otherwise,
+     * returns false
+     *
+     * @return true if this parser accesses the segments with the shorter code of SegmentAddressing
+     */
+    public boolean isSegmentAddressingEnabled() {
+        return segmentAddressingEnabled;
+    }
+
+
+    /**
+     * Sets the statistics in which to record the code generated for each command
+     *
+     * @param statistics            the statistics in which to record the generated code, or null
+     * @return a reference to the Parser instance
+     */
+    @Override
+    public VMParser setStatistics(CodeStatistics statistics) {
+        this.statistics = statistics;
+        return this;
+    }
+
+
     /**
      * Returns the assembly code for bootstrapping the application. The logic initializes the main segments
      * (SP, LCL, ARG, THIS, THAT) to sensible defaults; it then invokes the system init function (call Sys.init).
@@ -212,6 +349,28 @@ public final class VMParser implements Parser {
     }
     
     
+    /**
+     * Returns the list of parsed VM commands
+     * 
+     * @return the list of parsed VM commands
+     */
+    @Override
+    public List<VMCommand> getCommands() {
+        return commands;
+    }
+    
+    
+    /**
+     * Returns the table that holds the parsed VM commands
+     *
+     * @return the table that holds the parsed VM commands
+     */
+    @Override
+    public CommandTable getCommandTable() {
+        return table;
+    }
+
+
     /**
      * Returns the assembly code from the parsed VM commands
      * 
@@ -220,29 +379,109 @@ public final class VMParser implements Parser {
     @Override
     public String assemblyCode() {
         StringBuilder buffer = new StringBuilder();
+        appendAssemblyCode(buffer);
+        return buffer.toString();
+    }
+
+
+    /**
+     * Appends the assembly code from the parsed VM commands to the given buffer. Each command writes its code
+     * directly into the buffer.
+     * 
+     * @param buffer                the buffer to which to append the assembly code
+     */
+    @Override
+    public void appendAssemblyCode(StringBuilder buffer) {
+
+        if(stackCachingEnabled) {
+            synchronized(commands) {
+                new StackCachingCodeGenerator(fileName)
+                        .setDebugEnabled(isDebugEnabled())
+                        .setSegmentAddressingEnabled(segmentAddressingEnabled)
+                        .setStatistics(statistics)
+                        .generate(commands, buffer);
+                return;
+            }
+        }
+
+        if(statistics != null) {
+            statistics.startFile(fileName);
+        }
+
+        SegmentAddressing addressing = (segmentAddressingEnabled)? new SegmentAddressing() : null;
 
         synchronized(commands) {
-            commands.stream().forEach((command) -> {
-                command.setFileName(fileName);
-                String assemblyCode = command.toAssemblyCode();
+            for(int i = 0; i < commands.size(); i++) {
+                VMCommand command = commands.get(i);
+
+                if(command.getFileName() == null) {
+                    command.setFileName(fileName);
+                }
+
+                int start = buffer.length();
 
-                if(!assemblyCode.isEmpty()) {
-                    if(this.isDebugEnabled()) {
-                        buffer.append(String.format("// %s\n", command.getCommand()));
-                    }
+                if(this.isDebugEnabled()) {
+                    buffer.append("// ").append(command.getCommand()).append('\n');
+                }
+
+                int codeStart = buffer.length();
 
-                    buffer.append(assemblyCode);
-                    boolean isLast = (commands.indexOf(command) == commands.size() - 1);
+                if(addressing != null) {
+                    appendAddressedCode(buffer, command, addressing);
+                } else {
+                    command.appendAssemblyCode(buffer);
+                }
 
-                    if(!isLast) {
-                        buffer.append("\n");
-                    }
+                if(statistics != null) {
+                    statistics.record(command, buffer, codeStart, buffer.length());
                 }
-            });
+
+                /** A command without code (such as a pop into the constant segment) leaves no comment either */
+                if(buffer.length() == codeStart) {
+                    buffer.setLength(start);
+                } else if(i != commands.size() - 1) {
+                    buffer.append("\n");
+                }
+            }
         }
+    }
 
-        return buffer.toString();
 
+    /**
+     * Appends the assembly code of the given command to the given buffer, accessing the local, argument, this and
+     * that segments with the shorter code of the given addressing
+     * 
+     * @param buffer                the buffer to which to append the assembly code
+     * @param command               the command to translate
+     * @param addressing            the addressing that knows the content of the registers after the previous command
+     */
+    private static void appendAddressedCode(StringBuilder buffer, VMCommand command, SegmentAddressing addressing) {
+
+        if(!SegmentAddressing.isAddressableAccess(command)) {
+            addressing.forget();
+            command.appendAssemblyCode(buffer);
+            return;
+        }
+
+        Segment segment = Segment.fromArgument(command.getArgument1());
+        int index = command.getArgument2();
+
+        if(command.getType() == CommandType.C_PUSH) {
+            addressing.appendLoad(buffer, segment, index);
+            buffer.append(VMUtils.pushToStackAssemblyCode());
+            return;
+        }
+
+        if(SegmentAddressing.canStore(index)) {
+            buffer.append(VMUtils.popFromStackAssemblyCode());
+            addressing.appendStoreAddress(buffer, segment, index);
+            buffer.append("M=D");
+        } else {
+            command.appendAssemblyCode(buffer);
+        }
+
+        /** Both pops leave the address of the item in A, and its value in D */
+        addressing.stored(segment, index);
     }
 
 }
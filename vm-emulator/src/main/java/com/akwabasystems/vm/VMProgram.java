@@ -0,0 +1,325 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.ArithmeticCommandType;
+import com.akwabasystems.model.CommandType;
+import com.akwabasystems.model.Segment;
+import com.akwabasystems.model.VMCommand;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * A compact, executable representation of a VM program.
+ *
+ * The parsed commands of all the files of a program are lowered into a single integer array, where each instruction
+ * takes up three consecutive entries: an opcode, a first operand and a second operand. Labels and function names are
+ * resolved to instruction indices during the lowering, and static variables are resolved to RAM addresses, which
+ * are allocated from address 16 onwards, file by file. A static variable belongs to the file name of its command when
+ * it has one (an inlined function keeps the file name of its own file), and to the file of its command list otherwise.
+ *
+ * Labels are scoped to the function that declares them. Label commands do not produce any instruction; they resolve
+ * to the index of the instruction that follows them.
+ */
+public final class VMProgram {
+
+    public static final int PUSH = 0;
+    public static final int POP = 1;
+    public static final int ADD = 2;
+    public static final int SUB = 3;
+    public static final int NEG = 4;
+    public static final int EQ = 5;
+    public static final int GT = 6;
+    public static final int LT = 7;
+    public static final int AND = 8;
+    public static final int OR = 9;
+    public static final int NOT = 10;
+    public static final int GOTO = 11;
+    public static final int IF_GOTO = 12;
+    public static final int FUNCTION = 13;
+    public static final int CALL = 14;
+    public static final int RETURN = 15;
+
+    public static final int INSTRUCTION_SIZE = 3;
+    public static final int STATIC_BASE_ADDRESS = 16;
+    public static final int MAX_SIZE = 0xFFFF;
+
+    private final int[] code;
+    private final String[] functionNames;
+    private final Map<String,Integer> functions;
+    private final Map<String,Integer> staticAddresses;
+    private final Map<String,Integer> functionStaticBases;
+
+
+    /**
+     * Creates a program from the given code and function tables
+     *
+     * @param code                  the lowered instructions of the program
+     * @param functionNames         the name of the enclosing function of each instruction
+     * @param functions             the instruction index of each function, keyed by function name
+     * @param staticAddresses       the RAM address of each static variable, keyed by symbol ("File.index")
+     * @param functionStaticBases   the address of the static variables of the file of each function, keyed by
+     *                              function name
+     */
+    private VMProgram(int[] code, String[] functionNames, Map<String,Integer> functions,
+                      Map<String,Integer> staticAddresses, Map<String,Integer> functionStaticBases) {
+        this.code = code;
+        this.functionNames = functionNames;
+        this.functions = functions;
+        this.staticAddresses = staticAddresses;
+        this.functionStaticBases = functionStaticBases;
+    }
+
+
+    /**
+     * Lowers the given command lists (one list per file, keyed by file name) into an executable program
+     *
+     * @param programs          the command lists of the program, keyed by file name
+     * @return the executable program for the given commands
+     * @throws IllegalArgumentException if a command cannot be lowered, if a label or function cannot be resolved, or
+     *         if the program has more than MAX_SIZE instructions
+     */
+    public static VMProgram lower(Map<String,List<VMCommand>> programs) {
+        List<VMCommand> instructions = new ArrayList<>();
+        List<String> scopes = new ArrayList<>();
+        List<String> staticFiles = new ArrayList<>();
+        Map<String,Integer> labels = new HashMap<>();
+        Map<String,Integer> functions = new HashMap<>();
+        Map<String,String> functionFiles = new HashMap<>();
+        Map<String,Integer> staticCounts = new LinkedHashMap<>();
+        Map<String,Integer> staticBases = new HashMap<>();
+        Map<String,Integer> staticAddresses = new LinkedHashMap<>();
+        int staticBase = STATIC_BASE_ADDRESS;
+
+        programs.keySet().forEach((fileName) -> staticCounts.put(fileName, 0));
+
+        /** First pass: collect the instructions, and resolve the labels and functions to instruction indices */
+        for(Map.Entry<String,List<VMCommand>> entry : programs.entrySet()) {
+            String scope = entry.getKey();
+
+            synchronized(entry.getValue()) {
+                for(VMCommand command : entry.getValue()) {
+
+                    if(command.getType() == CommandType.C_FUNCTION) {
+                        scope = command.getArgument1();
+                        functions.put(scope, instructions.size());
+                        functionFiles.put(scope, entry.getKey());
+                    } else if(command.getType() == CommandType.C_LABEL) {
+                        labels.put(labelKey(scope, command.getArgument1()), instructions.size());
+                        continue;
+                    }
+
+                    boolean isStaticAccess = (command.getType() == CommandType.C_PUSH ||
+                            command.getType() == CommandType.C_POP) &&
+                            Segment.fromArgument(command.getArgument1()) == Segment.STATIC;
+
+                    String staticFile = null;
+
+                    if(isStaticAccess) {
+                        staticFile = (command.getFileName() != null)? command.getFileName() : entry.getKey();
+                        staticCounts.merge(staticFile, command.getArgument2() + 1, Math::max);
+                    }
+
+                    instructions.add(command);
+                    scopes.add(scope);
+                    staticFiles.add(staticFile);
+                }
+            }
+        }
+
+        /** Each file gets a single range of static addresses, whichever command lists access its variables */
+        for(Map.Entry<String,Integer> entry : staticCounts.entrySet()) {
+            staticBases.put(entry.getKey(), staticBase);
+
+            for(int i = 0; i < entry.getValue(); i++) {
+                staticAddresses.put(String.format("%s.%s", entry.getKey(), i), staticBase + i);
+            }
+
+            staticBase += entry.getValue();
+        }
+
+        Map<String,Integer> functionStaticBases = new HashMap<>();
+        functionFiles.forEach((function, fileName) -> functionStaticBases.put(function, staticBases.get(fileName)));
+
+        /** Return addresses are stored in the 16-bit RAM, so every instruction index must fit in 16 bits */
+        if(instructions.size() > MAX_SIZE) {
+            throw new IllegalArgumentException(String.format("The program is too large: %s instructions (max: %s)",
+                                                             instructions.size(), MAX_SIZE));
+        }
+
+        /** Second pass: encode each instruction */
+        int[] code = new int[instructions.size() * INSTRUCTION_SIZE];
+        String[] functionNames = new String[instructions.size()];
+
+        for(int i = 0; i < instructions.size(); i++) {
+            VMCommand command = instructions.get(i);
+            String scope = scopes.get(i);
+            int offset = i * INSTRUCTION_SIZE;
+            functionNames[i] = scope;
+
+            switch(command.getType()) {
+
+                case C_PUSH:
+                case C_POP:
+                    Segment segment = Segment.fromArgument(command.getArgument1());
+
+                    if(segment == null) {
+                        throw new IllegalArgumentException(String.format("Invalid segment: %s", command.getCommand()));
+                    }
+
+                    code[offset] = (command.getType() == CommandType.C_PUSH)? PUSH : POP;
+                    code[offset + 1] = segment.ordinal();
+                    code[offset + 2] = (segment == Segment.STATIC)?
+                            staticBases.get(staticFiles.get(i)) + command.getArgument2() : command.getArgument2();
+                    break;
+
+                case C_ARITHMETIC:
+                    code[offset] = arithmeticOpcode(command);
+                    break;
+
+                case C_GOTO:
+                case C_IF:
+                    code[offset] = (command.getType() == CommandType.C_GOTO)? GOTO : IF_GOTO;
+                    code[offset + 1] = resolve(labels, labelKey(scope, command.getArgument1()), command);
+                    break;
+
+                case C_FUNCTION:
+                    code[offset] = FUNCTION;
+                    code[offset + 2] = command.getArgument2();
+                    break;
+
+                case C_CALL:
+                    code[offset] = CALL;
+                    code[offset + 1] = resolve(functions, command.getArgument1(), command);
+                    code[offset + 2] = command.getArgument2();
+                    break;
+
+                default:
+                    code[offset] = RETURN;
+                    break;
+            }
+        }
+
+        return new VMProgram(code, functionNames, functions, staticAddresses, functionStaticBases);
+    }
+
+
+    /**
+     * Returns the lowered instructions of this program
+     *
+     * @return the lowered instructions of this program
+     */
+    public int[] getCode() {
+        return code;
+    }
+
+
+    /**
+     * Returns the number of instructions in this program
+     *
+     * @return the number of instructions in this program
+     */
+    public int size() {
+        return functionNames.length;
+    }
+
+
+    /**
+     * Returns the instruction index of the given function, or -1 if the function is not declared
+     *
+     * @param function          the name of the function
+     * @return the instruction index of the given function, or -1 if the function is not declared
+     */
+    public int functionIndex(String function) {
+        return functions.getOrDefault(function, -1);
+    }
+
+
+    /**
+     * Returns the RAM address of each static variable of this program, keyed by the symbol that the translated code
+     * uses for the variable ("File.index"). The translated code lets the assembler allocate these symbols, so their
+     * addresses in the Hack RAM may differ from the ones used by the interpreter.
+     *
+     * @return the RAM address of each static variable, keyed by symbol
+     */
+    public Map<String,Integer> staticAddresses() {
+        return Collections.unmodifiableMap(staticAddresses);
+    }
+
+
+    /**
+     * Returns the RAM address of the first static variable of the file that declares the given function (the
+     * address that "static 0" refers to in that file), or -1 if the function is not declared
+     *
+     * @param function          the name of the function
+     * @return the address of the static variables of the file of the given function, or -1 if it is not declared
+     */
+    public int staticBaseOf(String function) {
+        return functionStaticBases.getOrDefault(function, -1);
+    }
+
+
+    /**
+     * Returns the name of the function that encloses the instruction at the given index
+     *
+     * @param index             the index of the instruction
+     * @return the name of the function that encloses the instruction at the given index
+     */
+    public String functionAt(int index) {
+        return functionNames[index];
+    }
+
+
+    /**
+     * Returns the opcode of the given arithmetic command
+     *
+     * @param command           the arithmetic command
+     * @return the opcode of the given arithmetic command
+     */
+    private static int arithmeticOpcode(VMCommand command) {
+        ArithmeticCommandType type = ArithmeticCommandType.fromCommand(command.getCommand());
+
+        if(type == null) {
+            throw new IllegalArgumentException(String.format("Invalid command: %s", command.getCommand()));
+        }
+
+        return ADD + type.ordinal();
+    }
+
+
+    /**
+     * Returns the key of the given label within the specified scope
+     *
+     * @param scope             the enclosing function (or file) of the label
+     * @param label             the name of the label
+     * @return the key of the given label within the specified scope
+     */
+    private static String labelKey(String scope, String label) {
+        return String.format("%s$%s", scope, label);
+    }
+
+
+    /**
+     * Returns the instruction index for the given key in the specified table
+     *
+     * @param table             the table that maps names to instruction indices
+     * @param key               the key to resolve
+     * @param command           the command that references the key
+     * @return the instruction index for the given key
+     * @throws IllegalArgumentException if the key cannot be resolved
+     */
+    private static int resolve(Map<String,Integer> table, String key, VMCommand command) {
+        Integer index = table.get(key);
+
+        if(index == null) {
+            throw new IllegalArgumentException(String.format("Unresolved target in command: %s", command.getCommand()));
+        }
+
+        return index;
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.ArithmeticCommandType;
+import com.akwabasystems.model.CallCommand;
+import com.akwabasystems.model.VMCommand;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+
+public class AssemblyEmissionTests {
+
+    private static final String SOURCE = "function Main.main 2\n" +
+                                         "push constant 7\n" +
+                                         "push static 3\n" +
+                                         "add\n" +
+                                         "pop local 1\n" +
+                                         "push argument 0\n" +
+                                         "push that 2\n" +
+                                         "lt\n" +
+                                         "if-goto END\n" +
+                                         "push pointer 1\n" +
+                                         "push temp 4\n" +
+                                         "eq\n" +
+                                         "not\n" +
+                                         "pop static 0\n" +
+                                         "pop this 3\n" +
+                                         "label LOOP\n" +
+                                         "push local 0\n" +
+                                         "neg\n" +
+                                         "call Main.loop 1\n" +
+                                         "pop temp 0\n" +
+                                         "goto LOOP\n" +
+                                         "label END\n" +
+                                         "push constant 0\n" +
+                                         "return\n";
+
+
+    @After
+    public void resetLabels() {
+        ArithmeticCommandType.resetLabelCount();
+        StackCachingCodeGenerator.resetComparisonCount();
+        CallCommand.resetInvocationCounts();
+    }
+
+
+    @Test
+    public void appendedCodeMatchesTheCodeOfEachCommand() {
+        List<VMCommand> commands = parse(SOURCE);
+        StringBuilder expected = new StringBuilder();
+        StringBuilder builder = new StringBuilder("// start\n");
+
+        resetLabels();
+
+        for(VMCommand command : commands) {
+            expected.append(command.toAssemblyCode());
+        }
+
+        resetLabels();
+
+        for(VMCommand command : commands) {
+            command.appendAssemblyCode(builder);
+        }
+
+        /** The code is appended after the existing content of the builder */
+        assertEquals(builder.toString(), "// start\n" + expected);
+    }
+
+
+    @Test
+    public void emittingIntoAReusedBufferDoesNotAllocate() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemoryEnabled());
+
+        List<VMCommand> commands = parse(SOURCE);
+        StringBuilder builder = new StringBuilder(1 << 16);
+        long threadId = Thread.currentThread().getId();
+        int iterations = 1000;
+
+        emit(commands, builder, iterations);
+
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        emit(commands, builder, iterations);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        /**
+         * Building a string for each command took over a kilobyte per command; only the invocation counts of the
+         * calls are still boxed
+         */
+        double bytesPerCommand = (double) allocated / (iterations * commands.size());
+        assertTrue(String.format("%.1f bytes allocated per command", bytesPerCommand), bytesPerCommand < 8);
+    }
+
+
+    private static void emit(List<VMCommand> commands, StringBuilder builder, int iterations) {
+
+        for(int i = 0; i < iterations; i++) {
+            builder.setLength(0);
+
+            for(int j = 0; j < commands.size(); j++) {
+                commands.get(j).appendAssemblyCode(builder);
+            }
+        }
+    }
+
+
+    private static List<VMCommand> parse(String source) {
+        VMParser parser = new VMParser();
+        parser.setFileName("Main");
+        parser.parse(source.getBytes(StandardCharsets.UTF_8));
+        parser.assemblyCode();
+        return parser.getCommands();
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.CommandType;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+
+public class CodeStatisticsTests {
+
+    private static final String SOURCE = "push constant 7\n" +
+                                         "function Main.main 1\n" +
+                                         "push constant 7\n" +
+                                         "push local 0\n" +
+                                         "add\n" +
+                                         "pop static 0\n" +
+                                         "call Main.double 1\n" +
+                                         "return\n" +
+                                         "function Main.double 0\n" +
+                                         "push argument 0\n" +
+                                         "push argument 0\n" +
+                                         "add\n" +
+                                         "return\n";
+
+
+    @Test
+    public void instructionsAreCounted() {
+        String code = "// push constant 7\n@7\nD=A\n(LOOP)\n  @LOOP\n\n0;JMP";
+
+        assertEquals(CodeStatistics.instructionCount(code, 0, code.length()), 4);
+        assertEquals(CodeStatistics.instructionCount(code, code.indexOf("(LOOP)"), code.length()), 2);
+    }
+
+
+    @Test
+    public void statisticsMatchTheGeneratedCode() {
+
+        for(boolean isStackCachingEnabled : Arrays.asList(false, true)) {
+            CodeStatistics statistics = new CodeStatistics();
+            VMParser parser = new VMParser();
+            parser.setFileName("Main.vm");
+            parser.shouldBootstrap(false);
+            parser.setStackCachingEnabled(isStackCachingEnabled)
+                  .setStatistics(statistics)
+                  .parse(SOURCE.getBytes(StandardCharsets.UTF_8));
+
+            String code = parser.assemblyCode();
+            long instructions = CodeStatistics.instructionCount(code, 0, code.length());
+
+            assertEquals(statistics.instructionCount(), instructions);
+            assertEquals(statistics.instructionCount("Main.main") + statistics.instructionCount("Main.double") +
+                         statistics.instructionCount("(top level)"), instructions);
+            assertEquals(statistics.topFunctions(1), Arrays.asList("Main.main"));
+            assertTrue(statistics.instructionCount(CommandType.C_CALL) > 0);
+        }
+    }
+
+
+    @Test
+    public void reportsListTheTopFunctions() {
+        CodeStatistics statistics = new CodeStatistics();
+        VMParser parser = new VMParser();
+        parser.setFileName("Main.vm");
+        parser.setStatistics(statistics).parse(SOURCE.getBytes(StandardCharsets.UTF_8));
+        parser.assemblyCode();
+
+        statistics.recordBootstrap(VMParser.bootstrapCode());
+        String report = statistics.report(1);
+        String json = statistics.toJSON();
+
+        assertTrue(report.contains("Top 1 functions:\n    - Main.main"));
+        assertTrue(report.contains("bootstrap: 22"));
+        assertTrue(report.contains("    - ADD: "));
+        assertTrue(json.contains(String.format("\"instructions\": %s,", statistics.instructionCount())));
+        assertTrue(json.contains("\"ARGUMENT\": { \"commands\": 2,"));
+        assertTrue(json.contains("{ \"name\": \"Main.double\", \"commands\": 5,"));
+    }
+
+}
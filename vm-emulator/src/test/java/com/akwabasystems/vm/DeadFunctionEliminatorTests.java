@@ -0,0 +1,76 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.VMCommand;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+
+public class DeadFunctionEliminatorTests {
+
+
+    @Test
+    public void unreachableFunctionsAreRemoved() {
+        Parser sys = new VMParser();
+        sys.parse("function Sys.init 0");
+        sys.parse("call Main.main 0");
+        sys.parse("label END");
+        sys.parse("goto END");
+
+        Parser main = new VMParser();
+        main.parse("function Main.main 0");
+        main.parse("push constant 3");
+        main.parse("call Main.double 1");
+        main.parse("return");
+        main.parse("function Main.double 0");
+        main.parse("push argument 0");
+        main.parse("push argument 0");
+        main.parse("add");
+        main.parse("return");
+        main.parse("function Main.unused 0");
+        main.parse("call Main.unusedHelper 0");
+        main.parse("return");
+        main.parse("function Main.unusedHelper 0");
+        main.parse("push constant 0");
+        main.parse("return");
+
+        List<List<VMCommand>> programs = Arrays.asList(sys.getCommands(), main.getCommands());
+        DeadFunctionEliminator eliminator = new DeadFunctionEliminator().analyze(programs);
+
+        assertTrue(eliminator.isReachable("Sys.init"));
+        assertTrue(eliminator.isReachable("Main.main"));
+        assertTrue(eliminator.isReachable("Main.double"));
+        assertFalse(eliminator.isReachable("Main.unused"));
+        assertFalse(eliminator.isReachable("Main.unusedHelper"));
+
+        assertEquals(eliminator.eliminate(sys.getCommands()), 0);
+        assertEquals(eliminator.eliminate(main.getCommands()), 6);
+        assertEquals(main.getCommands().size(), 9);
+
+        String report = eliminator.report();
+        assertTrue(report.contains("5 declared, 3 reachable, 2 removed"));
+        assertTrue(report.contains("Main.unusedHelper (3 commands)"));
+    }
+
+
+    @Test
+    public void programWithoutEntryPointIsKept() {
+        Parser parser = new VMParser();
+        parser.parse("function Main.main 0");
+        parser.parse("return");
+        parser.parse("function Main.unused 0");
+        parser.parse("return");
+
+        DeadFunctionEliminator eliminator = new DeadFunctionEliminator()
+                .analyze(Arrays.asList(parser.getCommands()));
+
+        assertEquals(eliminator.eliminate(parser.getCommands()), 0);
+        assertTrue(eliminator.isReachable("Main.unused"));
+        assertTrue(eliminator.unreachableFunctions().isEmpty());
+    }
+
+}
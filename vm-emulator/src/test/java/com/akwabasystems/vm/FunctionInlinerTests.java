@@ -0,0 +1,199 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.VMCommand;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+
+public class FunctionInlinerTests {
+
+
+    @Test
+    public void leafFunctionIsInlined() {
+        Parser main = new VMParser();
+        main.parse("function Main.main 0");
+        main.parse("push constant 7");
+        main.parse("push constant 8");
+        main.parse("call Point.sum 2");
+        main.parse("return");
+
+        Parser point = new VMParser();
+        point.parse("function Point.sum 1");
+        point.parse("push argument 0");
+        point.parse("push argument 1");
+        point.parse("add");
+        point.parse("pop local 0");
+        point.parse("push local 0");
+        point.parse("return");
+
+        Map<String,List<VMCommand>> programs = new LinkedHashMap<>();
+        programs.put("Main.vm", main.getCommands());
+        programs.put("Point.vm", point.getCommands());
+
+        FunctionInliner inliner = new FunctionInliner().inline(programs);
+        assertTrue(inliner.isCandidate("Point.sum"));
+
+        List<String> commands = main.getCommands().stream()
+                                    .map(VMCommand::getCommand)
+                                    .collect(Collectors.toList());
+
+        assertFalse(commands.contains("call Point.sum 2"));
+        assertEquals(commands.subList(3, 12), Arrays.asList(
+                "pop temp 7",
+                "pop temp 6",
+                "push constant 0",
+                "pop temp 5",
+                "push temp 6",
+                "push temp 7",
+                "add",
+                "pop temp 5",
+                "push temp 5"));
+        assertEquals(commands.get(commands.size() - 1), "return");
+        assertTrue(inliner.report().contains("Point.sum (1 sites)"));
+    }
+
+
+    @Test
+    public void pointersAndStaticsArePreserved() {
+        Parser main = new VMParser();
+        main.parse("function Main.main 0");
+        main.parse("push constant 100");
+        main.parse("call Memory.peek 1");
+        main.parse("return");
+
+        Parser memory = new VMParser();
+        memory.parse("function Memory.peek 0");
+        memory.parse("push argument 0");
+        memory.parse("push static 0");
+        memory.parse("add");
+        memory.parse("pop pointer 1");
+        memory.parse("push that 0");
+        memory.parse("return");
+
+        Map<String,List<VMCommand>> programs = new LinkedHashMap<>();
+        programs.put("Main.vm", main.getCommands());
+        programs.put("Memory.vm", memory.getCommands());
+        new FunctionInliner().inline(programs);
+
+        List<VMCommand> commands = main.getCommands();
+        assertEquals(commands.get(3).getCommand(), "push pointer 1");
+        assertEquals(commands.get(4).getCommand(), "pop temp 6");
+        assertEquals(commands.get(6).getCommand(), "push static 0");
+        assertEquals(commands.get(6).getFileName(), "Memory.vm");
+        assertEquals(commands.get(10).getCommand(), "push temp 6");
+        assertEquals(commands.get(11).getCommand(), "pop pointer 1");
+
+        main.setFileName("Main.vm");
+        assertTrue(main.assemblyCode().contains("@Memory.vm.0"));
+    }
+
+
+    @Test
+    public void functionsWithControlFlowOrCallsAreNotInlined() {
+        Parser parser = new VMParser();
+        parser.parse("function Math.abs 0");
+        parser.parse("push argument 0");
+        parser.parse("push constant 0");
+        parser.parse("lt");
+        parser.parse("if-goto IF_TRUE0");
+        parser.parse("push argument 0");
+        parser.parse("return");
+        parser.parse("label IF_TRUE0");
+        parser.parse("push argument 0");
+        parser.parse("neg");
+        parser.parse("return");
+        parser.parse("function Main.twice 0");
+        parser.parse("push argument 0");
+        parser.parse("call Math.abs 1");
+        parser.parse("return");
+        parser.parse("function Main.large 0");
+
+        for(int i = 0; i < FunctionInliner.DEFAULT_SIZE_THRESHOLD + 1; i++) {
+            parser.parse("push constant 1");
+        }
+
+        parser.parse("return");
+
+        Map<String,List<VMCommand>> programs = new LinkedHashMap<>();
+        programs.put("Main.vm", parser.getCommands());
+        FunctionInliner inliner = new FunctionInliner().inline(programs);
+
+        assertFalse(inliner.isCandidate("Math.abs"));
+        assertFalse(inliner.isCandidate("Main.twice"));
+        assertFalse(inliner.isCandidate("Main.large"));
+    }
+
+
+    @Test
+    public void budgetLimitsInlining() {
+        Parser parser = new VMParser();
+        parser.parse("function Main.one 0");
+        parser.parse("push constant 1");
+        parser.parse("return");
+        parser.parse("function Main.main 1");
+        parser.parse("push constant 5");
+        parser.parse("call Main.twice 1");
+        parser.parse("push constant 6");
+        parser.parse("call Main.twice 1");
+        parser.parse("return");
+        parser.parse("function Main.twice 0");
+        parser.parse("push argument 0");
+        parser.parse("push argument 0");
+        parser.parse("add");
+        parser.parse("return");
+
+        Map<String,List<VMCommand>> programs = new LinkedHashMap<>();
+        programs.put("Main.vm", parser.getCommands());
+        FunctionInliner inliner = new FunctionInliner().setBudget(3).inline(programs);
+
+        long remainingCalls = parser.getCommands().stream()
+                                    .filter((command) -> command.getCommand().startsWith("call"))
+                                    .count();
+        assertEquals(remainingCalls, 1);
+        assertTrue(inliner.report().contains("Commands added: 3 (budget: 3)"));
+    }
+
+
+    @Test
+    public void callerTempSlotsAreNotOverwritten() {
+        Parser parser = new VMParser();
+        parser.parse("function Sys.init 0");
+        parser.parse("push constant 99");
+        parser.parse("pop temp 7");
+        parser.parse("push constant 5");
+        parser.parse("call Sys.twice 1");
+        parser.parse("pop temp 0");
+        parser.parse("push temp 7");
+        parser.parse("label END");
+        parser.parse("goto END");
+        parser.parse("function Sys.twice 0");
+        parser.parse("push argument 0");
+        parser.parse("push argument 0");
+        parser.parse("add");
+        parser.parse("return");
+
+        Map<String,List<VMCommand>> programs = new LinkedHashMap<>();
+        programs.put("Sys.vm", parser.getCommands());
+        FunctionInliner inliner = new FunctionInliner().inline(programs);
+
+        /** Sys.init keeps a value in temp 7 across the call, so the argument has no free slot above it */
+        assertTrue(inliner.isCandidate("Sys.twice"));
+        assertTrue(parser.getCommands().stream().anyMatch((command) -> command.getCommand().equals("call Sys.twice 1")));
+
+        VMInterpreter interpreter = new VMInterpreter(VMProgram.lower(programs));
+        interpreter.bootstrap();
+        interpreter.run(1000);
+
+        assertEquals(interpreter.peek(5), 10);
+        assertEquals(interpreter.peek(12), 99);
+    }
+
+}
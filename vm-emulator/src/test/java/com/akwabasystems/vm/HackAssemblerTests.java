@@ -0,0 +1,83 @@
+package com.akwabasystems.vm;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+
+public class HackAssemblerTests {
+
+
+    @Test
+    public void instructionsAreEncoded() {
+        HackAssembler assembler = new HackAssembler();
+        assembler.append("// Adds 2 and 3\n@2\nD=A\n@3\nD=D+A\n@0\nM=D\n0;JMP");
+
+        assertEquals(assembler.size(), 7);
+        assertEquals(assembler.binaryCode(), "0000000000000010\n" +
+                                             "1110110000010000\n" +
+                                             "0000000000000011\n" +
+                                             "1110000010010000\n" +
+                                             "0000000000000000\n" +
+                                             "1110001100001000\n" +
+                                             "1110101010000111");
+    }
+
+
+    @Test
+    public void symbolsAreResolved() {
+        HackAssembler assembler = new HackAssembler();
+        assembler.append("@LOOP\n0;JMP\n")
+                 .append("(LOOP)\n@counter\nM=M+1\n@SP\nAM=M-1\n@total\nD=M\n")
+                 .append("@counter\nD;JGT\n@END\n(END)");
+
+        short[] binary = assembler.toBinary();
+
+        assertEquals(binary.length, 11);
+        assertEquals(binary[0], 2);
+        assertEquals(binary[2], HackAssembler.VARIABLE_BASE_ADDRESS);
+        assertEquals(binary[3], (short) 0b1111110111001000);
+        assertEquals(binary[4], 0);
+        assertEquals(binary[6], HackAssembler.VARIABLE_BASE_ADDRESS + 1);
+        assertEquals(binary[8], HackAssembler.VARIABLE_BASE_ADDRESS);
+        assertEquals(binary[9], (short) 0b1110001100000001);
+        assertEquals(binary[10], 11);
+        assertTrue(assembler.binaryCode().endsWith("0000000000001011\n"));
+    }
+
+
+    @Test
+    public void translatedCodeIsAssembled() {
+        VMParser parser = new VMParser();
+        parser.setFileName("Main.vm");
+        parser.shouldBootstrap(false);
+        parser.parse("push constant 7\npush constant 8\nadd\npop static 0\n".getBytes());
+
+        HackAssembler assembler = new HackAssembler();
+        assembler.append(parser.assemblyCode());
+        short[] binary = assembler.toBinary();
+
+        assertEquals(binary[0], 7);
+        assertTrue(binary.length > 4);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidInstruction() {
+        new HackAssembler().append("D=D*A");
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addressOutOfRange() {
+        HackAssembler assembler = new HackAssembler();
+
+        for(int i = 0; i <= HackAssembler.MAX_ADDRESS; i++) {
+            assembler.append("D=0\n");
+        }
+
+        assembler.append("(FAR)\n@FAR\n0;JMP").toBinary();
+    }
+
+}
@@ -0,0 +1,211 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.VMCommand;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+
+public class IntrinsicsTests {
+
+    private static final String OS_DIRECTORY = "../nand2tetris/tools/OS";
+
+
+    @Test
+    public void intrinsicReplacesFunction() {
+        VMProgram program = program("push constant 300", "push constant 7", "call Math.multiply 2");
+
+        VMInterpreter interpreter = new VMInterpreter(program).setIntrinsics(IntrinsicRegistry.standard()).bootstrap();
+        interpreter.run(100000);
+
+        assertTrue(interpreter.isHalted());
+        assertEquals(interpreter.getIntrinsicCalls(), 3);
+        assertEquals(interpreter.peek(0), 262);
+        assertEquals(interpreter.peek(261), 2100);
+
+        VMInterpreter reference = new VMInterpreter(program).bootstrap();
+        reference.run(100000);
+
+        assertEquals(reference.getIntrinsicCalls(), 0);
+        assertEquals(reference.peek(261), 2100);
+        assertTrue(interpreter.getSteps() < reference.getSteps());
+    }
+
+
+    @Test
+    public void intrinsicsAreToggledPerClass() {
+        IntrinsicRegistry registry = IntrinsicRegistry.standard().setEnabled("Math", false);
+
+        assertFalse(registry.isEnabled("Math"));
+        assertTrue(registry.isEnabled("Memory"));
+        assertNull(registry.lookup("Math.multiply"));
+        assertEquals(registry.lookup("Memory.peek"), registry.lookup("Memory.peek"));
+        assertTrue(registry.classes().contains("Math"));
+
+        VMProgram program = program("push constant 12", "push constant 4", "call Math.divide 2");
+        VMInterpreter interpreter = new VMInterpreter(program).setIntrinsics(registry).bootstrap();
+        interpreter.run(100000);
+
+        assertEquals(interpreter.getIntrinsicCalls(), 2);
+        assertEquals(interpreter.peek(261), 3);
+    }
+
+
+    @Test
+    public void errorsFallBackToFunction() {
+        VMProgram program = program("push constant 12", "push constant 0", "call Math.divide 2");
+        VMInterpreter interpreter = new VMInterpreter(program).setIntrinsics(IntrinsicRegistry.standard()).bootstrap();
+        interpreter.run(100000);
+
+        assertEquals(interpreter.getIntrinsicCalls(), 2);
+        assertEquals(interpreter.peek(VMInterpreter.SCREEN), 3);
+    }
+
+
+    @Test
+    public void heapMatchesMemoryFunctions() {
+        VMProgram program = program("push constant 10", "call Memory.alloc 1", "push constant 20",
+                                    "call Memory.alloc 1", "pop temp 1", "call Memory.deAlloc 1", "pop temp 0",
+                                    "push constant 5", "call Memory.alloc 1");
+
+        VMInterpreter interpreter = new VMInterpreter(program).setIntrinsics(IntrinsicRegistry.standard()).bootstrap();
+        VMInterpreter reference = new VMInterpreter(program).bootstrap();
+        interpreter.run(100000);
+        reference.run(100000);
+
+        assertEquals(interpreter.getIntrinsicCalls(), 6);
+        assertEquals(interpreter.peek(261), reference.peek(261));
+        assertSameState(interpreter, reference);
+    }
+
+
+    @Test
+    public void ramMatchesMathFunctions() {
+        int[][] operands = { { 7, 2 }, { -7, 2 }, { 7, -2 }, { -7, -2 }, { 0, 5 }, { 1, 32767 }, { 32767, 1 },
+                             { 32767, 3 }, { 30000, 7 }, { -32768, 3 }, { -32768, -32768 }, { 12345, 123 },
+                             { 100, 101 }, { 16384, 2 }, { -1, -1 } };
+        List<String> commands = new ArrayList<>();
+
+        for(int[] pair : operands) {
+            for(String function : new String[] { "Math.divide", "Math.multiply" }) {
+                commands.addAll(push(pair[0]));
+                commands.addAll(push(pair[1]));
+                commands.add(String.format("call %s 2", function));
+                commands.add(String.format("pop static %s", commands.size()));
+            }
+        }
+
+        commands.addAll(Arrays.asList("push constant 30000", "call Math.sqrt 1", "pop static 0",
+                                      "push constant 9000", "push constant 1234", "call Memory.poke 2",
+                                      "pop static 1"));
+
+        VMProgram program = program(commands.toArray(new String[0]));
+        VMInterpreter interpreter = new VMInterpreter(program).setIntrinsics(IntrinsicRegistry.standard()).bootstrap();
+        VMInterpreter reference = new VMInterpreter(program).bootstrap();
+        interpreter.run(10_000_000);
+        reference.run(10_000_000);
+
+        assertTrue(interpreter.isHalted() && reference.isHalted());
+        assertEquals(interpreter.getIntrinsicCalls(), operands.length * 2 + 4);
+        assertEquals(interpreter.peek(program.staticAddresses().get("Sys.vm.0")), 173);
+        assertSameState(interpreter, reference);
+    }
+
+
+    /**
+     * Checks that the RAM of the given interpreters is the same, apart from the unused part of the stack (the
+     * pointers, temp registers, static variables, used stack, heap and screen are compared)
+     */
+    private static void assertSameState(VMInterpreter interpreter, VMInterpreter reference) {
+        int stackPointer = reference.peek(0);
+
+        for(int address = 0; address < VMInterpreter.RAM_SIZE; address++) {
+            boolean isUnusedStack = (address >= stackPointer && address < OSIntrinsics.HEAP_BASE_ADDRESS);
+
+            if(!isUnusedStack) {
+                assertEquals(String.format("RAM[%s]", address), reference.peek(address), interpreter.peek(address));
+            }
+        }
+    }
+
+
+    /**
+     * Returns the commands that push the given value, which may be negative
+     */
+    private static List<String> push(int value) {
+
+        if(value == Short.MIN_VALUE) {
+            return Arrays.asList("push constant 32767", "neg", "push constant 1", "sub");
+        }
+
+        return (value < 0)? Arrays.asList(String.format("push constant %s", -value), "neg") :
+                Collections.singletonList(String.format("push constant %s", value));
+    }
+
+
+    /**
+     * Returns a program whose Sys.init initializes the memory (Math.init allocates two arrays, so the intrinsic
+     * calls include two calls to Memory.alloc), runs the given commands, then halts. The Array, Math
+     * and Memory functions are taken from the Jack OS; Sys.error writes its error code to the screen and halts.
+     */
+    private static VMProgram program(String... commands) {
+        Parser sys = new VMParser();
+        sys.parse("function Sys.init 0");
+        sys.parse("call Memory.init 0");
+        sys.parse("pop temp 0");
+        sys.parse("call Math.init 0");
+        sys.parse("pop temp 0");
+
+        for(String command : commands) {
+            sys.parse(command);
+        }
+
+        sys.parse("call Sys.halt 0");
+        sys.parse("function Sys.halt 0");
+        sys.parse("label LOOP");
+        sys.parse("goto LOOP");
+        sys.parse("function Sys.error 0");
+        sys.parse("push constant 16384");
+        sys.parse("pop pointer 1");
+        sys.parse("push argument 0");
+        sys.parse("pop that 0");
+        sys.parse("call Sys.halt 0");
+
+        Map<String,List<VMCommand>> programs = new LinkedHashMap<>();
+        programs.put("Sys.vm", sys.getCommands());
+        programs.put("Math.vm", parse("Math.vm"));
+        programs.put("Memory.vm", parse("Memory.vm"));
+        programs.put("Array.vm", parse("Array.vm"));
+
+        return VMProgram.lower(programs);
+    }
+
+
+    /**
+     * Returns the commands of the given file of the Jack OS
+     */
+    private static List<VMCommand> parse(String fileName) {
+        Parser parser = new VMParser();
+
+        try {
+            Files.readAllLines(Paths.get(OS_DIRECTORY, fileName)).forEach(parser::parse);
+        } catch(IOException cannotRead) {
+            throw new IllegalStateException(cannotRead);
+        }
+
+        return parser.getCommands();
+    }
+
+}
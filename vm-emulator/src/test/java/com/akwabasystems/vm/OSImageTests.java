@@ -0,0 +1,169 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.ArithmeticCommandType;
+import com.akwabasystems.model.CallCommand;
+import com.akwabasystems.model.CommandType;
+import com.akwabasystems.model.VMCommand;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Test;
+
+
+public class OSImageTests {
+
+
+    @After
+    public void resetLabels() {
+        ArithmeticCommandType.resetLabelCount();
+        StackCachingCodeGenerator.resetComparisonCount();
+        CallCommand.resetInvocationCounts();
+    }
+
+
+    @Test
+    public void captureStateBeforeMainIsCalled() {
+        Map<String,Parser> parsers = program("call Lib.init 0", "pop temp 0");
+        OSImage image = OSImage.capture(commands(parsers), 1000);
+        String bootstrapCode = image.bootstrapCode(false);
+        String entryLabel = entryLabel(bootstrapCode);
+
+        StringBuilder expectedCode = new StringBuilder();
+        expectedCode.append("@7\n")
+                    .append("D=A\n")
+                    .append("@Lib.1\n")
+                    .append("M=D\n")
+                    .append("@4\n")
+                    .append("D=!A\n")
+                    .append("@3000\n")
+                    .append("M=D\n")
+                    .append("@261\n")
+                    .append("D=A\n")
+                    .append("@SP\n")
+                    .append("M=D\n")
+                    .append("@LCL\n")
+                    .append("M=D\n")
+                    .append("@256\n")
+                    .append("D=A\n")
+                    .append("@ARG\n")
+                    .append("M=D\n")
+                    .append("@THIS\n")
+                    .append("M=0\n")
+                    .append("@THAT\n")
+                    .append("M=0\n")
+                    .append("@").append(entryLabel).append("\n")
+                    .append("0;JMP\n");
+
+        assertEquals(bootstrapCode, expectedCode.toString());
+        assertEquals(image.size(), 7);
+        assertTrue(image.getInitializationSteps() > 0);
+    }
+
+
+    @Test
+    public void installReplacesInitializationWithEntryLabel() {
+        Map<String,Parser> parsers = program("call Lib.init 0", "pop temp 0");
+        Map<String,List<VMCommand>> programs = commands(parsers);
+        OSImage image = OSImage.capture(programs, 1000);
+
+        assertEquals(image.install(programs), 2);
+
+        List<VMCommand> commands = programs.get("Sys");
+        assertEquals(commands.get(0).getType(), CommandType.C_FUNCTION);
+        assertEquals(commands.get(1).getType(), CommandType.C_LABEL);
+        assertEquals(commands.get(2).getArgument1(), OSImage.MAIN_FUNCTION);
+
+        /** The bootstrap code jumps to the label, which is declared in the translated code of Sys.init */
+        String bootstrapCode = image.bootstrapCode(false);
+        String entryLabel = entryLabel(bootstrapCode);
+        assertTrue(parsers.get("Sys").assemblyCode().contains(String.format("(%s)", entryLabel)));
+
+        /** The initialization function is no longer reachable */
+        DeadFunctionEliminator eliminator = new DeadFunctionEliminator().analyze(programs.values());
+        assertFalse(eliminator.isReachable("Lib.init"));
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void mainMustBeCalledFromSysInit() {
+        OSImage.capture(commands(program("call Lib.init 0", "pop temp 0", "push constant 0", "return")), 1000);
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void initializationMustNotDeclareLabels() {
+        OSImage.capture(commands(program("label START", "call Lib.init 0", "pop temp 0")), 1000);
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void initializationMustReachMain() {
+        OSImage.capture(commands(program("call Lib.init 0", "pop temp 0")), 3);
+    }
+
+
+    /**
+     * Returns a program whose Sys.init function starts with the given commands, then calls Main.main unless the
+     * given commands end with a return. Lib.init sets the static Lib.1 to 7, and the heap word 3000 to -5.
+     */
+    private static Map<String,Parser> program(String... initialization) {
+        Map<String,Parser> parsers = new LinkedHashMap<>();
+        Parser sys = parser(parsers, "Sys");
+        sys.parse("function Sys.init 0");
+
+        for(String command : initialization) {
+            sys.parse(command);
+        }
+
+        if(!initialization[initialization.length - 1].equals("return")) {
+            sys.parse("call Main.main 0");
+            sys.parse("pop temp 0");
+            sys.parse("label HALT");
+            sys.parse("goto HALT");
+        }
+
+        Parser lib = parser(parsers, "Lib");
+        lib.parse("function Lib.init 0");
+        lib.parse("push constant 7");
+        lib.parse("pop static 1");
+        lib.parse("push constant 3000");
+        lib.parse("pop pointer 1");
+        lib.parse("push constant 5");
+        lib.parse("neg");
+        lib.parse("pop that 0");
+        lib.parse("push constant 0");
+        lib.parse("return");
+
+        Parser main = parser(parsers, "Main");
+        main.parse("function Main.main 0");
+        main.parse("push static 0");
+        main.parse("return");
+
+        return parsers;
+    }
+
+
+    private static String entryLabel(String bootstrapCode) {
+        return bootstrapCode.substring(bootstrapCode.lastIndexOf('@') + 1, bootstrapCode.lastIndexOf("\n0;JMP"));
+    }
+
+
+    private static Parser parser(Map<String,Parser> parsers, String fileName) {
+        Parser parser = new VMParser().setFileName(fileName);
+        parsers.put(fileName, parser);
+        return parser;
+    }
+
+
+    private static Map<String,List<VMCommand>> commands(Map<String,Parser> parsers) {
+        Map<String,List<VMCommand>> programs = new LinkedHashMap<>();
+        parsers.forEach((fileName, parser) -> programs.put(fileName, parser.getCommands()));
+        return programs;
+    }
+
+}
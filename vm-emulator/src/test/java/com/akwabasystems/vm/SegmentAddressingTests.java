@@ -0,0 +1,128 @@
+package com.akwabasystems.vm;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+
+public class SegmentAddressingTests {
+
+
+    @Test
+    public void pushFromSmallIndex() {
+        Parser parser = new VMParser().setSegmentAddressingEnabled(true);
+
+        parser.parse("push argument 1");
+
+        StringBuilder expectedCode = new StringBuilder();
+        expectedCode.append("@ARG\n")
+                    .append("A=M+1\n")
+                    .append("D=M\n")
+                    .append("@SP\n")
+                    .append("A=M\n")
+                    .append("M=D\n")
+                    .append("@SP\n")
+                    .append("M=M+1");
+
+        assertEquals(parser.assemblyCode(), expectedCode.toString());
+    }
+
+
+    @Test
+    public void popIntoSmallIndexAndPushItBack() {
+        Parser parser = new VMParser().setSegmentAddressingEnabled(true);
+
+        parser.parse("pop local 2");
+        parser.parse("push local 2");
+
+        /** The address is computed in A without R15, and the pushed value is still in D */
+        StringBuilder expectedCode = new StringBuilder();
+        expectedCode.append("@SP\n")
+                    .append("AM=M-1\n")
+                    .append("D=M\n")
+                    .append("@LCL\n")
+                    .append("A=M+1\n")
+                    .append("A=A+1\n")
+                    .append("M=D\n")
+                    .append("@SP\n")
+                    .append("A=M\n")
+                    .append("M=D\n")
+                    .append("@SP\n")
+                    .append("M=M+1");
+
+        assertEquals(parser.assemblyCode(), expectedCode.toString());
+    }
+
+
+    @Test
+    public void pushNeighbourOfPoppedItem() {
+        Parser parser = new VMParser().setSegmentAddressingEnabled(true);
+
+        parser.parse("pop this 5");
+        parser.parse("push this 4");
+
+        String code = parser.assemblyCode();
+        String push = code.substring(code.indexOf("M=D\n") + "M=D\n".length());
+
+        assertTrue(push.startsWith("A=A-1\nD=M\n"));
+        assertFalse(code.contains("R15"));
+    }
+
+
+    @Test
+    public void labelClearsThePoppedAddress() {
+        Parser parser = new VMParser().setSegmentAddressingEnabled(true);
+
+        parser.parse("pop local 0");
+        parser.parse("label LOOP");
+        parser.parse("push local 0");
+
+        /** A jump to the label may arrive with any value in A and D, so the item is loaded again */
+        String code = parser.assemblyCode();
+        String push = code.substring(code.indexOf("(Main$LOOP)"));
+
+        assertTrue(push.contains("@LCL\nA=M\nD=M\n"));
+    }
+
+
+    @Test
+    public void largeIndicesAreUnchanged() {
+        Parser parser = new VMParser().setSegmentAddressingEnabled(true);
+        Parser defaultParser = new VMParser();
+
+        for(String command : new String[] { "push that 9", "pop argument 7" }) {
+            parser.parse(command);
+            defaultParser.parse(command);
+        }
+
+        assertEquals(parser.assemblyCode(), defaultParser.assemblyCode());
+    }
+
+
+    @Test
+    public void segmentAddressingWithStackCaching() {
+        Parser parser = new VMParser().setSegmentAddressingEnabled(true).setStackCachingEnabled(true);
+
+        parser.parse("push argument 1");
+        parser.parse("pop local 2");
+        parser.parse("push local 2");
+
+        StringBuilder expectedCode = new StringBuilder();
+        expectedCode.append("@ARG\n")
+                    .append("A=M+1\n")
+                    .append("D=M\n")
+                    .append("@LCL\n")
+                    .append("A=M+1\n")
+                    .append("A=A+1\n")
+                    .append("M=D\n")
+                    .append("@SP\n")
+                    .append("M=M+1\n")
+                    .append("A=M-1\n")
+                    .append("M=D");
+
+        assertEquals(parser.assemblyCode(), expectedCode.toString());
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.runtime.SourceWatcher;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class SourceWatcherTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void burstsOfChangesAreReportedOnce() throws Exception {
+        BlockingQueue<Set<File>> changes = new LinkedBlockingQueue<>();
+        CountDownLatch registration = new CountDownLatch(1);
+        SourceWatcher watcher = new SourceWatcher(folder.getRoot(), "vm").setDebounceDelay(200)
+                                                                          .setReadyListener(registration::countDown);
+
+        Thread thread = new Thread(() -> {
+            try {
+                watcher.watch(changes::add);
+            } catch(Exception stopped) {
+            }
+        });
+        thread.start();
+
+        try {
+
+            /** Wait for the directory to be registered, then write two source files and an output file */
+            assertTrue(registration.await(10, TimeUnit.SECONDS));
+            write("Main.vm", "push constant 1\n");
+            write("Main.asm", "@1\n");
+            write("Sys.vm", "push constant 2\n");
+
+            Set<File> changedFiles = changes.poll(10, TimeUnit.SECONDS);
+            Set<File> expectedFiles = new HashSet<>();
+            expectedFiles.add(new File(folder.getRoot().getAbsoluteFile(), "Main.vm"));
+            expectedFiles.add(new File(folder.getRoot().getAbsoluteFile(), "Sys.vm"));
+
+            assertNotNull(changedFiles);
+            assertEquals(new HashSet<>(changedFiles), expectedFiles);
+
+        } finally {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+
+    private void write(String fileName, String source) throws Exception {
+        Files.write(new File(folder.getRoot(), fileName).toPath(), source.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
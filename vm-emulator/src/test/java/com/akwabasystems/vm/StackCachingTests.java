@@ -0,0 +1,132 @@
+package com.akwabasystems.vm;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+
+public class StackCachingTests {
+
+
+    @Test
+    public void addCommandParsing() {
+        Parser parser = new VMParser().setStackCachingEnabled(true);
+
+        parser.parse("push constant 7");
+        parser.parse("push constant 8");
+        parser.parse("add");
+
+        StringBuilder expectedCode = new StringBuilder();
+        expectedCode.append("@7\n")
+                    .append("D=A\n")
+                    .append("@SP\n")
+                    .append("M=M+1\n")
+                    .append("A=M-1\n")
+                    .append("M=D\n")
+                    .append("@8\n")
+                    .append("D=A\n")
+                    .append("@SP\n")
+                    .append("AM=M-1\n")
+                    .append("D=D+M\n")
+                    .append("@SP\n")
+                    .append("M=M+1\n")
+                    .append("A=M-1\n")
+                    .append("M=D");
+
+        assertEquals(parser.assemblyCode(), expectedCode.toString());
+    }
+
+
+    @Test
+    public void popIntoSegment() {
+        Parser parser = new VMParser().setStackCachingEnabled(true);
+
+        parser.parse("push local 0");
+        parser.parse("push local 1");
+        parser.parse("sub");
+        parser.parse("pop local 2");
+
+        StringBuilder expectedCode = new StringBuilder();
+        expectedCode.append("@LCL\n")
+                    .append("D=M\n")
+                    .append("@0\n")
+                    .append("A=D+A\n")
+                    .append("D=M\n")
+                    .append("@SP\n")
+                    .append("M=M+1\n")
+                    .append("A=M-1\n")
+                    .append("M=D\n")
+                    .append("@LCL\n")
+                    .append("D=M\n")
+                    .append("@1\n")
+                    .append("A=D+A\n")
+                    .append("D=M\n")
+                    .append("@SP\n")
+                    .append("AM=M-1\n")
+                    .append("D=M-D\n")
+                    .append("@R13\n")
+                    .append("M=D\n")
+                    .append("@LCL\n")
+                    .append("D=M\n")
+                    .append("@2\n")
+                    .append("D=D+A\n")
+                    .append("@R13\n")
+                    .append("D=D+M\n")
+                    .append("A=D-M\n")
+                    .append("D=D-A\n")
+                    .append("M=D");
+
+        assertEquals(parser.assemblyCode(), expectedCode.toString());
+    }
+
+
+    @Test
+    public void spillBeforeLabelsAndCalls() {
+        Parser parser = new VMParser().setStackCachingEnabled(true);
+
+        parser.parse("function Main.main 0");
+        parser.parse("push constant 1");
+        parser.parse("label LOOP");
+        parser.parse("push constant 2");
+        parser.parse("call Math.abs 1");
+
+        String[] lines = parser.assemblyCode().split("\n");
+        int labelIndex = indexOf(lines, "(Main$LOOP)");
+        int jumpIndex = indexOf(lines, "@Math.abs");
+
+        assertTrue(labelIndex > 0);
+        assertEquals(lines[labelIndex - 1], "M=D");
+        assertEquals(lines[labelIndex - 4], "@SP");
+        assertTrue(jumpIndex > labelIndex);
+        assertEquals(lines[labelIndex + 6], "M=D");
+    }
+
+
+    @Test
+    public void conditionalJumpConsumesCachedValue() {
+        Parser parser = new VMParser().setStackCachingEnabled(true);
+
+        parser.parse("push constant 0");
+        parser.parse("if-goto END");
+        parser.parse("label END");
+
+        String assemblyCode = parser.assemblyCode();
+        assertFalse(assemblyCode.contains("M=M+1"));
+        assertFalse(assemblyCode.contains("AM=M-1"));
+        assertTrue(assemblyCode.endsWith("D;JNE\n(Main$END)"));
+    }
+
+
+    private static int indexOf(String[] lines, String line) {
+        for(int i = 0; i < lines.length; i++) {
+            if(lines[i].equals(line)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.CallCommand;
+import com.akwabasystems.model.VMCommand;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+
+public class TailCallOptimizerTests {
+
+
+    @Test
+    public void callsFollowedByReturnAreTailCalls() {
+        List<VMCommand> commands = parse("function Sum.loop 0\n" +
+                                         "push argument 0\n" +
+                                         "if-goto RECURSE\n" +
+                                         "push argument 1\n" +
+                                         "return\n" +
+                                         "label RECURSE\n" +
+                                         "push argument 0\n" +
+                                         "push constant 1\n" +
+                                         "sub\n" +
+                                         "push argument 1\n" +
+                                         "call Sum.add 1\n" +
+                                         "call Sum.loop 2\n" +
+                                         "return\n");
+
+        TailCallOptimizer optimizer = new TailCallOptimizer().optimize(Arrays.asList(commands));
+
+        assertEquals(optimizer.tailCallCount(), 1);
+        assertFalse(((CallCommand) commands.get(10)).isTailCall());
+        assertTrue(((CallCommand) commands.get(11)).isTailCall());
+        assertTrue(optimizer.report().contains("Sum.loop (1 calls)"));
+    }
+
+
+    @Test
+    public void callsOutsideFunctionsAreNotTailCalls() {
+        List<VMCommand> commands = parse("push constant 1\ncall Main.main 1\nreturn\n");
+        TailCallOptimizer optimizer = new TailCallOptimizer().optimize(Arrays.asList(commands));
+
+        assertEquals(optimizer.tailCallCount(), 0);
+    }
+
+
+    @Test
+    public void tailCallsReuseTheFrame() {
+        List<VMCommand> commands = parse("function Main.main 0\n" +
+                                         "push constant 2\n" +
+                                         "call Main.loop 1\n" +
+                                         "pop temp 0\n" +
+                                         "push constant 0\n" +
+                                         "return\n" +
+                                         "function Main.loop 0\n" +
+                                         "push argument 0\n" +
+                                         "call Main.loop 1\n" +
+                                         "return\n");
+
+        new TailCallOptimizer().optimize(Arrays.asList(commands));
+        String assemblyCode = commands.get(8).toAssemblyCode();
+
+        assertFalse(((CallCommand) commands.get(2)).isTailCall());
+        assertTrue(assemblyCode.endsWith("@Main.loop\n0;JMP"));
+        assertFalse(assemblyCode.contains("$ret"));
+
+        /** The calling function has as many arguments as the call, so the saved frame is not moved */
+        assertFalse(assemblyCode.contains("@R14"));
+    }
+
+
+    private static List<VMCommand> parse(String source) {
+        VMParser parser = new VMParser();
+        parser.setFileName("Main.vm");
+        parser.parse(source.getBytes(StandardCharsets.UTF_8));
+        return parser.getCommands();
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.ArithmeticCommandType;
+import com.akwabasystems.model.CallCommand;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class TranslationCacheTests {
+
+    private static final String MAIN = "function Main.main 0\n" +
+                                       "push constant 1\n" +
+                                       "push constant 2\n" +
+                                       "lt\n" +
+                                       "call Main.fib 1\n" +
+                                       "call Output.printInt 1\n" +
+                                       "return\n" +
+                                       "function Main.fib 0\n" +
+                                       "push argument 0\n" +
+                                       "push constant 2\n" +
+                                       "gt\n" +
+                                       "call Main.fib 1\n" +
+                                       "return\n";
+
+    private static final String OUTPUT = "function Output.printInt 0\n" +
+                                         "push argument 0\n" +
+                                         "push constant 0\n" +
+                                         "eq\n" +
+                                         "call Main.fib 1\n" +
+                                         "call Output.printInt 1\n" +
+                                         "return\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void linkedFragmentsMatchAFullTranslation() {
+        ArithmeticCommandType.resetLabelCount();
+        CallCommand.resetInvocationCounts();
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(parse("Main.vm", MAIN).assemblyCode()).append("\n")
+               .append(parse("Output.vm", OUTPUT).assemblyCode()).append("\n");
+
+        List<TranslationCache.Fragment> fragments = new ArrayList<>();
+        fragments.add(TranslationCache.translate(parse("Main.vm", MAIN)));
+        fragments.add(TranslationCache.translate(parse("Output.vm", OUTPUT)));
+
+        assertEquals(fragments.get(1).getLabelCount(), 1);
+        assertEquals((int) fragments.get(1).getInvocationCounts().get("Main.fib"), 1);
+        assertEquals(TranslationCache.link(fragments), builder.toString());
+    }
+
+
+    @Test
+    public void unchangedFilesAreReused() throws IOException {
+        File directory = folder.newFolder(TranslationCache.DIRECTORY_NAME);
+        File main = write("Main.vm", MAIN);
+        File output = write("Output.vm", OUTPUT);
+
+        TranslationCache cache = new TranslationCache(directory, "debug=false");
+
+        for(File file : Arrays.asList(main, output)) {
+            assertNull(cache.lookup(file));
+            cache.store(file, TranslationCache.translate(parse(file.getName(), read(file))));
+        }
+
+        cache.save();
+
+        TranslationCache nextCache = new TranslationCache(directory, "debug=false");
+        TranslationCache.Fragment fragment = nextCache.lookup(main);
+
+        assertNotNull(fragment);
+        assertEquals(fragment.getCode(), TranslationCache.translate(parse("Main.vm", MAIN)).getCode());
+        assertEquals(fragment.relocationCount(), 14);
+
+        /** A modified file is looked up with a new key, and the cache keeps only the fragments in use */
+        write("Output.vm", OUTPUT.replace("eq", "gt"));
+
+        assertNull(nextCache.lookup(output));
+        assertEquals(nextCache.save(), 1);
+        assertEquals(nextCache.hitCount(), 1);
+        assertEquals(nextCache.missCount(), 1);
+
+        /** The fragments of a build with different options are not reused */
+        assertNull(new TranslationCache(directory, "debug=true").lookup(main));
+    }
+
+
+    private File write(String fileName, String source) throws IOException {
+        File file = new File(folder.getRoot(), fileName);
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+
+    private static VMParser parse(String fileName, String source) {
+        VMParser parser = new VMParser();
+        parser.setFileName(fileName);
+        parser.shouldBootstrap(false);
+        parser.parse(source.getBytes(StandardCharsets.UTF_8));
+        return parser;
+    }
+
+}
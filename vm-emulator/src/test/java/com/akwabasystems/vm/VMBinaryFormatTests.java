@@ -0,0 +1,128 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.CommandTable;
+import com.akwabasystems.model.VMCommand;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+
+public class VMBinaryFormatTests {
+
+    private static final String SOURCE = "function Main.main 1\n" +
+                                         "push constant 7\n" +
+                                         "pop static 0\n" +
+                                         "label LOOP\n" +
+                                         "push static 0\n" +
+                                         "push argument 0\n" +
+                                         "lt\n" +
+                                         "if-goto LOOP\n" +
+                                         "call Math.multiply 2\n" +
+                                         "return\n";
+
+
+    @Test
+    public void commandsRoundTrip() {
+        VMParser parser = parse(SOURCE);
+        byte[] bytes = VMBinaryFormat.encode(parser.getCommandTable(), "Main.vm");
+
+        assertTrue(VMBinaryFormat.isBinary(ByteBuffer.wrap(bytes)));
+        assertFalse(VMBinaryFormat.isBinary(ByteBuffer.wrap(SOURCE.getBytes(StandardCharsets.UTF_8))));
+
+        CommandTable table = new CommandTable();
+        String fileName = VMBinaryFormat.decode(ByteBuffer.wrap(bytes), table);
+
+        assertEquals(fileName, "Main.vm");
+        assertEquals(table.size(), 10);
+        assertEquals(VMBinaryFormat.toText(table), SOURCE);
+    }
+
+
+    @Test
+    public void binaryFileTranslatesLikeSourceFile() {
+        VMParser parser = parse(SOURCE);
+        byte[] bytes = VMBinaryFormat.encode(parser.getCommandTable(), "Main.vm");
+
+        VMParser binaryParser = new VMParser();
+        binaryParser.parse(ByteBuffer.wrap(bytes));
+
+        assertEquals(binaryParser.getFileName(), "Main.vm");
+        assertEquals(binaryParser.getCommands().size(), parser.getCommands().size());
+
+        for(int i = 0; i < parser.getCommands().size(); i++) {
+            VMCommand command = parser.getCommands().get(i);
+            VMCommand binaryCommand = binaryParser.getCommands().get(i);
+
+            assertEquals(binaryCommand.getClass(), command.getClass());
+            assertEquals(binaryCommand.getCommand(), command.getCommand());
+            assertEquals(binaryCommand.getArgument1(), command.getArgument1());
+            assertEquals(binaryCommand.getArgument2(), command.getArgument2());
+        }
+
+        /** Commands without generated labels translate to the same assembly code */
+        assertEquals(binaryParser.getCommands().get(2).toAssemblyCode(), parser.getCommands().get(2).toAssemblyCode());
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedFileIsRejected() {
+        byte[] bytes = VMBinaryFormat.encode(parse(SOURCE).getCommandTable(), "Main.vm");
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, bytes.length - VMBinaryFormat.COMMAND_SIZE).slice();
+
+        VMBinaryFormat.decode(buffer, new CommandTable());
+    }
+
+
+    @Test
+    public void everyTruncationIsRejected() {
+        byte[] bytes = VMBinaryFormat.encode(parse(SOURCE).getCommandTable(), "Main.vm");
+
+        /** The header and the constant pool are checked as well as the commands */
+        for(int length = 0; length < bytes.length; length++) {
+            assertRejected(bytes, length);
+        }
+    }
+
+
+    @Test
+    public void invalidIndicesAreRejected() {
+        byte[] bytes = VMBinaryFormat.encode(parse(SOURCE).getCommandTable(), "Main.vm");
+        int pushCommand = bytes.length - 9 * VMBinaryFormat.COMMAND_SIZE;
+
+        /** A file name index past the end of the constant pool */
+        byte[] invalidFileName = bytes.clone();
+        invalidFileName[4] = (byte) 0x7F;
+        assertRejected(invalidFileName, invalidFileName.length);
+
+        /** A push command whose segment is not a valid segment ordinal */
+        byte[] invalidSegment = bytes.clone();
+        assertEquals(invalidSegment[pushCommand], 1);
+        invalidSegment[pushCommand + 1] = 8;
+        assertRejected(invalidSegment, invalidSegment.length);
+    }
+
+
+    private static void assertRejected(byte[] bytes, int length) {
+        try {
+            VMBinaryFormat.decode(ByteBuffer.wrap(bytes, 0, length).slice(), new CommandTable());
+            fail(String.format("A file of %s bytes was accepted", length));
+        } catch(IllegalArgumentException expected) {
+            /** The file is rejected with a message that VMMain can report */
+        }
+    }
+
+
+    private static VMParser parse(String source) {
+        VMParser parser = new VMParser();
+        parser.setFileName("Main.vm");
+        parser.shouldBootstrap(false);
+        parser.parse(source.getBytes(StandardCharsets.UTF_8));
+        return parser;
+    }
+
+}
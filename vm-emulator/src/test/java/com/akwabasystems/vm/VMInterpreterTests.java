@@ -0,0 +1,200 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.CommandType;
+import com.akwabasystems.model.VMCommand;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+
+public class VMInterpreterTests {
+
+
+    @Test
+    public void arithmeticCommands() {
+        Parser parser = new VMParser();
+        parser.parse("push constant 17");
+        parser.parse("push constant 17");
+        parser.parse("eq");
+        parser.parse("push constant 892");
+        parser.parse("push constant 891");
+        parser.parse("lt");
+        parser.parse("push constant 32767");
+        parser.parse("push constant 32766");
+        parser.parse("gt");
+        parser.parse("push constant 57");
+        parser.parse("push constant 31");
+        parser.parse("push constant 53");
+        parser.parse("add");
+        parser.parse("push constant 112");
+        parser.parse("sub");
+        parser.parse("neg");
+        parser.parse("and");
+        parser.parse("push constant 82");
+        parser.parse("or");
+        parser.parse("not");
+
+        VMInterpreter interpreter = interpreter(parser);
+        interpreter.poke(0, 256);
+        interpreter.run(1000);
+
+        assertTrue(interpreter.isHalted());
+        assertEquals(interpreter.peek(0), 260);
+        assertEquals(interpreter.peek(256), -1);
+        assertEquals(interpreter.peek(257), 0);
+        assertEquals(interpreter.peek(258), -1);
+        assertEquals(interpreter.peek(259), -91);
+    }
+
+
+    @Test
+    public void memoryAccessCommands() {
+        Parser parser = new VMParser();
+        parser.parse("push constant 3030");
+        parser.parse("pop pointer 0");
+        parser.parse("push constant 3040");
+        parser.parse("pop pointer 1");
+        parser.parse("push constant 32");
+        parser.parse("pop this 2");
+        parser.parse("push constant 46");
+        parser.parse("pop that 6");
+        parser.parse("push constant 510");
+        parser.parse("pop temp 6");
+        parser.parse("push constant 888");
+        parser.parse("pop static 3");
+        parser.parse("push static 3");
+        parser.parse("push temp 6");
+        parser.parse("add");
+
+        VMInterpreter interpreter = interpreter(parser);
+        interpreter.poke(0, 256);
+        interpreter.run(1000);
+
+        assertEquals(interpreter.peek(3), 3030);
+        assertEquals(interpreter.peek(4), 3040);
+        assertEquals(interpreter.peek(3032), 32);
+        assertEquals(interpreter.peek(3046), 46);
+        assertEquals(interpreter.peek(11), 510);
+        assertEquals(interpreter.peek(19), 888);
+        assertEquals(interpreter.peek(256), 1398);
+    }
+
+
+    @Test
+    public void recursiveFunctionCalls() {
+        Parser sys = new VMParser();
+        sys.parse("function Sys.init 0");
+        sys.parse("push constant 4");
+        sys.parse("call Main.fibonacci 1");
+        sys.parse("label WHILE");
+        sys.parse("goto WHILE");
+
+        Parser main = new VMParser();
+        main.parse("function Main.fibonacci 0");
+        main.parse("push argument 0");
+        main.parse("push constant 2");
+        main.parse("lt");
+        main.parse("if-goto IF_TRUE");
+        main.parse("goto IF_FALSE");
+        main.parse("label IF_TRUE");
+        main.parse("push argument 0");
+        main.parse("return");
+        main.parse("label IF_FALSE");
+        main.parse("push argument 0");
+        main.parse("push constant 2");
+        main.parse("sub");
+        main.parse("call Main.fibonacci 1");
+        main.parse("push argument 0");
+        main.parse("push constant 1");
+        main.parse("sub");
+        main.parse("call Main.fibonacci 1");
+        main.parse("add");
+        main.parse("return");
+
+        Map<String,List<VMCommand>> programs = new LinkedHashMap<>();
+        programs.put("Sys.vm", sys.getCommands());
+        programs.put("Main.vm", main.getCommands());
+
+        VMInterpreter interpreter = new VMInterpreter(VMProgram.lower(programs)).bootstrap();
+        interpreter.run(10000);
+
+        assertTrue(interpreter.isHalted());
+        assertEquals(interpreter.peek(0), 262);
+        assertEquals(interpreter.peek(261), 3);
+    }
+
+
+    @Test
+    public void stepLimit() {
+        Parser parser = new VMParser();
+        parser.parse("function Sys.init 0");
+        parser.parse("label LOOP");
+        parser.parse("push constant 1");
+        parser.parse("if-goto LOOP");
+
+        VMInterpreter interpreter = interpreter(parser).bootstrap();
+
+        assertEquals(interpreter.run(100), 100);
+        assertFalse(interpreter.isHalted());
+        assertEquals(interpreter.getSteps(), 100);
+    }
+
+
+    @Test
+    public void inlinedStaticsKeepTheirFile() {
+        Parser sys = new VMParser();
+        sys.parse("function Sys.init 0");
+        sys.parse("push constant 7");
+        sys.parse("pop static 0");
+        sys.parse("call Foo.init 0");
+        sys.parse("pop temp 0");
+        sys.parse("label WHILE");
+        sys.parse("goto WHILE");
+
+        Parser foo = new VMParser();
+        foo.parse("function Foo.init 0");
+        foo.parse("push constant 42");
+        foo.parse("pop static 0");
+        foo.parse("push constant 0");
+        foo.parse("return");
+
+        Map<String,List<VMCommand>> programs = new LinkedHashMap<>();
+        programs.put("Sys.vm", sys.getCommands());
+        programs.put("Foo.vm", foo.getCommands());
+        new FunctionInliner().inline(programs);
+        assertFalse(sys.getCommands().stream().anyMatch((command) -> command.getType() == CommandType.C_CALL));
+
+        VMProgram program = VMProgram.lower(programs);
+        VMInterpreter interpreter = new VMInterpreter(program).bootstrap();
+        interpreter.run(1000);
+
+        assertTrue(interpreter.isHalted());
+        assertEquals(program.staticAddresses().size(), 2);
+        assertEquals(interpreter.peek(program.staticAddresses().get("Sys.vm.0")), 7);
+        assertEquals(interpreter.peek(program.staticAddresses().get("Foo.vm.0")), 42);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unresolvedFunction() {
+        Parser parser = new VMParser();
+        parser.parse("function Sys.init 0");
+        parser.parse("call Main.main 0");
+
+        interpreter(parser);
+    }
+
+
+    private static VMInterpreter interpreter(Parser parser) {
+        Map<String,List<VMCommand>> programs = new LinkedHashMap<>();
+        programs.put("Test.vm", parser.getCommands());
+
+        return new VMInterpreter(VMProgram.lower(programs));
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.akwabasystems.vm;
+
+
+import com.akwabasystems.model.ArithmeticCommandType;
+import com.akwabasystems.model.CommandTable;
+import com.akwabasystems.model.CommandType;
+import com.akwabasystems.model.PushCommand;
+import com.akwabasystems.model.Segment;
+import com.akwabasystems.model.VMCommand;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+
+public class VMLexerTests {
+
+
+    @Test
+    public void commandsAreStoredInTable() {
+        CommandTable table = new CommandTable();
+        VMLexer lexer = new VMLexer(table);
+
+        int push = lex(lexer, "push constant 17");
+        int add = lex(lexer, "add");
+        int call = lex(lexer, "call Math.multiply 2");
+        int label = lex(lexer, "label LOOP");
+
+        assertEquals(table.size(), 4);
+        assertEquals(table.type(push), CommandType.C_PUSH);
+        assertEquals(table.operation(push), Segment.CONSTANT.ordinal());
+        assertEquals(table.argument1(push), "constant");
+        assertEquals(table.index(push), 17);
+        assertEquals(table.type(add), CommandType.C_ARITHMETIC);
+        assertEquals(table.operation(add), ArithmeticCommandType.ADD.ordinal());
+        assertEquals(table.argument1(add), "");
+        assertEquals(table.type(call), CommandType.C_CALL);
+        assertEquals(table.argument1(call), "Math.multiply");
+        assertEquals(table.index(call), 2);
+        assertEquals(table.text(label), "label LOOP");
+    }
+
+
+    @Test
+    public void commentsAndWhitespaceAreSkipped() {
+        CommandTable table = new CommandTable();
+        VMLexer lexer = new VMLexer(table);
+
+        assertEquals(lex(lexer, ""), CommandTable.NONE);
+        assertEquals(lex(lexer, "   \t"), CommandTable.NONE);
+        assertEquals(lex(lexer, "// push constant 1"), CommandTable.NONE);
+        assertEquals(lex(lexer, "/* push constant 1 */"), CommandTable.NONE);
+
+        int row = lex(lexer, "\t PUSH   local\t3 // comment\r");
+        assertEquals(table.size(), 1);
+        assertEquals(table.text(row), "push local 3");
+    }
+
+
+    @Test
+    public void namesAreInterned() {
+        CommandTable table = new CommandTable();
+        VMLexer lexer = new VMLexer(table);
+
+        for(int i = 0; i < 1000; i++) {
+            lex(lexer, String.format("call Output.printInt%s 1", i % 10));
+            lex(lexer, String.format("push argument %s", i));
+        }
+
+        assertEquals(table.size(), 2000);
+        assertEquals(table.nameCount(), 11);
+        assertEquals(table.name(0), table.name(20));
+        assertEquals(table.index(1999), 999);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCommand() {
+        lex(new VMLexer(new CommandTable()), "jump LOOP");
+    }
+
+
+    @Test
+    public void invalidSegment() {
+        CommandTable table = new CommandTable();
+        VMLexer lexer = new VMLexer(table);
+
+        for(String line : new String[] { "push foo 3", "pop Local 0", "push" }) {
+            try {
+                lex(lexer, line);
+                fail(String.format("\"%s\" was accepted", line));
+            } catch(IllegalArgumentException expected) {
+                assertTrue(expected.getMessage().startsWith("Invalid segment"));
+            }
+        }
+
+        assertEquals(table.size(), 0);
+        assertEquals(table.nameCount(), 0);
+    }
+
+
+    @Test
+    public void commandsAreViewsOverTable() {
+        VMParser parser = new VMParser();
+        parser.parse("function Main.main 0\npush constant 8\npush static 1\nneg\n".getBytes(StandardCharsets.UTF_8));
+
+        List<VMCommand> commands = parser.getCommands();
+        assertEquals(commands.size(), 4);
+        assertEquals(parser.getCommandTable().size(), 4);
+        assertTrue(commands.get(1) instanceof PushCommand);
+        assertEquals(commands.get(1).getCommand(), "push constant 8");
+        assertEquals(commands.get(2).getArgument1(), "static");
+        assertEquals(commands.get(2).getArgument2(), 1);
+        assertEquals(commands.get(3).toAssemblyCode(), CommandType.fromCommand("neg").toAssemblyCode());
+    }
+
+
+    private static int lex(VMLexer lexer, String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return lexer.lex(bytes, 0, bytes.length);
+    }
+
+}